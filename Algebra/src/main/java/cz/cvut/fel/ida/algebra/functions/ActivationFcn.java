@@ -32,6 +32,14 @@ public interface ActivationFcn {
         return this.getClass().getSimpleName();
     }
 
+    /**
+     * The parameters this instance of the function is configured with (e.g. the indices of a slice), or an empty array if there are none,
+     * i.e. two functions of the same class with equal parameters are interchangeable
+     */
+    public default Object[] getParameters() {
+        return new Object[0];
+    }
+
     /**
      * We do not want to create a new object for the same activation function that gets repeated over milions of neurons, even if it's very lightweight
      *
@@ -39,6 +39,11 @@ public class Concatenation implements Combination, Aggregation {
         }
     }
 
+    @Override
+    public Object[] getParameters() {
+        return new Object[]{axis};
+    }
+
     @Override
     public Combination replaceWithSingleton() {
         return Combination.Singletons.concatenation;
@@ -31,6 +31,11 @@ public class Softmax implements Transformation, Combination, XMax, Aggregation {
         this.aggregableTerms = aggregableTerms;
     }
 
+    @Override
+    public Object[] getParameters() {
+        return new Object[]{aggregableTerms};
+    }
+
     @Override
     public Transformation replaceWithSingleton() {
         return Transformation.Singletons.softmax;
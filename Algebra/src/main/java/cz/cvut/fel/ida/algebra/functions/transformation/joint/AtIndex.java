@@ -30,6 +30,11 @@ public class AtIndex implements Transformation {
         this.index = index;
     }
 
+    @Override
+    public Object[] getParameters() {
+        return new Object[]{index};
+    }
+
     @Override
     public ActivationFcn replaceWithSingleton() {
         return null;
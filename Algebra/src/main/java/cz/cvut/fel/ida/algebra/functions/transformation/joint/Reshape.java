@@ -29,6 +29,11 @@ public class Reshape implements Transformation {
         this.shape = shape;
     }
 
+    @Override
+    public Object[] getParameters() {
+        return new Object[]{shape};
+    }
+
     @Override
     public ActivationFcn replaceWithSingleton() {
         return null;
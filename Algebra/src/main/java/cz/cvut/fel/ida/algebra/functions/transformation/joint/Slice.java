@@ -37,6 +37,11 @@ public class Slice implements Transformation {
         this.rows = rows;
     }
 
+    @Override
+    public Object[] getParameters() {
+        return new Object[]{rows, cols};
+    }
+
     @Override
     public ActivationFcn replaceWithSingleton() {
         return null;
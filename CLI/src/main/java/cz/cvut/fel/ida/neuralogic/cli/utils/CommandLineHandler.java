@@ -38,6 +38,7 @@ public class CommandLineHandler {
 
 
         options.addOption(Option.builder("lc").longOpt("logColors").argName("INT").numberOfArgs(1).optionalArg(true).desc("colored output on console, best on white background {0,INT} (default: " + (settings.customLogColors ? 1 : 0) + ")").build());
+        options.addOption(Option.builder("al").longOpt("asyncLogging").desc("write the log out in a background thread, possibly dropping the less important records (default: " + Settings.asyncLogging + ")").build());
 
         //-----------source files
         options.addOption(Option.builder("sf").longOpt("sourcesFile").argName("FILE").numberOfArgs(1).optionalArg(true).desc("path to json Sources specification file (default: " + settings.sourcesFile + ")").build());
@@ -62,7 +63,8 @@ public class CommandLineHandler {
         //-----------settings
         options.addOption(Option.builder("set").longOpt("settingsFile").argName("FILE").numberOfArgs(1).optionalArg(true).desc("path to json file with all the Settings (default: " + settings.settingsFile + ")").build());
         options.addOption(Option.builder("out").longOpt("outputFolder").argName("DIR").numberOfArgs(1).optionalArg(true).desc("output folder for logging and exporting (default: " + settings.outDir + ")").build());
-        options.addOption(Option.builder("mode").longOpt("pipelineMode").argName("ENUM").numberOfArgs(1).optionalArg(true).desc("main mode of the program {complete, neuralization, debug} (default: " + settings.mainMode.toString().toLowerCase() + ")").build());
+        options.addOption(Option.builder("mode").longOpt("pipelineMode").argName("ENUM").numberOfArgs(1).optionalArg(true).desc("main mode of the program {complete, neuralization, debug, serve} (default: " + settings.mainMode.toString().toLowerCase() + ")").build());
+        options.addOption(Option.builder("port").longOpt("servingPort").argName("INT").numberOfArgs(1).optionalArg(true).desc("local port to answer queries on in the serve mode, -1 for stdin/stdout {-1,0,INT} (default: " + settings.servingPort + ")").build());
         options.addOption(Option.builder("debug").longOpt("debugMode").argName("ENUM").numberOfArgs(1).optionalArg(true).desc("debug some objects within the Pipeline during the run {template, grounding, neuralization, samples, model, all} (default: all)").build());
         options.addOption(Option.builder("lim").longOpt("limitExamples").argName("INT").numberOfArgs(1).optionalArg(true).desc("limit examples to some smaller number, used e.g. for debugging {-1,INT} (default: " + settings.appLimitSamples + ")").build());
         options.addOption(Option.builder("seed").longOpt("randomSeed").argName("INT").numberOfArgs(1).optionalArg(true).desc("int seed for random generator (default: " + settings.seed + ")").build());
@@ -73,9 +75,11 @@ public class CommandLineHandler {
         //training
         options.addOption(Option.builder("dist").longOpt("distribution").argName("ENUM").numberOfArgs(1).optionalArg(true).desc("distribution for weight initialization {uniform, normal, longtail, constant} (default: " + settings.initDistribution.toString().toLowerCase() + ")").build());
         options.addOption(Option.builder("init").longOpt("initialization").argName("ENUM").numberOfArgs(1).optionalArg(true).desc("algorithm for weight initialization {simple, glorot, he} (default: " + settings.initializer.toString().toLowerCase() + ")").build());
-        options.addOption(Option.builder("opt").longOpt("optimizer").argName("ENUM").numberOfArgs(1).optionalArg(true).desc("optimization algorithm {sgd, adam} (default: " + settings.getOptimizer() + ")").build());
+        options.addOption(Option.builder("opt").longOpt("optimizer").argName("ENUM").numberOfArgs(1).optionalArg(true).desc("optimization algorithm {sgd, adam, adamw, lazyadam} (default: " + settings.getOptimizer() + ")").build());
         options.addOption(Option.builder("lr").longOpt("learningRate").argName("FLOAT").numberOfArgs(1).optionalArg(true).desc("initial learning rate (default: " + settings.initLearningRate + ")").build());
         options.addOption(Option.builder("ts").longOpt("trainingSteps").argName("INT").numberOfArgs(1).optionalArg(true).desc("cumulative number of epochae in neural training (default: " + settings.maxCumEpochCount + ")").build());
+        options.addOption(Option.builder("ckpt").longOpt("checkpointEpocha").argName("INT").numberOfArgs(1).optionalArg(true).desc("save a checkpoint of the training state every {-1,INT} epochae (default: " + settings.checkpointEpochae + ")").build());
+        options.addOption(Option.builder("resume").longOpt("resume").desc("resume the training from the last checkpoint in the output folder (default: " + settings.resumeTraining + ")").build());
         options.addOption(Option.builder("rec").longOpt("recalculationEpocha").argName("INT").numberOfArgs(1).optionalArg(true).desc("recalculate true training and validation error+stats every {INT} epochae (default: " + settings.resultsRecalculationEpochae + ")").build());
         options.addOption(Option.builder("decay").longOpt("learnRateDecay").argName("FLOAT").numberOfArgs(1).optionalArg(true).desc("learning rate decay geometric coefficient {-1,FLOAT} (default: " + settings.learnRateDecay + ")").build());
         options.addOption(Option.builder("decays").longOpt("decaySteps").argName("INT").numberOfArgs(1).optionalArg(true).desc("learning rate decays every {-1,INT} steps (default: " + settings.decaySteps + ")").build());
@@ -0,0 +1,415 @@
+package cz.cvut.fel.ida.neuralogic.cli.utils;
+
+import cz.cvut.fel.ida.algebra.values.ScalarValue;
+import cz.cvut.fel.ida.algebra.values.Value;
+import cz.cvut.fel.ida.algebra.values.inits.ValueInitializer;
+import cz.cvut.fel.ida.logic.constructs.template.Template;
+import cz.cvut.fel.ida.logic.grounding.GroundingSample;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.actions.Evaluation;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.actions.IndependentNeuronProcessing;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.states.neurons.Invalidator;
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralModel;
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralSample;
+import cz.cvut.fel.ida.pipelines.Pipeline;
+import cz.cvut.fel.ida.pipelines.building.PythonBuilder;
+import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.setup.Sources;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A long-running inference mode ({@link Settings.MainMode#SERVING}) keeping the (trained) template loaded, so that the
+ * incoming queries are only grounded, neuralized and evaluated, without the startup of the JVM and the template processing.
+ * <p>
+ * Line protocol (UTF-8), over a local socket ({@link Settings#servingPort}) or stdin/stdout:
+ * <pre>
+ *     request:  QUERY [TAB EXAMPLE]        e.g. "predict.\tbond(a,b,1), c_22(a), ..."
+ *     response: OUTPUT (TAB OUTPUT)* | ERROR TAB MESSAGE  e.g. "0.574" or "[0.1, 0.9]", one line per request, in the order of requests
+ * </pre>
+ * The QUERY and EXAMPLE are in the same format as a single (unlabeled) line of the queries and examples files, respectively,
+ * with an OUTPUT for each of the query literals. Without the EXAMPLE, the query is evaluated against the facts of the template.
+ * The requests coming concurrently (from multiple connections, or pipelined in a single one) are micro-batched (up to
+ * {@link Settings#servingBatchSize}, waiting at most {@link Settings#servingBatchMillis} for more), i.e. parsed, grounded
+ * and neuralized together.
+ */
+public class InferenceServer implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(InferenceServer.class.getName());
+
+    private final Settings settings;
+
+    private final PythonBuilder builder;
+
+    private final Template template;
+
+    private final Evaluation evaluation;
+
+    private final IndependentNeuronProcessing invalidation;
+
+    private final Answering templateFacts;
+
+    private final Answering singleExample;
+
+    private final Answering examplesBatch;
+
+    private final BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+
+    private final Thread batcher;
+
+    private final ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "inference-connection");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ServerSocket serverSocket;
+
+    private volatile boolean running = true;
+
+    private static final CompletableFuture<String> END = new CompletableFuture<>();
+
+    public InferenceServer(Settings settings, Sources sources) throws Exception {
+        this.settings = settings;
+        this.builder = new PythonBuilder(settings);
+        LOG.info("Loading the template for serving.");
+        this.template = builder.buildTemplate(sources);
+        if (sources.binaryTemplateStream == null) {
+            LOG.warning("Serving a template that has not been trained (exported), initializing its weights.");
+            new NeuralModel(template.getAllWeights(), settings).resetWeights(ValueInitializer.getInitializer(settings));
+        }
+        this.evaluation = new Evaluation(settings);
+        this.invalidation = new IndependentNeuronProcessing(settings, new Invalidator(-1));
+        this.templateFacts = new Answering(Settings.GroundingMode.GLOBAL, false);
+        this.singleExample = new Answering(Settings.GroundingMode.GLOBAL, true);
+        this.examplesBatch = new Answering(Settings.GroundingMode.INDEPENDENT, true);
+        this.batcher = new Thread(this::processBatches, "inference-batcher");
+        batcher.setDaemon(true);
+        batcher.start();
+    }
+
+    private static class Request {
+        final String query;
+        final String example;
+        final CompletableFuture<String> response = new CompletableFuture<>();
+
+        Request(String query, String example) {
+            this.query = query;
+            this.example = example;
+        }
+    }
+
+    /**
+     * Run the server as set up, i.e. on the local port, or on stdin/stdout, until the input ends (or the server is closed)
+     *
+     * @param stdout - the standard output to answer to (as opposed to the logging output)
+     */
+    public void serve(OutputStream stdout) throws IOException {
+        if (settings.servingPort < 0) {
+            LOG.info("Serving the queries from stdin.");
+            serve(System.in, stdout);
+        } else {
+            start(settings.servingPort);
+            while (running && !serverSocket.isClosed()) {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Start accepting the connections on the local port in the background
+     *
+     * @param port - 0 for any free port
+     * @return the actual port
+     */
+    public int start(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        LOG.info("Serving the queries on port " + serverSocket.getLocalPort());
+        Thread acceptor = new Thread(() -> {
+            while (running) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    connections.submit(() -> {
+                        try (Socket s = socket) {
+                            serve(s.getInputStream(), s.getOutputStream());
+                        } catch (IOException e) {
+                            LOG.fine("Connection closed: " + e);
+                        }
+                    });
+                } catch (IOException e) {
+                    if (running) {
+                        LOG.warning("Failed to accept a connection: " + e);
+                    }
+                }
+            }
+        }, "inference-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Answer the request lines from the input in their order, while letting them be batched with the other requests
+     */
+    public void serve(InputStream in, OutputStream out) throws IOException {
+        BlockingQueue<CompletableFuture<String>> pending = new LinkedBlockingQueue<>();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        Thread responder = new Thread(() -> respond(pending, writer), "inference-responder");
+        responder.start();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        try {
+            while (running && (line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    pending.add(submit(line));
+                }
+            }
+        } finally {
+            pending.add(END);
+            try {
+                responder.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void respond(BlockingQueue<CompletableFuture<String>> pending, Writer writer) {
+        try {
+            while (true) {
+                CompletableFuture<String> response = pending.take();
+                if (response == END) {
+                    break;
+                }
+                String answer;
+                try {
+                    answer = response.get();
+                } catch (ExecutionException e) {
+                    answer = "ERROR\t" + String.valueOf(e.getCause().getMessage()).replace('\n', ' ');
+                }
+                writer.write(answer);
+                writer.write('\n');
+                if (pending.isEmpty()) {
+                    writer.flush();
+                }
+            }
+            writer.flush();
+        } catch (InterruptedException | IOException e) {
+            LOG.fine("Stopped responding: " + e);
+        }
+    }
+
+    /**
+     * @param line - a request in the line protocol
+     * @return the future response line
+     */
+    public CompletableFuture<String> submit(String line) {
+        int tab = line.indexOf('\t');
+        Request request = tab < 0 ? new Request(line.trim(), null) : new Request(line.substring(0, tab).trim(), line.substring(tab + 1).trim());
+        requests.add(request);
+        return request.response;
+    }
+
+    private void processBatches() {
+        List<Request> batch = new ArrayList<>(settings.servingBatchSize);
+        while (running) {
+            try {
+                Request first = requests.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.servingBatchMillis);
+                while (batch.size() < settings.servingBatchSize) {
+                    Request next = requests.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+            List<Request> withExamples = batch.stream().filter(r -> r.example != null).collect(Collectors.toList());
+            List<Request> withoutExamples = batch.stream().filter(r -> r.example == null).collect(Collectors.toList());
+            process(withExamples);
+            process(withoutExamples);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Answer the batch together, or each request separately if that fails (so that a single malformed request does not fail the others)
+     */
+    private void process(List<Request> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            List<String> outputs = evaluate(batch);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).response.complete(outputs.get(i));
+            }
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                LOG.log(Level.FINE, "Failed to answer the request " + batch.get(0).query, e);
+                batch.get(0).response.completeExceptionally(e);
+            } else {
+                LOG.fine("Failed to answer a batch of " + batch.size() + " requests, answering them one by one: " + e);
+                for (Request request : batch) {
+                    process(Collections.singletonList(request));
+                }
+            }
+        }
+    }
+
+    /**
+     * The requests are labeled with their index in the batch (both the query and the example), so that the samples built
+     * from them are matched back by their ids (a query of multiple literals has a sample for each of them)
+     */
+    private List<String> evaluate(List<Request> batch) throws Exception {
+        StringBuilder queries = new StringBuilder();
+        StringBuilder examples = new StringBuilder();
+        for (int i = 0; i < batch.size(); i++) {
+            Request request = batch.get(i);
+            queries.append(label(i)).append(" :- ").append(request.query).append('\n');
+            if (request.example != null) {
+                examples.append(label(i)).append(" :- ").append(request.example).append('\n');
+            }
+        }
+        // the mode the parsing would detect from the batch anyway (a single example, or the template facts only, is a knowledge-base)
+        Answering answering = examples.length() == 0 ? templateFacts : batch.size() == 1 ? singleExample : examplesBatch;
+
+        Map<String, List<NeuralSample>> samples = answering.samples(queries.toString(), examples.length() == 0 ? null : examples.toString()).stream()
+                .sorted(Comparator.comparingInt(sample -> sample.position))
+                .collect(Collectors.groupingBy(sample -> sample.query.ID.substring(0, sample.query.ID.indexOf(':'))));
+
+        List<String> outputs = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            List<NeuralSample> answers = samples.get(answering.settings.sampleIdPrefix + label(i));
+            if (answers == null) {
+                throw new IllegalArgumentException("No sample was built from the query " + batch.get(i).query);
+            }
+            StringBuilder output = new StringBuilder();
+            for (NeuralSample sample : answers) {
+                sample.query.evidence.initializeStatesCache(-1);
+                invalidation.process(sample.query.evidence, sample.query.neuron);
+                output.append(output.length() == 0 ? "" : "\t").append(format(evaluation.evaluate(sample.query)));
+            }
+            outputs.add(output.toString());
+        }
+        return outputs;
+    }
+
+    private static String label(int index) {
+        return "request" + index;
+    }
+
+    /**
+     * The settings and the pipelines for answering the requests in one grounding mode, built once for all the batches
+     */
+    private class Answering {
+        final Settings.GroundingMode groundingMode;
+        final boolean withExamples;
+
+        Settings settings;
+        Pipeline<Sources, Stream<GroundingSample>> grounding;
+        Pipeline<Stream<GroundingSample>, Stream<NeuralSample>> neuralization;
+
+        Answering(Settings.GroundingMode groundingMode, boolean withExamples) {
+            this.groundingMode = groundingMode;
+            this.withExamples = withExamples;
+            build();
+        }
+
+        private void build() {
+            settings = InferenceServer.this.settings.copy();
+            settings.groundingMode = groundingMode;
+            settings.infer();
+            PythonBuilder builder = new PythonBuilder(settings);
+            grounding = builder.buildGroundings(template, sources("", withExamples ? "" : null));
+            neuralization = builder.neuralize();
+        }
+
+        private Sources sources(String queries, String examples) {
+            Sources sources = new Sources(settings);
+            sources.templateProvided = true;
+            sources.testOnly = true;
+            sources.test.QueriesReader = new StringReader(queries);
+            if (examples != null) {
+                sources.test.ExamplesReader = new StringReader(examples);
+            }
+            sources.test.infer(settings);
+            return sources;
+        }
+
+        List<NeuralSample> samples(String queries, String examples) throws Exception {
+            try {
+                Stream<GroundingSample> groundings = grounding.execute(sources(queries, examples)).s;
+                return neuralization.execute(groundings).s.collect(Collectors.toList());
+            } finally {
+                if (settings.groundingMode != groundingMode) {    // switched by the parsing, e.g. for a request of multiple examples
+                    build();
+                    throw new IllegalArgumentException("Each request must have (at most) a single example.");
+                }
+            }
+        }
+    }
+
+    private static String format(Value value) {
+        if (value instanceof ScalarValue) {
+            return String.valueOf(((ScalarValue) value).value);
+        }
+        return Arrays.toString(value.getAsArray());
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        batcher.interrupt();
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException e) {
+                LOG.fine("Failed to close the server socket: " + e);
+            }
+        }
+        connections.shutdownNow();
+        Request request;
+        while ((request = requests.poll()) != null) {
+            request.response.completeExceptionally(new IllegalStateException("The server has been closed."));
+        }
+    }
+}
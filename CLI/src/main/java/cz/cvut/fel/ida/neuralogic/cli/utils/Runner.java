@@ -9,10 +9,12 @@ import cz.cvut.fel.ida.setup.Sources;
 import cz.cvut.fel.ida.utils.exporting.Exporter;
 import cz.cvut.fel.ida.utils.exporting.TextExporter;
 import cz.cvut.fel.ida.utils.generic.Pair;
+import cz.cvut.fel.ida.utils.metrics.MetricsReporter;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.ParseException;
 
 import java.io.File;
+import java.io.PrintStream;
 import java.nio.file.Paths;
 import java.util.logging.Logger;
 
@@ -34,19 +36,51 @@ public class Runner {
 
         Sources sources = getSources(args, settings);
 
+        if (settings.mainMode == Settings.MainMode.SERVING) {
+            return serve(settings, sources, logging);
+        }
+
         logging.initialize(settings.loggingLevel, settings.supressLogFileOutput, settings.customLogColors);
 
         Pipeline<Sources, ?> pipeline = LearningSchemeBuilder.getPipeline(settings, sources);
 //        settings.root = pipeline;
 
+        MetricsReporter metricsReporter = MetricsReporter.startFrom(settings);
+
         LOG.finest("Running the main pipeline on the provided sources...");
-        Pair<String, ?> result = pipeline.execute(sources);
+        Pair<String, ?> result;
+        try {
+            result = pipeline.execute(sources);
+        } finally {
+            if (metricsReporter != null) {
+                metricsReporter.finish();   // also stops its thread if the pipeline failed
+            }
+        }
         LOG.info("Pipeline: " + result.r + " finished with result: " + result.s.toString());
 
         logging.finish();
         return new Pair<>(pipeline, result.s);
     }
 
+    /**
+     * Keep the template loaded and answer the incoming queries (see {@link InferenceServer}) until the input ends
+     */
+    private static Pair<Pipeline, ?> serve(Settings settings, Sources sources, Logging logging) throws Exception {
+        PrintStream stdout = System.out;
+        if (settings.servingPort < 0) {
+            System.setOut(System.err);  // the console logging must not mix with the answers
+        }
+        logging.initialize(settings.loggingLevel, settings.supressLogFileOutput, settings.customLogColors);
+
+        try (InferenceServer server = new InferenceServer(settings, sources)) {
+            server.serve(stdout);
+        } finally {
+            System.setOut(stdout);
+        }
+        logging.finish();
+        return new Pair<>(null, null);
+    }
+
     public static Sources getSources(String[] args, Settings settings) throws Exception {
         CommandLineHandler cmdh = new CommandLineHandler();
         CommandLine cmd = null;
@@ -0,0 +1,125 @@
+package cz.cvut.fel.ida.neuralogic.cli.benchmarks;
+
+import cz.cvut.fel.ida.logic.constructs.example.LogicSample;
+import cz.cvut.fel.ida.logic.constructs.example.ValuedFact;
+import cz.cvut.fel.ida.logic.constructs.building.ExamplesBuilder;
+import cz.cvut.fel.ida.logic.parsing.examples.FactExamplesScanner;
+import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.RunnerException;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static cz.cvut.fel.ida.utils.generic.Benchmarking.benchmarkSlow;
+import static cz.cvut.fel.ida.utils.generic.Benchmarking.getMeanTime;
+import static cz.cvut.fel.ida.utils.generic.Utilities.getResourcePath;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The fact-only examples scanner vs. the full grammar (ANTLR) parsing of the examples files
+ */
+public class ExamplesParsingBenchmarks {
+    private static final Logger LOG = Logger.getLogger(ExamplesParsingBenchmarks.class.getName());
+
+    static String mutagenesis = "relational/molecules/mutagenesis/examples.txt";
+    static String nations = "relational/kbs/nations/examples.txt";
+
+    @TestAnnotations.Fast
+    public void sameFactsAsGrammarParsing() throws IOException {
+        for (String dataset : new String[]{mutagenesis, nations}) {
+            List<String> parsed = facts(parseGrammar(dataset));
+            List<String> scanned = facts(parseFacts(dataset));
+            assertEquals(parsed, scanned);
+        }
+    }
+
+    @TestAnnotations.AdHoc
+    public void benchmarkMutagenesisParsing() throws RunnerException {
+        compare(benchmarkSlow(getClass().getName() + ".mutagenesisGrammar", 10, 5), benchmarkSlow(getClass().getName() + ".mutagenesisFacts", 10, 5));
+    }
+
+    @TestAnnotations.AdHoc
+    public void benchmarkNationsParsing() throws RunnerException {
+        compare(benchmarkSlow(getClass().getName() + ".nationsGrammar", 10, 5), benchmarkSlow(getClass().getName() + ".nationsFacts", 10, 5));
+    }
+
+    private void compare(Collection<RunResult> grammar, Collection<RunResult> facts) {
+        if (grammar == null || facts == null) {
+            return;
+        }
+        Double grammarTime = getMeanTime(grammar);
+        Double factsTime = getMeanTime(facts);
+        LOG.warning("Full grammar parsing: " + grammarTime + " vs. fact scanning: " + factsTime);
+        assertTrue(factsTime < grammarTime);
+    }
+
+    @Benchmark
+    public List<LogicSample> mutagenesisGrammar() throws IOException {
+        return parseGrammar(mutagenesis);
+    }
+
+    @Benchmark
+    public List<LogicSample> mutagenesisFacts() throws IOException {
+        return parseFacts(mutagenesis);
+    }
+
+    @Benchmark
+    public List<LogicSample> nationsGrammar() throws IOException {
+        return parseGrammar(nations);
+    }
+
+    @Benchmark
+    public List<LogicSample> nationsFacts() throws IOException {
+        return parseFacts(nations);
+    }
+
+    private static ExamplesBuilder examplesBuilder() {
+        ExamplesBuilder examplesBuilder = new ExamplesBuilder(new Settings());
+        examplesBuilder.setRebuildCallback(pipeline -> true);
+        return examplesBuilder;
+    }
+
+    static List<LogicSample> parseGrammar(String dataset) throws IOException {
+        ExamplesBuilder examplesBuilder = examplesBuilder();
+        try (FileReader reader = new FileReader(getResourcePath(dataset))) {
+            return examplesBuilder.buildSamplesFrom(examplesBuilder.parseTreeFrom(reader)).collect(Collectors.toList());
+        }
+    }
+
+    static List<LogicSample> parseFacts(String dataset) throws IOException {
+        Path path = Paths.get(getResourcePath(dataset));
+        FactExamplesScanner scanner = FactExamplesScanner.map(path);
+        assertTrue(scanner.isFactOnly(), "Not a fact-only file from byte " + scanner.errorPosition);
+        return examplesBuilder().buildSamplesFrom(scanner).collect(Collectors.toList());
+    }
+
+    /**
+     * All the facts of the samples, with their weights, in the order of creation
+     */
+    static List<String> facts(List<LogicSample> samples) {
+        return samples.stream()
+                .flatMap(sample -> {
+                    String query = sample.getId() + ":" + sample.target + ":" + sample.query.headAtom;
+                    return Stream.concat(Stream.of(query), sample.query.evidence.conjunctions.stream()
+                            .flatMap(conjunction -> conjunction.facts.stream())
+                            .map(ExamplesParsingBenchmarks::fact));
+                })
+                .collect(Collectors.toList());
+    }
+
+    private static String fact(ValuedFact fact) {
+        String weight = fact.weight == null ? "" : fact.weight.toString(Settings.superDetailedNumberFormat) + " " + fact.weight.isFixed;
+        return fact.originalString + " " + fact.offsettedPredicate + fact.literal.termList() + " " + weight;
+    }
+}
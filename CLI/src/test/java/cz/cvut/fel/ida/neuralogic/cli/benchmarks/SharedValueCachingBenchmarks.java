@@ -0,0 +1,44 @@
+package cz.cvut.fel.ida.neuralogic.cli.benchmarks;
+
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralModel;
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralSample;
+import cz.cvut.fel.ida.utils.generic.Pair;
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+import static cz.cvut.fel.ida.neuralogic.cli.functional.SharedValueCaching.evaluate;
+import static cz.cvut.fel.ida.neuralogic.cli.functional.SharedValueCaching.neuralize;
+
+/**
+ * The evaluation of the networks (queries) of a KB with the values of their shared neurons memoized across the networks vs. the plain one
+ */
+public class SharedValueCachingBenchmarks {
+    private static final Logger LOG = Logger.getLogger(SharedValueCachingBenchmarks.class.getName());
+
+    /**
+     * The best of a few repeated evaluations of all the nations queries (GLOBAL mode), with the cache emptied before each one
+     * (i.e. just the sharing across the queries), and with the cache kept (i.e. a repeated evaluation with the same weights).
+     */
+    @TestAnnotations.AdHoc
+    public void benchmarkNationsEvaluation() throws Exception {
+        Pair<NeuralModel, List<NeuralSample>> networks = neuralize(-1);
+        long plain = Long.MAX_VALUE;
+        long cold = Long.MAX_VALUE;
+        long warm = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            evaluate(networks, false);
+            plain = Math.min(plain, System.nanoTime() - start);
+            networks.r.getSharedValueCache().clear();
+            start = System.nanoTime();
+            evaluate(networks, true);
+            cold = Math.min(cold, System.nanoTime() - start);
+            start = System.nanoTime();
+            evaluate(networks, true);
+            warm = Math.min(warm, System.nanoTime() - start);
+        }
+        LOG.warning("Plain evaluation: " + plain / 1000000 + " ms vs. with the shared values cached: " + cold / 1000000 + " ms (empty cache), " + warm / 1000000 + " ms (filled cache)");
+    }
+}
@@ -0,0 +1,73 @@
+package cz.cvut.fel.ida.neuralogic.cli.functional;
+
+import cz.cvut.fel.ida.neural.networks.computation.training.strategies.trainers.MinibatchTuner;
+import cz.cvut.fel.ida.neuralogic.cli.Main;
+import cz.cvut.fel.ida.pipelines.Pipeline;
+import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.generic.Pair;
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static cz.cvut.fel.ida.utils.generic.Utilities.getDatasetArgs;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveMinibatch {
+
+    static String dataset = "relational/molecules/mutagenesis";
+
+    /**
+     * The training with the adaptive minibatch switches between the candidate minibatch sizes (up to the minibatchSizeMax, i.e. all
+     * the parallel neuron states) and thread pools while tuning, and must then get to its results with the chosen configuration logged
+     */
+    @TestAnnotations.Medium
+    public void tunedTrainingCompletes() throws Exception {
+        Settings settings = Settings.forFastTest();
+        settings.appLimitSamples = 60;
+        settings.maxCumEpochCount = 10;
+        settings.adaptiveMinibatch = true;
+        settings.minibatchSizeMin = 1;
+        settings.minibatchSizeMax = 8;
+        settings.minibatchThreadsMax = 2;
+        settings.minibatchTuningEpochae = 2;
+
+        List<String> messages = Collections.synchronizedList(new ArrayList<>());
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                messages.add(record.getMessage());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Logger tunerLog = Logger.getLogger(MinibatchTuner.class.getName());
+        tunerLog.addHandler(handler);
+        try {
+            Pair<Pipeline, ?> results = Main.main(getDatasetArgs(dataset), settings);
+            assertNotNull(results.s);
+            assertTrue(settings.parallelTraining);
+        } finally {
+            tunerLog.removeHandler(handler);
+        }
+
+        List<String> chosen = new ArrayList<>();
+        for (String message : messages) {
+            if (message.startsWith("Adaptive minibatch after 2 epochae: chose size=")) {
+                chosen.add(message);
+            }
+        }
+        assertEquals(1, chosen.size(), messages.toString());
+        assertTrue(chosen.get(0).contains("minibatchThreadsMax="));
+    }
+}
@@ -0,0 +1,59 @@
+package cz.cvut.fel.ida.neuralogic.cli.functional;
+
+import cz.cvut.fel.ida.logging.AsyncLogHandler;
+import cz.cvut.fel.ida.logging.FlushStreamHandler;
+import cz.cvut.fel.ida.logging.Logging;
+import cz.cvut.fel.ida.neuralogic.cli.Main;
+import cz.cvut.fel.ida.pipelines.Pipeline;
+import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.generic.Pair;
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
+
+import static cz.cvut.fel.ida.utils.generic.Utilities.getDatasetArgs;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncLogging {
+
+    static String dataset = "simple/family";
+
+    /**
+     * With the asyncLogging option, the console output must go through the {@link AsyncLogHandler}, and the training must still
+     * get to its results
+     */
+    @TestAnnotations.Fast
+    public void consoleLogIsAsync() throws Exception {
+        Settings settings = Settings.forFastTest();
+        try {
+            Pair<Pipeline, ?> results = Main.main(getDatasetArgs(dataset, "-al"), settings);
+            assertTrue(Settings.asyncLogging);
+            assertNotNull(results.s);
+
+            Handler console = consoleHandler();
+            assertTrue(console instanceof AsyncLogHandler);
+            assertTrue(((AsyncLogHandler) console).delegate instanceof FlushStreamHandler);
+        } finally {
+            Settings.asyncLogging = false;
+            Logging.initLogging(settings).finish();
+        }
+        assertTrue(consoleHandler() instanceof FlushStreamHandler);
+    }
+
+    /**
+     * The (only) handler of the root logger writing to the console
+     */
+    private static Handler consoleHandler() {
+        List<Handler> console = new ArrayList<>();
+        for (Handler handler : Logger.getLogger("").getHandlers()) {
+            if (handler instanceof FlushStreamHandler || handler instanceof AsyncLogHandler && ((AsyncLogHandler) handler).delegate instanceof FlushStreamHandler) {
+                console.add(handler);
+            }
+        }
+        assertEquals(1, console.size());
+        return console.get(0);
+    }
+}
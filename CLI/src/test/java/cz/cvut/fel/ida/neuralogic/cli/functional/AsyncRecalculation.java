@@ -0,0 +1,42 @@
+package cz.cvut.fel.ida.neuralogic.cli.functional;
+
+import cz.cvut.fel.ida.neuralogic.cli.Main;
+import cz.cvut.fel.ida.pipelines.Pipeline;
+import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.generic.Pair;
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.util.logging.Logger;
+
+import static cz.cvut.fel.ida.utils.generic.Utilities.getDatasetArgs;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class AsyncRecalculation {
+    private static final Logger LOG = Logger.getLogger(AsyncRecalculation.class.getName());
+
+    static String dataset = "relational/molecules/mutagenesis";
+
+    /**
+     * The results recalculated in the background are only taken into account later, but with the weights they were calculated with,
+     * so (without the early stopping) the same best model must be selected and report the same results
+     */
+    @TestAnnotations.Fast
+    public void asyncEqualsSync() throws Exception {
+        String sync = train(false);
+        String async = train(true);
+        LOG.warning("sync: " + sync + ", async: " + async);
+        assertEquals(sync, async);
+    }
+
+    private String train(boolean asyncResultsRecalculation) throws Exception {
+        Settings settings = Settings.forFastTest();
+        settings.appLimitSamples = 30;
+        settings.maxCumEpochCount = 30;
+        settings.resultsRecalculationEpochae = 3;
+        settings.asyncResultsRecalculation = asyncResultsRecalculation;
+
+        Pair<Pipeline, ?> results = Main.main(getDatasetArgs(dataset), settings);
+        assertEquals(asyncResultsRecalculation, settings.asyncResultsRecalculation);
+        return results.s.toString();
+    }
+}
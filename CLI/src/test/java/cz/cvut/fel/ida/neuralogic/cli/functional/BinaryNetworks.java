@@ -0,0 +1,139 @@
+package cz.cvut.fel.ida.neuralogic.cli.functional;
+
+import cz.cvut.fel.ida.learning.results.Result;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.weights.WeightUpdater;
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralModel;
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralSample;
+import cz.cvut.fel.ida.neural.networks.computation.training.strategies.trainers.SequentialTrainer;
+import cz.cvut.fel.ida.neural.networks.structure.export.BinaryNetworkFormat;
+import cz.cvut.fel.ida.neural.networks.structure.export.BinaryNeuralLoader;
+import cz.cvut.fel.ida.neural.networks.structure.export.BinaryNeuralSerializer;
+import cz.cvut.fel.ida.neuralogic.cli.Main;
+import cz.cvut.fel.ida.pipelines.Pipeline;
+import cz.cvut.fel.ida.setup.NetworkSetting;
+import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.generic.Pair;
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static cz.cvut.fel.ida.utils.generic.Utilities.getDatasetArgs;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryNetworks {
+
+    static String mutagenesis = "relational/molecules/mutagenesis";
+    static String nations = "relational/kbs/nations";
+
+    @TestAnnotations.Fast
+    public void roundTripMutagenesis() throws Exception {
+        roundTrip(mutagenesis, "", 20);
+    }
+
+    /**
+     * The networks of the GLOBAL (KB) mode share their neurons, which are written (and loaded) separately for each of them
+     */
+    @TestAnnotations.Fast
+    public void roundTripNations() throws Exception {
+        roundTrip(nations, "-t ./templates/template.txt", 50);
+    }
+
+    /**
+     * A run loading the stored networks must train just as the one that built them, and changing the neuralization settings must rebuild them
+     */
+    @TestAnnotations.Fast
+    public void reuseMatchingFile() throws Exception {
+        Path file = Files.createTempFile("neuralogic-networks", ".bin");
+        Files.delete(file);
+        try {
+            String built = train(file, 12);
+            byte[] fingerprint = BinaryNeuralLoader.readFingerprint(file);
+            assertNotNull(fingerprint);
+            long written = Files.getLastModifiedTime(file).toMillis();
+
+            String loaded = train(file, 12);
+            assertEquals(built, loaded);
+            assertEquals(written, Files.getLastModifiedTime(file).toMillis());
+
+            train(file, 10);
+            assertFalse(Arrays.equals(fingerprint, BinaryNeuralLoader.readFingerprint(file)));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Just the settings marked as {@link NetworkSetting} make the stored networks obsolete
+     */
+    @TestAnnotations.Fast
+    public void fingerprintOfNetworkSettings() throws Exception {
+        Settings settings = new Settings();
+        byte[] fingerprint = BinaryNetworkFormat.fingerprint(Collections.emptyList(), settings);
+
+        settings.initLearningRate *= 2;
+        settings.maxCumEpochCount *= 2;
+        assertArrayEquals(fingerprint, BinaryNetworkFormat.fingerprint(Collections.emptyList(), settings));
+
+        settings.atomNeuronTransformation = Settings.TransformationFcn.SIGMOID;
+        assertFalse(Arrays.equals(fingerprint, BinaryNetworkFormat.fingerprint(Collections.emptyList(), settings)));
+    }
+
+    private String train(Path file, int isoDecimals) throws Exception {
+        Settings settings = Settings.forFastTest();
+        settings.appLimitSamples = 30;
+        settings.maxCumEpochCount = 10;
+        settings.isoDecimals = isoDecimals;
+        settings.binaryNetworksFile = file.toString();
+
+        Pair<Pipeline, ?> results = Main.main(getDatasetArgs(mutagenesis), settings);
+        return results.s.toString();
+    }
+
+    /**
+     * The loaded networks must compute the same outputs and gradients as the freshly built ones
+     */
+    @SuppressWarnings("unchecked")
+    private void roundTrip(String dataset, String args, int limitSamples) throws Exception {
+        Settings settings = Settings.forFastTest();
+        settings.appLimitSamples = limitSamples;
+        settings.mainMode = Settings.MainMode.NEURALIZATION;
+        Pair<NeuralModel, Stream<NeuralSample>> result = (Pair<NeuralModel, Stream<NeuralSample>>) Main.main(getDatasetArgs(dataset, args), settings).s;
+        NeuralModel model = result.r;
+        List<NeuralSample> built = result.s.collect(Collectors.toList());
+
+        Path file = Files.createTempFile("neuralogic-networks", ".bin");
+        try {
+            new BinaryNeuralSerializer().serialize(model, built.stream(), file);
+            List<NeuralSample> loaded;
+            try (BinaryNeuralLoader loader = new BinaryNeuralLoader(file, model, settings)) {
+                loaded = loader.loadSamples().collect(Collectors.toList());
+            }
+            assertEquals(built.size(), loaded.size());
+
+            SequentialTrainer trainer = new SequentialTrainer(settings, null, model);
+            List<String> builtPropagation = new ArrayList<>();
+            List<String> loadedPropagation = new ArrayList<>();
+            for (int i = 0; i < built.size(); i++) {
+                builtPropagation.add(propagate(trainer, built.get(i)));
+                loadedPropagation.add(propagate(trainer, loaded.get(i)));
+            }
+            assertEquals(builtPropagation, loadedPropagation);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static String propagate(SequentialTrainer trainer, NeuralSample sample) {
+        trainer.invalidateSample(trainer.getInvalidation(), sample);
+        Result result = trainer.evaluateSample(trainer.getEvaluation(), sample);
+        WeightUpdater weightUpdater = trainer.backpropSample(trainer.getBackpropagation(), result, sample);
+        return sample.query.ID + ": " + result.getOutput() + " " + Arrays.toString(weightUpdater.weightUpdates);
+    }
+}
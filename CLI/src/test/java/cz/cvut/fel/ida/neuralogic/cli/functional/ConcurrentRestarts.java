@@ -0,0 +1,51 @@
+package cz.cvut.fel.ida.neuralogic.cli.functional;
+
+import cz.cvut.fel.ida.neuralogic.cli.Main;
+import cz.cvut.fel.ida.pipelines.Pipeline;
+import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.generic.Pair;
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static cz.cvut.fel.ida.utils.generic.Utilities.getDatasetArgs;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ConcurrentRestarts {
+    static String dataset = "relational/molecules/mutagenesis";
+
+    private static final Pattern NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?(E-?\\d+)?");
+
+    /**
+     * Each concurrent restart draws from its own random generator (the initial weights, the shuffling and the dropout), so the
+     * results must not depend on how the restarts get scheduled, i.e. repeated runs must get to the same results. The restarts are
+     * ended by the early stopping (and not by the shared budget of epochae), so that each of them runs the same number of epochae.
+     */
+    @TestAnnotations.Fast
+    public void concurrentIsReproducible() throws Exception {
+        String first = train(true);
+        String second = train(true);
+        assertEquals(NUMBER.matcher(first).replaceAll("#"), NUMBER.matcher(second).replaceAll("#"));
+        Matcher expected = NUMBER.matcher(first);
+        Matcher actual = NUMBER.matcher(second);
+        while (expected.find() && actual.find()) {
+            assertEquals(Double.parseDouble(expected.group()), Double.parseDouble(actual.group()), 1e-12);
+        }
+    }
+
+    private String train(boolean concurrentRestarts) throws Exception {
+        Settings settings = Settings.forFastTest();
+        settings.appLimitSamples = 30;
+        settings.restartCount = 3;
+        settings.earlyStopping = true;
+        settings.earlyStoppingPatience = 5;
+        settings.maxCumEpochCount = 10000;
+        settings.shuffleEachEpoch = true;
+        settings.dropoutRate = 0.1;
+        settings.concurrentRestarts = concurrentRestarts;
+
+        Pair<Pipeline, ?> results = Main.main(getDatasetArgs(dataset), settings);
+        return results.s.toString();
+    }
+}
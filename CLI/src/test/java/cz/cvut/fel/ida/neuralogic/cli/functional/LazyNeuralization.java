@@ -0,0 +1,81 @@
+package cz.cvut.fel.ida.neuralogic.cli.functional;
+
+import cz.cvut.fel.ida.neuralogic.cli.Main;
+import cz.cvut.fel.ida.pipelines.Pipeline;
+import cz.cvut.fel.ida.pipelines.pipes.specific.SupervisedNeuralizationPipe;
+import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.generic.Pair;
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static cz.cvut.fel.ida.utils.generic.Utilities.getDatasetArgs;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LazyNeuralization {
+
+    static String dataset = "relational/kbs/nations";
+
+    /**
+     * The lazily created networks of the GLOBAL (KB) mode must be the same as those extracted from the eagerly neuralized one,
+     * i.e. the training must get to the same results (the eager post-processing is switched off, as it is not applicable in the lazy mode)
+     */
+    @TestAnnotations.Fast
+    public void lazyEqualsEager() throws Exception {
+        List<String> eagerLog = new ArrayList<>();
+        String eager = train(false, eagerLog);
+        List<String> lazyLog = new ArrayList<>();
+        String lazy = train(true, lazyLog);
+
+        assertEquals(Collections.singletonList("Neuralizing GLOBAL sample"), eagerLog);
+        assertEquals(Collections.singletonList("Neuralizing GLOBAL sample lazily"), lazyLog);
+        assertEquals(eager, lazy);
+    }
+
+    /**
+     * @param neuralizations the branches of the GLOBAL neuralization taken during the run
+     */
+    private String train(boolean lazyNeuralization, List<String> neuralizations) throws Exception {
+        Settings settings = Settings.forFastTest();
+        settings.appLimitSamples = 100;
+        settings.maxCumEpochCount = 10;
+        settings.neuralNetsPostProcessing = false;
+        settings.isoValueCompression = false;
+        settings.chainPruning = false;
+        settings.lazyNeuralization = lazyNeuralization;
+
+        Logger log = Logger.getLogger(SupervisedNeuralizationPipe.class.getName());
+        Level level = log.getLevel();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                if (record.getMessage().startsWith("Neuralizing GLOBAL sample")) {
+                    neuralizations.add(record.getMessage().replaceFirst("(sample( lazily)?) .*", "$1"));
+                }
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        log.setLevel(Level.INFO);
+        log.addHandler(handler);
+        try {
+            Pair<Pipeline, ?> results = Main.main(getDatasetArgs(dataset, "-em kbc -t ./templates/template.txt"), settings);
+            return results.s.toString();
+        } finally {
+            log.removeHandler(handler);
+            log.setLevel(level);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package cz.cvut.fel.ida.neuralogic.cli.functional;
+
+import cz.cvut.fel.ida.neuralogic.cli.Main;
+import cz.cvut.fel.ida.pipelines.Pipeline;
+import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.generic.Pair;
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.util.logging.Logger;
+
+import static cz.cvut.fel.ida.utils.generic.Utilities.getDatasetArgs;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ParallelNeuralization {
+    private static final Logger LOG = Logger.getLogger(ParallelNeuralization.class.getName());
+
+    static String dataset = "relational/molecules/mutagenesis";
+
+    /**
+     * The networks neuralized concurrently must be the same as the sequentially neuralized ones,
+     * i.e. the training must get to the same results
+     */
+    @TestAnnotations.Fast
+    public void parallelEqualsSequential() throws Exception {
+        String sequential = train(false);
+        String parallel = train(true);
+        LOG.warning("sequential: " + sequential + ", parallel: " + parallel);
+        assertEquals(sequential, parallel);
+    }
+
+    private String train(boolean parallelNeuralization) throws Exception {
+        Settings settings = Settings.forFastTest();
+        settings.appLimitSamples = 50;
+        settings.maxCumEpochCount = 10;
+        settings.parallelNeuralization = parallelNeuralization;
+
+        Pair<Pipeline, ?> results = Main.main(getDatasetArgs(dataset), settings);
+        return results.s.toString();
+    }
+}
@@ -0,0 +1,108 @@
+package cz.cvut.fel.ida.neuralogic.cli.functional;
+
+import cz.cvut.fel.ida.neural.networks.computation.training.TrainingCheckpoint;
+import cz.cvut.fel.ida.neuralogic.cli.Main;
+import cz.cvut.fel.ida.pipelines.Pipeline;
+import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.generic.Pair;
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static cz.cvut.fel.ida.utils.generic.Utilities.getDatasetArgs;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResumedTraining {
+    static String dataset = "relational/molecules/mutagenesis";
+
+    private static final Pattern NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?(E-?\\d+)?");
+
+    /**
+     * A training interrupted after a checkpoint and resumed from it must end up just as the one never interrupted, i.e. the checkpoint
+     * must not change the random numbers drawn, and must carry all the state the following epochae depend on (the random generator,
+     * the sample scheduling, the early stopping with its history, and the steps of the lazy optimizer). The state is compared
+     * shortly after the resumption, where it still differs with any part of it lost, and the final results at the end.
+     * The results of the best model are re-established by evaluating it again at the resumption, possibly summing up the same
+     * outputs in a different order, hence the tolerance. All the outputs (incl. the merged templates) go to a temporary directory.
+     */
+    @TestAnnotations.Medium
+    public void resumedEqualsUninterrupted() throws Exception {
+        Path dir = Files.createTempDirectory("neuralogic-checkpoint");
+        try {
+            String uninterrupted = train(dir.resolve("uninterrupted"), 40, -1, false);
+            train(dir.resolve("checkpointed"), 20, 5, false);
+            train(dir.resolve("interrupted"), 15, 5, false);
+            train(dir.resolve("interrupted"), 20, 5, true);
+            assertSameState(checkpoint(dir.resolve("checkpointed")), checkpoint(dir.resolve("interrupted")));
+
+            String resumed = train(dir.resolve("interrupted"), 40, 5, true);
+            assertEquals(NUMBER.matcher(uninterrupted).replaceAll("#"), NUMBER.matcher(resumed).replaceAll("#"));
+            Matcher expected = NUMBER.matcher(uninterrupted);
+            Matcher actual = NUMBER.matcher(resumed);
+            while (expected.find() && actual.find()) {
+                assertEquals(Double.parseDouble(expected.group()), Double.parseDouble(actual.group()), 1e-12);
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    private static TrainingCheckpoint.State checkpoint(Path outDir) throws Exception {
+        return new TrainingCheckpoint(outDir.resolve("checkpoint")).load().state;
+    }
+
+    private static void assertSameState(TrainingCheckpoint.State expected, TrainingCheckpoint.State actual) {
+        assertEquals(expected.epoch, actual.epoch);
+        assertEquals(expected.restart, actual.restart);
+        assertEquals(expected.iteration, actual.iteration);
+        assertEquals(expected.learningRate, actual.learningRate);
+        assertEquals(expected.randomState, actual.randomState);
+        assertEquals(expected.sampleOrder, actual.sampleOrder);
+        assertArrayEquals(expected.optimizerSteps, actual.optimizerSteps);
+        assertEquals(expected.schedulerEpoch, actual.schedulerEpoch);
+        assertArrayEquals(expected.sampleLosses, actual.sampleLosses);
+        assertArrayEquals(expected.sampleConvergedEpochae, actual.sampleConvergedEpochae);
+        assertEquals(expected.earlyStopping.length, actual.earlyStopping.length);
+        for (int i = 0; i < expected.earlyStopping.length; i++) {
+            assertArrayEquals(expected.earlyStopping[i], actual.earlyStopping[i], 1e-12);
+        }
+        assertSameErrors(expected.onlineErrors, actual.onlineErrors);
+        assertSameErrors(expected.trueErrors, actual.trueErrors);
+        assertSameErrors(expected.validationErrors, actual.validationErrors);
+    }
+
+    private static void assertSameErrors(List<double[]> expected, List<double[]> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), actual.get(i), 1e-12);
+        }
+    }
+
+    private String train(Path outDir, int epochae, int checkpointEpochae, boolean resume) throws Exception {
+        Settings settings = Settings.forFastTest();
+        settings.outDir = outDir.toString();
+        settings.appLimitSamples = 30;
+        settings.maxCumEpochCount = epochae;
+        settings.checkpointEpochae = checkpointEpochae;
+        settings.resumeTraining = resume;
+        settings.restartCount = 3;
+        settings.earlyStopping = true;
+        settings.earlyStoppingPatience = 5;
+        settings.shuffleEachEpoch = true;
+        settings.dropoutRate = 0.1;
+        settings.sampleScheduling = Settings.SampleScheduling.LOSS_PROPORTIONAL;
+        settings.setOptimizer(Settings.OptimizerSet.LAZY_ADAM);
+        settings.initLearningRate = 0.01;
+
+        Pair<Pipeline, ?> results = Main.main(getDatasetArgs(dataset), settings);
+        return results.s.toString();
+    }
+}
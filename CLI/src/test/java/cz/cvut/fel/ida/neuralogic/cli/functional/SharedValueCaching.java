@@ -0,0 +1,76 @@
+package cz.cvut.fel.ida.neuralogic.cli.functional;
+
+import cz.cvut.fel.ida.algebra.values.inits.ValueInitializer;
+import cz.cvut.fel.ida.algebra.weights.Weight;
+import cz.cvut.fel.ida.learning.results.Result;
+import cz.cvut.fel.ida.learning.results.Results;
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralModel;
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralSample;
+import cz.cvut.fel.ida.neural.networks.computation.training.SharedValueCache;
+import cz.cvut.fel.ida.neuralogic.cli.Main;
+import cz.cvut.fel.ida.pipelines.pipes.specific.NeuralEvaluationPipe;
+import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.generic.Pair;
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static cz.cvut.fel.ida.utils.generic.Utilities.getDatasetArgs;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SharedValueCaching {
+
+    static String nations = "relational/kbs/nations";
+
+    /**
+     * The queries of the GLOBAL (KB) mode evaluated with the values of their shared neurons memoized must give the same outputs
+     * as the plain evaluation, also after an update of a weight, which must drop only the values depending on it.
+     */
+    @TestAnnotations.Fast
+    public void sameOutputs() throws Exception {
+        Pair<NeuralModel, List<NeuralSample>> networks = neuralize(500);
+        SharedValueCache cache = networks.r.getSharedValueCache();
+
+        List<String> plain = outputs(evaluate(networks, false));
+        List<String> cached = outputs(evaluate(networks, true));
+        assertEquals(500, plain.size());
+        assertEquals(plain, cached);
+        int cachedValues = cache.size();
+        assertTrue(cachedValues > 0);
+
+        Weight updated = networks.r.learnableWeights.get(0);
+        networks.r.beforeUpdate(Collections.singletonList(updated));
+        updated.value.applyInplace(x -> x + 0.5);
+        assertTrue(cache.size() < cachedValues);
+        assertTrue(cache.size() > 0);
+
+        List<String> plainUpdated = outputs(evaluate(networks, false));
+        assertNotEquals(plain, plainUpdated);
+        assertEquals(plainUpdated, outputs(evaluate(networks, true)));
+        assertTrue(cache.size() >= cachedValues);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Pair<NeuralModel, List<NeuralSample>> neuralize(int limitSamples) throws Exception {
+        Settings settings = Settings.forFastTest();
+        settings.appLimitSamples = limitSamples;
+        settings.mainMode = Settings.MainMode.NEURALIZATION;
+        Pair<NeuralModel, Stream<NeuralSample>> result = (Pair<NeuralModel, Stream<NeuralSample>>) Main.main(getDatasetArgs(nations, "-em kbc -t ./templates/template.txt"), settings).s;
+        result.r.resetWeights(ValueInitializer.getInitializer(settings));   // i.e. not all the outputs the same
+        return new Pair<>(result.r, result.s.collect(Collectors.toList()));
+    }
+
+    public static Results evaluate(Pair<NeuralModel, List<NeuralSample>> networks, boolean caching) {
+        Settings settings = Settings.forFastTest();
+        settings.sharedNeuronsValueCaching = caching;
+        settings.infer();
+        return new NeuralEvaluationPipe(settings).apply(new Pair<>(networks.r, networks.s.stream()));
+    }
+
+    static List<String> outputs(Results results) {
+        return results.evaluations.stream().map(Result::getOutput).map(Object::toString).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,101 @@
+package cz.cvut.fel.ida.neuralogic.cli.utils;
+
+import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.setup.Sources;
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static cz.cvut.fel.ida.utils.generic.Utilities.getDatasetArgs;
+import static cz.cvut.fel.ida.utils.generic.Utilities.getResourcePath;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InferenceServerTest {
+
+    @TestAnnotations.Fast
+    public void batchedAnswersMatchSingleAnswers() throws Exception {
+        Settings settings = new Settings();
+        Sources sources = Runner.getSources(getDatasetArgs("relational/molecules/mutagenesis", "-mode serve"), settings);
+        List<String> requests = requests("relational/molecules/mutagenesis", 4);
+
+        try (InferenceServer server = new InferenceServer(settings, sources)) {
+            List<String> single = new ArrayList<>();
+            for (String request : requests) {
+                single.add(server.submit(request).get());
+            }
+            for (int i = 0; i < requests.size(); i++) {     // the pipelines are reused, nothing of the previous requests may stay in them
+                assertEquals(single.get(i), server.submit(requests.get(i)).get());
+            }
+
+            int port = server.start(0);
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                PrintWriter writer = new PrintWriter(socket.getOutputStream(), true);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                for (String request : requests) {
+                    writer.println(request);    // pipelined, i.e. batched
+                }
+                for (String answer : single) {
+                    assertEquals(answer, reader.readLine());
+                }
+            }
+
+            String input = requests.get(0) + "\n" + "predict(.\tbroken\n" + requests.get(1) + "\n";
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            server.serve(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), output);
+            List<String> answers = Arrays.asList(output.toString(StandardCharsets.UTF_8.name()).split("\n"));
+            assertEquals(3, answers.size());
+            assertEquals(single.get(0), answers.get(0));
+            assertTrue(answers.get(1).startsWith("ERROR"));
+            assertEquals(single.get(1), answers.get(1 + 1));
+        }
+    }
+
+    /**
+     * A query of multiple literals is answered with an output for each of them, alone as well as batched with the others
+     */
+    @TestAnnotations.Fast
+    public void multiLiteralQueries() throws Exception {
+        Settings settings = new Settings();
+        Sources sources = Runner.getSources(getDatasetArgs("relational/molecules/mutagenesis", "-mode serve"), settings);
+        List<String> requests = requests("relational/molecules/mutagenesis", 3);
+        String example = requests.get(1).substring(requests.get(1).indexOf('\t') + 1);
+        String multiLiteral = "1.0 predict, 1.0 predict.\t" + example;
+
+        try (InferenceServer server = new InferenceServer(settings, sources)) {
+            String single = server.submit(requests.get(1)).get();
+            assertEquals(single + "\t" + single, server.submit(multiLiteral).get());
+
+            List<CompletableFuture<String>> batched = new ArrayList<>();
+            for (String request : Arrays.asList(requests.get(0), multiLiteral, requests.get(2))) {
+                batched.add(server.submit(request));
+            }
+            assertEquals(server.submit(requests.get(0)).get(), batched.get(0).get());
+            assertEquals(single + "\t" + single, batched.get(1).get());
+            assertEquals(server.submit(requests.get(2)).get(), batched.get(2).get());
+        }
+    }
+
+    private static List<String> requests(String dataset, int count) throws Exception {
+        List<String> queries = Files.readAllLines(Paths.get(getResourcePath(dataset), "queries.txt"));
+        List<String> examples = Files.readAllLines(Paths.get(getResourcePath(dataset), "examples.txt"));
+        List<String> requests = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            requests.add(queries.get(i) + "\t" + examples.get(i));
+        }
+        return requests;
+    }
+}
@@ -6,6 +6,9 @@ import cz.cvut.fel.ida.setup.Settings;
 import javax.swing.*;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.text.NumberFormat;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -62,10 +65,15 @@ public abstract class Drawer<S> {   //todo next replace hashcodes (which collide
         this.graphviz.clearGraph();
         loadGraph(obj);
         try {
+            if (!graphviz.canRender()) {
+                graphviz.storeGraphSource(obj.toString());
+                LOG.info("Graph source stored into file named: " + obj.toString());
+                return;
+            }
             LOG.info("Paused for drawing with Graphviz...(this may take a while for bigger graphs)");
             if (storeNotShow) {
                 graphviz.storeGraphSource(obj.toString());
-                byte[] image = graphviz.getGraphUsingTemporaryFile(graphviz.getDotSource(), graphviz.imgtype, graphviz.algorithm);
+                byte[] image = graphviz.getGraphImage(graphviz.getDotSource(), graphviz.imgtype, graphviz.algorithm);
                 graphviz.writeImageToFile(image, obj.toString());
                 LOG.info("Graph stored into file named: " + obj.toString());
             } else {
@@ -76,11 +84,22 @@ public abstract class Drawer<S> {   //todo next replace hashcodes (which collide
         }
     }
 
+    /**
+     * Draw into the image file, or just the DOT source into the file with the ".dot" suffix appended if graphviz is not available
+     */
     public byte[] drawIntoFile(S obj, String path) {
         byte[] image = this.drawIntoBytes(obj);
 
         File file = new File(path);
         file.getParentFile().mkdirs();
+        if (image == null) {
+            try {
+                Files.write(Paths.get(path + ".dot"), graphviz.getDotSource().getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                LOG.severe(e.getMessage());
+            }
+            return null;
+        }
         graphviz.writeImageToFile(image, file);
 
         return null;
@@ -94,7 +113,7 @@ public abstract class Drawer<S> {   //todo next replace hashcodes (which collide
         this.graphviz.clearGraph();
         loadGraph(obj);
 
-        return graphviz.getGraphUsingTemporaryFile(graphviz.getDotSource(), graphviz.imgtype, graphviz.algorithm);
+        return graphviz.getGraphImage(graphviz.getDotSource(), graphviz.imgtype, graphviz.algorithm);
     }
 
     public String getGraphSource(S obj) {
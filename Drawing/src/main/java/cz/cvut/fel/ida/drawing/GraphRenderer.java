@@ -0,0 +1,225 @@
+package cz.cvut.fel.ida.drawing;
+
+import cz.cvut.fel.ida.setup.Settings;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Renders the DOT sources into images with the Graphviz executable, shared by all the {@link GraphViz} instances.
+ * <p>
+ * At most {@link Settings#graphvizProcesses} processes run at a time (the rest of the requests wait in a queue),
+ * each fed through its stdin/stdout, i.e. without any temporary files. The rendered images are cached by the hash of the
+ * DOT source (and the rendering arguments), up to {@link Settings#graphvizCacheMegabytes}, so that the same graph (e.g. an unchanged
+ * template in each debugging step) is rendered only once, and the same concurrent requests share a single rendering.
+ * <p>
+ * If the executable is not available, nothing is rendered, and the callers are supposed to keep the DOT source only.
+ */
+public class GraphRenderer {
+    private static final Logger LOG = Logger.getLogger(GraphRenderer.class.getName());
+
+    private static GraphRenderer renderer;
+
+    private final String executable;
+
+    private final ExecutorService processes;
+
+    private final Map<String, CompletableFuture<byte[]>> inProgress = new ConcurrentHashMap<>();
+
+    /**
+     * LRU cache of the rendered images
+     */
+    private final LinkedHashMap<String, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final long cacheLimitBytes;
+    private long cacheBytes;
+
+    private Boolean available;
+
+    /**
+     * Produces the image of the DOT source, i.e. runs the executable unless replaced (e.g. for testing without Graphviz)
+     */
+    @FunctionalInterface
+    interface Rendering {
+        byte[] render(List<String> args, String dotSource) throws IOException, InterruptedException;
+    }
+
+    private final Rendering rendering;
+
+    public static synchronized GraphRenderer getFrom(Settings settings, String executable) {
+        if (renderer == null || !renderer.executable.equals(executable)) {
+            if (renderer != null) {
+                renderer.processes.shutdown();
+            }
+            renderer = new GraphRenderer(executable, settings.graphvizProcesses, settings.graphvizCacheMegabytes * 1024L * 1024L);
+        }
+        return renderer;
+    }
+
+    GraphRenderer(String executable, int processCount, long cacheLimitBytes) {
+        this(executable, processCount, cacheLimitBytes, null);
+    }
+
+    /**
+     * @param rendering - to be used instead of the executable (which is then not checked for), or null
+     */
+    GraphRenderer(String executable, int processCount, long cacheLimitBytes, Rendering rendering) {
+        this.executable = executable;
+        this.cacheLimitBytes = cacheLimitBytes;
+        this.processes = Executors.newFixedThreadPool(Math.max(1, processCount), runnable -> {
+            Thread thread = new Thread(runnable, "graphviz-renderer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (rendering == null) {
+            this.rendering = this::run;
+        } else {
+            this.rendering = rendering;
+            this.available = true;
+        }
+    }
+
+    /**
+     * @return whether the executable can be run (checked just once)
+     */
+    public synchronized boolean isAvailable() {
+        if (available == null) {
+            try {
+                Process process = new ProcessBuilder(executable, "-V").redirectErrorStream(true).start();
+                readAll(process.getInputStream());
+                available = process.waitFor(10, TimeUnit.SECONDS) && process.exitValue() == 0;
+            } catch (IOException e) {
+                available = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                available = false;
+            }
+            if (!available) {
+                LOG.warning("Graphviz executable '" + executable + "' not found, only the DOT sources of the graphs will be stored.");
+            }
+        }
+        return available;
+    }
+
+    /**
+     * @param args      - the arguments of the executable (without the executable itself) such that the image is written to stdout
+     * @param dotSource - the graph
+     * @return the future image, or null if the executable is not available
+     */
+    public CompletableFuture<byte[]> render(List<String> args, String dotSource) {
+        if (!isAvailable()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String key = hash(args, dotSource);
+        synchronized (cache) {
+            byte[] image = cache.get(key);
+            if (image != null) {
+                LOG.finer("Reusing the rendered image of the same graph.");
+                return CompletableFuture.completedFuture(image);
+            }
+        }
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        CompletableFuture<byte[]> same = inProgress.putIfAbsent(key, future);
+        if (same != null) {
+            return same;
+        }
+        processes.execute(() -> {
+            try {
+                byte[] image = rendering.render(args, dotSource);
+                store(key, image);
+                future.complete(image);
+            } catch (IOException e) {
+                future.completeExceptionally(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.completeExceptionally(e);
+            } finally {
+                inProgress.remove(key, future);
+            }
+        });
+        return future;
+    }
+
+    private byte[] run(List<String> args, String dotSource) throws IOException, InterruptedException {
+        String[] command = new String[args.size() + 1];
+        command[0] = executable;
+        for (int i = 0; i < args.size(); i++) {
+            command[i + 1] = args.get(i);
+        }
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectError(ProcessBuilder.Redirect.appendTo(nullDevice()));  // the warnings must not get into the image
+        Process process = builder.start();
+
+        try (OutputStream in = process.getOutputStream()) {
+            in.write(dotSource.getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] image = readAll(process.getInputStream());
+        int exit = process.waitFor();
+        if (exit != 0) {
+            throw new IOException("Graphviz failed with exit code " + exit);
+        }
+        return image;
+    }
+
+    private void store(String key, byte[] image) {
+        if (image.length > cacheLimitBytes) {
+            return;
+        }
+        synchronized (cache) {
+            byte[] previous = cache.put(key, image);
+            cacheBytes += image.length - (previous == null ? 0 : previous.length);
+            Iterator<byte[]> eldest = cache.values().iterator();
+            while (cacheBytes > cacheLimitBytes && eldest.hasNext()) {
+                cacheBytes -= eldest.next().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    private static String hash(List<String> args, String dotSource) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String arg : args) {
+                digest.update(arg.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            digest.update(dotSource.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static File nullDevice() {
+        return new File(Settings.os == Settings.OS.WINDOWS ? "NUL" : "/dev/null");
+    }
+
+    private static byte[] readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] data = new byte[16384];
+        int nRead;
+        while ((nRead = inputStream.read(data, 0, data.length)) != -1) {
+            buffer.write(data, 0, nRead);
+        }
+        return buffer.toByteArray();
+    }
+}
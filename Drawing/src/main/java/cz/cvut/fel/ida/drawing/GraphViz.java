@@ -6,6 +6,8 @@ import java.awt.*;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -13,7 +15,8 @@ import java.util.stream.Collectors;
  * This class is a (significant) modification of a simple java-graphviz wrapper
  * from https://github.com/jabbalaci/graphviz-java-api.
  * <p>
- * It can call graphviz without creating any temporary files with the use of process IO streams and ProcessBuilder.
+ * It can call graphviz without creating any temporary files with the use of process IO streams and ProcessBuilder,
+ * through the shared {@link GraphRenderer}.
  */
 public class GraphViz {
 
@@ -53,6 +56,8 @@ public class GraphViz {
 
     private String executable;
 
+    private GraphRenderer renderer;
+
     /**
      * For storing multiple files within a single run.
      */
@@ -85,6 +90,7 @@ public class GraphViz {
         this.imgtype = settings.imgType;
         this.fix2ScreenSize = settings.fix2ScreenSize;
         this.storeImage = settings.storeNotShow;
+        this.renderer = GraphRenderer.getFrom(settings, executable);
 
         try {
             gd = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice();
@@ -188,6 +194,9 @@ public class GraphViz {
     public void storeGraphSource(String name) throws IOException {
         try {
             File file = new File(getGraphName(name));
+            if (file.getParentFile() != null) {
+                file.getParentFile().mkdirs();
+            }
             FileWriter fout = new FileWriter(file);
             fout.write(getDotSource());
             fout.close();
@@ -196,54 +205,44 @@ public class GraphViz {
         }
     }
 
+    /**
+     * @return whether the images can be rendered at all, i.e. whether the graphviz executable is available
+     */
+    public boolean canRender() {
+        return renderer.isAvailable();
+    }
+
     /**
      * Call Graphviz using IO streams, i.e. without creating any temporary files
      *
-     * @return
+     * @return the image, or null if graphviz is not available
      * @throws IOException
      * @throws InterruptedException
      */
     public byte[] getGraphImage(String nameOrEmpty) throws IOException, InterruptedException {
-        String[] args = getArgs(nameOrEmpty);
-
-        ProcessBuilder builder = new ProcessBuilder(args);
-        builder.redirectErrorStream(true); // This is important part
-        Process process = builder.start();
-
-        BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
-        bw.write(graph.toString()); //or better yet : toString().getBytes(Charset.forName("UTF-8"))
-        bw.flush();
-        bw.close();
-
-        //wait here?    - probably not, the outputstream does the waiting
+        byte[] image = render(getArgs(imgtype, algorithm), graph.toString());
+        if (image != null && storeImage) {
+            writeImageToFile(image, new File(getImageName(nameOrEmpty)));
+        }
+        return image;
+    }
 
-        byte[] bytes = readInputImageStream(process.getInputStream());
-        return bytes;
+    private byte[] render(List<String> args, String dotSource) throws IOException, InterruptedException {
+        try {
+            return renderer.render(args, dotSource).get();
+        } catch (ExecutionException e) {
+            throw new IOException("Graphviz rendering failed", e.getCause());
+        }
     }
 
-    private String[] getArgs(String name) {
+    private List<String> getArgs(String type, String representationType) {
         ArrayList<String> args = new ArrayList<>();
-        args.add(executable);
-        args.add("-T" + imgtype);
-        args.add("-K" + algorithm);
+        args.add("-T" + type);
+        args.add("-K" + representationType);
         args.add("-Gdpi=" + dpiSizes[this.currentDpiPos]);
         if (fix2ScreenSize)
             args.add("-Gsize=" + width / dpiSizes[this.currentDpiPos] + "," + height / dpiSizes[this.currentDpiPos] + "\\!");
-        if (storeImage)
-            args.add("-o " + getImageName(name));
-        return args.toArray(new String[args.size()]);
-    }
-
-    private byte[] readInputImageStream(InputStream inputStream) throws IOException {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        int nRead;
-        byte[] data = new byte[16384];
-        while ((nRead = inputStream.read(data, 0, data.length)) != -1) {
-            buffer.write(data, 0, nRead);
-        }
-        buffer.flush();
-        buffer.close();
-        return buffer.toByteArray();
+        return args;
     }
 
     /**
@@ -261,23 +260,16 @@ public class GraphViz {
      *                           <li>circo</li>
      *                           </ul>
      *                           see http://www.graphviz.org under the Roadmap title
-     * @return A byte array containing the image of the graph.
+     * @return A byte array containing the image of the graph, or null if it could not be rendered.
      */
-    public byte[] getGraphUsingTemporaryFile(String dot_source, String type, String representationType) {
-        File dot;
-        byte[] img_stream = null;
-
+    public byte[] getGraphImage(String dot_source, String type, String representationType) {
         try {
-            dot = writeDotSourceToFile(dot_source);
-            if (dot != null) {
-                img_stream = getImgStream(dot, type, representationType);
-                if (dot.delete() == false) {
-                    System.err.println("Warning: " + dot.getAbsolutePath() + " could not be deleted!");
-                }
-                return img_stream;
-            }
+            return render(getArgs(type, representationType), dot_source);
+        } catch (IOException e) {
+            LOG.warning(e.getMessage() + ": " + e.getCause());
             return null;
-        } catch (java.io.IOException ioe) {
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             return null;
         }
     }
@@ -302,6 +294,9 @@ public class GraphViz {
      * @return Success: 1, Failure: -1
      */
     public int writeImageToFile(byte[] img, File to) {
+        if (img == null) {
+            return -1;
+        }
         try {
             FileOutputStream fos = new FileOutputStream(to);
             fos.write(img);
@@ -312,86 +307,6 @@ public class GraphViz {
         return 1;
     }
 
-    /**
-     * It will call the external dot program, and return the image in
-     * binary format.
-     *
-     * @param dot                Source of the graph (in dot language).
-     * @param type               Type of the output image to be produced, e.g.: gif, dot, fig, pdf, ps, svg, png.
-     * @param representationType Type of how you want to represent the graph:
-     *                           <ul>
-     *                           <li>dot</li>
-     *                           <li>neato</li>
-     *                           <li>fdp</li>
-     *                           <li>sfdp</li>
-     *                           <li>twopi</li>
-     *                           <li>circo</li>
-     *                           </ul>
-     *                           see http://www.graphviz.org under the Roadmap title
-     * @return The image of the graph in .gif format.
-     */
-    private byte[] getImgStream(File dot, String type, String representationType) {
-        File img;
-        byte[] img_stream = null;
-
-        try {
-            img = File.createTempFile("graph_", "." + type, new File(this.tempDir));
-            Runtime rt = Runtime.getRuntime();
-
-            // patch by Mike Chenault
-            // representation type with -K argument by Olivier Duplouy
-            String[] args = {executable, "-T" + type, "-K" + representationType, "-Gdpi=" + dpiSizes[this.currentDpiPos], dot.getAbsolutePath(), "-o", img.getAbsolutePath()};
-
-            Process p = rt.exec(args);  //this is plain dangerous in multithreaded programs and repeated runs...
-            int i = p.waitFor();
-            if (i > 0) {
-                System.err.println(i);
-            }
-
-            FileInputStream in = new FileInputStream(img.getAbsolutePath());
-            img_stream = new byte[in.available()];
-            in.read(img_stream);
-            // Close it if we need to
-            if (in != null) {
-                in.close();
-            }
-
-            if (img.delete() == false) {
-                System.err.println("Warning: " + img.getAbsolutePath() + " could not be deleted!");
-            }
-        } catch (java.io.IOException ioe) {
-            System.err.println("Error:    in I/O processing of tempfile in dir " + tempDir + "\n");
-            System.err.println("       or in calling external command");
-            ioe.printStackTrace();
-        } catch (java.lang.InterruptedException ie) {
-            System.err.println("Error: the execution of the external program was interrupted");
-            ie.printStackTrace();
-        }
-
-        return img_stream;
-    }
-
-    /**
-     * Writes the source of the graph in a file, and returns the written file
-     * as a File object.
-     *
-     * @param str Source of the graph (in dot language).
-     * @return The file (as a File object) that contains the source of the graph.
-     */
-    private File writeDotSourceToFile(String str) throws java.io.IOException {
-        File temp;
-        try {
-            temp = File.createTempFile("graph_", ".dot.tmp", new File(tempDir));
-            FileWriter fout = new FileWriter(temp);
-            fout.write(str);
-            fout.close();
-        } catch (Exception e) {
-            System.err.println("Error: I/O error while writing the dot source to temp file!");
-            return null;
-        }
-        return temp;
-    }
-
     /**
      * Returns a string that is used to start a graph.
      *
@@ -0,0 +1,99 @@
+package cz.cvut.fel.ida.drawing;
+
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphRendererTest {
+
+    private static final List<String> PNG = Arrays.asList("-Tpng");
+
+    /**
+     * The "image" of 6 bytes of the graph, counting the renderings
+     */
+    private static GraphRenderer.Rendering counting(AtomicInteger renderings) {
+        return (args, dotSource) -> {
+            renderings.incrementAndGet();
+            return (args.get(0) + dotSource).substring(0, 6).getBytes(StandardCharsets.UTF_8);
+        };
+    }
+
+    @TestAnnotations.Fast
+    public void cachedByGraphAndArguments() throws Exception {
+        AtomicInteger renderings = new AtomicInteger();
+        GraphRenderer renderer = new GraphRenderer("dot", 2, 1024, counting(renderings));
+
+        byte[] image = renderer.render(PNG, "graph a {}").get(10, TimeUnit.SECONDS);
+        assertArrayEquals("-Tpnggraph a {}".substring(0, 6).getBytes(StandardCharsets.UTF_8), image);
+        assertSame(image, renderer.render(PNG, "graph a {}").get(10, TimeUnit.SECONDS));
+        assertEquals(1, renderings.get());
+
+        renderer.render(Collections.singletonList("-Tsvg"), "graph a {}").get(10, TimeUnit.SECONDS);
+        renderer.render(PNG, "graph b {}").get(10, TimeUnit.SECONDS);
+        assertEquals(3, renderings.get());
+    }
+
+    /**
+     * The least recently used images are dropped once the cache is over its limit
+     */
+    @TestAnnotations.Fast
+    public void cacheLimit() throws Exception {
+        AtomicInteger renderings = new AtomicInteger();
+        GraphRenderer renderer = new GraphRenderer("dot", 1, 15, counting(renderings));     // room for 2 images of 6 bytes
+
+        renderer.render(PNG, "graph a {}").get(10, TimeUnit.SECONDS);
+        renderer.render(PNG, "graph b {}").get(10, TimeUnit.SECONDS);
+        renderer.render(PNG, "graph a {}").get(10, TimeUnit.SECONDS);    // a is the most recently used now
+        assertEquals(2, renderings.get());
+
+        renderer.render(PNG, "graph c {}").get(10, TimeUnit.SECONDS);    // drops b
+        renderer.render(PNG, "graph a {}").get(10, TimeUnit.SECONDS);
+        assertEquals(3, renderings.get());
+        renderer.render(PNG, "graph b {}").get(10, TimeUnit.SECONDS);
+        assertEquals(4, renderings.get());
+    }
+
+    /**
+     * The same requests coming while the graph is still being rendered share that single rendering
+     */
+    @TestAnnotations.Fast
+    public void concurrentRequestsShareRendering() throws Exception {
+        AtomicInteger renderings = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        GraphRenderer renderer = new GraphRenderer("dot", 4, 1024, (args, dotSource) -> {
+            renderings.incrementAndGet();
+            started.countDown();
+            release.await();
+            return dotSource.getBytes(StandardCharsets.UTF_8);
+        });
+
+        CompletableFuture<byte[]> first = renderer.render(PNG, "graph a {}");
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        CompletableFuture<byte[]> second = renderer.render(PNG, "graph a {}");
+        assertSame(first, second);
+        assertFalse(second.isDone());
+
+        release.countDown();
+        assertArrayEquals("graph a {}".getBytes(StandardCharsets.UTF_8), second.get(10, TimeUnit.SECONDS));
+        assertEquals(1, renderings.get());
+    }
+
+    @TestAnnotations.Fast
+    public void missingExecutable() throws Exception {
+        GraphRenderer renderer = new GraphRenderer("no-such-graphviz-executable", 1, 1024);
+        assertFalse(renderer.isAvailable());
+        CompletableFuture<byte[]> image = renderer.render(PNG, "graph a {}");
+        assertTrue(image.isDone());
+        assertNull(image.get());
+    }
+}
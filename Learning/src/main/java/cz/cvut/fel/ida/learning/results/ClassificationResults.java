@@ -36,6 +36,10 @@ public class ClassificationResults extends RegressionResults {
         super(outputs, settings);
     }
 
+    protected ClassificationResults(List<Result> outputs, Settings settings, boolean recalculate) {
+        super(outputs, settings, recalculate);
+    }
+
     protected ClassificationResults(Value error, Double accuracy, Double majorityAcc, Double dispersion) {
         super(error);
         this.accuracy = accuracy;
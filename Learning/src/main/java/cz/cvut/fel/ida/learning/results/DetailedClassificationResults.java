@@ -2,10 +2,9 @@ package cz.cvut.fel.ida.learning.results;
 
 import cz.cvut.fel.ida.algebra.values.ScalarValue;
 import cz.cvut.fel.ida.algebra.values.Value;
-import cz.cvut.fel.ida.learning.results.metrics.AUC;
+import cz.cvut.fel.ida.learning.results.metrics.BinaryMetrics;
 import cz.cvut.fel.ida.setup.Settings;
 
-import java.util.Collections;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -26,10 +25,27 @@ public class DetailedClassificationResults extends ClassificationResults {  //to
     private Double AUCrocEmpirical;
     private Double AUCpr;
 
+    /**
+     * Number of bins of the approximate metrics {@link BinaryMetrics.Sketch}, 0 for the exact metrics
+     */
+    private transient int sketchBins;
+
+    /**
+     * The metrics calculated with the last recalculation, reused for the best threshold
+     */
+    private transient BinaryMetrics binaryMetrics;
+
     public DetailedClassificationResults(List<Result> outputs, Settings aggregationFcn) {
         super(outputs, aggregationFcn);
     }
 
+    public DetailedClassificationResults(List<Result> outputs, Settings settings, int sketchBins) {
+        super(outputs, settings, false);
+        this.sketchBins = sketchBins;
+        if (!outputs.isEmpty())
+            this.recalculate();
+    }
+
     @Override
     public boolean betterThan(Results results, Settings.ModelSelection criterion) {
         DetailedClassificationResults other = (DetailedClassificationResults) results;
@@ -53,17 +69,23 @@ public class DetailedClassificationResults extends ClassificationResults {  //to
     }
 
     public boolean computeDetailedStats(List<Result> evaluations) {
+        binaryMetrics = null;
         if (!(evaluations.get(0).getTarget() instanceof ScalarValue)) {
             LOG.finer("Cannot compute AUC for multiclass problems.");
             return false;
         }
 
-        if (settings.alternativeAUC) {
-            AUCrocEmpirical = calculateAUCsmaller(evaluations);
-        }
-
         try {
-            setFullAUC(evaluations);
+            binaryMetrics = getBinaryMetrics(evaluations);
+            if (binaryMetrics.positives == 0) {
+                LOG.warning("Could not calculate AUC stats (no positive samples)");
+                return false;
+            }
+            AUCroc = binaryMetrics.aucRoc;
+            AUCpr = binaryMetrics.aucPr;
+            if (settings.alternativeAUC) {
+                AUCrocEmpirical = binaryMetrics.aucRocEmpirical;
+            }
         } catch (Exception e) {
             LOG.warning("Could not calculate AUC stats");
             return false;
@@ -71,6 +93,20 @@ public class DetailedClassificationResults extends ClassificationResults {  //to
         return true;
     }
 
+    private BinaryMetrics getBinaryMetrics(List<Result> evaluations) {
+        double[] scores = new double[evaluations.size()];
+        byte[] labels = new byte[evaluations.size()];
+        for (int i = 0; i < scores.length; i++) {
+            Result evaluation = evaluations.get(i);
+            scores[i] = ((ScalarValue) evaluation.getOutput()).value;
+            labels[i] = (byte) (evaluation.getTarget().greaterThan(oneHalf) ? 1 : 0);
+        }
+        if (sketchBins > 0) {
+            return BinaryMetrics.Sketch.of(scores, labels, sketchBins).metrics();
+        }
+        return BinaryMetrics.compute(scores, labels);
+    }
+
     public Double computeBestAccuracy(List<Result> evaluations, Value trainedThreshold) {
         int TP = 0;
         int TN = 0;
@@ -87,81 +123,27 @@ public class DetailedClassificationResults extends ClassificationResults {  //to
     }
 
     public Value computeBestAccuracyThreshold(List<Result> evaluations) {
-        Collections.sort(evaluations);
-
-        double allCount = evaluations.size();
-
-        int cumNegCount = 0;
-        int cumPosCount = 0;
-
-        double bestCumErr = evaluations.size();
-        int bestIndex = -1;
-
-        int i = 0;
-        while (true) {
-            if (i >= evaluations.size()) {
-                break;
-            }
-            double cumErr = (cumPosCount + zeroCount - cumNegCount) / allCount;
-            if (cumErr < bestCumErr) {
-                bestIndex = i;
-                bestCumErr = cumErr;
+        BinaryMetrics metrics = binaryMetrics;
+        if (metrics == null || evaluations != this.evaluations) {
+            if (!(evaluations.get(0).getOutput() instanceof ScalarValue)) {
+                LOG.finer("Cannot compute the best threshold for multiclass problems.");
+                return bestThreshold;
             }
-            do {
-                Result evaluation = evaluations.get(i);
-                if (evaluation.getTarget().greaterThan(oneHalf)) {
-                    cumPosCount++;
-                } else {
-                    cumNegCount++;
-                }
-                i++;
-            } while (i < evaluations.size() && evaluations.get(i).getOutput().equals(evaluations.get(i - 1).getOutput()));
+            metrics = getBinaryMetrics(evaluations);
         }
-
-        try {
-            bestThreshold = evaluations.get(bestIndex).getOutput();
-        } catch (IndexOutOfBoundsException e) {
-            bestThreshold = evaluations.get(0).getOutput();
-        }
-        if (bestIndex - 1 >= 0) {
-            bestThreshold = (bestThreshold.plus(evaluations.get(bestIndex - 1).getOutput())).times(oneHalf);
-        }
-        this.bestAccuracy = 1 - bestCumErr;
+        bestThreshold = new ScalarValue(metrics.bestThreshold);
+        bestAccuracy = metrics.bestAccuracy;
         return bestThreshold;
     }
 
+    /**
+     * The empirical (Wilcoxon-Mann-Whitney) AUC, with the ties of the outputs resolved by their average rank
+     *
+     * @param evaluations
+     * @return
+     */
     public double calculateAUCsmaller(List<Result> evaluations) {
-
-        double pos = oneCount;
-        double neg = zeroCount;
-
-        Collections.sort(evaluations);
-
-        double[] ranks = new double[evaluations.size()];
-        for (int i = 0; i < evaluations.size(); i++) {
-            if (i == evaluations.size() - 1 || !evaluations.get(i).getOutput().equals(evaluations.get(i + 1).getOutput())) {
-                ranks[i] = i + 1;
-            } else {
-                int j = i + 1;
-                for (; j < evaluations.size() && evaluations.get(j).getOutput() == evaluations.get(i).getOutput(); j++)
-                    ;
-
-                double r = (i + 1 + j) / 2.0;
-                for (int k = i; k < j; k++) {
-                    ranks[k] = r;
-                }
-                i = j - 1;
-            }
-        }
-
-        double auc = 0.0;
-        for (int i = 0; i < evaluations.size(); i++) {
-            if (evaluations.get(i).getTarget().greaterThan(oneHalf))
-                auc += ranks[i];
-        }
-
-        auc = (auc - (pos * (pos + 1) / 2.0)) / (pos * neg);
-        return auc;
+        return getBinaryMetrics(evaluations).aucRocEmpirical;
     }
 
     /**
@@ -171,9 +153,9 @@ public class DetailedClassificationResults extends ClassificationResults {  //to
      * @return
      */
     public void setFullAUC(List<Result> evaluations) {
-        AUC auc = new AUC(evaluations);
-        AUCroc = auc.getAUCroc();
-        AUCpr = auc.getAUCpr();
+        BinaryMetrics metrics = getBinaryMetrics(evaluations);
+        AUCroc = metrics.aucRoc;
+        AUCpr = metrics.aucPr;
     }
 
     @Override
@@ -1,5 +1,8 @@
 package cz.cvut.fel.ida.learning.results;
 
+import cz.cvut.fel.ida.algebra.values.ScalarValue;
+import cz.cvut.fel.ida.algebra.values.Value;
+import cz.cvut.fel.ida.algebra.values.VectorValue;
 import cz.cvut.fel.ida.setup.Settings;
 import cz.cvut.fel.ida.utils.exporting.Exportable;
 
@@ -57,6 +60,36 @@ public class Progress implements Exportable<Progress> {
         return currentRestart.onlineTrainingResults.size();
     }
 
+    /**
+     * @return the errors of the given results (e.g. of the current restart, to be checkpointed)
+     */
+    public static List<double[]> errorsOf(List<Results> results) {
+        List<double[]> errors = new ArrayList<>(results.size());
+        for (Results result : results) {
+            errors.add(result.error == null ? null : result.error.getAsArray().clone());
+        }
+        return errors;
+    }
+
+    /**
+     * Replace the results of the current restart with the given errors (e.g. from a checkpoint), i.e. the history the early
+     * stopping works with, without the evaluations of the individual samples
+     */
+    public void restoreCurrentRestart(List<double[]> onlineErrors, List<double[]> trueErrors, List<double[]> validationErrors) {
+        currentRestart.onlineTrainingResults = fromErrors(onlineErrors);
+        currentRestart.trueTrainingResults = fromErrors(trueErrors);
+        currentRestart.validationResults = fromErrors(validationErrors);
+    }
+
+    private static List<Results> fromErrors(List<double[]> errors) {
+        List<Results> results = new ArrayList<>(errors.size());
+        for (double[] error : errors) {
+            Value value = error == null ? null : error.length == 1 ? new ScalarValue(error[0]) : new VectorValue(error);
+            results.add(new RegressionResults(value));
+        }
+        return results;
+    }
+
     public Results getCurrentOnlineTrainingResults() {
         return currentRestart.onlineTrainingResults.get(currentRestart.onlineTrainingResults.size() - 1);
     }
@@ -17,6 +17,10 @@ public class RegressionResults extends Results {
         super(outputs, aggregationFcn);
     }
 
+    protected RegressionResults(List<Result> outputs, Settings settings, boolean recalculate) {
+        super(outputs, settings, recalculate);
+    }
+
     protected RegressionResults(Value meanError) {
         super(meanError);
     }
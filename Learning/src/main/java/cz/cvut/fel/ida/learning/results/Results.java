@@ -38,10 +38,17 @@ public abstract class Results implements Exportable<Results> {
     public Value error;
 
     public Results(@NotNull List<Result> evaluations, Settings settings) {
+        this(evaluations, settings, true);
+    }
+
+    /**
+     * @param recalculate - false if the subclass needs to finish its initialization before the recalculation (and calls it itself)
+     */
+    protected Results(@NotNull List<Result> evaluations, Settings settings, boolean recalculate) {
         this.settings = settings;
         this.evaluations = evaluations;
         this.aggregationFcn = getAggregation(settings);
-        if (!evaluations.isEmpty())
+        if (recalculate && !evaluations.isEmpty())
             this.recalculate();
     }
 
@@ -108,10 +115,26 @@ public abstract class Results implements Exportable<Results> {
 
         Settings settings;
 
+        /**
+         * Number of bins for the approximate (sketched) metrics where supported, 0 for the exact ones
+         */
+        int sketchBins = 0;
+
         public Factory(Settings settings) {
             this.settings = settings;
         }
 
+        /**
+         * Switch to the approximate metrics calculated from mergeable sketches with the given number of bins (e.g. for the online results)
+         *
+         * @param sketchBins
+         * @return
+         */
+        public Factory<R> sketched(int sketchBins) {
+            this.sketchBins = sketchBins;
+            return this;
+        }
+
         public static Factory getFrom(Settings.ResultsType type, Settings settings) {
             switch (type) {
                 case KBC:
@@ -183,6 +206,9 @@ public abstract class Results implements Exportable<Results> {
 
         @Override
         public DetailedClassificationResults createFrom(List<Result> outputs) {
+            if (sketchBins > 0) {
+                return new DetailedClassificationResults(outputs, settings, sketchBins);
+            }
             return new DetailedClassificationResults(outputs, settings);
         }
     }
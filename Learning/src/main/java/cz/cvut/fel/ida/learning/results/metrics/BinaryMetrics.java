@@ -0,0 +1,336 @@
+package cz.cvut.fel.ida.learning.results.metrics;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * Binary classification metrics (AUC-ROC, AUC-PR, the best accuracy threshold) computed over primitive arrays of
+ * scores and labels, all from a single pass over the scores grouped by their distinct values.
+ * <p>
+ * The exact metrics are calculated by sorting the scores of the positive and negative samples separately and merging
+ * them into the groups of equal scores, i.e. in O(n log n) without any objects per sample. The AUC-ROC and AUC-PR
+ * follow the interpolated calculation of {@link cz.cvut.fel.ida.learning.results.metrics.Jesse.Confusions} (so that the
+ * results stay comparable), just streamed over the (interpolated) points instead of storing them.
+ * <p>
+ * For online (approximate) metrics, a mergeable {@link Sketch} with fixed bins can be used instead, where each bin acts
+ * as a single group of equal scores.
+ */
+public class BinaryMetrics {
+    private static final Logger LOG = Logger.getLogger(BinaryMetrics.class.getName());
+
+    /**
+     * Number of samples above which the sorting and sketching is done in parallel
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    public final long positives;
+    public final long negatives;
+
+    /**
+     * Interpolated AUC-ROC (as in {@link AUC#getAUCroc()})
+     */
+    public final double aucRoc;
+    /**
+     * Interpolated AUC-PR (as in {@link AUC#getAUCpr()})
+     */
+    public final double aucPr;
+    /**
+     * The empirical (Wilcoxon-Mann-Whitney) AUC-ROC with the ties resolved by their average rank
+     */
+    public final double aucRocEmpirical;
+
+    /**
+     * The threshold in the middle between two neighbouring scores that minimizes the classification error
+     */
+    public final double bestThreshold;
+    public final double bestAccuracy;
+
+    /**
+     * @param scores - the distinct scores in ascending order
+     * @param pos    - the numbers of positive samples with the respective score
+     * @param neg    - the numbers of negative samples with the respective score
+     * @param groups - the number of the distinct scores (the used length of the arrays)
+     */
+    private BinaryMetrics(double[] scores, long[] pos, long[] neg, int groups) {
+        long positives = 0;
+        long negatives = 0;
+        for (int g = 0; g < groups; g++) {
+            positives += pos[g];
+            negatives += neg[g];
+        }
+        this.positives = positives;
+        this.negatives = negatives;
+        long count = positives + negatives;
+
+        // ascending pass - the best threshold and the ranks
+        long cumPos = 0;
+        long cumNeg = 0;
+        double bestErr = Double.POSITIVE_INFINITY;
+        int bestGroup = -1;
+        double rankSum = 0;
+        for (int g = 0; g < groups; g++) {
+            double err = (cumPos + negatives - cumNeg) / (double) count;
+            if (err < bestErr) {
+                bestErr = err;
+                bestGroup = g;
+            }
+            rankSum += pos[g] * (cumPos + cumNeg + (pos[g] + neg[g] + 1) / 2.0);
+            cumPos += pos[g];
+            cumNeg += neg[g];
+        }
+        if (bestGroup < 0) {
+            bestThreshold = 0.5;
+            bestAccuracy = 0;
+        } else {
+            bestThreshold = bestGroup > 0 ? (scores[bestGroup] + scores[bestGroup - 1]) * 0.5 : scores[bestGroup];
+            bestAccuracy = 1 - bestErr;
+        }
+        aucRocEmpirical = (rankSum - (positives * (positives + 1) / 2.0)) / ((double) positives * negatives);
+
+        // descending pass - the (interpolated) ROC curve points
+        Curve curve = new Curve(positives, negatives);
+        cumPos = 0;
+        cumNeg = 0;
+        for (int g = groups - 1; g >= 0; g--) {
+            cumPos += pos[g];
+            cumNeg += neg[g];
+            curve.point(cumPos, cumNeg);
+        }
+        if (curve.started) {
+            aucRoc = 1.0 - curve.aucRoc;
+            aucPr = curve.aucPr;
+        } else {    // no positive samples
+            aucRoc = Double.NaN;
+            aucPr = Double.NaN;
+        }
+    }
+
+    /**
+     * Calculate the exact metrics
+     *
+     * @param scores
+     * @param labels - 1 for positive, 0 for negative samples
+     * @return
+     */
+    public static BinaryMetrics compute(double[] scores, byte[] labels) {
+        int posCount = 0;
+        for (byte label : labels) {
+            posCount += label;
+        }
+        double[] posScores = new double[posCount];
+        double[] negScores = new double[labels.length - posCount];
+        int p = 0;
+        int n = 0;
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i] > 0) {
+                posScores[p++] = scores[i];
+            } else {
+                negScores[n++] = scores[i];
+            }
+        }
+        Arrays.parallelSort(posScores);     // sequential for the small arrays anyway
+        Arrays.parallelSort(negScores);
+
+        // merge the two sorted arrays into the groups of equal scores
+        double[] groupScores = new double[labels.length];
+        long[] groupPos = new long[labels.length];
+        long[] groupNeg = new long[labels.length];
+        int groups = 0;
+        p = 0;
+        n = 0;
+        while (p < posScores.length || n < negScores.length) {
+            double score = n >= negScores.length || (p < posScores.length && posScores[p] <= negScores[n]) ? posScores[p] : negScores[n];
+            long pc = 0;
+            long nc = 0;
+            while (p < posScores.length && posScores[p] == score) {
+                p++;
+                pc++;
+            }
+            while (n < negScores.length && negScores[n] == score) {
+                n++;
+                nc++;
+            }
+            if (pc == 0 && nc == 0) {   // NaN
+                LOG.warning("Skipping NaN scores in the metrics calculation.");
+                break;
+            }
+            groupScores[groups] = score;
+            groupPos[groups] = pc;
+            groupNeg[groups] = nc;
+            groups++;
+        }
+        return new BinaryMetrics(groupScores, groupPos, groupNeg, groups);
+    }
+
+    /**
+     * Streams the points of the ROC curve in the order of decreasing threshold, adds the interpolated points
+     * in between, and accumulates the areas under the ROC and PR curves on the way.
+     */
+    private static class Curve {
+        final double totalPos;
+        final double totalNeg;
+
+        boolean started = false;
+        double prevPos;
+        double prevNeg;
+
+        double aucRoc;
+        double aucPr;
+        double prevRecall;
+        double prevPrecision;
+
+        Curve(double totalPos, double totalNeg) {
+            this.totalPos = totalPos;
+            this.totalNeg = totalNeg;
+        }
+
+        void point(double pos, double neg) {
+            if (!started) {
+                if (pos < 0.001 && pos > -0.001) {
+                    return; // the leading points without any positive are skipped
+                }
+                started = true;
+                if (pos > 1.0) {
+                    first(1.0, neg / pos);
+                    interpolated(pos, neg);
+                } else {
+                    first(pos, neg);
+                }
+            } else {
+                interpolated(pos, neg);
+            }
+        }
+
+        private void first(double pos, double neg) {
+            prevPos = pos;
+            prevNeg = neg;
+            aucRoc = 0.5 * (pos / totalPos) * (neg / totalNeg);
+            prevRecall = pos / totalPos;
+            prevPrecision = pos / (pos + neg);
+            aucPr = prevRecall * prevPrecision;
+        }
+
+        private void interpolated(double pos, double neg) {
+            double startPos = prevPos;
+            double startNeg = prevNeg;
+            double slope = (neg - startNeg) / (pos - startPos);
+            while (Math.abs(prevPos - pos) > 1.001) {
+                next(prevPos + 1.0, startNeg + (prevPos - startPos + 1.0) * slope);
+            }
+            next(pos, neg);
+        }
+
+        private void next(double pos, double neg) {
+            double prevPosRatio = prevPos / totalPos;
+            double prevNegRatio = prevNeg / totalNeg;
+            double currPosRatio = pos / totalPos;
+            double currNegRatio = neg / totalNeg;
+            aucRoc += (currPosRatio - prevPosRatio) * currNegRatio - 0.5 * (currPosRatio - prevPosRatio) * (currNegRatio - prevNegRatio);
+
+            double recall = pos / totalPos;
+            double precision = pos / (pos + neg);
+            aucPr += (recall - prevRecall) * precision + 0.5 * (recall - prevRecall) * (prevPrecision - precision);
+
+            prevPos = pos;
+            prevNeg = neg;
+            prevRecall = recall;
+            prevPrecision = precision;
+        }
+    }
+
+    /**
+     * Approximate metrics from a mergeable histogram of the scores with fixed bins, e.g. for the online results
+     * accumulated from multiple threads or minibatches. The scores outside of the range fall into the boundary bins.
+     */
+    public static class Sketch {
+        final double min;
+        final double max;
+        final long[] pos;
+        final long[] neg;
+
+        public Sketch(int bins, double min, double max) {
+            this.min = min;
+            this.max = max;
+            this.pos = new long[bins];
+            this.neg = new long[bins];
+        }
+
+        public void add(double score, boolean positive) {
+            int bin = (int) ((score - min) / (max - min) * pos.length);
+            bin = Math.max(0, Math.min(pos.length - 1, bin));
+            if (positive) {
+                pos[bin]++;
+            } else {
+                neg[bin]++;
+            }
+        }
+
+        public Sketch merge(Sketch other) {
+            if (other.pos.length != pos.length || other.min != min || other.max != max) {
+                throw new IllegalArgumentException("Cannot merge sketches with different bins.");
+            }
+            for (int i = 0; i < pos.length; i++) {
+                pos[i] += other.pos[i];
+                neg[i] += other.neg[i];
+            }
+            return this;
+        }
+
+        /**
+         * A sketch over the observed range of the scores, e.g. for the outputs not squashed into [0,1]
+         */
+        public static Sketch of(double[] scores, byte[] labels, int bins) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (double score : scores) {
+                min = Math.min(min, score);
+                max = Math.max(max, score);
+            }
+            if (!(max > min)) {     // a single (or no) distinct score
+                min = scores.length == 0 || Double.isNaN(min) ? 0 : min;
+                max = min + 1;
+            }
+            return of(scores, labels, bins, min, max);
+        }
+
+        public static Sketch of(double[] scores, byte[] labels, int bins, double min, double max) {
+            if (scores.length < PARALLEL_THRESHOLD) {
+                Sketch sketch = new Sketch(bins, min, max);
+                for (int i = 0; i < scores.length; i++) {
+                    sketch.add(scores[i], labels[i] > 0);
+                }
+                return sketch;
+            }
+            int chunk = PARALLEL_THRESHOLD / 4;
+            return IntStream.range(0, (scores.length + chunk - 1) / chunk).parallel().mapToObj(c -> {
+                Sketch sketch = new Sketch(bins, min, max);
+                for (int i = c * chunk; i < Math.min(scores.length, (c + 1) * chunk); i++) {
+                    sketch.add(scores[i], labels[i] > 0);
+                }
+                return sketch;
+            }).reduce(Sketch::merge).get();
+        }
+
+        /**
+         * The metrics with the scores of each (non-empty) bin represented by its center
+         */
+        public BinaryMetrics metrics() {
+            double width = (max - min) / pos.length;
+            double[] scores = new double[pos.length];
+            long[] groupPos = new long[pos.length];
+            long[] groupNeg = new long[pos.length];
+            int groups = 0;
+            for (int i = 0; i < pos.length; i++) {
+                if (pos[i] + neg[i] == 0) {
+                    continue;
+                }
+                scores[groups] = min + (i + 0.5) * width;
+                groupPos[groups] = pos[i];
+                groupNeg[groups] = neg[i];
+                groups++;
+            }
+            return new BinaryMetrics(scores, groupPos, groupNeg, groups);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package cz.cvut.fel.ida.learning.results.metrics;
 
+import cz.cvut.fel.ida.algebra.values.ScalarValue;
 import cz.cvut.fel.ida.algebra.values.Value;
 import cz.cvut.fel.ida.learning.results.Result;
 import cz.cvut.fel.ida.setup.Settings;
@@ -12,7 +13,7 @@ import java.util.stream.IntStream;
 
 public class HITS {
     private static final Logger LOG = Logger.getLogger(HITS.class.getName());
-    private final Random random;
+    private final transient Random random;  //transient since the results with the HITS get exported online during training
 
     boolean hitsReifyPredicate;
     Settings.HitsCorruption corruption;
@@ -43,6 +44,12 @@ public class HITS {
 
     Map<String[], String> terms2sample;
 
+    /**
+     * Use the int-encoded {@link RankingIndex} for the ranking, built lazily at the first call of getStats
+     */
+    boolean indexedRanking;
+    RankingIndex rankingIndex;
+
     public HITS(List<Result> results, Settings settings) {
         random = settings.random;
         hitsReifyPredicate = settings.hitsReifyPredicate;
@@ -50,6 +57,7 @@ public class HITS {
         hitsPreservation = settings.hitsPreservation;
         hitsClashes = settings.hitsClashes;
         storeCorruptions = settings.storeHitsCorruptions;
+        indexedRanking = settings.indexedHitsRanking;
         if (storeCorruptions) {
             storedCorruptions = new HashMap<>();
         }
@@ -86,6 +94,7 @@ public class HITS {
         samples2terms.putAll(other.samples2terms);
         validSamples.addAll(other.validSamples);
         corruptedSamples.addAll(other.corruptedSamples);
+        rankingIndex = null;
 
         if (sameTermSamples != null) {
             for (int i = 0; i < sameTermSamples.length; i++) {
@@ -160,6 +169,12 @@ public class HITS {
      */
     public Stats getStats(List<Result> results) {
         Map<String, Value> predictions = getPredictions(results);
+        if (indexedRanking && predictions.values().stream().allMatch(value -> value instanceof ScalarValue)) {
+            if (rankingIndex == null) {
+                rankingIndex = new RankingIndex(validSamples, corruptedSamples, samples2terms, corruption, keepFixedIndex);
+            }
+            return rankingIndex.getStats(predictions, hitsClashes, random);
+        }
         Stats stats = new Stats();
         for (String validSample : validSamples) {
             Value predictedValue = predictions.get(validSample);
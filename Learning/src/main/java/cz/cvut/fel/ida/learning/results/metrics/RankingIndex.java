@@ -0,0 +1,283 @@
+package cz.cvut.fel.ida.learning.results.metrics;
+
+import cz.cvut.fel.ida.algebra.values.ScalarValue;
+import cz.cvut.fel.ida.algebra.values.Value;
+import cz.cvut.fel.ida.setup.Settings;
+
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * An int-encoded index of the {@link HITS} corruption sets, for ranking all the valid samples against their corruptions in parallel.
+ * <p>
+ * The terms of the samples are encoded into int tuples, and each corruption set (e.g. the corrupted samples with the same
+ * term at a given position for ONE_SAME, or with the same terms at all the other positions for ONE_DIFF) is precomputed
+ * once as a group of corrupted samples under its key. Only the corrupted (non-valid) samples are indexed, so the other
+ * known true samples are filtered out of the corruptions the same way as in the HITS.
+ * <p>
+ * For the ranking, the outputs of each group are sorted once, and the rank of each (valid sample, position) query is then
+ * counted with two binary searches, in parallel. The ranks are consumed into the {@link HITS.Stats} sequentially in the
+ * original order of the queries, so the resulting stats are the same as with the HITS. The full ranks are always
+ * needed (for the MRR and mean rank), so the queries are not cut off at the top-k.
+ */
+class RankingIndex {
+    private static final Logger LOG = Logger.getLogger(RankingIndex.class.getName());
+
+    final String[] validSamples;
+    final String[] corruptedSamples;
+
+    /**
+     * Members (corrupted sample indices) of the individual corruption sets
+     */
+    final int[][] groups;
+
+    /**
+     * The corruption set of each query in the order of consumption into the stats, -1 for an empty set (rank 1)
+     */
+    final int[] queryGroups;
+    /**
+     * The valid sample index of each query
+     */
+    final int[] queryValid;
+
+    RankingIndex(LinkedHashSet<String> valid, LinkedHashSet<String> corrupted, Map<String, String[]> samples2terms,
+                 Settings.HitsCorruption corruption, int keepFixedIndex) {
+        validSamples = valid.toArray(new String[0]);
+        corruptedSamples = corrupted.toArray(new String[0]);
+
+        Map<String, Integer> termCodes = new HashMap<>();
+        int[][] validTuples = encode(validSamples, samples2terms, termCodes);
+        int[][] corruptedTuples = encode(corruptedSamples, samples2terms, termCodes);
+
+        Map<Key, Integer> groupIds = new HashMap<>();
+        List<IntList> members = new ArrayList<>();
+        for (int c = 0; c < corruptedTuples.length; c++) {
+            for (Key key : keys(corruptedTuples[c], corruption, keepFixedIndex)) {
+                Integer id = groupIds.computeIfAbsent(key, k -> {
+                    members.add(new IntList());
+                    return members.size() - 1;
+                });
+                members.get(id).add(c);
+            }
+        }
+        groups = new int[members.size()][];
+        for (int g = 0; g < groups.length; g++) {
+            groups[g] = members.get(g).toArray();
+        }
+
+        IntList queryGroups = new IntList();
+        IntList queryValid = new IntList();
+        for (int v = 0; v < validTuples.length; v++) {
+            for (Key key : keys(validTuples[v], corruption, keepFixedIndex)) {
+                Integer id = groupIds.get(key);
+                queryGroups.add(id == null ? -1 : id);
+                queryValid.add(v);
+            }
+        }
+        this.queryGroups = queryGroups.toArray();
+        this.queryValid = queryValid.toArray();
+        LOG.fine("Indexed " + this.queryGroups.length + " ranking queries against " + groups.length + " corruption sets.");
+    }
+
+    private static int[][] encode(String[] samples, Map<String, String[]> samples2terms, Map<String, Integer> termCodes) {
+        int[][] tuples = new int[samples.length][];
+        for (int s = 0; s < samples.length; s++) {
+            String[] terms = samples2terms.get(samples[s]);
+            int[] tuple = new int[terms.length];
+            for (int i = 0; i < terms.length; i++) {
+                tuple[i] = termCodes.computeIfAbsent(terms[i], t -> termCodes.size());
+            }
+            tuples[s] = tuple;
+        }
+        return tuples;
+    }
+
+    /**
+     * The keys of the corruption sets a tuple belongs to (for the corrupted samples), or is ranked against (for the
+     * valid samples), in the order of the positions.
+     */
+    private static List<Key> keys(int[] tuple, Settings.HitsCorruption corruption, int keepFixedIndex) {
+        List<Key> keys = new ArrayList<>(tuple.length);
+        switch (corruption) {
+            case ONE_SAME:
+                for (int i = 0; i < tuple.length; i++) {
+                    if (i == keepFixedIndex) continue;
+                    if (keepFixedIndex >= 0) {
+                        keys.add(keepFixedIndex < tuple.length ? new Key(i, tuple[i], tuple[keepFixedIndex]) : new Key(i, tuple[i], -1, -1));
+                    } else {
+                        keys.add(new Key(i, tuple[i]));
+                    }
+                }
+                break;
+            case ONE_DIFF:
+                if (tuple.length < 2) {
+                    break;  // no other positions to stay the same
+                }
+                for (int i = 0; i < tuple.length; i++) {
+                    if (i == keepFixedIndex) continue;
+                    int[] masked = new int[tuple.length + 1];
+                    masked[0] = i;
+                    System.arraycopy(tuple, 0, masked, 1, tuple.length);
+                    masked[i + 1] = -1;
+                    keys.add(new Key(masked));
+                }
+                break;
+            case ALL_DIFF:
+                if (keepFixedIndex >= 0) {
+                    keys.add(keepFixedIndex < tuple.length ? new Key(-1, tuple[keepFixedIndex]) : new Key(-1, -1, -1));
+                } else {
+                    keys.add(new Key(-1));
+                }
+                break;
+        }
+        return keys;
+    }
+
+    /**
+     * Calculates the ranks of all the queries in parallel and consumes them into the stats in their original order
+     *
+     * @param predictions - the outputs of the samples by their IDs, must be all scalar
+     * @param clashes
+     * @param random      - for the RANDOM clashes, drawn from in the original order of the queries
+     * @return
+     */
+    HITS.Stats getStats(Map<String, Value> predictions, Settings.HitsClashes clashes, Random random) {
+        double[] validScores = scores(validSamples, predictions);
+        double[] corruptedScores = scores(corruptedSamples, predictions);
+
+        double[][] sortedGroups = new double[groups.length][];
+        int[] nanCounts = new int[groups.length];
+        IntStream.range(0, groups.length).parallel().forEach(g -> {
+            int[] group = groups[g];
+            double[] sorted = new double[group.length];
+            for (int i = 0; i < group.length; i++) {
+                sorted[i] = corruptedScores[group[i]];
+            }
+            Arrays.sort(sorted);    // NaNs go last
+            int nans = 0;
+            while (nans < sorted.length && Double.isNaN(sorted[sorted.length - 1 - nans])) {
+                nans++;
+            }
+            sortedGroups[g] = sorted;
+            nanCounts[g] = nans;
+        });
+
+        int[] greater = new int[queryGroups.length];
+        int[] same = new int[queryGroups.length];
+        IntStream.range(0, queryGroups.length).parallel().forEach(q -> {
+            int g = queryGroups[q];
+            if (g < 0) {
+                return;
+            }
+            double[] sorted = sortedGroups[g];
+            double predicted = validScores[queryValid[q]];
+            if (Double.isNaN(predicted)) {
+                same[q] = sorted.length;    // nothing is greater or smaller than NaN
+                return;
+            }
+            int numbers = sorted.length - nanCounts[g];
+            int lower = lowerBound(sorted, numbers, predicted);
+            int upper = upperBound(sorted, numbers, predicted);
+            greater[q] = numbers - upper;
+            same[q] = upper - lower + nanCounts[g];
+        });
+
+        HITS.Stats stats = new HITS.Stats();
+        for (int q = 0; q < queryGroups.length; q++) {
+            double rank = 1 + greater[q];
+            if (queryGroups[q] >= 0) {
+                switch (clashes) {
+                    case AVG:
+                        rank += same[q] / 2.0;
+                        break;
+                    case RANDOM:
+                        rank += random.nextInt(same[q] + 1);
+                        break;
+                    case NONE:
+                        break;
+                }
+            }
+            stats.consume(rank);
+        }
+        return stats.finish();
+    }
+
+    private static double[] scores(String[] samples, Map<String, Value> predictions) {
+        double[] scores = new double[samples.length];
+        for (int i = 0; i < samples.length; i++) {
+            scores[i] = ((ScalarValue) predictions.get(samples[i])).value;
+        }
+        return scores;
+    }
+
+    /**
+     * First position in sorted[0, length) with a value not smaller than the key
+     */
+    private static int lowerBound(double[] sorted, int length, double key) {
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * First position in sorted[0, length) with a value greater than the key
+     */
+    private static int upperBound(double[] sorted, int length, double key) {
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] <= key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static class Key {
+        final int[] codes;
+        final int hash;
+
+        Key(int... codes) {
+            this.codes = codes;
+            this.hash = Arrays.hashCode(codes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && Arrays.equals(codes, ((Key) obj).codes);
+        }
+    }
+
+    private static class IntList {
+        int[] values = new int[4];
+        int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
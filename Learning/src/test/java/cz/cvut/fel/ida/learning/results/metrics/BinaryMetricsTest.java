@@ -0,0 +1,94 @@
+package cz.cvut.fel.ida.learning.results.metrics;
+
+import cz.cvut.fel.ida.algebra.values.ScalarValue;
+import cz.cvut.fel.ida.learning.results.Result;
+import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BinaryMetricsTest {
+
+    @TestAnnotations.Fast
+    public void sameAsInterpolatedAUC() {
+        Settings settings = new Settings();
+        Result.Factory factory = new Result.Factory(settings);
+        Random random = new Random(1);
+
+        for (int round = 0; round < 20; round++) {
+            int size = 10 + random.nextInt(300);
+            double[] scores = new double[size];
+            byte[] labels = new byte[size];
+            List<Result> results = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                scores[i] = random.nextInt(20) / 20.0;  // plenty of ties
+                labels[i] = (byte) (random.nextDouble() < scores[i] ? 1 : 0);
+                results.add(factory.create("s" + i, i, new ScalarValue(labels[i]), new ScalarValue(scores[i])));
+            }
+            if (!results.stream().anyMatch(r -> r.getTarget().greaterThan(new ScalarValue(0.5)))) {
+                continue;
+            }
+
+            BinaryMetrics metrics = BinaryMetrics.compute(scores, labels);
+            AUC auc = new AUC(results);
+            assertEquals(auc.getAUCroc(), metrics.aucRoc, 1e-12);
+            assertEquals(auc.getAUCpr(), metrics.aucPr, 1e-12);
+        }
+    }
+
+    @TestAnnotations.Fast
+    public void empiricalAUCWithTies() {
+        double[] scores = {0.1, 0.4, 0.4, 0.8};
+        byte[] labels = {0, 0, 1, 1};
+        BinaryMetrics metrics = BinaryMetrics.compute(scores, labels);
+        assertEquals(0.875, metrics.aucRocEmpirical, 1e-12);   // (1 + 0.5 + 1 + 1) / 4
+        assertEquals(0.75, metrics.bestAccuracy, 1e-12);
+        assertEquals(0.25, metrics.bestThreshold, 1e-12);
+    }
+
+    @TestAnnotations.Fast
+    public void mergedSketches() {
+        Random random = new Random(2);
+        int size = 10000;
+        double[] scores = new double[size];
+        byte[] labels = new byte[size];
+        BinaryMetrics.Sketch first = new BinaryMetrics.Sketch(1000, 0, 1);
+        BinaryMetrics.Sketch second = new BinaryMetrics.Sketch(1000, 0, 1);
+        for (int i = 0; i < size; i++) {
+            scores[i] = random.nextDouble();
+            labels[i] = (byte) (random.nextDouble() < scores[i] ? 1 : 0);
+            (i % 2 == 0 ? first : second).add(scores[i], labels[i] > 0);
+        }
+        BinaryMetrics exact = BinaryMetrics.compute(scores, labels);
+        BinaryMetrics sketched = first.merge(second).metrics();
+        assertEquals(exact.positives, sketched.positives);
+        assertEquals(exact.aucRocEmpirical, sketched.aucRocEmpirical, 1e-3);
+        assertEquals(exact.bestAccuracy, sketched.bestAccuracy, 1e-2);
+    }
+
+    /**
+     * The (unsquashed) scores outside of [0,1] must still be spread over the bins
+     */
+    @TestAnnotations.Fast
+    public void sketchOverObservedRange() {
+        Random random = new Random(3);
+        int size = 10000;
+        double[] scores = new double[size];
+        byte[] labels = new byte[size];
+        for (int i = 0; i < size; i++) {
+            scores[i] = 20 * random.nextDouble() - 10;
+            labels[i] = (byte) (random.nextDouble() < 1 / (1 + Math.exp(-scores[i])) ? 1 : 0);
+        }
+        BinaryMetrics exact = BinaryMetrics.compute(scores, labels);
+        BinaryMetrics sketched = BinaryMetrics.Sketch.of(scores, labels, 1000).metrics();
+        assertEquals(exact.aucRocEmpirical, sketched.aucRocEmpirical, 1e-3);
+        assertEquals(exact.bestAccuracy, sketched.bestAccuracy, 1e-2);
+
+        BinaryMetrics constant = BinaryMetrics.Sketch.of(new double[]{2, 2, 2}, new byte[]{0, 1, 1}, 10).metrics();
+        assertEquals(2, constant.positives);
+    }
+}
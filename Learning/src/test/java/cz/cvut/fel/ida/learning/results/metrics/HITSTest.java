@@ -7,9 +7,7 @@ import cz.cvut.fel.ida.setup.Settings;
 import cz.cvut.fel.ida.utils.generic.TestAnnotations;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -135,4 +133,45 @@ class HITSTest {
         System.out.println(stats);
         assertEquals(stats.AVGrank, 1.125);
     }
-}
\ No newline at end of file
+
+    @TestAnnotations.Fast
+    public void indexedRankingSameAsCorruptionLists() {
+        Random random = new Random(3);
+        List<String> terms = Arrays.asList("a", "b", "c", "d", "e", "f");
+        Settings settings = new Settings();
+        Result.Factory factory = new Result.Factory(settings);
+        List<Result> resultList = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 150; i++) {
+            String id = "predict(" + terms.get(random.nextInt(6)) + "," + terms.get(random.nextInt(6)) + "," + terms.get(random.nextInt(6)) + ")";
+            if (ids.add(id)) {
+                double target = random.nextDouble() < 0.2 ? 1.0 : 0.0;
+                resultList.add(factory.create(id, i, new ScalarValue(target), new ScalarValue(random.nextInt(10) / 10.0)));
+            }
+        }
+
+        for (Settings.HitsCorruption corruption : Settings.HitsCorruption.values()) {
+            for (Settings.HitsPreservation preservation : Settings.HitsPreservation.values()) {
+                if (corruption == Settings.HitsCorruption.ONE_SAME && preservation != Settings.HitsPreservation.NONE) {
+                    continue;   // the corruption lists may fail on the missing terms here
+                }
+                for (Settings.HitsClashes clashes : Settings.HitsClashes.values()) {
+                    settings.hitsCorruption = corruption;
+                    settings.hitsPreservation = preservation;
+                    settings.hitsClashes = clashes;
+
+                    settings.random = new Random(1);
+                    settings.indexedHitsRanking = true;
+                    HITS.Stats indexed = new HITS(resultList, settings).getStats(resultList);
+                    settings.random = new Random(1);
+                    settings.indexedHitsRanking = false;
+                    HITS.Stats lists = new HITS(resultList, settings).getStats(resultList);
+
+                    assertEquals(lists.toString(), indexed.toString());
+                    assertEquals(lists.MRR, indexed.MRR);
+                    assertEquals(lists.AVGrank, indexed.AVGrank);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package cz.cvut.fel.ida.logging;
+
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncLogHandlerTest {
+
+    /**
+     * Collects the messages of the published records, optionally blocking in the first one and slowing down the rest
+     */
+    private static class Collecting extends Handler {
+        final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger flushes = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release;
+        final long delayMillis;
+
+        Collecting(CountDownLatch release, long delayMillis) {
+            this.release = release;
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public void publish(LogRecord record) {
+            started.countDown();
+            try {
+                if (release != null) {
+                    release.await();
+                }
+                if (delayMillis > 0) {
+                    Thread.sleep(delayMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            messages.add(record.getMessage());
+        }
+
+        @Override
+        public void flush() {
+            flushes.incrementAndGet();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static List<String> messages(String prefix, int from, int to) {
+        List<String> messages = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            messages.add(prefix + i);
+        }
+        return messages;
+    }
+
+    /**
+     * The records of each thread are written out in the order of their publishing
+     */
+    @TestAnnotations.Fast
+    public void keepsOrder() throws Exception {
+        Collecting delegate = new Collecting(null, 0);
+        AsyncLogHandler handler = new AsyncLogHandler(delegate, 10000);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            String prefix = "t" + t + "r";
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    handler.publish(new LogRecord(Level.INFO, prefix + i));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        handler.flush();
+
+        assertEquals(4 * 2000, delegate.messages.size());
+        for (int t = 0; t < 4; t++) {
+            String prefix = "t" + t + "r";
+            List<String> ofThread = new ArrayList<>();
+            for (String message : delegate.messages) {
+                if (message.startsWith(prefix)) {
+                    ofThread.add(message);
+                }
+            }
+            assertEquals(messages(prefix, 0, 2000), ofThread);
+        }
+        handler.close();
+    }
+
+    /**
+     * With the buffer full, the less important records are dropped (and their count reported), while the warnings wait for space
+     */
+    @TestAnnotations.Fast
+    public void reportsDropped() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Collecting delegate = new Collecting(release, 0);
+        AsyncLogHandler handler = new AsyncLogHandler(delegate, 2);
+
+        handler.publish(new LogRecord(Level.INFO, "r0"));
+        assertTrue(delegate.started.await(10, TimeUnit.SECONDS));   // the writer is stuck with r0 now, the buffer is empty
+        for (int i = 1; i <= 10; i++) {
+            handler.publish(new LogRecord(Level.INFO, "r" + i));
+        }
+        Thread warning = new Thread(() -> handler.publish(new LogRecord(Level.WARNING, "warning")));
+        warning.start();
+        warning.join(200);
+        assertTrue(warning.isAlive());  // waiting for space in the buffer
+
+        release.countDown();
+        warning.join(10000);
+        handler.flush();
+
+        assertEquals(messages("r", 0, 1), delegate.messages.subList(0, 1));
+        assertEquals("8 log records dropped (the logging buffer was full).", delegate.messages.get(1));
+        assertEquals(messages("r", 1, 3), delegate.messages.subList(2, 4));
+        assertEquals("warning", delegate.messages.get(4));
+        assertEquals(5, delegate.messages.size());
+        handler.close();
+    }
+
+    /**
+     * The flush returns only after all the records published before are written out (and the delegate flushed)
+     */
+    @TestAnnotations.Fast
+    public void flushDrains() {
+        Collecting delegate = new Collecting(null, 1);
+        AsyncLogHandler handler = new AsyncLogHandler(delegate, 1000);
+
+        for (int i = 0; i < 300; i++) {
+            handler.publish(new LogRecord(Level.INFO, "r" + i));
+        }
+        int flushes = delegate.flushes.get();
+        handler.flush();
+        assertEquals(messages("r", 0, 300), delegate.messages);
+        assertTrue(delegate.flushes.get() > flushes);
+        handler.close();
+    }
+}
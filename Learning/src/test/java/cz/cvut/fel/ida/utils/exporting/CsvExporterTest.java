@@ -0,0 +1,70 @@
+package cz.cvut.fel.ida.utils.exporting;
+
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvExporterTest {
+
+    static class Row {
+        long timestamp;
+        String name;
+        double value;
+        Double missing;
+    }
+
+    static class Table implements CsvExportable {
+        final List<Object[]> rows = new ArrayList<>();
+
+        @Override
+        public String[] csvHeader() {
+            return new String[]{"timestamp", "name", "value", "missing"};
+        }
+
+        @Override
+        public List<Object[]> csvRows() {
+            return rows;
+        }
+    }
+
+    @TestAnnotations.Fast
+    public void testRoundTrip() throws Exception {
+        Path dir = Files.createTempDirectory("csv");
+        try {
+            Table first = new Table();
+            first.rows.add(new Object[]{1L, "plain", 0.5, null});
+            first.rows.add(new Object[]{2L, "with, comma and \"quotes\"", -3.25, null});
+            Table second = new Table();
+            second.rows.add(new Object[]{3L, "multi\nline", 1e-7, null});
+
+            CsvExporter exporter = new CsvExporter(dir.toString(), "table");
+            exporter.export(first);
+            exporter.export(second);
+            exporter.finish();
+
+            List<Row> rows = exporter.importListFrom(Paths.get(dir.toString(), "table.csv"), Row.class);
+            assertEquals(3, rows.size());
+            assertEquals(Arrays.asList("plain", "with, comma and \"quotes\"", "multi\nline"), Arrays.asList(rows.get(0).name, rows.get(1).name, rows.get(2).name));
+            assertEquals(2L, rows.get(1).timestamp);
+            assertEquals(-3.25, rows.get(1).value);
+            assertEquals(1e-7, rows.get(2).value);
+            assertNull(rows.get(0).missing);
+            assertEquals("plain", exporter.importObjectFrom(Paths.get(dir.toString(), "table.csv"), Row.class).name);
+        } finally {
+            Files.walk(dir).sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @TestAnnotations.Fast
+    public void testParse() {
+        List<List<String>> rows = CsvExporter.parse("a,b\r\n\"x\"\"y\",\n\n1,\"2,3\"");
+        assertEquals(Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("x\"y", ""), Arrays.asList("1", "2,3")), rows);
+    }
+}
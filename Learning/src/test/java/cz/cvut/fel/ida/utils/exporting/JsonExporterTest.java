@@ -0,0 +1,96 @@
+package cz.cvut.fel.ida.utils.exporting;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonExporterTest {
+
+    static class Fold implements Exportable {
+        int fold;
+        String name;
+        double[] values;
+
+        Fold(int fold, String name, double... values) {
+            this.fold = fold;
+            this.name = name;
+            this.values = values;
+        }
+    }
+
+    /**
+     * The repeated exports into the same file (e.g. of the crossvalidation folds, each by a new exporter) must form a single
+     * valid JSON array, the same as the one formed by rewriting the whole file each time (as it used to be done)
+     */
+    @TestAnnotations.Fast
+    public void appendedExportsFormArray() throws Exception {
+        Path dir = Files.createTempDirectory("json");
+        try {
+            List<Fold> folds = Arrays.asList(new Fold(0, "first", 0.5, 1), new Fold(1, "with ] and [", -2), new Fold(2, "last"));
+            File reference = Paths.get(dir.toString(), "reference.json").toFile();
+            for (Fold fold : folds) {
+                JsonExporter exporter = new JsonExporter(dir.toString(), "folds");
+                exporter.export(fold);
+                exporter.finish();
+                rewritingExport(reference, fold.exportToJson());
+            }
+            Path file = Paths.get(dir.toString(), "folds.json");
+
+            JsonElement exported = JsonParser.parseString(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            assertTrue(exported.isJsonArray());
+            JsonArray array = exported.getAsJsonArray();
+            assertEquals(folds.size(), array.size());
+            for (int i = 0; i < folds.size(); i++) {
+                assertEquals(JsonParser.parseString(folds.get(i).exportToJson()), array.get(i));
+            }
+            assertEquals(JsonParser.parseString(new String(Files.readAllBytes(reference.toPath()), StandardCharsets.UTF_8)), exported);
+
+            List<Fold> imported = new JsonExporter().importListFrom(file, Fold.class);
+            assertEquals(folds.size(), imported.size());
+            assertEquals("with ] and [", imported.get(1).name);
+            assertArrayEquals(new double[]{0.5, 1}, imported.get(0).values);
+        } finally {
+            Files.walk(dir).sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * The previous (whole file rewriting) way of the repeated exports, for the reference
+     */
+    private static void rewritingExport(File file, String json) throws Exception {
+        List<String> strings = file.exists() ? Files.readAllLines(file.toPath()) : new ArrayList<>();
+        boolean repeated = !strings.isEmpty();
+        if (repeated) {
+            if (strings.get(0).contains("[")) {
+                strings.set(strings.size() - 2, ",\n");
+            } else {
+                strings.add(0, "[\n");
+                strings.add(",\n");
+            }
+        }
+        try (PrintWriter out = new PrintWriter(new FileWriter(file, false))) {
+            for (String string : strings) {
+                out.println(string);
+            }
+            out.println(json);
+            out.println();
+            if (repeated) {
+                out.println("]\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package cz.cvut.fel.ida.utils.exporting;
+
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NdjsonExporterTest {
+
+    static class Record implements Exportable {
+        int index;
+        String name;
+        double[] values;
+
+        Record(int index, String name, double... values) {
+            this.index = index;
+            this.name = name;
+            this.values = values;
+        }
+    }
+
+    /**
+     * The gzipped exports of two runs appended to the same file (two gzip members) must be imported back as a whole
+     */
+    @TestAnnotations.Fast
+    public void gzipRoundTrip() throws Exception {
+        Path dir = Files.createTempDirectory("ndjson");
+        try {
+            for (int run = 0; run < 2; run++) {
+                Exporter exporter = Exporter.getExporter(dir.toString(), "records", "NDJSON_GZIP");
+                assertTrue(exporter instanceof NdjsonExporter);
+                for (int i = 0; i < 3; i++) {
+                    exporter.export(new Record(3 * run + i, "line\nbreak " + i, i, -0.5 * i));
+                }
+                exporter.finish();
+            }
+            Path file = Paths.get(dir.toString(), "records.ndjson.gz");
+            try (InputStream in = Files.newInputStream(file)) {
+                assertEquals(GZIPInputStream.GZIP_MAGIC, (in.read() & 0xff) | (in.read() << 8));
+            }
+
+            List<Record> records = Exporter.getExporter(dir.toString(), "", "NDJSON_GZIP").importListFrom(file, Record.class);
+            assertEquals(6, records.size());
+            for (int i = 0; i < records.size(); i++) {
+                assertEquals(i, records.get(i).index);
+                assertEquals("line\nbreak " + i % 3, records.get(i).name);
+                assertArrayEquals(new double[]{i % 3, -0.5 * (i % 3)}, records.get(i).values);
+            }
+            assertEquals(0, new NdjsonExporter(dir.toString(), "", true).importObjectFrom(file, Record.class).index);
+        } finally {
+            Files.walk(dir).sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+}
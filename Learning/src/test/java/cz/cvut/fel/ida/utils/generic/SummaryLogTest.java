@@ -0,0 +1,50 @@
+package cz.cvut.fel.ida.utils.generic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SummaryLogTest {
+
+    /**
+     * No summary within the first interval of the stage, then a single one at its end
+     */
+    @TestAnnotations.Fast
+    public void summaryAtFinish() {
+        Logger log = Logger.getLogger(SummaryLogTest.class.getName());
+        log.setUseParentHandlers(false);
+        List<String> logged = new ArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                logged.add(record.getMessage());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        log.addHandler(handler);
+        try {
+            SummaryLog summaryLog = new SummaryLog(log, Level.INFO, "Stage", "neurons");
+            summaryLog.record(10);
+            summaryLog.record(20);
+            assertEquals(0, logged.size());
+
+            summaryLog.finish();
+            assertEquals(1, logged.size());
+            assertEquals(summaryLog.summary(), logged.get(0));
+        } finally {
+            log.removeHandler(handler);
+        }
+    }
+}
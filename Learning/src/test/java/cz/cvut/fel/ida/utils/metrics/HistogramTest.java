@@ -0,0 +1,71 @@
+package cz.cvut.fel.ida.utils.metrics;
+
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HistogramTest {
+
+    /**
+     * The percentiles from the buckets must be within their relative error from the exact ones, over a wide (log-normal) range of values
+     */
+    @TestAnnotations.Fast
+    public void testPercentiles() {
+        boolean enabled = Metrics.enabled;
+        Metrics.enabled = true;
+        try {
+            Random random = new Random(0);
+            Histogram histogram = new Histogram("test");
+            long[] values = new long[100000];
+            long sum = 0;
+            for (int i = 0; i < values.length; i++) {
+                values[i] = (long) Math.exp(10 + 2 * random.nextGaussian());
+                histogram.record(values[i]);
+                sum += values[i];
+            }
+            Arrays.sort(values);
+
+            Histogram.Snapshot snapshot = histogram.snapshot();
+            assertEquals(values.length, snapshot.count);
+            assertEquals(sum / 1e6, snapshot.totalMs, 1e-9);
+            assertEquals(values[values.length - 1] / 1e6, snapshot.maxMs, 1e-9);
+            assertPercentile(values, 0.5, snapshot.p50Ms);
+            assertPercentile(values, 0.9, snapshot.p90Ms);
+            assertPercentile(values, 0.99, snapshot.p99Ms);
+        } finally {
+            Metrics.enabled = enabled;
+        }
+    }
+
+    @TestAnnotations.Fast
+    public void testSmallValues() {
+        boolean enabled = Metrics.enabled;
+        Metrics.enabled = true;
+        try {
+            Histogram histogram = new Histogram("test");
+            long[] values = new long[10];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = i + 1;
+                histogram.record(values[i]);
+            }
+            Histogram.Snapshot snapshot = histogram.snapshot();
+            assertPercentile(values, 0.5, snapshot.p50Ms);
+            assertPercentile(values, 0.9, snapshot.p90Ms);
+            assertEquals(10 / 1e6, snapshot.p99Ms, 1e-12);     // capped by the max
+        } finally {
+            Metrics.enabled = enabled;
+        }
+    }
+
+    /**
+     * @param sorted - the recorded values in nanoseconds
+     */
+    private static void assertPercentile(long[] sorted, double quantile, double actualMs) {
+        long exact = sorted[(int) Math.ceil(quantile * sorted.length) - 1];
+        double tolerance = exact / (double) Histogram.SUB_BUCKETS + 1;
+        assertEquals(exact, actualMs * 1e6, tolerance, "percentile " + quantile);
+    }
+}
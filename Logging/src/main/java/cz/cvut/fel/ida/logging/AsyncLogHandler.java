@@ -0,0 +1,166 @@
+package cz.cvut.fel.ida.logging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Decouples the logging threads from the (slow, flushing) output of the delegate handler.
+ * <p>
+ * The records are only put into a bounded ring buffer by the logging threads, and written out in batches by a single
+ * background thread, with one flush per batch instead of per record. If the buffer is full, the records below
+ * {@link Level#WARNING} are dropped (and their count reported) rather than blocking, e.g., the training threads,
+ * while the warnings and errors wait for space so that these are never lost.
+ * <p>
+ * The remaining records are written out at {@link #flush()}, {@link #close()}, or at the exit.
+ */
+public class AsyncLogHandler extends Handler {
+    private static final Logger LOG = Logger.getLogger(AsyncLogHandler.class.getName());
+
+    /**
+     * Max number of records written out between two flushes
+     */
+    private static final int BATCH = 256;
+
+    private static final Set<AsyncLogHandler> open = Collections.synchronizedSet(new HashSet<>());
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (AsyncLogHandler handler : new ArrayList<>(open)) {
+                handler.flush();
+            }
+        }, "async-log-flush"));
+    }
+
+    public final Handler delegate;
+
+    private final ArrayBlockingQueue<LogRecord> buffer;
+
+    private final Thread writer;
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final Object progress = new Object();
+    private long enqueued;
+    private long written;
+
+    private volatile boolean closed;
+
+    public AsyncLogHandler(Handler delegate, int bufferSize) {
+        this.delegate = delegate;
+        this.buffer = new ArrayBlockingQueue<>(Math.max(1, bufferSize));
+        setLevel(delegate.getLevel());
+        if (delegate.getFormatter() != null) {
+            setFormatter(delegate.getFormatter());
+        }
+        writer = new Thread(this::writeLoop, "async-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        open.add(this);
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        record.getSourceClassName();    // the caller must be inferred here, from the stack of the logging thread
+        synchronized (progress) {
+            enqueued++;
+        }
+        if (buffer.offer(record)) {
+            return;
+        }
+        if (record.getLevel().intValue() >= Level.WARNING.intValue()) {
+            try {
+                buffer.put(record);
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        dropped.increment();
+        markWritten(1);
+    }
+
+    private void writeLoop() {
+        List<LogRecord> batch = new ArrayList<>(BATCH);
+        while (true) {
+            try {
+                batch.add(buffer.take());
+            } catch (InterruptedException e) {
+                if (closed) {
+                    return;
+                }
+                continue;
+            }
+            buffer.drainTo(batch, BATCH - 1);
+            long lost = dropped.sumThenReset();
+            if (lost > 0) {
+                delegate.publish(new LogRecord(Level.WARNING, lost + " log records dropped (the logging buffer was full)."));
+            }
+            for (LogRecord record : batch) {
+                try {
+                    delegate.publish(record);
+                } catch (RuntimeException e) {
+                    reportError(null, e, 0);
+                }
+            }
+            delegate.flush();
+            markWritten(batch.size());
+            batch.clear();
+        }
+    }
+
+    private void markWritten(int count) {
+        synchronized (progress) {
+            written += count;
+            progress.notifyAll();
+        }
+    }
+
+    /**
+     * Wait (boundedly) until all the records published so far are written out
+     */
+    @Override
+    public void flush() {
+        if (Thread.currentThread() == writer) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        synchronized (progress) {
+            long target = enqueued;
+            while (written < target && writer.isAlive()) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    break;
+                }
+                try {
+                    progress.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        delegate.flush();
+    }
+
+    @Override
+    public void close() throws SecurityException {
+        flush();
+        closed = true;
+        open.remove(this);
+        writer.interrupt();
+        delegate.close();
+    }
+}
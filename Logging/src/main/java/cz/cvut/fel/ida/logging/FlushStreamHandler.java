@@ -7,19 +7,28 @@ import java.util.logging.Logger;
 import java.util.logging.StreamHandler;
 
 /**
- * We want immediate flushing into the output console
+ * We want immediate flushing into the output console (unless it is flushed in batches by an {@link AsyncLogHandler})
  */
 public class FlushStreamHandler extends StreamHandler {
     private static final Logger LOG = Logger.getLogger(FlushStreamHandler.class.getName());
 
+    private final boolean immediateFlush;
+
     public FlushStreamHandler(OutputStream out, Formatter f) {
+        this(out, f, true);
+    }
+
+    public FlushStreamHandler(OutputStream out, Formatter f, boolean immediateFlush) {
         super(out, f);
+        this.immediateFlush = immediateFlush;
     }
 
     @Override
     public synchronized void publish(LogRecord record) {
         super.publish(record);
-        flush();
+        if (immediateFlush) {
+            flush();
+        }
     }
 
     @Override
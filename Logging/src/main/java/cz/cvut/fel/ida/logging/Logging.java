@@ -65,20 +65,27 @@ public class Logging {
         Logger rootLogger = Logger.getLogger("");
 
         // remove the default logging output to the console - it outputs everything to standard error output - not nice
-        Handler[] handlers = rootLogger.getHandlers();
-        Handler defaultConsoleHandler = handlers[0];
-        if (defaultConsoleHandler instanceof ConsoleHandler || defaultConsoleHandler instanceof FlushStreamHandler) {
-            rootLogger.removeHandler(defaultConsoleHandler);
-            if (!Settings.supressConsoleOutput) {
-                if (colors) {
-                    consoleFormatter = new ColoredFormatter();
-                } else {
-                    consoleFormatter = new NormalFormatter();
+        // (or our previous console output, which is not the first handler anymore after the log file has been set up)
+        boolean consoleRemoved = false;
+        for (Handler handler : rootLogger.getHandlers()) {
+            if (handler instanceof ConsoleHandler || handler instanceof FlushStreamHandler
+                    || handler instanceof AsyncLogHandler && ((AsyncLogHandler) handler).delegate instanceof FlushStreamHandler) {
+                rootLogger.removeHandler(handler);
+                if (handler instanceof AsyncLogHandler) {
+                    handler.close();
                 }
-                StreamHandler sh = new FlushStreamHandler(System.out, consoleFormatter);
-                sh.setLevel(loggingLevel);
-                rootLogger.addHandler(sh);
+                consoleRemoved = true;
+            }
+        }
+        if (consoleRemoved && !Settings.supressConsoleOutput) {
+            if (colors) {
+                consoleFormatter = new ColoredFormatter();
+            } else {
+                consoleFormatter = new NormalFormatter();
             }
+            StreamHandler sh = new FlushStreamHandler(System.out, consoleFormatter, !Settings.asyncLogging);
+            sh.setLevel(loggingLevel);
+            rootLogger.addHandler(wrap(sh));
         }
 
         rootLogger.setLevel(loggingLevel);
@@ -98,8 +105,15 @@ public class Logging {
 //            new File(file).createNewFile();
             loggingFile = new FileHandler(file);
             loggingFile.setFormatter(fileFormatter);
-            rootLogger.addHandler(loggingFile);
+            rootLogger.addHandler(wrap(loggingFile));
+        }
+    }
+
+    private static Handler wrap(Handler handler) {
+        if (Settings.asyncLogging) {
+            return new AsyncLogHandler(handler, Settings.loggingBufferSize);
         }
+        return handler;
     }
 
     public void finish() {
@@ -107,7 +121,7 @@ public class Logging {
         rootLogger.getResourceBundleName();
         Handler[] handlers = rootLogger.getHandlers();
         for (Handler handler : handlers) {
-            if (handler instanceof FileHandler) {
+            if (handler instanceof FileHandler || handler instanceof AsyncLogHandler && ((AsyncLogHandler) handler).delegate instanceof FileHandler) {
                 rootLogger.removeHandler(handler);  //remove and close all the associated log files
                 handler.close();
             }
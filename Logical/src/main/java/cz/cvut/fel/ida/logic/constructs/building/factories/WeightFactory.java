@@ -84,7 +84,8 @@ public class WeightFactory implements Exportable {
         if (value == null) {
             return null;
         }
-        Weight result = new Weight(index.get(), genericName + index.getAndIncrement(), value, fixed, isInitialized);
+        int i = index.getAndIncrement();    // a single atomic step, this may be called concurrently (e.g. from parallel neuralization)
+        Weight result = new Weight(i, genericName + i, value, fixed, isInitialized);
         //str2weight.put(genericName, result);
         //weight2weight.put(result, result);
 
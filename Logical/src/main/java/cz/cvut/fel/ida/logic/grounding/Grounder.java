@@ -40,7 +40,7 @@ public abstract class Grounder implements Exportable {
     public Grounder(Settings settings, WeightFactory weightFactory) {
         this.settings = settings;
         this.weightFactory = weightFactory;
-        this.timing = new Timing();
+        this.timing = new Timing("grounding");
     }
 
     //todo should also decide based on template sturcture?
@@ -74,11 +74,12 @@ public class BottomUp extends Grounder {
         LOG.fine("Infering Herbrand model...");
         Collection<Literal> literals = herbrandModel.inferLiterals(ruleMap.keySet(), facts);
         Map<Literal, Literal> allLiterals = literals.stream().collect(Collectors.toMap(l -> l, l -> l));
-        LOG.fine("...HerbrandModel inferred with " + allLiterals.size() + " facts");
+        LOG.fine(() -> "...HerbrandModel inferred with " + allLiterals.size() + " facts");
         herbrandCumSize += allLiterals.size();
 
-        LOG.fine("Grounding of " + ruleMap.size() + " rules...");
-        totalRules += ruleMap.size();
+        int ruleCount = ruleMap.size();
+        LOG.fine(() -> "Grounding of " + ruleCount + " rules...");
+        totalRules += ruleCount;
         for (Map.Entry<HornClause, List<WeightedRule>> ruleEntry : ruleMap.entrySet()) {
 
             Map<Literal, ValuedFact> embeddings = checkIfEmbedding(ruleEntry, herbrandModel);  //if the rule is merely an embedding
@@ -119,7 +120,7 @@ public class BottomUp extends Grounder {
                 }
             }
         }
-        LOG.fine(groundRules.size() + " ground rules created.");
+        LOG.fine(() -> groundRules.size() + " ground rules created.");
         totalGroundRules += groundRules.size();
         GroundTemplate groundTemplate = new GroundTemplate(groundRules, groundFacts);
         herbrandModel.clear();
@@ -0,0 +1,222 @@
+package cz.cvut.fel.ida.neural.networks.computation.iteration;
+
+import cz.cvut.fel.ida.algebra.functions.ActivationFcn;
+import cz.cvut.fel.ida.algebra.values.Value;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.neurons.Profiling;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.states.neurons.Backproper;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.states.State;
+import cz.cvut.fel.ida.setup.Settings;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Aggregated time (and optionally allocations) spent in the forward and backward visits of the individual neurons,
+ * keyed by the class of the neuron, its functions (Combination/Aggregation and Transformation) and the shape of its Value.
+ * <p>
+ * Filled by the {@link Profiling} decorators of the neuron visitors (and {@link Backproper.Profiled}) if
+ * {@link Settings#profileNeurons}, which are not created at all otherwise, so that the profiling costs nothing when off.
+ * The profile is shared by all the threads (as are the {@link cz.cvut.fel.ida.utils.metrics.Metrics}) and reported
+ * (ranked) at the end of training.
+ */
+public class NeuronProfile {
+    private static final Logger LOG = Logger.getLogger(NeuronProfile.class.getName());
+
+    public enum Phase {
+        FORWARD, BACKWARD
+    }
+
+    private static final Map<Key, Stats> profile = new ConcurrentHashMap<>();
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private static volatile boolean allocations;
+
+    /**
+     * Number of the (most expensive) entries listed in each section of the report
+     */
+    private static final int REPORTED = 15;
+
+    /**
+     * Start a new profile, with the allocations measured as well if required (and supported by the JVM)
+     *
+     * @param settings
+     */
+    public static void reset(Settings settings) {
+        profile.clear();
+        allocations = settings.profileAllocations && THREADS instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemorySupported();
+        if (allocations) {
+            ((com.sun.management.ThreadMXBean) THREADS).setThreadAllocatedMemoryEnabled(true);
+        } else if (settings.profileAllocations) {
+            LOG.warning("Measuring of the allocated memory per thread is not supported by this JVM, profiling the time only.");
+        }
+    }
+
+    /**
+     * @return bytes allocated by the current thread so far, or 0 if the allocations are not profiled
+     */
+    public static long allocatedBytes() {
+        if (!allocations) {
+            return 0;
+        }
+        return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * @param neuronClass - null if not known (e.g. when profiling just the State visits)
+     * @param state       - the computation state of the visited neuron, after the visit
+     */
+    public static void record(Phase phase, Class<?> neuronClass, State.Neural.Computation state, long nanos, long bytes) {
+        Key key = new Key(neuronClass, state.getCombination(), state.getTransformation(), state.getValue());
+        Stats stats = profile.computeIfAbsent(key, k -> new Stats());
+        stats.count[phase.ordinal()].increment();
+        stats.nanos[phase.ordinal()].add(nanos);
+        if (bytes > 0) {
+            stats.bytes.add(bytes);
+        }
+    }
+
+    public static boolean isEmpty() {
+        return profile.isEmpty();
+    }
+
+    /**
+     * The ranked summaries of the profile by the neuron class, function and Value shape, and of their most expensive combinations
+     */
+    public static String report() {
+        Map<Key, Stats> snapshot = new LinkedHashMap<>(profile);
+        long totalNanos = 0;
+        for (Stats stats : snapshot.values()) {
+            totalNanos += stats.totalNanos();
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Neuron profile (%.1f ms in total):%n", totalNanos / 1e6));
+        section(sb, "neuron class", rollUp(snapshot, Key::neuronName), totalNanos);
+        section(sb, "function", rollUp(snapshot, Key::functionName), totalNanos);
+        section(sb, "value shape", rollUp(snapshot, Key::shapeName), totalNanos);
+        section(sb, "neuron class | function | value shape", rollUp(snapshot, Key::toString), totalNanos);
+        return sb.toString();
+    }
+
+    private static Map<String, Stats> rollUp(Map<Key, Stats> snapshot, Function<Key, String> by) {
+        Map<String, Stats> rolled = new LinkedHashMap<>();
+        for (Map.Entry<Key, Stats> entry : snapshot.entrySet()) {
+            rolled.computeIfAbsent(by.apply(entry.getKey()), k -> new Stats()).add(entry.getValue());
+        }
+        return rolled;
+    }
+
+    private static void section(StringBuilder sb, String title, Map<String, Stats> rolled, long totalNanos) {
+        List<Map.Entry<String, Stats>> ranked = new ArrayList<>(rolled.entrySet());
+        ranked.sort(Comparator.comparingLong((Map.Entry<String, Stats> e) -> e.getValue().totalNanos()).reversed());
+        sb.append(String.format("  by %s:%n", title));
+        sb.append(String.format("    %6s %10s %10s %10s %12s %12s %10s  %s%n", "share", "total[ms]", "fwd[ms]", "bwd[ms]", "fwd visits", "bwd visits", "alloc[MB]", "key"));
+        for (int i = 0; i < Math.min(REPORTED, ranked.size()); i++) {
+            Stats stats = ranked.get(i).getValue();
+            sb.append(String.format("    %5.1f%% %10.1f %10.1f %10.1f %12d %12d %10.1f  %s%n",
+                    totalNanos == 0 ? 0 : 100.0 * stats.totalNanos() / totalNanos,
+                    stats.totalNanos() / 1e6,
+                    stats.nanos[Phase.FORWARD.ordinal()].sum() / 1e6,
+                    stats.nanos[Phase.BACKWARD.ordinal()].sum() / 1e6,
+                    stats.count[Phase.FORWARD.ordinal()].sum(),
+                    stats.count[Phase.BACKWARD.ordinal()].sum(),
+                    stats.bytes.sum() / 1e6,
+                    ranked.get(i).getKey()));
+        }
+        if (ranked.size() > REPORTED) {
+            sb.append(String.format("    ... (%d more)%n", ranked.size() - REPORTED));
+        }
+    }
+
+    private static class Stats {
+        final LongAdder[] count = {new LongAdder(), new LongAdder()};
+        final LongAdder[] nanos = {new LongAdder(), new LongAdder()};
+        final LongAdder bytes = new LongAdder();
+
+        long totalNanos() {
+            return nanos[0].sum() + nanos[1].sum();
+        }
+
+        void add(Stats other) {
+            for (int i = 0; i < 2; i++) {
+                count[i].add(other.count[i].sum());
+                nanos[i].add(other.nanos[i].sum());
+            }
+            bytes.add(other.bytes.sum());
+        }
+    }
+
+    /**
+     * The functions are (mostly) singletons and the shape is kept as a raw array, so that creating the key is cheap
+     */
+    private static class Key {
+        final Class<?> neuronClass;
+        final ActivationFcn combination;
+        final ActivationFcn transformation;
+        final Class<?> valueClass;
+        final int[] shape;
+        final int hash;
+
+        Key(Class<?> neuronClass, ActivationFcn combination, ActivationFcn transformation, Value value) {
+            this.neuronClass = neuronClass;
+            this.combination = combination;
+            this.transformation = transformation;
+            this.valueClass = value == null ? null : value.getClass();
+            this.shape = value == null ? null : value.size();
+            int h = neuronClass == null ? 0 : neuronClass.hashCode();
+            h = 31 * h + (combination == null ? 0 : combination.getClass().hashCode());
+            h = 31 * h + (transformation == null ? 0 : transformation.getClass().hashCode());
+            h = 31 * h + (valueClass == null ? 0 : valueClass.hashCode());
+            this.hash = 31 * h + Arrays.hashCode(shape);
+        }
+
+        String neuronName() {
+            return neuronClass == null ? "(any)" : neuronClass.getSimpleName();
+        }
+
+        String functionName() {
+            String c = combination == null ? "-" : combination.getName();
+            String t = transformation == null ? "-" : transformation.getName();
+            return c + "/" + t;
+        }
+
+        String shapeName() {
+            return valueClass == null ? "-" : valueClass.getSimpleName() + Arrays.toString(shape);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return neuronClass == other.neuronClass && sameFunction(combination, other.combination) && sameFunction(transformation, other.transformation)
+                    && valueClass == other.valueClass && Arrays.equals(shape, other.shape);
+        }
+
+        private static boolean sameFunction(ActivationFcn a, ActivationFcn b) {
+            return a == b || (a != null && b != null && a.getClass() == b.getClass());
+        }
+
+        @Override
+        public String toString() {
+            return neuronName() + " | " + functionName() + " | " + shapeName();
+        }
+    }
+}
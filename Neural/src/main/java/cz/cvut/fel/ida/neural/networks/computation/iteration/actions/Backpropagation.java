@@ -1,14 +1,18 @@
 package cz.cvut.fel.ida.neural.networks.computation.iteration.actions;
 
+import cz.cvut.fel.ida.algebra.values.ScalarValue;
 import cz.cvut.fel.ida.algebra.values.Value;
 import cz.cvut.fel.ida.learning.results.Result;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.NeuronProfile;
 import cz.cvut.fel.ida.neural.networks.computation.iteration.TopDown;
 import cz.cvut.fel.ida.neural.networks.computation.iteration.modes.BFS;
 import cz.cvut.fel.ida.neural.networks.computation.iteration.modes.DFSrecursion;
 import cz.cvut.fel.ida.neural.networks.computation.iteration.modes.DFSstack;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.modes.ParallelTopologic;
 import cz.cvut.fel.ida.neural.networks.computation.iteration.modes.Topologic;
 import cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.neurons.Down;
 import cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.neurons.NeuronVisitor;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.neurons.Profiling;
 import cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.states.neurons.Backproper;
 import cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.weights.WeightUpdater;
 import cz.cvut.fel.ida.neural.networks.computation.training.NeuralModel;
@@ -19,11 +23,17 @@ import cz.cvut.fel.ida.neural.networks.structure.components.neurons.states.State
 import cz.cvut.fel.ida.neural.networks.structure.components.neurons.types.AtomNeurons;
 import cz.cvut.fel.ida.neural.networks.structure.components.types.TopologicNetwork;
 import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.metrics.Histogram;
+import cz.cvut.fel.ida.utils.metrics.Metrics;
 
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Logger;
 
 public class Backpropagation {
     private static final Logger LOG = Logger.getLogger(Backpropagation.class.getName());
+
+    private static final Histogram BACKWARD = Metrics.histogram("evaluation.backward");
     private final Settings settings;
 
     public WeightUpdater weightUpdater;
@@ -33,10 +43,18 @@ public class Backpropagation {
      */
     public Backproper backproper;
 
+    private final int maxWeightIndex;
+
+    /**
+     * Weight updaters of the individual threads for the (intra-network) parallel backpropagation
+     */
+    private final Queue<WeightUpdater> threadUpdaters = new ConcurrentLinkedQueue<>();
+
     public Backpropagation(Settings settings, NeuralModel model, int index) {
         this.settings = settings;
         this.backproper = Backproper.getFrom(settings, index);
         this.weightUpdater = new WeightUpdater(model.learnableWeights, model.maxWeightIndex);
+        this.maxWeightIndex = model.maxWeightIndex;
     }
 
     public Backpropagation(Settings settings, NeuralModel neuralModel) {
@@ -52,6 +70,8 @@ public class Backpropagation {
      * <p>
      * - todo check with inputMapping for topologic network
      * Also input masking cannot work with topologic ordering.
+     * <p>
+     * With {@link Settings#profileNeurons}, the intra-network parallelism is not used, so that the times of the neurons do not overlap.
      *
      * @param network
      * @param outputNeuron
@@ -60,8 +80,14 @@ public class Backpropagation {
     public TopDown getTopDownPropagator(NeuralNetwork<State.Neural.Structure> network, Neurons outputNeuron) {
 //        return new DFSrecursion().new TDownVisitor(network, outputNeuron, backproper, weightUpdater);
 
-        if (network instanceof TopologicNetwork && (!network.containsInputMasking || settings.iterationMode == Settings.IterationMode.TOPOLOGIC)) {
+        if (network instanceof TopologicNetwork && (!network.containsInputMasking || settings.iterationMode == Settings.IterationMode.TOPOLOGIC) && settings.intraNetworkThreads > 1 && !settings.profileNeurons) {
+            ParallelTopologic parallelTopologic = new ParallelTopologic((TopologicNetwork<State.Neural.Structure>) network, ParallelTopologic.getPool(settings.intraNetworkThreads));
+            return parallelTopologic.new TDownVisitor(outputNeuron, backproper, weightUpdater, maxWeightIndex, threadUpdaters);
+        } else if (network instanceof TopologicNetwork && (!network.containsInputMasking || settings.iterationMode == Settings.IterationMode.TOPOLOGIC)) {
             NeuronVisitor.Weighted down = new Down(network, backproper, weightUpdater);
+            if (settings.profileNeurons) {
+                down = new Profiling(down, NeuronProfile.Phase.BACKWARD);
+            }
             return new Topologic((TopologicNetwork<State.Neural.Structure>) network).new TDownVisitor(outputNeuron, down);
         } else if (settings.iterationMode == Settings.IterationMode.DFS_RECURSIVE) {
             return new DFSrecursion().new TDownVisitor(network, outputNeuron, backproper, weightUpdater);
@@ -73,10 +99,15 @@ public class Backpropagation {
     }
 
     public WeightUpdater backpropagate(NeuralSample neuralSample, Result evaluatedResult) {
-        return this.backpropagate(neuralSample, evaluatedResult.errorGradient());
+        Value errorGradient = evaluatedResult.errorGradient();
+        if (neuralSample.gradientScale != 1) {
+            errorGradient = errorGradient.times(new ScalarValue(neuralSample.gradientScale));
+        }
+        return this.backpropagate(neuralSample, errorGradient);
     }
 
     public WeightUpdater backpropagate(NeuralSample neuralSample, Value errorGradient) {
+        long start = Metrics.start();
         NeuralNetwork<State.Neural.Structure> neuralNetwork = neuralSample.query.evidence;
         AtomNeurons<State.Neural> outputNeuron = neuralSample.query.neuron;
 
@@ -87,6 +118,7 @@ public class Backpropagation {
 
         TopDown topDownPropagator = getTopDownPropagator(neuralNetwork, outputNeuron);
         topDownPropagator.topdown();
+        BACKWARD.recordSince(start);
         return weightUpdater;   //as a side effect of the iteration the weightUpdater will get filled (functional way only makes sense in bottom-up evaluation, this is stateful)
     }
 
@@ -3,12 +3,19 @@ package cz.cvut.fel.ida.neural.networks.computation.iteration.actions;
 import cz.cvut.fel.ida.algebra.values.Value;
 import cz.cvut.fel.ida.learning.results.Result;
 import cz.cvut.fel.ida.neural.networks.computation.iteration.BottomUp;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.NeuronProfile;
 import cz.cvut.fel.ida.neural.networks.computation.iteration.modes.DFSrecursion;
 import cz.cvut.fel.ida.neural.networks.computation.iteration.modes.DFSstack;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.modes.ParallelTopologic;
 import cz.cvut.fel.ida.neural.networks.computation.iteration.modes.Topologic;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.neurons.CachedUp;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.neurons.NeuronVisitor;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.neurons.Profiling;
 import cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.neurons.Up;
 import cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.states.neurons.Evaluator;
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralModel;
 import cz.cvut.fel.ida.neural.networks.computation.training.NeuralSample;
+import cz.cvut.fel.ida.neural.networks.computation.training.SharedValueCache;
 import cz.cvut.fel.ida.neural.networks.structure.components.NeuralNetwork;
 import cz.cvut.fel.ida.neural.networks.structure.components.neurons.Neurons;
 import cz.cvut.fel.ida.neural.networks.structure.components.neurons.QueryNeuron;
@@ -16,11 +23,15 @@ import cz.cvut.fel.ida.neural.networks.structure.components.neurons.types.AtomNe
 import cz.cvut.fel.ida.neural.networks.structure.components.types.TopologicNetwork;
 import cz.cvut.fel.ida.neural.networks.structure.components.neurons.states.State;
 import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.metrics.Histogram;
+import cz.cvut.fel.ida.utils.metrics.Metrics;
 
 import java.util.logging.Logger;
 
 public class Evaluation {
     private static final Logger LOG = Logger.getLogger(Evaluation.class.getName());
+
+    private static final Histogram FORWARD = Metrics.histogram("evaluation.forward");
     Settings settings;
 
     /**
@@ -30,6 +41,11 @@ public class Evaluation {
 
     Result.Factory resultFactory;
 
+    /**
+     * Values of shared neurons memoized across the evaluated networks (if enabled)
+     */
+    SharedValueCache sharedValues;
+
     public Evaluation(Settings settings) {
         this(settings, -1);
     }
@@ -40,6 +56,18 @@ public class Evaluation {
         this.resultFactory = new Result.Factory(settings);
     }
 
+    /**
+     * Start reusing the values of shared neurons across all the subsequently evaluated networks, i.e. evaluate each shared subnetwork only once.
+     * The cache needs to follow the updates of the weights, i.e. be the one of the evaluated model ({@link NeuralModel#getSharedValueCache()}).
+     */
+    public void cacheSharedValues(SharedValueCache cache) {
+        sharedValues = cache;
+    }
+
+    public void stopCachingSharedValues() {
+        sharedValues = null;
+    }
+
 
     /**
      * Get the best mode of BottomUp iteration through this NeuralNetwork given the target of Evaluation of the output Neuron.
@@ -51,8 +79,13 @@ public class Evaluation {
      * @return
      */
     private BottomUp<Value> getBottomUpIterationStrategy(Settings settings, NeuralNetwork<State.Neural.Structure> network, Neurons outputNeuron, Evaluator evaluator) {
-        Up up = new Up(network, evaluator);
-        if (network instanceof TopologicNetwork) {
+        NeuronVisitor.Weighted up = sharedValues != null ? new CachedUp(network, evaluator, sharedValues) : new Up(network, evaluator);
+        if (settings.profileNeurons) {
+            up = new Profiling(up, NeuronProfile.Phase.FORWARD);
+        }
+        if (network instanceof TopologicNetwork && settings.intraNetworkThreads > 1 && sharedValues == null && !settings.profileNeurons) {
+            return new ParallelTopologic((TopologicNetwork<State.Neural.Structure>) network, ParallelTopologic.getPool(settings.intraNetworkThreads)).new BUpVisitor(outputNeuron, up);
+        } else if (network instanceof TopologicNetwork) {
             return new Topologic((TopologicNetwork<State.Neural.Structure>) network).new BUpVisitor(outputNeuron, up);
         } else if (settings.iterationMode == Settings.IterationMode.DFS_RECURSIVE) {
             return new DFSrecursion().new BUpVisitor(network, outputNeuron, up);
@@ -68,11 +101,13 @@ public class Evaluation {
     }
 
     public Value evaluate(QueryNeuron queryNeuron) {
+        long start = Metrics.start();
         NeuralNetwork<State.Neural.Structure> network = queryNeuron.evidence;
         AtomNeurons<State.Neural> outputNeuron = queryNeuron.neuron;
 
         BottomUp<Value> propagator = getBottomUpIterationStrategy(settings, network, outputNeuron, evaluator);
         Value output = propagator.bottomUp().clone();
+        FORWARD.recordSince(start);
         return output;
     }
 }
@@ -0,0 +1,17 @@
+package cz.cvut.fel.ida.neural.networks.computation.iteration.actions;
+
+/**
+ * Receives all the hooked values of a sample (or a whole list of samples) in a single call, instead of a call per hooked neuron.
+ * The i-th entry of the values comes from the hooked neuron named hooks[hookIds[i]] in the sample at positions[i],
+ * in the order of evaluation. The arguments are reused across the calls, i.e. valid only during the call.
+ */
+public interface PythonBatchHookHandler {
+    /**
+     * @param hooks     - the (distinct) names of the hooked neurons
+     * @param hookIds   - index into the hooks for each entry
+     * @param positions - position of the sample for each entry
+     * @param count     - number of the entries (the arrays may be longer)
+     * @param values    - the hooked values, one entry each
+     */
+    void handleHooks(String[] hooks, int[] hookIds, int[] positions, int count, PythonValueBuffer values);
+}
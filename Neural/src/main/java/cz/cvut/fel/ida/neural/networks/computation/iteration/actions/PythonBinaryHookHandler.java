@@ -0,0 +1,9 @@
+package cz.cvut.fel.ida.neural.networks.computation.iteration.actions;
+
+/**
+ * The binary alternative of the {@link PythonHookHandler}, receiving the hooked value as the only entry of a {@link PythonValueBuffer}
+ * (reused across the calls, i.e. valid only during the call) instead of its String form.
+ */
+public interface PythonBinaryHookHandler {
+    void handleHook(String hook, PythonValueBuffer value);
+}
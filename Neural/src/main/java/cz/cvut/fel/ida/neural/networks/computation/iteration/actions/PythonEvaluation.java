@@ -22,8 +22,13 @@ import cz.cvut.fel.ida.neural.networks.structure.components.types.TopologicNetwo
 import cz.cvut.fel.ida.setup.Settings;
 import cz.cvut.fel.ida.utils.generic.Pair;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class PythonEvaluation extends Evaluation {
@@ -31,8 +36,87 @@ public class PythonEvaluation extends Evaluation {
 
     public PythonHookHandler hookHandler;
 
+    /**
+     * If set, the hooked values are passed to this handler in binary instead of the {@link #hookHandler}
+     */
+    public PythonBinaryHookHandler binaryHookHandler;
+
+    private final PythonValueBuffer hookBuffer = new PythonValueBuffer(64);
+
+    /**
+     * If set, the hooked values are collected and passed to this handler at once with {@link #flushHooks()}, instead of the other handlers
+     */
+    private PythonBatchHookHandler batchHookHandler;
+    private String[] batchHooks;
+    private Map<String, Integer> batchHookIds;
+    private int[] batchHookIdsBuffer = new int[64];
+    private int[] batchPositions = new int[64];
+    private int batchCount;
+
+    /**
+     * Position of the sample being evaluated, recorded with the batched hooks
+     */
+    private int samplePosition = -1;
+
+    /**
+     * The evaluation with the hooks and handlers, if this one evaluates a sample of a minibatch (concurrently with the others),
+     * i.e. only collects the hooked values until they are passed to the parent with {@link #mergeHooks()}, null otherwise
+     */
+    private final PythonEvaluation parent;
+    private final List<String> collectedHooks = new ArrayList<>();
+    private final List<Value> collectedValues = new ArrayList<>();
+    private int[] collectedPositions = new int[16];
+
     public PythonEvaluation(Settings settings, int index) {
         super(settings, index);
+        this.parent = null;
+    }
+
+    /**
+     * An evaluation (with its own state index) collecting the values of the hooks of the parent
+     */
+    public PythonEvaluation(PythonEvaluation parent, int index) {
+        super(parent.settings, index);
+        this.parent = parent;
+    }
+
+    public void setBatchHookHandler(PythonBatchHookHandler handler) {
+        batchHookHandler = handler;
+        batchHooks = hooks.toArray(new String[0]);
+        batchHookIds = new HashMap<>();
+        for (int i = 0; i < batchHooks.length; i++) {
+            batchHookIds.put(batchHooks[i], i);
+        }
+        hookBuffer.clear();
+        batchCount = 0;
+    }
+
+    /**
+     * Pass the hooked values collected since the last flush to the batch handler (if any) in a single call
+     */
+    public void flushHooks() {
+        if (batchHookHandler == null || batchCount == 0) {
+            return;
+        }
+        try {
+            batchHookHandler.handleHooks(batchHooks, batchHookIdsBuffer, batchPositions, batchCount, hookBuffer);
+        } finally {
+            hookBuffer.clear();
+            batchCount = 0;
+        }
+    }
+
+    /**
+     * Pass the hooked values collected since the last merge to the parent, in the order they were hooked, each with the position
+     * of its sample, as if the parent evaluated the samples itself
+     */
+    public void mergeHooks() {
+        for (int i = 0; i < collectedHooks.size(); i++) {
+            parent.samplePosition = collectedPositions[i];
+            parent.hook(collectedHooks.get(i), collectedValues.get(i));
+        }
+        collectedHooks.clear();
+        collectedValues.clear();
     }
 
     /**
@@ -56,11 +140,19 @@ public class PythonEvaluation extends Evaluation {
     }
 
     public Result evaluate(NeuralSample sample) {
-        Value output = evaluate(sample.query);
+        Value output = evaluateOutput(sample);
         Result result = resultFactory.create(sample.getId(), sample.position, sample.target, output);
         return result;
     }
 
+    /**
+     * Evaluate the sample without creating the Result, keeping track of its position for the batched hooks
+     */
+    public Value evaluateOutput(NeuralSample sample) {
+        samplePosition = sample.position;
+        return evaluate(sample.query);
+    }
+
     public Value evaluate(QueryNeuron queryNeuron) {
         NeuralNetwork<State.Neural.Structure> network = queryNeuron.evidence;
         AtomNeurons<State.Neural> outputNeuron = queryNeuron.neuron;
@@ -70,6 +162,35 @@ public class PythonEvaluation extends Evaluation {
         return output;
     }
 
+    private boolean isHooked(String name) {
+        return (parent == null ? hooks : parent.hooks).contains(name);
+    }
+
+    private void hook(String name, Value value) {
+        if (parent != null) {
+            if (collectedHooks.size() == collectedPositions.length) {
+                collectedPositions = Arrays.copyOf(collectedPositions, 2 * collectedPositions.length);
+            }
+            collectedPositions[collectedHooks.size()] = samplePosition;
+            collectedHooks.add(name);
+            collectedValues.add(value.clone());
+        } else if (batchHookHandler != null) {
+            if (batchCount == batchPositions.length) {
+                batchHookIdsBuffer = Arrays.copyOf(batchHookIdsBuffer, 2 * batchCount);
+                batchPositions = Arrays.copyOf(batchPositions, 2 * batchCount);
+            }
+            batchHookIdsBuffer[batchCount] = batchHookIds.get(name);
+            batchPositions[batchCount] = samplePosition;
+            batchCount++;
+            hookBuffer.put(value);
+        } else if (binaryHookHandler != null) {
+            hookBuffer.clear().put(value);
+            binaryHookHandler.handleHook(name, hookBuffer);
+        } else {
+            hookHandler.handleHook(name, value.toString());
+        }
+    }
+
     public class PythonUp extends NeuronVisitor.Weighted {
 
         /**
@@ -93,8 +214,8 @@ public class PythonEvaluation extends Evaluation {
             }
             Value value = stateVisitor.visit(state);
 
-            if (hooks.contains(neuron.name)) {
-                hookHandler.handleHook(neuron.name, value.toString());
+            if (isHooked(neuron.name)) {
+                hook(neuron.name, value);
             }
         }
 
@@ -118,8 +239,8 @@ public class PythonEvaluation extends Evaluation {
 
             Value value = stateVisitor.visit(state);
 
-            if (hooks.contains(neuron.name)) {
-                hookHandler.handleHook(neuron.name, value.toString());
+            if (isHooked(neuron.name)) {
+                hook(neuron.name, value);
             }
         }
     }
@@ -0,0 +1,136 @@
+package cz.cvut.fel.ida.neural.networks.computation.iteration.actions;
+
+import cz.cvut.fel.ida.algebra.values.MatrixValue;
+import cz.cvut.fel.ida.algebra.values.ScalarValue;
+import cz.cvut.fel.ida.algebra.values.Value;
+import cz.cvut.fel.ida.algebra.values.VectorValue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Values written into direct (off-heap) buffers in the native byte order, so that the Python side can wrap them
+ * (e.g. with numpy.frombuffer) without copying and parsing, as opposed to formatting them into Strings.
+ * <p>
+ * The elements of the written values are stored consecutively as doubles in the {@link #getData() data}, and for each
+ * value there are 4 ints in the {@link #getIndex() index}: its offset and length (in doubles) and the first two dimensions
+ * of its shape (0 where missing, i.e. (0,0) for a scalar and e.g. (3,1) for a column vector).
+ * <p>
+ * The buffers are reused (and only grown) across the writes, so their content is valid only until the next {@link #clear()}.
+ */
+public class PythonValueBuffer {
+
+    public static final int INDEX_INTS = 4;
+
+    private ByteBuffer data;
+    private DoubleBuffer doubles;
+
+    private ByteBuffer index;
+    private IntBuffer ints;
+
+    private int count;
+
+    public PythonValueBuffer(int initialDoubles) {
+        data = allocate(Math.max(1, initialDoubles) * Double.BYTES);
+        doubles = data.asDoubleBuffer();
+        index = allocate(16 * INDEX_INTS * Integer.BYTES);
+        ints = index.asIntBuffer();
+    }
+
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    public PythonValueBuffer clear() {
+        doubles.clear();
+        ints.clear();
+        count = 0;
+        return this;
+    }
+
+    public void put(Value value) {
+        if (value instanceof ScalarValue) {
+            ensureCapacity(1);
+            putIndex(doubles.position(), 1, 0, 0);
+            doubles.put(((ScalarValue) value).value);
+            return;
+        }
+        double[] elements = value.getAsArray();     // the backing array (not a copy) for the vectors and matrices
+        int dim0, dim1;
+        if (value instanceof VectorValue) {
+            boolean row = ((VectorValue) value).rowOrientation;
+            dim0 = row ? 1 : elements.length;
+            dim1 = row ? elements.length : 1;
+        } else if (value instanceof MatrixValue) {
+            dim0 = ((MatrixValue) value).rows;
+            dim1 = ((MatrixValue) value).cols;
+        } else {
+            int[] size = value.size();
+            dim0 = size.length > 0 ? size[0] : 0;
+            dim1 = size.length > 1 ? size[1] : 0;
+        }
+        ensureCapacity(elements.length);
+        putIndex(doubles.position(), elements.length, dim0, dim1);
+        doubles.put(elements);
+    }
+
+    /**
+     * Reserve an empty entry, e.g. for a missing value
+     */
+    public void putEmpty() {
+        ensureCapacity(0);
+        putIndex(doubles.position(), 0, 0, 0);
+    }
+
+    private void putIndex(int offset, int length, int dim0, int dim1) {
+        ints.put(offset).put(length).put(dim0).put(dim1);
+        count++;
+    }
+
+    private void ensureCapacity(int elements) {
+        if (doubles.remaining() < elements) {
+            int position = doubles.position();
+            ByteBuffer grown = allocate(Math.max(2 * doubles.capacity(), position + elements) * Double.BYTES);
+            DoubleBuffer grownDoubles = grown.asDoubleBuffer();
+            doubles.flip();
+            grownDoubles.put(doubles);
+            data = grown;
+            doubles = grownDoubles;
+        }
+        if (ints.remaining() < INDEX_INTS) {
+            ByteBuffer grown = allocate(2 * ints.capacity() * Integer.BYTES);
+            IntBuffer grownInts = grown.asIntBuffer();
+            ints.flip();
+            grownInts.put(ints);
+            index = grown;
+            ints = grownInts;
+        }
+    }
+
+    /**
+     * @return number of the values written since the last {@link #clear()}
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * @return view of the written doubles (the backing memory is shared, not copied)
+     */
+    public ByteBuffer getData() {
+        ByteBuffer view = data.duplicate().order(ByteOrder.nativeOrder());
+        view.limit(doubles.position() * Double.BYTES);
+        return view;
+    }
+
+    /**
+     * @return view of the written index ints (the backing memory is shared, not copied)
+     */
+    public ByteBuffer getIndex() {
+        ByteBuffer view = index.duplicate().order(ByteOrder.nativeOrder());
+        view.limit(ints.position() * Integer.BYTES);
+        return view;
+    }
+}
@@ -0,0 +1,290 @@
+package cz.cvut.fel.ida.neural.networks.computation.iteration.modes;
+
+import cz.cvut.fel.ida.algebra.values.ScalarValue;
+import cz.cvut.fel.ida.algebra.values.Value;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.BottomUp;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.IterationStrategy;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.TopDown;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.neurons.Down;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.neurons.NeuronVisitor;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.states.StateVisiting;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.weights.WeightUpdater;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.BaseNeuron;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.Neurons;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.states.State;
+import cz.cvut.fel.ida.neural.networks.structure.components.types.TopologicNetwork;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * A parallel version of the {@link Topologic} iteration for large networks (e.g. a single big network in the KB/GLOBAL grounding mode).
+ * <p>
+ * The topologically ordered neurons are partitioned into levels (wavefronts) of mutually independent neurons, where the level
+ * of each neuron is its height, i.e. 1 + the maximal level of its inputs. The levels are then iterated one after another
+ * (left->right for {@link BottomUp}, right->left for {@link TopDown}), with the neurons of each (sufficiently large) level
+ * processed concurrently in a {@link ForkJoinPool}.
+ * <p>
+ * In the top-down direction, the neurons of the same level may share inputs, hence their gradients are accumulated under a lock
+ * (see {@link Down.Concurrent}) and each thread stores its weight updates separately, merged into the main {@link WeightUpdater}
+ * at the end. The order of the gradient summation is thus not fixed, and so the results may differ from the sequential
+ * iteration in the last digits.
+ *
+ * @see TopologicNetwork#levels
+ */
+public class ParallelTopologic {
+    private static final Logger LOG = Logger.getLogger(ParallelTopologic.class.getName());
+
+    /**
+     * Minimal number of neurons processed by a single task - smaller levels are simply processed in the calling thread
+     */
+    static final int GRAIN = 256;
+
+    TopologicNetwork<State.Neural.Structure> network;
+
+    ForkJoinPool pool;
+
+    /**
+     * The pools shared by all the iterations with the same parallelism (bounded by the number of processors, so there are at most as many pools)
+     */
+    private static final Map<Integer, ForkJoinPool> pools = new HashMap<>();
+
+    /**
+     * @param parallelism - requested, capped by the number of available processors
+     * @return the shared pool of the given parallelism, (re)created if needed
+     */
+    public static synchronized ForkJoinPool getPool(int parallelism) {
+        int threads = Math.max(1, Math.min(parallelism, Runtime.getRuntime().availableProcessors()));
+        ForkJoinPool pool = pools.get(threads);
+        if (pool == null || pool.isShutdown()) {
+            pool = new ForkJoinPool(threads);
+            pools.put(threads, pool);
+        }
+        return pool;
+    }
+
+    /**
+     * Shuts down all the shared pools, e.g. once the training is over. Any later iteration creates its pool anew.
+     */
+    public static synchronized void shutdownPools() {
+        for (ForkJoinPool pool : pools.values()) {
+            pool.shutdown();
+        }
+        pools.clear();
+    }
+
+    public ParallelTopologic(TopologicNetwork<State.Neural.Structure> network, ForkJoinPool pool) {
+        this.network = network;
+        this.pool = pool;
+        if (network.levels == null || countNeurons(network.levels) != network.allNeuronsTopologic.size()) {
+            network.levels = computeLevels(network);
+        }
+    }
+
+    /**
+     * Groups the positions of the neurons (in the topologic ordering) by their height in the network, each level sorted by the positions.
+     * <p>
+     * This is the reverse of the {@link BaseNeuron#layer} (depth) indices, but available without the extra top-down pass
+     * and valid even with neurons shared across multiple networks.
+     *
+     * @param network
+     * @return
+     */
+    public static int[][] computeLevels(TopologicNetwork<State.Neural.Structure> network) {
+        List<BaseNeuron<Neurons, State.Neural>> neurons = network.allNeuronsTopologic;
+        int[] originalIndices = new int[neurons.size()];
+        for (int i = 0; i < neurons.size(); i++) {
+            originalIndices[i] = neurons.get(i).index;
+        }
+        network.restartIndices();   // to find the input positions in constant time
+
+        int[] heights = new int[neurons.size()];
+        int[] levelSizes = new int[neurons.size()];
+        int levelCount = 0;
+        try {
+            for (int i = 0; i < neurons.size(); i++) {
+                int height = 0;
+                Iterator<Neurons> inputs = network.getInputs(neurons.get(i));
+                while (inputs.hasNext()) {
+                    Neurons input = inputs.next();
+                    int position = input.getIndex();
+                    if (position >= 0 && position < i && neurons.get(position) == input) {  // inputs from outside of this network are ready already
+                        height = Math.max(height, heights[position] + 1);
+                    }
+                }
+                heights[i] = height;
+                levelSizes[height]++;
+                levelCount = Math.max(levelCount, height + 1);
+            }
+        } finally {
+            for (int i = 0; i < neurons.size(); i++) {
+                neurons.get(i).index = originalIndices[i];
+            }
+        }
+
+        int[][] levels = new int[levelCount][];
+        for (int l = 0; l < levelCount; l++) {
+            levels[l] = new int[levelSizes[l]];
+        }
+        int[] filled = new int[levelCount];
+        for (int i = 0; i < heights.length; i++) {
+            levels[heights[i]][filled[heights[i]]++] = i;
+        }
+        LOG.finer(() -> "Network " + network.getId() + " with " + neurons.size() + " neurons split into " + levels.length + " levels.");
+        return levels;
+    }
+
+    private static int countNeurons(int[][] levels) {
+        int count = 0;
+        for (int[] level : levels) {
+            count += level.length;
+        }
+        return count;
+    }
+
+    private int outputPosition(Neurons outputNeuron) {
+        int idx = network.allNeuronsTopologic.size() - 1;
+        while (idx >= 0 && network.allNeuronsTopologic.get(idx) != outputNeuron) {
+            idx--;
+        }
+        return idx;
+    }
+
+    /**
+     * Process the neurons of the level at positions (in the topologic ordering) from the interval [from, to], either all
+     * with the given visitor in the calling thread, or in parallel with the visitors supplied to the individual tasks.
+     */
+    private void processLevel(int[] level, int from, int to, NeuronVisitor.Weighted visitor, Supplier<NeuronVisitor.Weighted> threadVisitors) {
+        int start = Arrays.binarySearch(level, from);
+        start = start < 0 ? -start - 1 : start;
+        int end = Arrays.binarySearch(level, to);
+        end = end < 0 ? -end - 1 : end + 1;
+
+        if (end - start < 2 * GRAIN) {
+            visitRange(level, start, end, visitor);
+        } else {
+            pool.invoke(new LevelTask(level, start, end, threadVisitors));
+        }
+    }
+
+    private void visitRange(int[] level, int start, int end, NeuronVisitor.Weighted neuronVisitor) {
+        for (int i = start; i < end; i++) {
+            int position = level[i];
+            BaseNeuron<Neurons, State.Neural> actualNeuron = network.allNeuronsTopologic.get(position);
+            int index = actualNeuron.index;
+            actualNeuron.index = position;
+            actualNeuron.visit(neuronVisitor);
+            actualNeuron.index = index;
+        }
+    }
+
+    private class LevelTask extends RecursiveAction {
+        final int[] level;
+        final int start;
+        final int end;
+        final Supplier<NeuronVisitor.Weighted> visitors;
+
+        LevelTask(int[] level, int start, int end, Supplier<NeuronVisitor.Weighted> visitors) {
+            this.level = level;
+            this.start = start;
+            this.end = end;
+            this.visitors = visitors;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= GRAIN) {
+                visitRange(level, start, end, visitors.get());
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new LevelTask(level, start, middle, visitors), new LevelTask(level, middle, end, visitors));
+            }
+        }
+    }
+
+    public class BUpVisitor extends IterationStrategy implements BottomUp<Value> {
+        NeuronVisitor.Weighted neuronVisitor;
+
+        /**
+         * @param outputNeuron
+         * @param pureNeuronVisitor - must be stateless (shared by all the threads), e.g. {@link cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.neurons.Up}
+         */
+        public BUpVisitor(Neurons outputNeuron, NeuronVisitor.Weighted pureNeuronVisitor) {
+            super(ParallelTopologic.this.network, outputNeuron);
+            this.neuronVisitor = pureNeuronVisitor;
+        }
+
+        @Override
+        public Value bottomUp() {
+            int last = outputNeuron == null ? ParallelTopologic.this.network.allNeuronsTopologic.size() - 1 : outputPosition(outputNeuron);
+            for (int[] level : ParallelTopologic.this.network.levels) {
+                processLevel(level, 0, last, neuronVisitor, () -> neuronVisitor);
+            }
+            if (outputNeuron == null) {
+                LOG.warning("No output neuron detected, don't know which Value to return from evaluation (returning dummy 0).");
+                return new ScalarValue(0);
+            }
+            return outputNeuron.getComputationView(neuronVisitor.stateVisitor.stateIndex).getValue();
+        }
+    }
+
+    public class TDownVisitor extends IterationStrategy implements TopDown {
+        final StateVisiting.Computation stateVisitor;
+        final WeightUpdater weightUpdater;
+        final int maxWeightIndex;
+
+        /**
+         * Spare updaters for the worker threads, reused across the calls
+         */
+        final Queue<WeightUpdater> spareUpdaters;
+
+        /**
+         * @param outputNeuron
+         * @param stateVisitor
+         * @param weightUpdater  - the main updater where all the updates end up
+         * @param maxWeightIndex - for the creation of the thread-local updaters
+         * @param spareUpdaters  - a (possibly empty) pool of thread-local updaters to reuse
+         */
+        public TDownVisitor(Neurons outputNeuron, StateVisiting.Computation stateVisitor, WeightUpdater weightUpdater, int maxWeightIndex, Queue<WeightUpdater> spareUpdaters) {
+            super(ParallelTopologic.this.network, outputNeuron);
+            this.stateVisitor = stateVisitor;
+            this.weightUpdater = weightUpdater;
+            this.maxWeightIndex = maxWeightIndex;
+            this.spareUpdaters = spareUpdaters;
+        }
+
+        @Override
+        public void topdown() {
+            int last = outputPosition(outputNeuron);
+            NeuronVisitor.Weighted mainDown = new Down(network, stateVisitor, weightUpdater);
+
+            Queue<Down> threadDowns = new ConcurrentLinkedQueue<>();
+            ThreadLocal<Down> threadDown = ThreadLocal.withInitial(() -> {
+                WeightUpdater updater = spareUpdaters.poll();
+                Down down = new Down.Concurrent(network, stateVisitor, updater != null ? updater : new WeightUpdater(maxWeightIndex));
+                threadDowns.add(down);
+                return down;
+            });
+
+            int[][] levels = ParallelTopologic.this.network.levels;
+            for (int l = levels.length - 1; l >= 0; l--) {
+                processLevel(levels[l], 1, last, mainDown, threadDown::get);   // the first neuron is skipped as in the sequential Topologic.TDownVisitor
+            }
+
+            for (Down down : threadDowns) {
+                weightUpdater.incrementBy(down.weightUpdater);
+                down.weightUpdater.clearUpdates();
+                spareUpdaters.add(down.weightUpdater);
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.neurons;
+
+import cz.cvut.fel.ida.algebra.weights.Weight;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.states.StateVisiting;
+import cz.cvut.fel.ida.neural.networks.computation.training.SharedValueCache;
+import cz.cvut.fel.ida.neural.networks.structure.components.NeuralNetwork;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.BaseNeuron;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.Neurons;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.WeightedNeuron;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.states.State;
+import cz.cvut.fel.ida.neural.networks.structure.components.types.DetailedNetwork;
+import cz.cvut.fel.ida.utils.generic.Pair;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An {@link Up} that memoizes the values of shared neurons across all the networks it is used for, i.e. a shared subnetwork
+ * is only evaluated once and its values are then simply reused by all the other networks (queries) containing it.
+ * <p>
+ * The values are stored with the weights they depend on, so that the {@link SharedValueCache} can drop just those affected by a weight update.
+ * <p>
+ * A neuron is never reused if its value may differ in the current network, i.e. if the network holds a specific
+ * state for it (e.g. extra input overmapping), or if any of its (recursive) inputs is such a network-specific neuron.
+ */
+public class CachedUp extends Up {
+
+    private final SharedValueCache sharedValues;
+
+    /**
+     * Neurons with values specific for the current network (the dependency cone of the network-specific input mappings)
+     */
+    private final Set<Neurons> networkSpecific = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Indices of the weights the value of each neuron of the current network depends on (none for the neurons not present)
+     */
+    private final Map<Neurons, BitSet> dependencies = new IdentityHashMap<>();
+
+    public CachedUp(NeuralNetwork<State.Structure> network, StateVisiting.Computation computationVisitor, SharedValueCache sharedValues) {
+        super(network, computationVisitor);
+        this.sharedValues = sharedValues;
+    }
+
+    @Override
+    public <T extends Neurons, S extends State.Neural> void visit(BaseNeuron<T, S> neuron) {
+        if (isNetworkSpecific(neuron) || !networkSpecific.isEmpty() && dependsOnNetworkSpecific(network.getInputs(neuron))) {
+            networkSpecific.add(neuron);
+        } else if (reuseValue(neuron)) {
+            return;
+        }
+        super.visit(neuron);
+        BitSet weights = new BitSet();
+        addInputDependencies(weights, network.getInputs(neuron));
+        storeValue(neuron, weights);
+    }
+
+    @Override
+    public <T extends Neurons, S extends State.Neural> void visit(WeightedNeuron<T, S> neuron) {
+        if (isNetworkSpecific(neuron) || !networkSpecific.isEmpty() && dependsOnNetworkSpecific(network.getInputs(neuron).r)) {
+            networkSpecific.add(neuron);
+        } else if (reuseValue(neuron)) {
+            return;
+        }
+        super.visit(neuron);
+        BitSet weights = new BitSet();
+        Pair<Iterator<T>, Iterator<Weight>> inputs = network.getInputs(neuron);
+        addInputDependencies(weights, inputs.r);
+        addWeight(weights, neuron.offset);
+        while (inputs.s.hasNext()) {
+            addWeight(weights, inputs.s.next());
+        }
+        storeValue(neuron, weights);
+    }
+
+    private boolean isNetworkSpecific(BaseNeuron neuron) {
+        return network.getState(neuron) != null || hasExtraInputMapping(neuron);
+    }
+
+    private <T extends Neurons> boolean dependsOnNetworkSpecific(Iterator<T> inputs) {
+        while (inputs.hasNext()) {
+            if (networkSpecific.contains(inputs.next())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasExtraInputMapping(BaseNeuron neuron) {
+        if (network instanceof DetailedNetwork) {
+            Map<BaseNeuron, ?> extraInputMapping = ((DetailedNetwork) network).extraInputMapping;
+            return extraInputMapping != null && extraInputMapping.containsKey(neuron);
+        }
+        return false;
+    }
+
+    private <T extends Neurons> void addInputDependencies(BitSet weights, Iterator<T> inputs) {
+        while (inputs.hasNext()) {
+            BitSet inputWeights = dependencies.get(inputs.next());
+            if (inputWeights != null) {
+                weights.or(inputWeights);
+            }
+        }
+    }
+
+    private static void addWeight(BitSet weights, Weight weight) {
+        if (weight.index >= 0) {    // i.e. not the constant unit/zero weights
+            weights.set(weight.index);
+        }
+    }
+
+    private boolean reuseValue(BaseNeuron neuron) {
+        SharedValueCache.Entry entry = sharedValues.get(neuron);
+        if (entry == null) {
+            return false;
+        }
+        neuron.getComputationView(stateVisitor.stateIndex).setValue(entry.value);
+        dependencies.put(neuron, entry.weights);
+        return true;
+    }
+
+    private void storeValue(BaseNeuron neuron, BitSet weights) {
+        if (!weights.isEmpty()) {
+            dependencies.put(neuron, weights);
+        }
+        if (!networkSpecific.contains(neuron) && (sharedValues.evaluatedBefore(neuron) || neuron.isShared)) {
+            sharedValues.put(neuron, neuron.getComputationView(stateVisitor.stateIndex).getValue().clone(), weights);
+        }
+    }
+}
@@ -45,7 +45,7 @@ public class Down extends NeuronVisitor.Weighted {
         while (inputs.hasNext()) {
             input = inputs.next();
             Value inputGradient = fcnState.nextInputGradient();
-            input.getComputationView(stateVisitor.stateIndex).storeGradient(inputGradient);
+            storeGradient(input.getComputationView(stateVisitor.stateIndex), inputGradient);
         }
     }
 
@@ -84,7 +84,30 @@ public class Down extends NeuronVisitor.Weighted {
 //            inputComputationView.storeGradient(inputGradient.transposedView().times(weight.value));
 //            inputComputationView.storeGradient(weight.value.transposedView().times(inputGradient));     //speedup the matrix transposition here with a custom transposedTimes? -> done
 
-            inputComputationView.storeGradient(weight.value.transposedTimes(inputGradient));
+            storeGradient(inputComputationView, weight.value.transposedTimes(inputGradient));
+        }
+    }
+
+    protected void storeGradient(State.Neural.Computation inputState, Value gradient) {
+        inputState.storeGradient(gradient);
+    }
+
+    /**
+     * A Down for multiple threads backpropagating through (different neurons of) the same network concurrently,
+     * i.e. with the gradients of the (possibly common) input neurons accumulated under a lock.
+     * The weight updates are not synchronized, so each thread needs its own {@link WeightUpdater}.
+     */
+    public static class Concurrent extends Down {
+
+        public Concurrent(NeuralNetwork<State.Neural.Structure> network, StateVisiting.Computation topDown, WeightUpdater weightUpdater) {
+            super(network, topDown, weightUpdater);
+        }
+
+        @Override
+        protected void storeGradient(State.Neural.Computation inputState, Value gradient) {
+            synchronized (inputState) {
+                inputState.storeGradient(gradient);
+            }
         }
     }
 }
@@ -0,0 +1,43 @@
+package cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.neurons;
+
+import cz.cvut.fel.ida.neural.networks.computation.iteration.NeuronProfile;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.BaseNeuron;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.Neurons;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.WeightedNeuron;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.states.State;
+
+/**
+ * A decorator of a NeuronVisitor (e.g. {@link Up} or {@link Down}) recording the time (and allocations) of each neuron
+ * visit into the {@link NeuronProfile}, i.e. including the accumulation of the inputs and the State computation.
+ */
+public class Profiling extends NeuronVisitor.Weighted {
+
+    private final NeuronVisitor.Weighted visitor;
+    private final NeuronProfile.Phase phase;
+
+    public Profiling(NeuronVisitor.Weighted visitor, NeuronProfile.Phase phase) {
+        super(visitor.network, visitor.stateVisitor, visitor.weightUpdater);
+        this.visitor = visitor;
+        this.phase = phase;
+    }
+
+    @Override
+    public <T extends Neurons, S extends State.Neural> void visit(BaseNeuron<T, S> neuron) {
+        long bytes = NeuronProfile.allocatedBytes();
+        long start = System.nanoTime();
+        visitor.visit(neuron);
+        long nanos = System.nanoTime() - start;
+        bytes = NeuronProfile.allocatedBytes() - bytes;
+        NeuronProfile.record(phase, neuron.getClass(), neuron.getComputationView(stateVisitor.stateIndex), nanos, bytes);
+    }
+
+    @Override
+    public <T extends Neurons, S extends State.Neural> void visit(WeightedNeuron<T, S> neuron) {
+        long bytes = NeuronProfile.allocatedBytes();
+        long start = System.nanoTime();
+        visitor.visit(neuron);
+        long nanos = System.nanoTime() - start;
+        bytes = NeuronProfile.allocatedBytes() - bytes;
+        NeuronProfile.record(phase, neuron.getClass(), neuron.getComputationView(stateVisitor.stateIndex), nanos, bytes);
+    }
+}
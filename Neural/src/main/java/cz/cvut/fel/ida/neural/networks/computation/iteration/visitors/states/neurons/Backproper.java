@@ -1,6 +1,7 @@
 package cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.states.neurons;
 
 import cz.cvut.fel.ida.algebra.values.Value;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.NeuronProfile;
 import cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.states.StateVisiting;
 import cz.cvut.fel.ida.neural.networks.structure.components.neurons.states.State;
 import cz.cvut.fel.ida.setup.Settings;
@@ -30,7 +31,10 @@ public class Backproper extends StateVisiting.Computation {
      * @return
      */
     public static Backproper getFrom(Settings settings, int i) {
-        return new Backproper(i);   //todo base on settings
+        if (settings.profileNeurons) {
+            return new Profiled(i);
+        }
+        return new Backproper(i);
     }
 
     /**
@@ -76,4 +80,28 @@ public class Backproper extends StateVisiting.Computation {
 //        //there is no setting (remembering) of the calculated gradient (as opposed to output, which is reused), it is just returned
 //        return currentLevelDerivative;
     }
-}
\ No newline at end of file
+
+    /**
+     * Records the time (and allocations) of each State visit into the {@link NeuronProfile}, for the iteration modes that
+     * call the Backproper directly instead of through a NeuronVisitor (which is profiled by
+     * {@link cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.neurons.Profiling} instead).
+     * The class of the neuron is not known here.
+     */
+    public static class Profiled extends Backproper {
+
+        public Profiled(int stateIndex) {
+            super(stateIndex);
+        }
+
+        @Override
+        public Value visit(State.Neural.Computation state) {
+            long bytes = NeuronProfile.allocatedBytes();
+            long start = System.nanoTime();
+            Value value = super.visit(state);
+            long nanos = System.nanoTime() - start;
+            bytes = NeuronProfile.allocatedBytes() - bytes;
+            NeuronProfile.record(NeuronProfile.Phase.BACKWARD, null, state, nanos, bytes);
+            return value;
+        }
+    }
+}
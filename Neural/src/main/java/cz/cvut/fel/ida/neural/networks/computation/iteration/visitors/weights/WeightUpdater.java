@@ -32,6 +32,16 @@ public class WeightUpdater implements WeightVisitor {
         updatedWeightsOnly = new ArrayList<>(maxWeightIndex + 1);
     }
 
+    /**
+     * An auxiliary (e.g. thread-local) updater to be later merged into a main one via {@link #incrementBy(WeightUpdater)}.
+     *
+     * @param maxWeightIndex
+     */
+    public WeightUpdater(int maxWeightIndex) {
+        weightUpdates = new Value[maxWeightIndex + 1];
+        updatedWeightsOnly = new ArrayList<>();
+    }
+
     private void check4mistakes(List<Weight> learnableWeights, int maxWeightIndex) {
         if (maxWeightIndex < learnableWeights.size() - 1) {
             LOG.severe("Weight indices are off (there are more learnable weight than all weights?)!!");
@@ -71,6 +81,17 @@ public class WeightUpdater implements WeightVisitor {
         }
     }
 
+    /**
+     * Add all the updates stored in the other updater into this one.
+     *
+     * @param other
+     */
+    public void incrementBy(WeightUpdater other) {
+        for (Weight weight : other.updatedWeightsOnly) {
+            visit(weight, other.weightUpdates[weight.index]);
+        }
+    }
+
     public void clearUpdates() {
         Arrays.fill(weightUpdates, null);
         updatedWeightsOnly.clear();
@@ -8,6 +8,7 @@ import cz.cvut.fel.ida.neural.networks.structure.components.neurons.QueryNeuron;
 import cz.cvut.fel.ida.setup.Settings;
 
 import java.io.Reader;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
@@ -28,6 +29,21 @@ public class NeuralModel implements Model<QueryNeuron> {
 
     public Value threshold;
 
+    /**
+     * The flat optimizer state for the fused optimizers (if used), created lazily
+     */
+    private transient ParameterArena parameterArena;
+
+    /**
+     * The copy-on-write snapshot of the weight values (if used), created lazily
+     */
+    private transient WeightsSnapshot snapshot;
+
+    /**
+     * The values of the shared neurons memoized for the current weights (if used), created lazily
+     */
+    private transient SharedValueCache sharedValueCache;
+
     /**
      * Only used in debug mode for drawing of original template during training.
      */
@@ -37,7 +53,7 @@ public class NeuralModel implements Model<QueryNeuron> {
         this.settings = settings;
         this.allWeights = weights;
         this.learnableWeights = filterLearnable(weights);
-        if (settings.getOptimizer() == Settings.OptimizerSet.ADAM) {
+        if ((settings.getOptimizer() == Settings.OptimizerSet.ADAM || settings.getOptimizer() == Settings.OptimizerSet.ADAMW) && !settings.flatParameterArena) {   // the moments are in the arena, or allocated lazily, otherwise
             init4Adam(weights);
         }
         maxWeightIndex = allWeights.size()-1;
@@ -70,9 +86,64 @@ public class NeuralModel implements Model<QueryNeuron> {
     }
 
     public void resetWeights(ValueInitializer valueInitializer) {
+        beforeUpdate(allWeights);
         for (Weight weight : allWeights) {
             weight.init(valueInitializer);
         }
+        if (parameterArena != null) {
+            parameterArena.reset();
+        }
+    }
+
+    public synchronized ParameterArena getParameterArena() {
+        if (parameterArena == null) {
+            parameterArena = new ParameterArena(allWeights);
+        }
+        return parameterArena;
+    }
+
+    public synchronized WeightsSnapshot getSnapshot() {
+        if (snapshot == null) {
+            snapshot = new WeightsSnapshot(allWeights);
+        }
+        return snapshot;
+    }
+
+    public synchronized SharedValueCache getSharedValueCache() {
+        if (sharedValueCache == null) {
+            sharedValueCache = new SharedValueCache();
+        }
+        return sharedValueCache;
+    }
+
+    /**
+     * To be called before changing the values of the given weights in place (e.g. by the optimizers), so that the
+     * snapshot (if marked) can preserve their current values, and the memoized values depending on them get dropped
+     *
+     * @param weights
+     */
+    public void beforeUpdate(Collection<Weight> weights) {
+        if (snapshot != null) {
+            snapshot.preserve(weights);
+        }
+        if (sharedValueCache != null) {
+            sharedValueCache.invalidate(weights);
+        }
+    }
+
+    /**
+     * Put the values of the marked snapshot (if any) back into the weights
+     */
+    public void restoreSnapshot() {
+        if (snapshot != null) {
+            snapshot.restore();
+        }
+    }
+
+    public void releaseSnapshot() {
+        if (snapshot != null) {
+            snapshot.release();
+        }
     }
 
     /**
@@ -82,11 +153,29 @@ public class NeuralModel implements Model<QueryNeuron> {
      */
     public void loadWeightValues(NeuralModel otherModel) {
         Map<Integer, Weight> otherWeights = otherModel.mapWeightsToIds();
+        if (sharedValueCache != null) {
+            sharedValueCache.invalidate(allWeights);
+        }
         for (Weight weight : allWeights) {
             weight.value = otherWeights.get(weight.index).value;
         }
     }
 
+    /**
+     * Overwrite the values of the learnable weights in place with those from another model, i.e. keeping the Value objects
+     * that may be referenced from the neural structures (e.g. by the fact neurons)
+     *
+     * @param otherModel
+     */
+    public void copyWeightValues(NeuralModel otherModel) {
+        Map<Integer, Weight> otherWeights = otherModel.mapWeightsToIds();
+        beforeUpdate(learnableWeights);
+        for (Weight weight : learnableWeights) {
+            weight.value.zero();
+            weight.value.incrementBy(otherWeights.get(weight.index).value);
+        }
+    }
+
     public void dropoutWeights() {
         //go through weights and set them randomly off
     }
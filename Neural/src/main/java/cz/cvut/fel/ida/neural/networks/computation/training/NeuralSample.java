@@ -9,6 +9,12 @@ import cz.cvut.fel.ida.neural.networks.structure.components.neurons.QueryNeuron;
  */
 public class NeuralSample extends LearningSample<QueryNeuron, Object> {
 
+    /**
+     * Multiplier of the error gradient of this sample in the backpropagation, e.g. to correct for a non-uniform sampling
+     * by the {@link cz.cvut.fel.ida.neural.networks.computation.training.strategies.Hyperparameters.SampleScheduler}
+     */
+    public transient double gradientScale = 1;
+
     public NeuralSample(Value v, QueryNeuron q, Split type) {
         this.query = q;
         this.target = v;
@@ -0,0 +1,157 @@
+package cz.cvut.fel.ida.neural.networks.computation.training;
+
+import cz.cvut.fel.ida.algebra.values.MatrixValue;
+import cz.cvut.fel.ida.algebra.values.ScalarValue;
+import cz.cvut.fel.ida.algebra.values.Value;
+import cz.cvut.fel.ida.algebra.values.VectorValue;
+import cz.cvut.fel.ida.algebra.weights.Weight;
+import cz.cvut.fel.ida.setup.Settings;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * Flat storage of the optimizer state of all the weights of a {@link NeuralModel}, for the fused optimizer kernels.
+ * <p>
+ * Each weight is a view into the arena, i.e. a range [offset, offset + length) of its flat arrays, holding e.g. the
+ * first and second moments of Adam, instead of separate Value objects per weight ({@link Weight#momentum}, {@link Weight#velocity}).
+ * The weight values and gradients stay in their Value objects (referenced directly from the neural networks and weight updaters),
+ * but the kernels access them in place through their backing arrays, so there are no copies or new objects per step.
+ * <p>
+ * The update of a large number of parameters is split into chunks of weights with a similar number of elements,
+ * processed in parallel. Different updates must not run concurrently though (as e.g. with the {@link Settings#asyncParallelTraining}),
+ * since they would race on the shared moments.
+ */
+public class ParameterArena {
+    private static final Logger LOG = Logger.getLogger(ParameterArena.class.getName());
+
+    /**
+     * Minimal number of updated parameters (elements) to split the update across threads
+     */
+    public static final int PARALLEL_THRESHOLD = 1 << 15;
+
+    /**
+     * Offsets of the weights into the flat arrays by their index, -1 for the weights without learnable values
+     */
+    private final int[] offsets;
+
+    /**
+     * Total number of parameters (elements of all the weights)
+     */
+    public final int size;
+
+    public final double[] firstMoments;
+    public final double[] secondMoments;
+
+    public ParameterArena(List<Weight> weights) {
+        offsets = new int[weights.stream().mapToInt(w -> w.index).max().orElse(-1) + 1];
+        Arrays.fill(offsets, -1);
+        int size = 0;
+        for (Weight weight : weights) {
+            if (weight.index < 0 || !weight.isLearnable()) {
+                continue;
+            }
+            offsets[weight.index] = size;
+            size += length(weight.value);
+        }
+        this.size = size;
+        firstMoments = new double[size];
+        secondMoments = new double[size];
+        LOG.finer("Allocated a parameter arena with " + size + " parameters.");
+    }
+
+    /**
+     * @return the number of elements of a weight, which must be backed by a single array (i.e. not e.g. a tensor)
+     */
+    static int length(Value value) {
+        if (value instanceof ScalarValue) {
+            return 1;
+        } else if (value instanceof VectorValue || value instanceof MatrixValue) {
+            return value.getAsArray().length;
+        }
+        throw new UnsupportedOperationException("The parameter arena supports only the scalar, vector and matrix weights, not "
+                + value.getClass().getSimpleName() + ", turn off the flatParameterArena.");
+    }
+
+    public int offset(Weight weight) {
+        return weight.index >= 0 && weight.index < offsets.length ? offsets[weight.index] : -1;
+    }
+
+    /**
+     * Zero the optimizer state (e.g. at restart)
+     */
+    public void reset() {
+        Arrays.fill(firstMoments, 0);
+        Arrays.fill(secondMoments, 0);
+    }
+
+    /**
+     * A single elementwise update of a parameter
+     */
+    @FunctionalInterface
+    public interface Kernel {
+        /**
+         * @param value    - current value of the parameter
+         * @param gradient - the update direction from the {@link cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.weights.WeightUpdater}
+         * @param position - position of the parameter in the arena (for the optimizer state)
+         * @return the new value of the parameter
+         */
+        double apply(double value, double gradient, int position);
+    }
+
+    /**
+     * Apply the kernel to all the parameters of the updated weights, in place.
+     *
+     * @param updatedWeights - each weight at most once
+     * @param gradients      - by the weight indices
+     * @param kernel
+     */
+    public void update(Collection<Weight> updatedWeights, Value[] gradients, Kernel kernel) {
+        Weight[] weights = updatedWeights.toArray(new Weight[0]);
+        int[] ends = new int[weights.length];   // cumulative numbers of parameters for the split
+        int total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            total += length(weights[i].value);
+            ends[i] = total;
+        }
+
+        int chunks = Math.min(weights.length, total / (PARALLEL_THRESHOLD / 2));
+        if (total < PARALLEL_THRESHOLD || chunks < 2) {
+            update(weights, 0, weights.length, gradients, kernel);
+            return;
+        }
+
+        int[] bounds = new int[chunks + 1];
+        for (int c = 1; c < chunks; c++) {
+            int from = Arrays.binarySearch(ends, (int) ((long) total * c / chunks));
+            bounds[c] = Math.max(bounds[c - 1], from < 0 ? -from - 1 : from + 1);
+        }
+        bounds[chunks] = weights.length;
+        IntStream.range(0, chunks).parallel().forEach(c -> update(weights, bounds[c], bounds[c + 1], gradients, kernel));
+    }
+
+    private void update(Weight[] weights, int from, int to, Value[] gradients, Kernel kernel) {
+        for (int w = from; w < to; w++) {
+            Weight weight = weights[w];
+            int offset = offset(weight);
+            if (offset < 0) {
+                continue;
+            }
+            Value value = weight.value;
+            Value gradient = gradients[weight.index];
+            if (value instanceof ScalarValue) {
+                ScalarValue scalar = (ScalarValue) value;
+                scalar.value = kernel.apply(scalar.value, ((ScalarValue) gradient).value, offset);
+            } else {
+                double[] values = value.getAsArray();
+                double[] grads = gradient.getAsArray();
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = kernel.apply(values[i], grads[i], offset + i);
+                }
+            }
+        }
+    }
+}
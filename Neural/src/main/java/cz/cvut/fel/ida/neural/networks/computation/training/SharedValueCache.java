@@ -0,0 +1,122 @@
+package cz.cvut.fel.ida.neural.networks.computation.training;
+
+import cz.cvut.fel.ida.algebra.values.Value;
+import cz.cvut.fel.ida.algebra.weights.Weight;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.neurons.CachedUp;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.Neurons;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * The values of the neurons shared across the networks (queries) of a {@link NeuralModel}, so that each shared subnetwork
+ * is evaluated only once and its values are then reused by all the networks containing it (see {@link CachedUp}).
+ * <p>
+ * Each value is stored with the indices of all the weights in its dependency cone. An update of the weights of the model
+ * (a new version, see {@link NeuralModel#beforeUpdate(Collection)}) then drops just the values depending on the updated weights,
+ * i.e. the shared subnetworks are evaluated again once per weight update, and only as far as the update reaches.
+ * <p>
+ * A neuron is considered shared if it is marked so, or if it has been evaluated already before (i.e. it is a part of another
+ * network, or of the same one evaluated again), since e.g. the networks extracted from the single network of the GLOBAL (KB)
+ * mode are not marked.
+ * <p>
+ * The values are keyed by the neuron objects, since the neuron indices are temporarily rewritten by some iteration strategies (e.g. Topologic).
+ */
+public class SharedValueCache {
+    private static final Logger LOG = Logger.getLogger(SharedValueCache.class.getName());
+
+    private final Map<Neurons, Entry> entries = new IdentityHashMap<>();
+
+    /**
+     * All the neurons evaluated so far (their values do not matter for this, hence kept over the weight updates)
+     */
+    private final Set<Neurons> evaluated = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * The neurons with a stored value depending on each weight (by the weight index)
+     */
+    private final Map<Integer, Set<Neurons>> dependents = new HashMap<>();
+
+    /**
+     * The version of the weights the stored values are valid for, i.e. the number of the weight updates seen
+     */
+    private int version;
+
+    public static class Entry {
+        public final Value value;
+        /**
+         * Indices of all the weights the value depends on
+         */
+        public final BitSet weights;
+
+        Entry(Value value, BitSet weights) {
+            this.value = value;
+            this.weights = weights;
+        }
+    }
+
+    public synchronized Entry get(Neurons neuron) {
+        return entries.get(neuron);
+    }
+
+    /**
+     * @param neuron
+     * @return whether the neuron has been evaluated before, i.e. its value may be needed again
+     */
+    public synchronized boolean evaluatedBefore(Neurons neuron) {
+        return !evaluated.add(neuron);
+    }
+
+    public synchronized void put(Neurons neuron, Value value, BitSet weights) {
+        entries.put(neuron, new Entry(value, weights));
+        for (int i = weights.nextSetBit(0); i >= 0; i = weights.nextSetBit(i + 1)) {
+            dependents.computeIfAbsent(i, k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(neuron);
+        }
+    }
+
+    /**
+     * Start a new version of the weights, dropping the values depending on any of the given (updated) weights
+     *
+     * @param weights
+     * @return the number of the values dropped
+     */
+    public synchronized int invalidate(Collection<Weight> weights) {
+        version++;
+        int dropped = 0;
+        for (Weight weight : weights) {
+            Set<Neurons> neurons = dependents.remove(weight.index);
+            if (neurons == null) {
+                continue;
+            }
+            for (Neurons neuron : neurons) {    // some may have been dropped (or dropped and stored again) through another weight already, the dependencies of a neuron do not change though
+                if (entries.remove(neuron) != null) {
+                    dropped++;
+                }
+            }
+        }
+        if (dropped > 0) {
+            LOG.finer("Dropped the values of " + dropped + " shared neurons with the weights version " + version);
+        }
+        return dropped;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        dependents.clear();
+        evaluated.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized int getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,433 @@
+package cz.cvut.fel.ida.neural.networks.computation.training;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import cz.cvut.fel.ida.algebra.values.Value;
+import cz.cvut.fel.ida.algebra.weights.Weight;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * A checkpoint of the training state on the local disk, from which an interrupted training can be resumed.
+ * <p>
+ * The state is captured in the training thread (copies of the weight values, the optimizer moments and the best model,
+ * plus the counters, the random generator and the histories of the scheduling and early stopping in the {@link State}),
+ * and written out in a background thread. The weights are stored in blocks
+ * of {@link #BLOCK_WEIGHTS} weights, each in a file named by the hash of its content, so that the blocks unchanged since
+ * the previous checkpoint (e.g. most of a large embedding model with sparse updates) are not written again.
+ * The manifest listing the blocks is replaced atomically as the last step, i.e. a crash while writing leaves
+ * the previous checkpoint intact.
+ */
+public class TrainingCheckpoint {
+    private static final Logger LOG = Logger.getLogger(TrainingCheckpoint.class.getName());
+
+    public static final int BLOCK_WEIGHTS = 256;
+
+    static final String MANIFEST = "checkpoint.json";
+    static final String BLOCK_PREFIX = "weights-";
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().serializeSpecialFloatingPointValues().create();    // e.g. the NaN losses of the samples not trained yet
+
+    private final Path dir;
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "training-checkpoint");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Future<?> pending;
+
+    /**
+     * The last snapshot not yet being written
+     */
+    private Snapshot waiting;
+    private boolean writing;
+
+    public TrainingCheckpoint(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * The counters of the training, stored in the manifest (the weights are in the blocks)
+     */
+    public static class State {
+        /**
+         * The restart in progress (from 0)
+         */
+        public int restart;
+        /**
+         * Number of the epochae finished, over all the restarts
+         */
+        public int epoch;
+        /**
+         * Number of the gradient steps of the trainer
+         */
+        public int iteration;
+        public double learningRate;
+        /**
+         * The serialized random generator (Base64), see {@link #serializeRandom(Random)}
+         */
+        public String randomState;
+        /**
+         * Ids of the training samples in their current (shuffled) order
+         */
+        public List<String> sampleOrder;
+        /**
+         * The state of the optimizer beyond the moments of the weights (e.g. the steps of the last updates of the lazy Adam), or null
+         */
+        public int[] optimizerSteps;
+        /**
+         * The loss history of the sample scheduler (if any), in the order of its samples
+         */
+        public int schedulerEpoch;
+        public double[] sampleLosses;
+        public int[] sampleConvergedEpochae;
+        /**
+         * The state of the early stopping carried between the epochae, or null
+         */
+        public double[][] earlyStopping;
+        /**
+         * The errors of the (online, true training and validation) results of the restart in progress, i.e. the history
+         * the early stopping works with
+         */
+        public List<double[]> onlineErrors;
+        public List<double[]> trueErrors;
+        public List<double[]> validationErrors;
+
+        List<String> blocks;
+    }
+
+    /**
+     * A copy of the learnable weights of a model (values, optimizer moments and the best values), by their indices
+     */
+    public static class Snapshot {
+        public final State state;
+
+        final int[] indices;
+        final double[][] values;
+        /**
+         * Null where missing (e.g. with SGD)
+         */
+        final double[][] momenta;
+        final double[][] velocities;
+        /**
+         * Null where the same as the values
+         */
+        final double[][] best;
+
+        Snapshot(State state, int size) {
+            this.state = state;
+            indices = new int[size];
+            values = new double[size][];
+            momenta = new double[size][];
+            velocities = new double[size][];
+            best = new double[size][];
+        }
+
+        /**
+         * @param bestModel - either the current model itself (with the best values in its marked {@link WeightsSnapshot}), or a copy
+         * @param arena     - holding the moments of the weights, if used by the optimizer
+         */
+        public static Snapshot capture(State state, NeuralModel current, NeuralModel bestModel, ParameterArena arena) {
+            List<Weight> weights = current.learnableWeights;
+            Snapshot snapshot = new Snapshot(state, weights.size());
+            Map<Integer, Weight> bestWeights = bestModel == null || bestModel == current ? null : bestModel.mapWeightsToIds();
+            WeightsSnapshot cow = bestModel == current && current.getSnapshot().isMarked() ? current.getSnapshot() : null;
+            for (int i = 0; i < weights.size(); i++) {
+                Weight weight = weights.get(i);
+                double[] values = weight.value.getAsArray().clone();
+                snapshot.indices[i] = weight.index;
+                snapshot.values[i] = values;
+                if (arena != null) {
+                    int offset = arena.offset(weight);
+                    if (offset >= 0) {
+                        snapshot.momenta[i] = Arrays.copyOfRange(arena.firstMoments, offset, offset + values.length);
+                        snapshot.velocities[i] = Arrays.copyOfRange(arena.secondMoments, offset, offset + values.length);
+                    }
+                } else if (weight.momentum != null) {
+                    snapshot.momenta[i] = weight.momentum.getAsArray().clone();
+                    snapshot.velocities[i] = weight.velocity.getAsArray().clone();
+                }
+                if (cow != null) {
+                    Value preserved = cow.getPreserved(weight);
+                    snapshot.best[i] = preserved == null ? null : preserved.getAsArray().clone();
+                } else if (bestWeights != null) {
+                    double[] best = bestWeights.get(weight.index).value.getAsArray();
+                    snapshot.best[i] = Arrays.equals(best, values) ? null : best.clone();
+                }
+            }
+            return snapshot;
+        }
+
+        /**
+         * Put the best values into the weights of the model
+         */
+        public void loadBestInto(NeuralModel model) {
+            Map<Integer, Weight> weights = model.mapWeightsToIds();
+            model.beforeUpdate(model.learnableWeights);
+            for (int i = 0; i < indices.length; i++) {
+                double[] values = best[i] != null ? best[i] : this.values[i];
+                weight(weights, i, values).value.setAsArray(values.clone());
+            }
+        }
+
+        /**
+         * Put the values and the optimizer moments into the weights of the model
+         *
+         * @param arena - to put the moments into, if used by the optimizer
+         */
+        public void loadInto(NeuralModel model, ParameterArena arena) {
+            Map<Integer, Weight> weights = model.mapWeightsToIds();
+            model.beforeUpdate(model.learnableWeights);
+            for (int i = 0; i < indices.length; i++) {
+                Weight weight = weight(weights, i, values[i]);
+                weight.value.setAsArray(values[i].clone());
+                if (momenta[i] == null) {
+                    continue;
+                }
+                if (arena != null && arena.offset(weight) >= 0) {
+                    System.arraycopy(momenta[i], 0, arena.firstMoments, arena.offset(weight), momenta[i].length);
+                    System.arraycopy(velocities[i], 0, arena.secondMoments, arena.offset(weight), velocities[i].length);
+                } else {
+                    if (weight.momentum == null) {
+                        weight.momentum = weight.value.getForm();
+                        weight.velocity = weight.value.getForm();
+                    }
+                    weight.momentum.setAsArray(momenta[i].clone());
+                    weight.velocity.setAsArray(velocities[i].clone());
+                }
+            }
+        }
+
+        private Weight weight(Map<Integer, Weight> weights, int i, double[] values) {
+            Weight weight = weights.get(indices[i]);
+            if (weight == null || weight.value.getAsArray().length != values.length) {
+                throw new IllegalStateException("The checkpoint does not match the model (weight " + indices[i] + ").");
+            }
+            return weight;
+        }
+    }
+
+    /**
+     * The state of the generator cannot be read out otherwise, while reseeding it would change the random numbers drawn
+     */
+    public static String serializeRandom(Random random) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(random);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);     // in memory
+        }
+        return Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    public static Random deserializeRandom(String state) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(state)))) {
+            return (Random) in.readObject();
+        } catch (ClassNotFoundException | ClassCastException | IllegalArgumentException e) {
+            throw new IOException("Invalid random generator state in the checkpoint", e);
+        }
+    }
+
+    public boolean exists() {
+        return Files.exists(dir.resolve(MANIFEST));
+    }
+
+    /**
+     * Write the snapshot in the background. If the previous one is still being written, this one waits for it,
+     * replacing any older one waiting, so that the training never waits for the disk, and the last snapshot is always written.
+     */
+    public synchronized void save(Snapshot snapshot) {
+        if (waiting != null) {
+            LOG.fine("Skipping the checkpoint after epoch " + waiting.state.epoch + ", the previous one is still being written.");
+        }
+        waiting = snapshot;
+        if (!writing) {
+            writing = true;
+            pending = writer.submit(this::writeWaiting);
+        }
+    }
+
+    private void writeWaiting() {
+        Snapshot snapshot;
+        while ((snapshot = takeWaiting()) != null) {
+            try {
+                write(snapshot);
+                LOG.fine("Checkpoint after epoch " + snapshot.state.epoch + " stored into " + dir);
+            } catch (IOException e) {
+                LOG.severe("Failed to store the checkpoint into " + dir + ": " + e);
+            }
+        }
+    }
+
+    private synchronized Snapshot takeWaiting() {
+        Snapshot snapshot = waiting;
+        waiting = null;
+        writing = snapshot != null;
+        return snapshot;
+    }
+
+    /**
+     * Wait for the checkpoints being written (if any)
+     */
+    public void close() {
+        Future<?> last;
+        synchronized (this) {
+            last = pending;
+        }
+        if (last != null) {
+            try {
+                last.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                LOG.severe("Failed to store the checkpoint: " + e.getCause());
+            }
+        }
+        writer.shutdown();
+    }
+
+    private void write(Snapshot snapshot) throws IOException {
+        Files.createDirectories(dir);
+        List<String> blocks = new ArrayList<>();
+        for (int from = 0; from < snapshot.indices.length; from += BLOCK_WEIGHTS) {
+            byte[] bytes = serializeBlock(snapshot, from, Math.min(from + BLOCK_WEIGHTS, snapshot.indices.length));
+            String name = BLOCK_PREFIX + blocks.size() + "-" + hash(bytes) + ".bin";
+            Path file = dir.resolve(name);
+            if (!Files.exists(file)) {  // otherwise unchanged since a previous checkpoint
+                Path tmp = dir.resolve(name + ".tmp");
+                Files.write(tmp, bytes);
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            blocks.add(name);
+        }
+        snapshot.state.blocks = blocks;
+
+        Path tmp = dir.resolve(MANIFEST + ".tmp");
+        try (Writer out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            GSON.toJson(snapshot.state, out);
+        }
+        Files.move(tmp, dir.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Set<String> current = new HashSet<>(blocks);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, BLOCK_PREFIX + "*")) {
+            for (Path file : files) {
+                if (!current.contains(file.getFileName().toString())) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the last stored checkpoint
+     */
+    public Snapshot load() throws IOException {
+        State state;
+        try (Reader in = Files.newBufferedReader(dir.resolve(MANIFEST), StandardCharsets.UTF_8)) {
+            state = GSON.fromJson(in, State.class);
+        }
+        int size = 0;
+        for (String block : state.blocks) {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(dir.resolve(block)))) {
+                size += in.readInt();
+            }
+        }
+        Snapshot snapshot = new Snapshot(state, size);
+        int i = 0;
+        for (String block : state.blocks) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(dir.resolve(block))))) {
+                int count = in.readInt();
+                for (int end = i + count; i < end; i++) {
+                    snapshot.indices[i] = in.readInt();
+                    snapshot.values[i] = readArray(in);
+                    snapshot.momenta[i] = readArray(in);
+                    snapshot.velocities[i] = readArray(in);
+                    snapshot.best[i] = readArray(in);
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    private static byte[] serializeBlock(Snapshot snapshot, int from, int to) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(to - from);
+        for (int i = from; i < to; i++) {
+            out.writeInt(snapshot.indices[i]);
+            writeArray(out, snapshot.values[i]);
+            writeArray(out, snapshot.momenta[i]);
+            writeArray(out, snapshot.velocities[i]);
+            writeArray(out, snapshot.best[i]);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeArray(DataOutputStream out, double[] array) throws IOException {
+        if (array == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(array.length);
+        for (double value : array) {
+            out.writeDouble(value);
+        }
+    }
+
+    private static double[] readArray(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        double[] array = new double[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = in.readDouble();
+        }
+        return array;
+    }
+
+    private static String hash(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                sb.append(String.format("%02x", digest[i]));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
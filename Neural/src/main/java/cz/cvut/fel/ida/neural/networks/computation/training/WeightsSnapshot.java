@@ -0,0 +1,135 @@
+package cz.cvut.fel.ida.neural.networks.computation.training;
+
+import cz.cvut.fel.ida.algebra.values.Value;
+import cz.cvut.fel.ida.algebra.weights.Weight;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * A copy-on-write snapshot of the weight values of a {@link NeuralModel}, e.g. to keep the best model found during
+ * training without cloning all its weights at each improvement.
+ * <p>
+ * Marking the snapshot copies nothing, it only starts a new version. The value of a weight is then copied only right
+ * before its first change after the mark (see {@link NeuralModel#beforeUpdate(Collection)}), so that the snapshot costs
+ * memory (and time) proportional to the weights changed since, which is a small part of a large (e.g. embedding) model
+ * with sparse updates. Restoring the snapshot puts the preserved Values back into the weights (a pointer swap).
+ */
+public class WeightsSnapshot {
+    private static final Logger LOG = Logger.getLogger(WeightsSnapshot.class.getName());
+
+    /**
+     * The weights of the model by their index
+     */
+    private final Weight[] weights;
+
+    /**
+     * The values of the weights as of the mark, for those that have changed since (by index), null otherwise
+     */
+    private final Value[] preserved;
+
+    /**
+     * Indices of the preserved values, in the order of preservation
+     */
+    private int[] preservedIndices = new int[16];
+    private int preservedCount;
+
+    private boolean marked;
+
+    public WeightsSnapshot(List<Weight> allWeights) {
+        int size = allWeights.stream().mapToInt(w -> w.index).max().orElse(-1) + 1;
+        weights = new Weight[size];
+        preserved = new Value[size];
+        for (Weight weight : allWeights) {
+            if (weight.index >= 0) {
+                weights[weight.index] = weight;
+            }
+        }
+    }
+
+    /**
+     * Take a new snapshot of the current weight values, forgetting the previous one
+     */
+    public synchronized void mark() {
+        clear();
+        marked = true;
+    }
+
+    /**
+     * Forget the snapshot, the changes of the weights are not tracked anymore
+     */
+    public synchronized void release() {
+        clear();
+        marked = false;
+    }
+
+    public boolean isMarked() {
+        return marked;
+    }
+
+    /**
+     * Copy the values of the given weights before they are changed, unless they have been preserved since the mark already
+     *
+     * @param changedWeights
+     */
+    public synchronized void preserve(Collection<Weight> changedWeights) {
+        if (!marked) {
+            return;
+        }
+        for (Weight weight : changedWeights) {
+            int index = weight.index;
+            if (index < 0 || index >= preserved.length || preserved[index] != null) {
+                continue;
+            }
+            preserved[index] = weight.value.clone();
+            if (preservedCount == preservedIndices.length) {
+                preservedIndices = Arrays.copyOf(preservedIndices, 2 * preservedCount);
+            }
+            preservedIndices[preservedCount++] = index;
+        }
+    }
+
+    /**
+     * Put the values from the mark back into the weights. The snapshot stays marked, i.e. it is now equal to the current values.
+     *
+     * @return number of the restored weights
+     */
+    public synchronized int restore() {
+        if (!marked) {
+            return 0;
+        }
+        int restored = preservedCount;
+        for (int i = 0; i < preservedCount; i++) {
+            int index = preservedIndices[i];
+            weights[index].value = preserved[index];
+            preserved[index] = null;
+        }
+        preservedCount = 0;
+        LOG.finer("Restored " + restored + " weights from the snapshot.");
+        return restored;
+    }
+
+    /**
+     * @return the value of the weight as of the mark, or null if it has not changed since
+     */
+    public synchronized Value getPreserved(Weight weight) {
+        int index = weight.index;
+        return index < 0 || index >= preserved.length ? null : preserved[index];
+    }
+
+    /**
+     * @return number of the weights changed (and hence copied) since the mark
+     */
+    public int preservedCount() {
+        return preservedCount;
+    }
+
+    private void clear() {
+        for (int i = 0; i < preservedCount; i++) {
+            preserved[preservedIndices[i]] = null;
+        }
+        preservedCount = 0;
+    }
+}
@@ -2,6 +2,8 @@ package cz.cvut.fel.ida.neural.networks.computation.training.optimizers;
 
 import cz.cvut.fel.ida.algebra.values.*;
 import cz.cvut.fel.ida.algebra.weights.Weight;
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralModel;
+import cz.cvut.fel.ida.neural.networks.computation.training.ParameterArena;
 import cz.cvut.fel.ida.setup.Settings;
 
 import java.util.Collection;
@@ -15,15 +17,34 @@ public class Adam implements Optimizer {
     public final double beta2;
     public final double epsilon;
 
+    /**
+     * Decoupled weight decay (AdamW), 0 for the plain Adam
+     */
+    protected double weightDecay = 0;
+
+    /**
+     * Use the fused kernel with the moments in the {@link NeuralModel#getParameterArena()}, instead of the {@link Weight#momentum} and {@link Weight#velocity}
+     */
+    public final boolean fused;
+
     public Adam(Value learningRate) {
-        this(learningRate, 0.9, 0.999, 1e-8);
+        this(learningRate, false);
+    }
+
+    public Adam(Value learningRate, boolean fused) {
+        this(learningRate, 0.9, 0.999, 1e-8, fused);
     }
 
     public Adam(Value learningRate, double i_beta1, double i_beta2, double i_epsilon) {
+        this(learningRate, i_beta1, i_beta2, i_epsilon, false);
+    }
+
+    public Adam(Value learningRate, double i_beta1, double i_beta2, double i_epsilon, boolean fused) {
         this.learningRate = (ScalarValue) learningRate;
         this.beta1 = i_beta1;
         this.beta2 = i_beta2;
         this.epsilon = i_epsilon;
+        this.fused = fused;
     }
 
     public void performGradientStep(Collection<Weight> updatedWeights, Value[] gradients, int iteration) {
@@ -31,6 +52,7 @@ public class Adam implements Optimizer {
         final double fix1 = 1 / (1 - Math.pow(beta1, iteration));
         final double fix2 = 1 / (1 - Math.pow(beta2, iteration));
         final double lr = learningRate.value;
+        final double decay = 1 - lr * weightDecay;
 
         for (Weight weight : updatedWeights) {
             final double[] value, momentum, velocity, gradient;
@@ -45,7 +67,7 @@ public class Adam implements Optimizer {
 
                 momentum[i] = (momentum[i] * beta1) - (grad * (1 - beta1));
                 velocity[i] = (velocity[i] * beta2) + (grad * grad * (1 - beta2));
-                value[i] += momentum[i] * fix1 * (-1 / (Math.sqrt(velocity[i] * fix2) + epsilon)) * lr;
+                value[i] = value[i] * decay + momentum[i] * fix1 * (-1 / (Math.sqrt(velocity[i] * fix2) + epsilon)) * lr;
             }
 
             weight.value.setAsArray(value);
@@ -54,6 +76,28 @@ public class Adam implements Optimizer {
         }
     }
 
+    @Override
+    public void performGradientStep(NeuralModel neuralModel, Collection<Weight> updatedWeights, Value[] gradients, int iteration) {
+        if (!fused) {
+            performGradientStep(updatedWeights, gradients, iteration);
+            return;
+        }
+        final double fix1 = 1 / (1 - Math.pow(beta1, iteration));
+        final double fix2 = 1 / (1 - Math.pow(beta2, iteration));
+        final double lr = learningRate.value;
+        final double decay = 1 - lr * weightDecay;
+
+        ParameterArena arena = neuralModel.getParameterArena();
+        final double[] momentum = arena.firstMoments;
+        final double[] velocity = arena.secondMoments;
+
+        arena.update(updatedWeights, gradients, (value, grad, i) -> {
+            momentum[i] = (momentum[i] * beta1) - (grad * (1 - beta1));
+            velocity[i] = (velocity[i] * beta2) + (grad * grad * (1 - beta2));
+            return value * decay + momentum[i] * fix1 * (-1 / (Math.sqrt(velocity[i] * fix2) + epsilon)) * lr;
+        });
+    }
+
     @Override
     public void restart(Settings settings) {
 
@@ -0,0 +1,19 @@
+package cz.cvut.fel.ida.neural.networks.computation.training.optimizers;
+
+import cz.cvut.fel.ida.algebra.values.Value;
+
+/**
+ * Adam with decoupled weight decay, i.e. the weights are shrunk by (1 - learningRate * weightDecay) at each step,
+ * independently of the (adaptive) gradient update.
+ */
+public class AdamW extends Adam {
+
+    public AdamW(Value learningRate, double weightDecay) {
+        this(learningRate, weightDecay, false);
+    }
+
+    public AdamW(Value learningRate, double weightDecay, boolean fused) {
+        super(learningRate, fused);
+        this.weightDecay = weightDecay;
+    }
+}
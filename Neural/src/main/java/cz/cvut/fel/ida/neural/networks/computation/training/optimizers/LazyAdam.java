@@ -0,0 +1,85 @@
+package cz.cvut.fel.ida.neural.networks.computation.training.optimizers;
+
+import cz.cvut.fel.ida.algebra.values.Value;
+import cz.cvut.fel.ida.algebra.weights.Weight;
+import cz.cvut.fel.ida.setup.Settings;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.logging.Logger;
+
+/**
+ * A sparse (lazy) variant of {@link Adam} for templates where each step touches only a few of the weights (e.g. the
+ * per-constant embeddings in KBC).
+ * <p>
+ * The moments of a weight are allocated at its first update only, and the decay they would have undergone in the
+ * steps the weight was skipped (i.e. with zero gradient) is applied at once when the weight is touched again,
+ * based on the stored step of its last update. The moments are thus consistent with the global iteration used
+ * for the bias correction, while a step costs time proportional to the touched parameters only. Unlike the dense
+ * Adam, the weight values are not moved by the decaying momentum in the skipped steps.
+ */
+public class LazyAdam extends Adam {
+    private static final Logger LOG = Logger.getLogger(LazyAdam.class.getName());
+
+    /**
+     * The iteration of the last update of each weight (by index), 0 for never updated
+     */
+    private int[] lastSteps = new int[0];
+
+    public LazyAdam(Value learningRate) {
+        super(learningRate);
+    }
+
+    @Override
+    public void performGradientStep(Collection<Weight> updatedWeights, Value[] gradients, int iteration) {
+        for (Weight weight : updatedWeights) {
+            if (weight.index >= lastSteps.length) {
+                lastSteps = Arrays.copyOf(lastSteps, Math.max(weight.index + 1, 2 * lastSteps.length));
+            }
+            int lastStep = lastSteps[weight.index];
+            if (weight.momentum == null) {
+                weight.momentum = weight.value.getForm();
+                weight.velocity = weight.value.getForm();
+            } else if (lastStep > 0 && iteration - lastStep > 1) {
+                catchUp(weight, iteration - lastStep - 1);
+            }
+            lastSteps[weight.index] = iteration;
+        }
+        super.performGradientStep(updatedWeights, gradients, iteration);
+    }
+
+    /**
+     * Decay the moments as if the given number of steps with zero gradient passed
+     */
+    private void catchUp(Weight weight, int skippedSteps) {
+        final double decay1 = Math.pow(beta1, skippedSteps);
+        final double decay2 = Math.pow(beta2, skippedSteps);
+
+        double[] momentum = weight.momentum.getAsArray();
+        double[] velocity = weight.velocity.getAsArray();
+        for (int i = 0; i < momentum.length; i++) {
+            momentum[i] *= decay1;
+            velocity[i] *= decay2;
+        }
+        weight.momentum.setAsArray(momentum);
+        weight.velocity.setAsArray(velocity);
+    }
+
+    @Override
+    public void restart(Settings settings) {
+        Arrays.fill(lastSteps, 0);    // the moments are zeroed with the weights reinitialization
+    }
+
+    /**
+     * @return the iterations of the last updates of the weights, without which the skipped decay of the moments would be lost
+     */
+    @Override
+    public int[] getSteps() {
+        return lastSteps.clone();
+    }
+
+    @Override
+    public void setSteps(int[] steps) {
+        lastSteps = steps.clone();
+    }
+}
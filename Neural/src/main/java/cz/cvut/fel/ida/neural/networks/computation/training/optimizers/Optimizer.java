@@ -12,9 +12,13 @@ public interface Optimizer {
 
     static Optimizer getFrom(Settings settings, Value learningRate) {
         if (settings.getOptimizer() == Settings.OptimizerSet.SGD) {
-            return new SGD(learningRate);
+            return new SGD(learningRate, settings.flatParameterArena);
         } else if (settings.getOptimizer() == Settings.OptimizerSet.ADAM) {
-            return new Adam(learningRate);
+            return new Adam(learningRate, settings.flatParameterArena);
+        } else if (settings.getOptimizer() == Settings.OptimizerSet.ADAMW) {
+            return new AdamW(learningRate, settings.weightDecay, settings.flatParameterArena);
+        } else if (settings.getOptimizer() == Settings.OptimizerSet.LAZY_ADAM) {
+            return new LazyAdam(learningRate);
         }
         return new SGD(learningRate);  //default
     }
@@ -22,10 +26,17 @@ public interface Optimizer {
 
     default void performGradientStep(NeuralModel neuralModel, WeightUpdater weightUpdater, int iteration) {
 //        synchronized (this) { //todo where to synchronize?
-        performGradientStep(weightUpdater.updatedWeightsOnly, weightUpdater.weightUpdates, iteration);
+        performGradientStep(neuralModel, weightUpdater.updatedWeightsOnly, weightUpdater.weightUpdates, iteration);
 //        }
     }
 
+    /**
+     * The optimizers working with the {@link NeuralModel#getParameterArena()} need the model, the others just the weights
+     */
+    default void performGradientStep(NeuralModel neuralModel, Collection<Weight> updatedWeights, Value[] gradients, int iteration) {
+        performGradientStep(updatedWeights, gradients, iteration);
+    }
+
     /**
      * Update of the unique (shared) weights should be synchronized across the backpropagating threads
      * @param updatedWeights
@@ -35,4 +46,14 @@ public interface Optimizer {
     void performGradientStep(Collection<Weight> updatedWeights, Value[] gradients, int iteration);
 
     void restart(Settings settings);
+
+    /**
+     * @return the state of the optimizer beyond the moments kept with the weights (e.g. to be checkpointed), or null if none
+     */
+    default int[] getSteps() {
+        return null;
+    }
+
+    default void setSteps(int[] steps) {
+    }
 }
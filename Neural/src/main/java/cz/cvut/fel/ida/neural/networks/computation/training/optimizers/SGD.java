@@ -1,7 +1,9 @@
 package cz.cvut.fel.ida.neural.networks.computation.training.optimizers;
 
+import cz.cvut.fel.ida.algebra.values.ScalarValue;
 import cz.cvut.fel.ida.algebra.values.Value;
 import cz.cvut.fel.ida.algebra.weights.Weight;
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralModel;
 import cz.cvut.fel.ida.setup.Settings;
 
 import java.util.Collection;
@@ -12,8 +14,18 @@ public class SGD implements Optimizer {
 
     Value learningRate; //check any direct declaration of Value subclasses for DD   - solved by PROTECTED modifier in the specific methods
 
+    /**
+     * Use the fused in-place kernel over the {@link NeuralModel#getParameterArena()}
+     */
+    public final boolean fused;
+
     public SGD(Value learningRate) {
+        this(learningRate, false);
+    }
+
+    public SGD(Value learningRate, boolean fused) {
         this.learningRate = learningRate;
+        this.fused = fused;
     }
 
     @Override
@@ -24,6 +36,16 @@ public class SGD implements Optimizer {
         }
     }
 
+    @Override
+    public void performGradientStep(NeuralModel neuralModel, Collection<Weight> updatedWeights, Value[] gradients, int iteration) {
+        if (!fused || !(learningRate instanceof ScalarValue)) {
+            performGradientStep(updatedWeights, gradients, iteration);
+            return;
+        }
+        final double lr = ((ScalarValue) learningRate).value;
+        neuralModel.getParameterArena().update(updatedWeights, gradients, (value, gradient, position) -> value + gradient * lr);
+    }
+
 
     @Override
     public void restart(Settings settings) {
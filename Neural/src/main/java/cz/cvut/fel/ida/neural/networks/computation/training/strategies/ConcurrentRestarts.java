@@ -0,0 +1,107 @@
+package cz.cvut.fel.ida.neural.networks.computation.training.strategies;
+
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralModel;
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralSample;
+import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.generic.Pair;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * The restarts of an {@link IterativeTrainingStrategy} run concurrently (with {@link Settings#concurrentRestarts}), each as a separate
+ * strategy with its own copy of the weights, networks and settings, sharing the budget of {@link Settings#maxCumEpochCount}.
+ * <p>
+ * Unlike the sequential restarts (which continue with the same random generator, order of the samples, epoch numbering etc.),
+ * each of these starts anew, with its own random generator (see {@link #restartSeed(int)}).
+ */
+class ConcurrentRestarts {
+    private static final Logger LOG = Logger.getLogger(ConcurrentRestarts.class.getName());
+
+    private final IterativeTrainingStrategy main;
+
+    private final List<IterativeTrainingStrategy> restarts;
+
+    private ConcurrentRestarts(IterativeTrainingStrategy main, List<IterativeTrainingStrategy> restarts) {
+        this.main = main;
+        this.restarts = restarts;
+    }
+
+    /**
+     * The random generator of the restarts after the first one (which continues with the main one), seeded from the main
+     * seed and the restart index, so that each restart draws the same (initial weights, shuffling, dropout) no matter
+     * the order in which the restarts get to it.
+     */
+    static long restartSeed(int restart) {
+        long z = ((long) Settings.seed << 32) ^ restart;    // the SplitMix64 finalizer, to decorrelate the neighbouring seeds
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Each restart gets its own copy of the weights, and hence also its own copy of the networks, and its own copy of the
+     * settings with its own random generator. The first restart works with the original model, networks and settings.
+     *
+     * @param main - the strategy (after {@link IterativeTrainingStrategy#initTraining()}) to take over the results of the restarts
+     * @return the individual restarts, or null if the networks cannot be copied
+     */
+    static ConcurrentRestarts prepare(IterativeTrainingStrategy main) {
+        Settings settings = main.settings;
+        List<NeuralModel> models = new ArrayList<>(settings.restartCount - 1);
+        List<Settings> restartSettings = new ArrayList<>(settings.restartCount - 1);
+        for (int i = 1; i < settings.restartCount; i++) {
+            models.add(main.currentModel.cloneWeights());
+            restartSettings.add(settings.withRandom(new Random(restartSeed(i))));
+        }
+        List<Pair<List<NeuralSample>, List<NeuralSample>>> copies;
+        try {
+            copies = main.copyNetworks(models, restartSettings);
+        } catch (IOException | UnsupportedOperationException | IllegalStateException e) {
+            LOG.warning("Cannot copy the networks for concurrent restarts (" + e.getMessage() + "), the restarts will run sequentially.");
+            return null;
+        }
+
+        List<IterativeTrainingStrategy> restarts = new ArrayList<>(settings.restartCount);
+        restarts.add(new IterativeTrainingStrategy(settings, main.currentModel, new Pair<>(new ArrayList<>(main.trainingSet), new ArrayList<>(main.validationSet)), 0));
+        for (int i = 1; i < settings.restartCount; i++) {
+            restarts.add(new IterativeTrainingStrategy(restartSettings.get(i - 1), models.get(i - 1), copies.get(i - 1), i));
+        }
+        return new ConcurrentRestarts(main, restarts);
+    }
+
+    /**
+     * Runs the restarts concurrently, and then lets the main strategy take over the best model (w.r.t. the model selection)
+     * and the progress of all of them.
+     */
+    void train() {
+        LOG.info("Running " + restarts.size() + " restarts concurrently.");
+        AtomicInteger cumEpochae = new AtomicInteger();
+        restarts.parallelStream().forEach(restart -> restart.trainRestart(cumEpochae));
+
+        Settings settings = main.settings;
+        IterativeTrainingStrategy best = null;
+        for (IterativeTrainingStrategy restart : restarts) {
+            main.progress.restarts.addAll(restart.progress.restarts);
+            if (best == null || restart.progress.bestResults.betterThan(best.progress.bestResults, settings.dataSelection, settings.modelSelection)) {
+                best = restart;
+            }
+        }
+        IterativeTrainingStrategy last = restarts.get(restarts.size() - 1);
+        main.progress.currentRestart = last.progress.currentRestart;
+        main.progress.bestResults = best.progress.bestResults;
+        if (best.bestModel == best.currentModel) {
+            best.currentModel.restoreSnapshot();
+        }
+        if (best.currentModel != main.currentModel) {
+            main.currentModel.releaseSnapshot();
+        }
+        main.bestModel = best.bestModel;
+        main.exporter = last.exporter;
+        main.restart = last.restart;
+    }
+}
@@ -2,9 +2,12 @@ package cz.cvut.fel.ida.neural.networks.computation.training.strategies.Hyperpar
 
 import cz.cvut.fel.ida.algebra.values.ScalarValue;
 import cz.cvut.fel.ida.algebra.values.Value;
+import cz.cvut.fel.ida.algebra.values.VectorValue;
 import cz.cvut.fel.ida.learning.results.Progress;
+import cz.cvut.fel.ida.learning.results.Results;
 import cz.cvut.fel.ida.setup.Settings;
 
+import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -81,17 +84,49 @@ public class DynamicRestartingStrategy extends RestartingStrategy {
             case ONLINETRAIN:
                 return restart.onlineTrainingResults.get(restart.onlineTrainingResults.size() - 1 - stepsBack).error;
             case TRUETRAIN:
-                stepsBack /= recalculation;
-                return restart.trueTrainingResults.get(restart.trueTrainingResults.size() - 1 - stepsBack).error;
+                if (!restart.trueTrainingResults.isEmpty()) {
+                    return getLagging(restart.trueTrainingResults, stepsBack / recalculation);
+                }
+                break;
             case VALIDATION:
-                stepsBack /= recalculation;
-                return restart.validationResults.get(restart.validationResults.size() - 1 - stepsBack).error;
+                if (!restart.validationResults.isEmpty()) {
+                    return getLagging(restart.validationResults, stepsBack / recalculation);
+                }
+                break;
         }
         return restart.onlineTrainingResults.get(restart.onlineTrainingResults.size() - 1 - stepsBack).error;
     }
 
+    /**
+     * The recalculated results may lag behind the epochs (e.g. with the asynchronous recalculation), so the oldest one is taken then
+     */
+    private static Value getLagging(List<Results> results, int stepsBack) {
+        return results.get(Math.max(0, results.size() - 1 - stepsBack)).error;
+    }
+
     @Override
     public void nextRestart() {
 
     }
+
+    /**
+     * @return the moving sums of the past and present losses (null before the first epoch)
+     */
+    @Override
+    public double[][] getState() {
+        return new double[][]{avgLossPast == null ? null : avgLossPast.getAsArray().clone(), avgLossPresent == null ? null : avgLossPresent.getAsArray().clone()};
+    }
+
+    @Override
+    public void setState(double[][] state) {
+        avgLossPast = toValue(state[0]);
+        avgLossPresent = toValue(state[1]);
+    }
+
+    private static Value toValue(double[] values) {
+        if (values == null) {
+            return null;
+        }
+        return values.length == 1 ? new ScalarValue(values[0]) : new VectorValue(values);
+    }
 }
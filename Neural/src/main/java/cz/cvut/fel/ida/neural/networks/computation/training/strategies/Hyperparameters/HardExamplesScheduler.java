@@ -0,0 +1,39 @@
+package cz.cvut.fel.ida.neural.networks.computation.training.strategies.Hyperparameters;
+
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralSample;
+import cz.cvut.fel.ida.setup.Settings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Trains on the samples with the highest priorities (hard example mining). This deliberately biases the gradients
+ * towards these samples, i.e. they are not rescaled.
+ */
+public class HardExamplesScheduler extends SampleScheduler {
+
+    public HardExamplesScheduler(Settings settings, List<NeuralSample> trainingSet) {
+        super(settings, trainingSet);
+    }
+
+    @Override
+    protected List<NeuralSample> select(List<Integer> candidates, int count) {
+        double[] priorities = priorities(candidates);
+        List<NeuralSample> selected = IntStream.range(0, priorities.length).boxed()
+                .sorted(Comparator.comparingDouble(c -> -priorities[c]))
+                .limit(count)
+                .map(c -> samples.get(candidates.get(c)))
+                .collect(Collectors.toCollection(ArrayList::new));
+        for (NeuralSample sample : selected) {
+            sample.gradientScale = 1;
+        }
+        if (settings.shuffleEachEpoch) {
+            Collections.shuffle(selected, settings.random);
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,62 @@
+package cz.cvut.fel.ida.neural.networks.computation.training.strategies.Hyperparameters;
+
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralSample;
+import cz.cvut.fel.ida.setup.Settings;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Draws the samples (with replacement) with probabilities proportional to their priorities, mixed with the uniform
+ * distribution, and scales their gradients by 1 / (N * probability), so that the expected gradient of an epoch equals
+ * that of the same number of samples drawn uniformly from the N samples.
+ * <p>
+ * A sample drawn repeatedly is trained only once in the epoch, with its gradient scaled by the number of its draws,
+ * since the same network cannot be trained in parallel with itself (e.g. within a minibatch).
+ */
+public class LossProportionalScheduler extends SampleScheduler {
+
+    public LossProportionalScheduler(Settings settings, List<NeuralSample> trainingSet) {
+        super(settings, trainingSet);
+    }
+
+    @Override
+    protected List<NeuralSample> select(List<Integer> candidates, int count) {
+        double[] priorities = priorities(candidates);
+        double total = 0;
+        for (double priority : priorities) {
+            total += priority;
+        }
+        double uniform = total > 0 ? settings.uniformSamplingPortion : 1;
+
+        double[] probabilities = new double[priorities.length];
+        double[] cumulative = new double[priorities.length];
+        double sum = 0;
+        for (int c = 0; c < priorities.length; c++) {
+            probabilities[c] = (1 - uniform) * (total > 0 ? priorities[c] / total : 0) + uniform / priorities.length;
+            sum += probabilities[c];
+            cumulative[c] = sum;
+        }
+
+        int[] draws = new int[priorities.length];
+        for (int k = 0; k < count; k++) {
+            int c = Arrays.binarySearch(cumulative, settings.random.nextDouble() * sum);
+            c = c < 0 ? -c - 1 : c;
+            draws[Math.min(c, cumulative.length - 1)]++;
+        }
+
+        List<NeuralSample> selected = new ArrayList<>(count);
+        for (int c = 0; c < draws.length; c++) {
+            if (draws[c] == 0) {
+                continue;
+            }
+            NeuralSample sample = samples.get(candidates.get(c));
+            sample.gradientScale = draws[c] / (samples.size() * probabilities[c]);
+            selected.add(sample);
+        }
+        Collections.shuffle(selected, settings.random);
+        return selected;
+    }
+}
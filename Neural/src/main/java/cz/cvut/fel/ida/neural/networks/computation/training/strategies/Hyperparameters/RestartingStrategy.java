@@ -19,4 +19,14 @@ public abstract class RestartingStrategy implements Exportable {
     public abstract boolean continueRestart(Progress progress);
 
     public abstract void nextRestart();
+
+    /**
+     * @return the state carried between the epochae of a restart (e.g. to be checkpointed), or null if none
+     */
+    public double[][] getState() {
+        return null;
+    }
+
+    public void setState(double[][] state) {
+    }
 }
\ No newline at end of file
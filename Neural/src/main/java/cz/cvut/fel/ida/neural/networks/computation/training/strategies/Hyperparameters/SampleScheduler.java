@@ -0,0 +1,215 @@
+package cz.cvut.fel.ida.neural.networks.computation.training.strategies.Hyperparameters;
+
+import cz.cvut.fel.ida.algebra.values.ScalarValue;
+import cz.cvut.fel.ida.algebra.values.Value;
+import cz.cvut.fel.ida.learning.results.Result;
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralSample;
+import cz.cvut.fel.ida.setup.Settings;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Chooses the samples (and their order) to train on in each epoch, based on the history of their (online) losses.
+ * <p>
+ * The samples whose loss stayed below {@link Settings#convergedSampleLoss} for {@link Settings#convergedSamplePatience}
+ * epochae are skipped, except for every {@link Settings#scheduledRefreshEpochae}-th epoch with all the samples, where
+ * their losses get refreshed. The {@link cz.cvut.fel.ida.learning.Query#importance} of the samples acts as a prior in
+ * their selection.
+ */
+public abstract class SampleScheduler {
+    private static final Logger LOG = Logger.getLogger(SampleScheduler.class.getName());
+
+    protected final Settings settings;
+
+    protected final List<NeuralSample> samples;
+
+    /**
+     * Moving averages of the losses of the samples, NaN for the samples not trained yet
+     */
+    protected final double[] losses;
+
+    /**
+     * Numbers of consecutive epochae with the loss of each sample below the {@link Settings#convergedSampleLoss}
+     */
+    private final int[] convergedEpochae;
+
+    private final Map<String, Integer> positions;
+
+    protected int epoch;
+
+    private int scheduledSamples;
+    private int skippedSamples;
+    private long epochStart;
+
+    /**
+     * @return the scheduler, or null if all the samples are to be trained in each epoch
+     */
+    public static SampleScheduler getFrom(Settings settings, List<NeuralSample> trainingSet) {
+        switch (settings.sampleScheduling) {
+            case LOSS_PROPORTIONAL:
+                return new LossProportionalScheduler(settings, trainingSet);
+            case HARD_EXAMPLES:
+                return new HardExamplesScheduler(settings, trainingSet);
+            default:
+                return null;
+        }
+    }
+
+    protected SampleScheduler(Settings settings, List<NeuralSample> trainingSet) {
+        this.settings = settings;
+        this.samples = new ArrayList<>(trainingSet);
+        this.losses = new double[samples.size()];
+        this.convergedEpochae = new int[samples.size()];
+        this.positions = new HashMap<>(2 * samples.size());
+        for (int i = 0; i < samples.size(); i++) {
+            positions.put(samples.get(i).getId(), i);
+        }
+        restart();
+    }
+
+    /**
+     * Forget the loss history (e.g. with the weights reset)
+     */
+    public void restart() {
+        Arrays.fill(losses, Double.NaN);
+        Arrays.fill(convergedEpochae, 0);
+        epoch = 0;
+    }
+
+    public int getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * @return a copy of the moving averages of the losses, in the order of the samples (e.g. to be checkpointed)
+     */
+    public double[] getLosses() {
+        return losses.clone();
+    }
+
+    public int[] getConvergedEpochae() {
+        return convergedEpochae.clone();
+    }
+
+    /**
+     * Continue with the given loss history (e.g. from a checkpoint), as from {@link #getLosses()} and {@link #getConvergedEpochae()}
+     *
+     * @return false if the history does not match the samples (and is not used then)
+     */
+    public boolean restore(int epoch, double[] losses, int[] convergedEpochae) {
+        if (losses == null || convergedEpochae == null || losses.length != this.losses.length || convergedEpochae.length != this.convergedEpochae.length) {
+            return false;
+        }
+        this.epoch = epoch;
+        System.arraycopy(losses, 0, this.losses, 0, losses.length);
+        System.arraycopy(convergedEpochae, 0, this.convergedEpochae, 0, convergedEpochae.length);
+        return true;
+    }
+
+    /**
+     * @return the samples to train on in the next epoch, with their {@link NeuralSample#gradientScale} set
+     */
+    public List<NeuralSample> nextEpoch() {
+        epoch++;
+        epochStart = System.nanoTime();
+
+        boolean refresh = epoch == 1 || (settings.scheduledRefreshEpochae > 0 && epoch % settings.scheduledRefreshEpochae == 0);
+        List<Integer> candidates = new ArrayList<>(samples.size());
+        for (int i = 0; i < samples.size(); i++) {
+            if (refresh || settings.convergedSampleLoss <= 0 || convergedEpochae[i] < settings.convergedSamplePatience) {
+                candidates.add(i);
+            }
+        }
+        skippedSamples = samples.size() - candidates.size();
+
+        List<NeuralSample> selected;
+        if (refresh) {
+            selected = new ArrayList<>(samples);
+            for (NeuralSample sample : selected) {
+                sample.gradientScale = 1;
+            }
+            if (settings.shuffleEachEpoch) {
+                Collections.shuffle(selected, settings.random);
+            }
+        } else {
+            int count = (int) Math.ceil(settings.scheduledEpochFraction * samples.size());
+            selected = select(candidates, Math.max(1, Math.min(count, candidates.size())));
+        }
+        scheduledSamples = selected.size();
+        return selected;
+    }
+
+    /**
+     * @param candidates - positions of the samples that are not skipped (non-empty)
+     * @param count      - number of samples to select
+     * @return the selected samples in the order of training, with their {@link NeuralSample#gradientScale} set
+     */
+    protected abstract List<NeuralSample> select(List<Integer> candidates, int count);
+
+    /**
+     * Record the losses of the samples from the epoch
+     *
+     * @param onlineEvaluations - the results of the samples as trained in the epoch
+     */
+    public void endEpoch(List<Result> onlineEvaluations) {
+        double seconds = (System.nanoTime() - epochStart) / 1e9;
+        double[] epochLosses = new double[samples.size()];
+        Arrays.fill(epochLosses, Double.NaN);
+        for (Result result : onlineEvaluations) {
+            Integer position = positions.get(result.sampleId);
+            if (position != null) {
+                epochLosses[position] = loss(result);
+            }
+        }
+        for (int i = 0; i < samples.size(); i++) {
+            double loss = epochLosses[i];
+            if (Double.isNaN(loss)) {
+                continue;
+            }
+            losses[i] = Double.isNaN(losses[i]) ? loss : 0.5 * (losses[i] + loss);
+            convergedEpochae[i] = loss < settings.convergedSampleLoss ? convergedEpochae[i] + 1 : 0;
+        }
+        if (seconds > 0) {
+            LOG.fine("Sample scheduling: trained " + scheduledSamples + " / " + samples.size() + " samples (" + skippedSamples + " converged skipped), "
+                    + String.format("%.1f", scheduledSamples / seconds) + " samples/s, effective " + String.format("%.1f", samples.size() / seconds) + " dataset samples/s");
+        }
+    }
+
+    private static double loss(Result result) {
+        Value error = result.errorValue();
+        if (error instanceof ScalarValue) {
+            return ((ScalarValue) error).value;
+        }
+        double sum = 0;
+        for (double v : error.getAsArray()) {
+            sum += v;
+        }
+        return sum;
+    }
+
+    /**
+     * The selection priority of a sample, i.e. its recent loss times its importance. The samples not trained yet get
+     * the highest loss seen so far, so that they are tried soon.
+     */
+    protected double[] priorities(List<Integer> candidates) {
+        double maxLoss = 0;
+        for (double loss : losses) {
+            if (loss > maxLoss) {
+                maxLoss = loss;
+            }
+        }
+        double[] priorities = new double[candidates.size()];
+        for (int c = 0; c < priorities.length; c++) {
+            int i = candidates.get(c);
+            double loss = Double.isNaN(losses[i]) ? maxLoss : losses[i];
+            priorities[c] = Math.max(0, loss) * samples.get(i).getImportance();
+        }
+        return priorities;
+    }
+}
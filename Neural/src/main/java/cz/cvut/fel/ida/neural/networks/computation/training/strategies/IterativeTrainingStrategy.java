@@ -10,28 +10,50 @@ import cz.cvut.fel.ida.learning.results.DetailedClassificationResults;
 import cz.cvut.fel.ida.learning.results.Progress;
 import cz.cvut.fel.ida.learning.results.Result;
 import cz.cvut.fel.ida.learning.results.Results;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.NeuronProfile;
 import cz.cvut.fel.ida.neural.networks.computation.iteration.actions.Accumulating;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.modes.ParallelTopologic;
 import cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.states.neurons.SaturationChecker;
 import cz.cvut.fel.ida.neural.networks.computation.training.NeuralModel;
 import cz.cvut.fel.ida.neural.networks.computation.training.NeuralSample;
+import cz.cvut.fel.ida.neural.networks.computation.training.ParameterArena;
+import cz.cvut.fel.ida.neural.networks.computation.training.TrainingCheckpoint;
 import cz.cvut.fel.ida.neural.networks.computation.training.optimizers.Optimizer;
 import cz.cvut.fel.ida.neural.networks.computation.training.strategies.Hyperparameters.LearnRateDecayStrategy;
 import cz.cvut.fel.ida.neural.networks.computation.training.strategies.Hyperparameters.RestartingStrategy;
+import cz.cvut.fel.ida.neural.networks.computation.training.strategies.Hyperparameters.SampleScheduler;
 import cz.cvut.fel.ida.neural.networks.computation.training.strategies.debugging.NeuralDebugging;
 import cz.cvut.fel.ida.neural.networks.computation.training.strategies.trainers.AsyncParallelTrainer;
 import cz.cvut.fel.ida.neural.networks.computation.training.strategies.trainers.ListTrainer;
 import cz.cvut.fel.ida.neural.networks.computation.training.strategies.trainers.MiniBatchTrainer;
 import cz.cvut.fel.ida.neural.networks.computation.training.strategies.trainers.SequentialTrainer;
+import cz.cvut.fel.ida.neural.networks.structure.export.BinaryNeuralLoader;
+import cz.cvut.fel.ida.neural.networks.structure.export.BinaryNeuralSerializer;
 import cz.cvut.fel.ida.setup.Settings;
 import cz.cvut.fel.ida.utils.exporting.Exportable;
 import cz.cvut.fel.ida.utils.exporting.TextExporter;
 import cz.cvut.fel.ida.utils.generic.Pair;
+import cz.cvut.fel.ida.utils.metrics.Counter;
+import cz.cvut.fel.ida.utils.metrics.Histogram;
+import cz.cvut.fel.ida.utils.metrics.Metrics;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -42,6 +64,13 @@ import java.util.stream.Collectors;
 public class IterativeTrainingStrategy extends TrainingStrategy {
     private static final Logger LOG = Logger.getLogger(IterativeTrainingStrategy.class.getName());
 
+    private static final Histogram EPOCH = Metrics.histogram("training.epoch");
+    private static final Counter TRAINED_SAMPLES = Metrics.counter("training.samples");
+
+    /**
+     * The best model so far - either a copy of the weights, or the current model itself with the best weights kept in its
+     * {@link NeuralModel#getSnapshot()} (with {@link Settings#copyOnWriteBestModel})
+     */
     transient NeuralModel bestModel;
 
     transient List<NeuralSample> trainingSet;
@@ -54,30 +83,62 @@ public class IterativeTrainingStrategy extends TrainingStrategy {
 
     LearnRateDecayStrategy learnRateDecayStrategy;
 
+    /**
+     * Selection of the samples for each epoch (if not training on all of them)
+     */
+    transient SampleScheduler sampleScheduler;
+
     transient ListTrainer trainer;
 
     ValueInitializer valueInitializer;
 
     private final int resultsRecalculationEpochae;
 
+    /**
+     * Background recalculation of the true results (if enabled), created lazily
+     */
+    private transient AsyncRecalculation asyncRecalculation;
+
+    /**
+     * Whether to recalculate the results in the background, i.e. {@link Settings#asyncResultsRecalculation}, unless it failed to set up
+     */
+    private boolean asyncResultsRecalculation;
+
+    /**
+     * Periodic storing of the training state (if enabled), from which the training can be resumed
+     */
+    private transient TrainingCheckpoint checkpoint;
+
     public IterativeTrainingStrategy(Settings settings, NeuralModel model, List<NeuralSample> sampleList) {
+        this(settings, model, trainingValidationSplit(settings, sampleList), 0);
+    }
+
+    /**
+     * @param restart - the number of restarts preceding this strategy (i.e. non-zero for the concurrent restarts)
+     */
+    IterativeTrainingStrategy(Settings settings, NeuralModel model, Pair<List<NeuralSample>, List<NeuralSample>> trainVal, int restart) {
         super(settings, model);
         this.trainer = getTrainerFrom(settings);
         this.bestModel = this.currentModel;
         this.valueInitializer = ValueInitializer.getInitializer(settings);
+        this.restart = restart;
 
-        Pair<List<NeuralSample>, List<NeuralSample>> trainVal = trainingValidationSplit(sampleList);
         this.trainingSet = trainVal.r;
         this.validationSet = trainVal.s;
 
         this.learnRateDecayStrategy = LearnRateDecayStrategy.getFrom(settings, learningRate);   //passes the single reference to learningRate shared by others
         this.restartingStrategy = RestartingStrategy.getFrom(settings, !validationSet.isEmpty());
+        this.sampleScheduler = SampleScheduler.getFrom(settings, trainingSet);
 
         this.resultsRecalculationEpochae = settings.resultsRecalculationEpochae;
+        this.asyncResultsRecalculation = settings.asyncResultsRecalculation;
+        if (restart == 0 && (settings.checkpointEpochae > 0 || settings.resumeTraining)) {
+            this.checkpoint = new TrainingCheckpoint(Paths.get(settings.checkpointDir));
+        }
 //        this.trainingDebugger = new TrainingDebugger(settings);
     }
 
-    private Pair<List<NeuralSample>, List<NeuralSample>> trainingValidationSplit(List<NeuralSample> sampleList) {
+    private static Pair<List<NeuralSample>, List<NeuralSample>> trainingValidationSplit(Settings settings, List<NeuralSample> sampleList) {
         List<NeuralSample> extraValidation = sampleList.stream().filter(s -> s.type == LearningSample.Split.VALIDATION).collect(Collectors.toList());
         if (!extraValidation.isEmpty()) {
             LOG.fine("Splitting back the train-validation dataset according to the given input splits");
@@ -96,7 +157,7 @@ public class IterativeTrainingStrategy extends TrainingStrategy {
     private ListTrainer getTrainerFrom(Settings settings) {
         if (settings.asyncParallelTraining) {
             return new AsyncParallelTrainer(settings, Optimizer.getFrom(settings, learningRate), currentModel).new AsyncListTrainer();
-        } else if (settings.minibatchSize > 1) {
+        } else if (settings.minibatchSize > 1 || settings.adaptiveMinibatch) {
             return new MiniBatchTrainer(settings, Optimizer.getFrom(settings, learningRate), currentModel, settings.minibatchSize).new MinibatchListTrainer();
         } else {
             return new SequentialTrainer(settings, Optimizer.getFrom(settings, learningRate), currentModel).new SequentialListTrainer();
@@ -108,13 +169,41 @@ public class IterativeTrainingStrategy extends TrainingStrategy {
 
         LOG.finer("Starting with iterative mode neural training.");
         initTraining();
+        if (settings.concurrentRestarts && settings.restartCount > 1) {
+            ConcurrentRestarts restarts = ConcurrentRestarts.prepare(this);
+            if (restarts != null) {
+                if (checkpoint != null) {
+                    LOG.warning("The checkpoints are not supported with the concurrent restarts, the training will not be checkpointed.");
+                }
+                restarts.train();
+                timing.toc();
+                timing.finish();
+                return finish();
+            }
+        }
         int epochae = 0;
-        for (int restart = 0; restart < settings.restartCount; restart++) {
-            initRestart();
+        int firstRestart = 0;
+        TrainingCheckpoint.Snapshot resumed = loadCheckpoint();
+        if (resumed != null) {
+            epochae = resumed.state.epoch;
+            firstRestart = resumed.state.restart;
+        }
+        for (int restart = firstRestart; restart < settings.restartCount; restart++) {
+            if (resumed != null) {
+                resumeRestart(resumed);
+                resumed = null;
+            } else {
+                initRestart();
+            }
             while (restartingStrategy.continueRestart(progress) && epochae++ < settings.maxCumEpochCount) {
+                long start = Metrics.start();
                 initEpoch(epochae);
-                List<Result> onlineEvaluations = trainer.learnEpoch(currentModel, trainingSet);
+                List<Result> onlineEvaluations = trainer.learnEpoch(currentModel, epochSamples());
                 endEpoch(epochae, onlineEvaluations);
+                EPOCH.recordSince(start);
+                if (checkpoint != null && settings.checkpointEpochae > 0 && epochae % settings.checkpointEpochae == 0) {
+                    storeCheckpoint(epochae, restart);
+                }
             }
             endRestart();
             if (epochae > settings.maxCumEpochCount){
@@ -127,6 +216,66 @@ public class IterativeTrainingStrategy extends TrainingStrategy {
         return finish();
     }
 
+    /**
+     * Switches to another random generator (shared via the settings with the networks, i.e. the dropout), together with the weight initialization
+     */
+    private void useRandom(Random random) {
+        settings.random = random;
+        valueInitializer = ValueInitializer.getInitializer(settings);
+    }
+
+    /**
+     * Recreates the training and validation networks for each of the given (cloned) models, bound to its weights.
+     * Since the networks reference the weights directly, this is the only way to work with them under different weights
+     * at the same time. The copies are created through the binary format of the networks (via a temporary file).
+     *
+     * @param models
+     * @param modelSettings - of each of the models, with which its networks (i.e. their dropout) are created
+     * @return
+     * @throws IOException
+     */
+    List<Pair<List<NeuralSample>, List<NeuralSample>>> copyNetworks(List<NeuralModel> models, List<Settings> modelSettings) throws IOException {
+        Path file = Files.createTempFile("neuralogic-networks", ".bin");
+        try {
+            List<NeuralSample> samples = new ArrayList<>(trainingSet);
+            samples.addAll(validationSet);
+            new BinaryNeuralSerializer().serialize(currentModel, samples.stream(), file);
+
+            List<Pair<List<NeuralSample>, List<NeuralSample>>> copies = new ArrayList<>(models.size());
+            for (int i = 0; i < models.size(); i++) {
+                List<NeuralSample> loaded;
+                try (BinaryNeuralLoader loader = new BinaryNeuralLoader(file, models.get(i), modelSettings.get(i))) {
+                    loaded = loader.loadSamples().collect(Collectors.toList());
+                }
+                copies.add(new Pair<>(loaded.subList(0, trainingSet.size()), loaded.subList(trainingSet.size(), loaded.size())));
+            }
+            return copies;
+        } finally {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                LOG.warning("Failed to delete the temporary networks file " + file);
+            }
+        }
+    }
+
+    /**
+     * A single restart run by one of the concurrent strategies, with its own progress
+     */
+    void trainRestart(AtomicInteger cumEpochae) {
+        progress = new Progress();
+        initRestart();
+        int epochae = 0;
+        while (restartingStrategy.continueRestart(progress) && cumEpochae.getAndIncrement() < settings.maxCumEpochCount) {
+            long start = Metrics.start();
+            initEpoch(++epochae);
+            List<Result> onlineEvaluations = trainer.learnEpoch(currentModel, epochSamples());
+            endEpoch(epochae, onlineEvaluations);
+            EPOCH.recordSince(start);
+        }
+        endRestart();
+    }
+
     @Override
     public void setupDebugger(NeuralDebugging neuralDebugger) {
         this.trainer.setupDebugger(neuralDebugger);
@@ -138,6 +287,9 @@ public class IterativeTrainingStrategy extends TrainingStrategy {
             Collections.shuffle(trainingSet, settings.random);
         }
         progress = new Progress();
+        if (settings.profileNeurons) {
+            NeuronProfile.reset(settings);
+        }
     }
 
     protected void initRestart() {
@@ -146,12 +298,137 @@ public class IterativeTrainingStrategy extends TrainingStrategy {
         setupExporter();
 
         trainer.restart(settings);
+        if (sampleScheduler != null) {
+            sampleScheduler.restart();
+        }
         currentModel.resetWeights(valueInitializer);
         progress.nextRestart();
         recalculateResults();   //todo investigate initial jump up in error - is there any still? may difference between online vs. true calculation
         LOG.finer("New restart has been initialized");
     }
 
+    /**
+     * @return the last checkpoint to resume the training from, or null to start from scratch
+     */
+    private TrainingCheckpoint.Snapshot loadCheckpoint() {
+        if (checkpoint == null || !settings.resumeTraining) {
+            return null;
+        }
+        if (!checkpoint.exists()) {
+            LOG.info("No checkpoint found in " + settings.checkpointDir + ", starting the training from scratch.");
+            return null;
+        }
+        try {
+            return checkpoint.load();
+        } catch (IOException e) {
+            LOG.severe("Failed to load the checkpoint from " + settings.checkpointDir + " (" + e + "), starting the training from scratch.");
+            return null;
+        }
+    }
+
+    /**
+     * Capture the training state after the given epoch, to be written in the background, i.e. everything the following
+     * epochae depend on (incl. the random generator, the sample scheduling and the early stopping), so that a resumed
+     * training continues exactly as the original one would.
+     */
+    private void storeCheckpoint(int epochae, int restart) {
+        if (asyncRecalculation != null) {
+            asyncRecalculation.drain();     // so that the best model is up to date with the weights
+        }
+        TrainingCheckpoint.State state = new TrainingCheckpoint.State();
+        state.restart = restart;
+        state.epoch = epochae;
+        state.iteration = trainer.getIterationNumber();
+        state.learningRate = learningRate.value;
+        state.sampleOrder = trainingSet.stream().map(NeuralSample::getId).collect(Collectors.toList());
+        state.randomState = TrainingCheckpoint.serializeRandom(settings.random);
+        state.optimizerSteps = trainer.getOptimizer().getSteps();
+        if (sampleScheduler != null) {
+            state.schedulerEpoch = sampleScheduler.getEpoch();
+            state.sampleLosses = sampleScheduler.getLosses();
+            state.sampleConvergedEpochae = sampleScheduler.getConvergedEpochae();
+        }
+        state.earlyStopping = restartingStrategy.getState();
+        state.onlineErrors = Progress.errorsOf(progress.currentRestart.onlineTrainingResults);
+        state.trueErrors = Progress.errorsOf(progress.currentRestart.trueTrainingResults);
+        state.validationErrors = Progress.errorsOf(progress.currentRestart.validationResults);
+        checkpoint.save(TrainingCheckpoint.Snapshot.capture(state, currentModel, bestModel, fusedMoments()));
+    }
+
+    /**
+     * As {@link #initRestart()}, but with the state from the checkpoint instead of the reset weights. The best model (and its results)
+     * is re-established by evaluating the best weights from the checkpoint, as at its original selection, and then the results
+     * of the restart are replaced with their history from the checkpoint.
+     */
+    private void resumeRestart(TrainingCheckpoint.Snapshot snapshot) {
+        TrainingCheckpoint.State state = snapshot.state;
+        LOG.info("Resuming the training from the checkpoint after epoch " + state.epoch + ".");
+        restart += state.restart + 1;
+        setupExporter();
+
+        trainer.restart(settings);
+        if (sampleScheduler != null) {
+            sampleScheduler.restart();
+        }
+        progress.nextRestart();
+        snapshot.loadBestInto(currentModel);
+        recalculateResults();
+        snapshot.loadInto(currentModel, fusedMoments());
+
+        trainer.setIterationNumber(state.iteration);
+        if (state.optimizerSteps != null) {
+            trainer.getOptimizer().setSteps(state.optimizerSteps);
+        }
+        learningRate.value = state.learningRate;
+        restoreSampleOrder(state.sampleOrder);
+        if (sampleScheduler != null && !sampleScheduler.restore(state.schedulerEpoch, state.sampleLosses, state.sampleConvergedEpochae)) {
+            LOG.warning("The sample scheduling history of the checkpoint does not match the training samples, starting it anew.");
+        }
+        if (state.earlyStopping != null) {
+            restartingStrategy.setState(state.earlyStopping);
+        }
+        if (state.onlineErrors != null) {
+            progress.restoreCurrentRestart(state.onlineErrors, state.trueErrors, state.validationErrors);
+        }
+        if (state.randomState != null) {
+            try {
+                useRandom(TrainingCheckpoint.deserializeRandom(state.randomState));
+            } catch (IOException e) {
+                throw new IllegalStateException("Corrupted checkpoint in " + settings.checkpointDir + " - invalid random generator state", e);
+            }
+        }
+    }
+
+    private void restoreSampleOrder(List<String> sampleOrder) {
+        Map<String, Deque<NeuralSample>> byId = new HashMap<>();
+        for (NeuralSample sample : trainingSet) {
+            byId.computeIfAbsent(sample.getId(), id -> new ArrayDeque<>()).add(sample);
+        }
+        List<NeuralSample> ordered = new ArrayList<>(trainingSet.size());
+        for (String id : sampleOrder) {
+            Deque<NeuralSample> samples = byId.get(id);
+            if (samples == null || samples.isEmpty()) {
+                break;
+            }
+            ordered.add(samples.poll());
+        }
+        if (ordered.size() != trainingSet.size() || sampleOrder.size() != trainingSet.size()) {
+            LOG.warning("The training samples do not match those of the checkpoint, keeping their current order.");
+            return;
+        }
+        for (int i = 0; i < ordered.size(); i++) {
+            trainingSet.set(i, ordered.get(i));
+        }
+    }
+
+    /**
+     * @return the arena with the moments of the fused optimizers, or null if these are in the weights
+     */
+    private ParameterArena fusedMoments() {
+        boolean adam = settings.getOptimizer() == Settings.OptimizerSet.ADAM || settings.getOptimizer() == Settings.OptimizerSet.ADAMW;
+        return adam && settings.flatParameterArena ? currentModel.getParameterArena() : null;
+    }
+
     /**
      * What to do with the samples and learning process before each epoch iteration, i.e. load, shuffle, setup hyperparameters, etc.
      *
@@ -169,9 +446,27 @@ public class IterativeTrainingStrategy extends TrainingStrategy {
         }
     }
 
+    /**
+     * @return the samples to train on in the current epoch
+     */
+    private List<NeuralSample> epochSamples() {
+        return sampleScheduler == null ? trainingSet : sampleScheduler.nextEpoch();
+    }
+
     protected void endEpoch(int count, List<Result> onlineEvaluations) {
+        TRAINED_SAMPLES.add(onlineEvaluations.size());
+        if (sampleScheduler != null) {
+            sampleScheduler.endEpoch(onlineEvaluations);
+        }
+        if (asyncRecalculation != null) {
+            asyncRecalculation.consumeFinished();
+        }
         if (count % settings.resultsRecalculationEpochae == 0) {
-            recalculateResults();
+            if (asyncResultsRecalculation) {
+                recalculateResultsAsync();
+            } else {
+                recalculateResults();
+            }
             if (settings.debugTemplateTraining && trainingDebugCallback != null) {
                 Map<Integer, Weight> integerWeightMap = currentModel.mapWeightsToIds();
                 trainingDebugCallback.accept(integerWeightMap);
@@ -185,6 +480,9 @@ public class IterativeTrainingStrategy extends TrainingStrategy {
     }
 
     protected void endRestart() {
+        if (asyncRecalculation != null) {
+            asyncRecalculation.drain();
+        }
         LOG.info("Finished restart, recalculating last true results.");
         recalculateResults();
         exporter.delimitEnd();
@@ -193,16 +491,34 @@ public class IterativeTrainingStrategy extends TrainingStrategy {
     }
 
     protected Pair<NeuralModel, Progress> finish() {
+        if (settings.profileNeurons && !NeuronProfile.isEmpty()) {
+            LOG.info(NeuronProfile.report());
+        }
         LOG.info("Finished training, loading best model so far.");
         evaluateModel(bestModel);
         logSampleOutputs();
 
+        if (asyncRecalculation != null) {
+            asyncRecalculation.shutdown();
+        }
+        ParallelTopologic.shutdownPools();
+        if (checkpoint != null) {
+            checkpoint.close();
+        }
+        currentModel.releaseSnapshot();
+        if (bestModel == currentModel && settings.undoWeightTrainingChanges) {
+            bestModel = currentModel.cloneWeights();    // the current weights are about to be reset
+        }
         super.endTrainingStrategy();    //e.g. restore the world state
         return new Pair<>(bestModel, progress);
     }
 
     private void evaluateModel(NeuralModel neuralModel) {
-        currentModel.loadWeightValues(neuralModel);
+        if (neuralModel == currentModel) {
+            currentModel.restoreSnapshot();
+        } else {
+            currentModel.loadWeightValues(neuralModel);
+        }
         recalculateResults();
     }
 
@@ -213,8 +529,37 @@ public class IterativeTrainingStrategy extends TrainingStrategy {
     }
 
     private void recalculateResults() {
-        TrainVal trueEvaluations = evaluateModel();
-        Results trainingResults = trainRecalculationResultsFactory.createFrom(trueEvaluations.training);
+        processResults(createResults(evaluateModel()), null);
+    }
+
+    /**
+     * Submit the recalculation of the true results with the current weights to the background, falling back to the
+     * synchronous recalculation if the networks cannot be copied for that.
+     */
+    private void recalculateResultsAsync() {
+        if (asyncRecalculation == null) {
+            try {
+                asyncRecalculation = new AsyncRecalculation();
+            } catch (IOException | UnsupportedOperationException | IllegalStateException e) {
+                LOG.warning("Cannot copy the networks for the asynchronous recalculation (" + e.getMessage() + "), recalculating synchronously.");
+                asyncResultsRecalculation = false;
+                recalculateResults();
+                return;
+            }
+        }
+        asyncRecalculation.submit();
+    }
+
+    private Progress.TrainVal createResults(TrainVal trueEvaluations) {
+        return createResults(trueEvaluations, trainRecalculationResultsFactory, validationResultsFactory);
+    }
+
+    /**
+     * @param trainingResultsFactory   - not shared with other threads (as it may cache the results)
+     * @param validationResultsFactory - not shared with other threads
+     */
+    private Progress.TrainVal createResults(TrainVal trueEvaluations, Results.Factory trainingResultsFactory, Results.Factory validationResultsFactory) {
+        Results trainingResults = trainingResultsFactory.createFrom(trueEvaluations.training);
         Results validationResults = validationResultsFactory.createFrom(trueEvaluations.validation);
         if (settings.calculateBestThreshold && validationResults instanceof DetailedClassificationResults) {   // pass the best threshold from training to validation set
             Value threshold = ((DetailedClassificationResults) trainingResults).computeBestAccuracyThreshold(trainingResults.evaluations);
@@ -223,7 +568,16 @@ public class IterativeTrainingStrategy extends TrainingStrategy {
         if (settings.passResultsCache) {
             validationResultsFactory.cacheForReuse(trainingResults);
         }
+        return new Progress.TrainVal(trainingResults, validationResults);
+    }
 
+    /**
+     * @param trainVal
+     * @param snapshot - the weights the results were calculated with, or null for the current model
+     */
+    private void processResults(Progress.TrainVal trainVal, NeuralModel snapshot) {
+        Results trainingResults = trainVal.training;
+        Results validationResults = trainVal.validation;
         progress.addTrueResults(trainingResults, validationResults);
 
         if (LOG.isLoggable(Level.FINE)) {
@@ -238,20 +592,27 @@ public class IterativeTrainingStrategy extends TrainingStrategy {
             logSampleOutputs();
         }
 
-        if (settings.checkNeuronSaturation) {
+        if (settings.checkNeuronSaturation && snapshot == null) {   // the neuron states are only up to date with the current model
             saturationCheck(trainingSet);
             saturationCheck(validationSet);
         }
 
-        Progress.TrainVal trainVal = new Progress.TrainVal(trainingResults, validationResults);
         exportProgress(trainVal);
-        saveIfBest(trainVal);
+        saveIfBest(trainVal, snapshot);
     }
 
-    private void saveIfBest(Progress.TrainVal trainVal) {
+    private void saveIfBest(Progress.TrainVal trainVal, NeuralModel snapshot) {
         if (progress.bestResults == null || trainVal.betterThan(progress.bestResults, settings.dataSelection, settings.modelSelection)) {
             LOG.fine("Improvement of best " + (settings.dataSelection != Settings.DataSelection.VALIDATION || validationSet.isEmpty() ? "training " : "validation ") + settings.modelSelection.name() + " stored so far...");
-            bestModel = currentModel.cloneWeights();
+            if (snapshot != null) {
+                currentModel.releaseSnapshot();
+                bestModel = snapshot;
+            } else if (settings.copyOnWriteBestModel) {
+                currentModel.getSnapshot().mark();
+                bestModel = currentModel;
+            } else {
+                bestModel = currentModel.cloneWeights();
+            }
             if (settings.calculateBestThreshold && trainVal.training instanceof DetailedClassificationResults) {
                 bestModel.threshold = ((DetailedClassificationResults) trainVal.training).bestThreshold;
             }
@@ -292,4 +653,82 @@ public class IterativeTrainingStrategy extends TrainingStrategy {
         results.export(exporter);
         exporter.delimitNext();
     }
+
+    /**
+     * Recalculation of the true results in a single background thread, so that the training can continue meanwhile.
+     * Each recalculation works with a snapshot of the weights, loaded into a separate copy of the networks (since the
+     * training keeps changing the neuron states of the original ones). The results are then processed (progress, export,
+     * best model selection) back in the training thread, in the order of submission, as they complete.
+     */
+    private class AsyncRecalculation {
+        final NeuralModel model;
+        final List<NeuralSample> trainingCopy;
+        final List<NeuralSample> validationCopy;
+        final ListTrainer evaluator;
+        final Results.Factory trainingResultsFactory;
+        final Results.Factory validationResultsFactory;
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "async-recalculation");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        final Deque<Future<Pair<NeuralModel, Progress.TrainVal>>> pending = new ArrayDeque<>();
+
+        AsyncRecalculation() throws IOException {
+            model = currentModel.cloneWeights();
+            Pair<List<NeuralSample>, List<NeuralSample>> copies = copyNetworks(Collections.singletonList(model), Collections.singletonList(settings)).get(0);
+            trainingCopy = copies.r;
+            validationCopy = copies.s;
+            evaluator = new SequentialTrainer(settings, Optimizer.getFrom(settings, learningRate), model).new SequentialListTrainer();
+            trainingResultsFactory = Results.Factory.getFrom(settings.trainRecalculationResultsType, settings);
+            validationResultsFactory = Results.Factory.getFrom(settings.validationResultsType, settings);
+        }
+
+        /**
+         * Blocks if there are too many recalculations in flight already.
+         */
+        void submit() {
+            while (pending.size() >= settings.maxPendingRecalculations) {
+                consume(pending.poll());
+            }
+            NeuralModel snapshot = currentModel.cloneWeights();
+            pending.add(executor.submit(() -> {
+                model.copyWeightValues(snapshot);
+                TrainVal evaluations = new TrainVal(evaluator.evaluate(trainingCopy), evaluator.evaluate(validationCopy));
+                return new Pair<>(snapshot, createResults(evaluations, trainingResultsFactory, validationResultsFactory));
+            }));
+        }
+
+        void consumeFinished() {
+            while (!pending.isEmpty() && pending.peek().isDone()) {
+                consume(pending.poll());
+            }
+        }
+
+        void drain() {
+            while (!pending.isEmpty()) {
+                consume(pending.poll());
+            }
+        }
+
+        private void consume(Future<Pair<NeuralModel, Progress.TrainVal>> future) {
+            Pair<NeuralModel, Progress.TrainVal> recalculation;
+            try {
+                recalculation = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                LOG.severe("Asynchronous recalculation of results failed: " + e.getCause());
+                throw new RuntimeException(e.getCause());
+            }
+            processResults(recalculation.s, recalculation.r);
+        }
+
+        void shutdown() {
+            executor.shutdownNow();
+        }
+    }
 }
\ No newline at end of file
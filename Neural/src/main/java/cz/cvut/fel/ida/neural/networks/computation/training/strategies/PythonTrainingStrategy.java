@@ -1,10 +1,17 @@
 package cz.cvut.fel.ida.neural.networks.computation.training.strategies;
 
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonWriter;
+import cz.cvut.fel.ida.algebra.values.Value;
 import cz.cvut.fel.ida.algebra.values.inits.ValueInitializer;
+import cz.cvut.fel.ida.algebra.weights.Weight;
 import cz.cvut.fel.ida.learning.results.Progress;
 import cz.cvut.fel.ida.learning.results.Result;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.actions.PythonBatchHookHandler;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.actions.PythonBinaryHookHandler;
 import cz.cvut.fel.ida.neural.networks.computation.iteration.actions.PythonEvaluation;
 import cz.cvut.fel.ida.neural.networks.computation.iteration.actions.PythonHookHandler;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.actions.PythonValueBuffer;
 import cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.weights.WeightUpdater;
 import cz.cvut.fel.ida.neural.networks.computation.training.NeuralModel;
 import cz.cvut.fel.ida.neural.networks.computation.training.NeuralSample;
@@ -16,14 +23,17 @@ import cz.cvut.fel.ida.setup.Settings;
 import cz.cvut.fel.ida.utils.exporting.Exporter;
 import cz.cvut.fel.ida.utils.generic.Pair;
 
+import java.io.IOException;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
+import java.util.logging.Logger;
 
 
 public class PythonTrainingStrategy extends TrainingStrategy {
+    private static final Logger LOG = Logger.getLogger(PythonTrainingStrategy.class.getName());
 
     transient List<NeuralSample> samplesSet;
 
@@ -43,6 +53,11 @@ public class PythonTrainingStrategy extends TrainingStrategy {
 
     int epochCount = 0;
 
+    /**
+     * Reused for all the results of the binary methods, i.e. their content is valid only until the next such call
+     */
+    transient PythonValueBuffer buffer = new PythonValueBuffer(1024);
+
     public PythonTrainingStrategy(Settings settings, NeuralModel model, Optimizer optimizer, LearnRateDecayStrategy learnRateDecay) {
         super(settings, model);
 
@@ -54,6 +69,12 @@ public class PythonTrainingStrategy extends TrainingStrategy {
         this.trainer.setEvaluation(evaluation);
 
         this.miniBatchTrainer = new MiniBatchTrainer(settings, optimizer, currentModel, 0);
+        this.miniBatchTrainer.setEvaluations(index -> new PythonEvaluation(evaluation, index));
+        this.miniBatchTrainer.setMinibatchListener(trainers -> {   // in the order of the samples, as with the sequential trainer
+            for (SequentialTrainer minibatchTrainer : trainers) {
+                ((PythonEvaluation) minibatchTrainer.getEvaluation()).mergeHooks();
+            }
+        });
         this.minibatchListTrainer = this.miniBatchTrainer.new MinibatchListTrainer();
 
         this.learnRateDecay = learnRateDecay;
@@ -70,6 +91,26 @@ public class PythonTrainingStrategy extends TrainingStrategy {
     public void setHooks(Set<String> hooks, PythonHookHandler callback) {
         evaluation.hooks = hooks;
         evaluation.hookHandler = callback;
+        evaluation.binaryHookHandler = null;
+        evaluation.setBatchHookHandler(null);
+    }
+
+    public void setBinaryHooks(Set<String> hooks, PythonBinaryHookHandler callback) {
+        evaluation.hooks = hooks;
+        evaluation.binaryHookHandler = callback;
+        evaluation.setBatchHookHandler(null);
+    }
+
+    /**
+     * Collect the hooked values and pass them all at once - after each sample for the single-sample methods,
+     * after each epoch for the learning of a list of samples, and after all the samples for their evaluation.
+     * <p>
+     * The samples processed in minibatches (minibatchSize > 1) are evaluated concurrently by the separate trainers of the
+     * {@link MiniBatchTrainer}, which collect their hooked values until the end of each minibatch, where these get merged in the order of the samples.
+     */
+    public void setBatchHooks(Set<String> hooks, PythonBatchHookHandler callback) {
+        evaluation.hooks = hooks;
+        evaluation.setBatchHookHandler(callback);
     }
 
     public void setSamples(List<NeuralSample> samples) {
@@ -99,11 +140,46 @@ public class PythonTrainingStrategy extends TrainingStrategy {
     }
 
     public String learnSamples(List<NeuralSample> samples, int epochs, int minibatchSize) {
-        List<Result> results = null;
-
         if (epochs <= 0) {
             return "[]";
         }
+        List<Result> results = learnEpochs(samples, epochs, minibatchSize);
+
+        List<String> output = new ArrayList<>(samples.size());
+        NumberFormat format = Settings.superDetailedNumberFormat;
+
+        for (Result result : results) {
+            output.add(Arrays.toString(new String[]{
+                    result.getTarget().toString(format),
+                    result.getOutput().toString(format),
+                    result.errorValue().toString(format),
+            }));
+        }
+
+        return output.toString();
+    }
+
+    public PythonValueBuffer learnSamplesBinary(int epochs, int minibatchSize) {
+        return learnSamplesBinary(samplesSet, epochs, minibatchSize);
+    }
+
+    /**
+     * The binary variant of {@link #learnSamples(List, int, int)}, with the target, output and error of each sample (from the last epoch)
+     * as 3 consecutive entries of the buffer
+     */
+    public PythonValueBuffer learnSamplesBinary(List<NeuralSample> samples, int epochs, int minibatchSize) {
+        buffer.clear();
+        if (epochs <= 0) {
+            return buffer;
+        }
+        for (Result result : learnEpochs(samples, epochs, minibatchSize)) {
+            putResult(result);
+        }
+        return buffer;
+    }
+
+    private List<Result> learnEpochs(List<NeuralSample> samples, int epochs, int minibatchSize) {
+        List<Result> results = null;
 
         ListTrainer trainer = listTrainer;
 
@@ -120,20 +196,15 @@ public class PythonTrainingStrategy extends TrainingStrategy {
             }
 
             results = trainer.learnEpoch(currentModel, samples);
+            evaluation.flushHooks();
         }
+        return results;
+    }
 
-        List<String> output = new ArrayList<>(samples.size());
-        NumberFormat format = Settings.superDetailedNumberFormat;
-
-        for (Result result : results) {
-            output.add(Arrays.toString(new String[]{
-                    result.getTarget().toString(format),
-                    result.getOutput().toString(format),
-                    result.errorValue().toString(format),
-            }));
-        }
-
-        return output.toString();
+    private void putResult(Result result) {
+        buffer.put(result.getTarget());
+        buffer.put(result.getOutput());
+        buffer.put(result.errorValue());
     }
 
     public String learnSample(NeuralSample sample) {
@@ -142,6 +213,7 @@ public class PythonTrainingStrategy extends TrainingStrategy {
 
         WeightUpdater weightUpdater = trainer.backpropSample(trainer.getBackpropagation(), result, sample);
         trainer.updateWeights(currentModel, weightUpdater);
+        evaluation.flushHooks();
         NumberFormat format = Settings.superDetailedNumberFormat;
 
         return Arrays.toString(new String[]{
@@ -151,9 +223,36 @@ public class PythonTrainingStrategy extends TrainingStrategy {
         });
     }
 
+    /**
+     * The binary variant of {@link #learnSample(NeuralSample)}, with the target, output and error of the sample as the first 3 entries
+     * of the buffer, followed by the gradient (the accumulated update) of each of the {@link NeuralModel#learnableWeights} in their order
+     * (an empty entry for the weights not present in the sample), as it was before the update
+     */
+    public PythonValueBuffer learnSampleBinary(NeuralSample sample) {
+        trainer.invalidateSample(trainer.getInvalidation(), sample);
+        Result result = trainer.evaluateSample(trainer.getEvaluation(), sample);
+
+        WeightUpdater weightUpdater = trainer.backpropSample(trainer.getBackpropagation(), result, sample);
+        buffer.clear();
+        putResult(result);
+        for (Weight weight : currentModel.learnableWeights) {
+            Value gradient = weightUpdater.weightUpdates[weight.index];
+            if (gradient == null) {
+                buffer.putEmpty();
+            } else {
+                buffer.put(gradient);
+            }
+        }
+        trainer.updateWeights(currentModel, weightUpdater);
+        evaluation.flushHooks();
+        return buffer;
+    }
+
     public String evaluateSample(NeuralSample sample) {
         trainer.invalidateSample(trainer.getInvalidation(), sample);
-        return evaluation.evaluate(sample.query).toString(Settings.superDetailedNumberFormat);
+        String output = evaluation.evaluateOutput(sample).toString(Settings.superDetailedNumberFormat);
+        evaluation.flushHooks();
+        return output;
     }
 
     public String evaluateSamples(List<NeuralSample> samples, int minibatchSize) {
@@ -166,18 +265,50 @@ public class PythonTrainingStrategy extends TrainingStrategy {
             for (Result result : minibatchListTrainer.evaluate(samples)) {
                 output.add(result.getOutput().toString(format));
             }
+            evaluation.flushHooks();
 
             return output.toString();
         }
 
         for (NeuralSample sample : samples) {
             trainer.invalidateSample(trainer.getInvalidation(), sample);
-            output.add(evaluation.evaluate(sample.query).toString(format));
+            output.add(evaluation.evaluateOutput(sample).toString(format));
         }
+        evaluation.flushHooks();
 
         return output.toString();
     }
 
+    public PythonValueBuffer evaluateSampleBinary(NeuralSample sample) {
+        trainer.invalidateSample(trainer.getInvalidation(), sample);
+        buffer.clear().put(evaluation.evaluateOutput(sample));
+        evaluation.flushHooks();
+        return buffer;
+    }
+
+    /**
+     * The binary variant of {@link #evaluateSamples(List, int)}, with the output of each sample as an entry of the buffer
+     */
+    public PythonValueBuffer evaluateSamplesBinary(List<NeuralSample> samples, int minibatchSize) {
+        buffer.clear();
+        if (minibatchSize > 1) {
+            miniBatchTrainer.setMinibatchSize(minibatchSize);
+
+            for (Result result : minibatchListTrainer.evaluate(samples)) {
+                buffer.put(result.getOutput());
+            }
+            evaluation.flushHooks();
+            return buffer;
+        }
+
+        for (NeuralSample sample : samples) {
+            trainer.invalidateSample(trainer.getInvalidation(), sample);
+            buffer.put(evaluation.evaluateOutput(sample));
+        }
+        evaluation.flushHooks();
+        return buffer;
+    }
+
     @Override
     public void export(Exporter exporter) { }
 
@@ -185,4 +316,13 @@ public class PythonTrainingStrategy extends TrainingStrategy {
     public String exportToJson() {
         return null;
     }
+
+    @Override
+    public void exportToJson(JsonWriter writer) {
+        try {
+            writer.nullValue();
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
 }
\ No newline at end of file
@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
@@ -49,7 +50,7 @@ public abstract class TrainingStrategy implements Exportable {
     protected int restart;
     transient Process progressPlotter;
 
-    static int counter = 0;
+    static AtomicInteger counter = new AtomicInteger();
 
     transient Consumer<Map<Integer, Weight>> trainingDebugCallback;
 
@@ -58,7 +59,7 @@ public abstract class TrainingStrategy implements Exportable {
         this.learningRate = new ScalarValue(settings.initLearningRate);
         this.currentModel = model;
         storeParametersState(model);
-        this.trainOnlineResultsFactory = Results.Factory.getFrom(settings.trainOnlineResultsType, settings);
+        this.trainOnlineResultsFactory = Results.Factory.getFrom(settings.trainOnlineResultsType, settings).sketched(settings.onlineMetricsSketchBins);
         trainRecalculationResultsFactory = Results.Factory.getFrom(settings.trainRecalculationResultsType, settings);
         this.validationResultsFactory = Results.Factory.getFrom(settings.validationResultsType, settings);
         this.timing = new Timing();
@@ -66,7 +67,7 @@ public abstract class TrainingStrategy implements Exportable {
     }
 
     protected void setupExporter() {
-        this.exporter = Exporter.getExporter(settings.exportDir, "progress/training" + counter++ + "restart" + restart, settings.exportType.name());
+        this.exporter = Exporter.getExporter(settings.exportDir, "progress/training" + counter.getAndIncrement() + "restart" + restart, settings.exportType.name());
         exporter.delimitStart();
 
         if (settings.plotProgress > 0) {
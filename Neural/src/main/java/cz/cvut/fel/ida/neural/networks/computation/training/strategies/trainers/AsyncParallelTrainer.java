@@ -57,6 +57,21 @@ public class AsyncParallelTrainer extends SequentialTrainer {
             AsyncParallelTrainer.this.optimizer.restart(settings);
         }
 
+        @Override
+        public int getIterationNumber() {
+            return iterationNumber;
+        }
+
+        @Override
+        public void setIterationNumber(int iterationNumber) {
+            AsyncParallelTrainer.this.iterationNumber = iterationNumber;
+        }
+
+        @Override
+        public Optimizer getOptimizer() {
+            return AsyncParallelTrainer.this.optimizer;
+        }
+
         @Override
         public void setupDebugger(NeuralDebugging trainingDebugger) {
             neuralDebugger = trainingDebugger;
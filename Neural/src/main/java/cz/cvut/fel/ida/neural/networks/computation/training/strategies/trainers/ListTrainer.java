@@ -3,6 +3,7 @@ package cz.cvut.fel.ida.neural.networks.computation.training.strategies.trainers
 import cz.cvut.fel.ida.learning.results.Result;
 import cz.cvut.fel.ida.neural.networks.computation.training.NeuralModel;
 import cz.cvut.fel.ida.neural.networks.computation.training.NeuralSample;
+import cz.cvut.fel.ida.neural.networks.computation.training.optimizers.Optimizer;
 import cz.cvut.fel.ida.setup.Settings;
 
 import java.util.List;
@@ -23,4 +24,13 @@ public interface ListTrainer extends Training{
 
     void restart(Settings settings);
 
+    /**
+     * @return number of the gradient steps performed so far (e.g. for the bias correction of Adam), to be checkpointed
+     */
+    int getIterationNumber();
+
+    void setIterationNumber(int iterationNumber);
+
+    Optimizer getOptimizer();
+
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package cz.cvut.fel.ida.neural.networks.computation.training.strategies.trainers
 
 import cz.cvut.fel.ida.algebra.values.Value;
 import cz.cvut.fel.ida.algebra.weights.Weight;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.actions.Evaluation;
 import cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.weights.WeightUpdater;
 import cz.cvut.fel.ida.utils.generic.Utilities;
 import cz.cvut.fel.ida.learning.results.Result;
@@ -10,8 +11,13 @@ import cz.cvut.fel.ida.neural.networks.computation.training.NeuralSample;
 import cz.cvut.fel.ida.neural.networks.computation.training.optimizers.Optimizer;
 import cz.cvut.fel.ida.neural.networks.computation.training.strategies.debugging.NeuralDebugging;
 import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.metrics.Metrics;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -34,6 +40,31 @@ public class MiniBatchTrainer extends Trainer {
 
     NeuralModel neuralModel;
 
+    /**
+     * Choosing the minibatch size and threads with the {@link Settings#adaptiveMinibatch}, null otherwise
+     */
+    MinibatchTuner tuner;
+
+    /**
+     * The pool running the minibatch samples if the number of threads is limited, null for the common pool
+     */
+    ForkJoinPool pool;
+
+    /**
+     * The pools of the different numbers of threads tried by the tuner
+     */
+    private Map<Integer, ForkJoinPool> pools;
+
+    /**
+     * Creates the evaluation of the trainer of each sample of a minibatch (by its index) instead of the default one, if set
+     */
+    private IntFunction<Evaluation> evaluations;
+
+    /**
+     * Called after each minibatch (on the calling thread) with the trainers of its samples in their order, if set
+     */
+    private Consumer<List<SequentialTrainer>> minibatchListener;
+
     private MiniBatchTrainer() {
     }
 
@@ -44,9 +75,39 @@ public class MiniBatchTrainer extends Trainer {
 
         trainers = new ArrayList<>(minibatchSize);
 
+        if (settings.adaptiveMinibatch) {
+            tuner = new MinibatchTuner(settings);
+            pools = new HashMap<>();
+            minibatchSize = settings.maxMinibatchSize();
+        } else if (settings.minibatchThreadsMax < Runtime.getRuntime().availableProcessors()) {
+            pool = new ForkJoinPool(Math.max(1, settings.minibatchThreadsMax));
+        }
+
         for (int i = 0; i < minibatchSize; i++) {
-            trainers.add(new SequentialTrainer(settings, optimizer, neuralModel, i));
+            trainers.add(createTrainer(i));
+        }
+    }
+
+    private SequentialTrainer createTrainer(int index) {
+        SequentialTrainer trainer = new SequentialTrainer(settings, optimizer, neuralModel, index);
+        if (evaluations != null) {
+            trainer.setEvaluation(evaluations.apply(index));
         }
+        return trainer;
+    }
+
+    /**
+     * Use the given evaluations (by the index of the trainer) for the samples of the minibatches, e.g. to collect some extra outputs
+     */
+    public void setEvaluations(IntFunction<Evaluation> evaluations) {
+        this.evaluations = evaluations;
+        for (int i = 0; i < trainers.size(); i++) {
+            trainers.get(i).setEvaluation(evaluations.apply(i));
+        }
+    }
+
+    public void setMinibatchListener(Consumer<List<SequentialTrainer>> minibatchListener) {
+        this.minibatchListener = minibatchListener;
     }
 
     public void setMinibatchSize(int minibatchSize) {
@@ -58,7 +119,7 @@ public class MiniBatchTrainer extends Trainer {
         }
 
         for (int i = size; i < minibatchSize; i++) {
-            trainers.add(new SequentialTrainer(settings, optimizer, neuralModel, i));
+            trainers.add(createTrainer(i));
         }
     }
 
@@ -74,9 +135,25 @@ public class MiniBatchTrainer extends Trainer {
             List<Result> resultList = new ArrayList<>(sampleList.size());
             MiniBatchIterator miniBatchIterator = new MiniBatchIterator(sampleList);
             while (miniBatchIterator.hasNext()) {
+                MinibatchTuner.Config config = tuner == null ? null : useConfig(tuner.next());
+                long start = System.nanoTime();
                 List<NeuralSample> minibatch = miniBatchIterator.next();
                 List<Result> results = minibatchParallelLearn(neuralModel, minibatch);
                 resultList.addAll(results);
+                if (config != null && tuner.isTuning()) {
+                    tuner.recordTime(config, minibatch.size(), System.nanoTime() - start);
+                }
+            }
+            if (tuner != null) {
+                MinibatchTuner.Config chosen = tuner.epochFinished();
+                if (chosen != null) {
+                    useConfig(chosen);
+                    pools.forEach((threads, unused) -> {
+                        if (unused != pool) {
+                            unused.shutdown();
+                        }
+                    });
+                }
             }
 
             return resultList;
@@ -99,6 +176,21 @@ public class MiniBatchTrainer extends Trainer {
             MiniBatchTrainer.this.optimizer.restart(settings);
         }
 
+        @Override
+        public int getIterationNumber() {
+            return iterationNumber;
+        }
+
+        @Override
+        public void setIterationNumber(int iterationNumber) {
+            MiniBatchTrainer.this.iterationNumber = iterationNumber;
+        }
+
+        @Override
+        public Optimizer getOptimizer() {
+            return MiniBatchTrainer.this.optimizer;
+        }
+
         @Override
         public void setupDebugger(NeuralDebugging trainingDebugger) {
             neuralDebugger = trainingDebugger;
@@ -154,16 +246,23 @@ public class MiniBatchTrainer extends Trainer {
             LOG.severe("Minibatch size mismatch");
         }
 
-        List<Result> results = IntStream.range(0, size)
+        List<Result> results = inPool(() -> IntStream.range(0, size)
                 .parallel()
                 .mapToObj(i -> evaluateAndBackprop(trainers.get(i), sampleList.get(i)))
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
+        minibatchFinished(size);
+
+        final boolean measureNoise = tuner != null && tuner.isTuning() && size > 1;
+        double sampleNormsSquared = 0;
 
         for (int i = 0; i < size; i++) {
             WeightUpdater weightUpdater = trainers.get(i).backpropagation.weightUpdater;
             Value[] updates = weightUpdater.weightUpdates;
 
             updatedWeights.addAll(weightUpdater.updatedWeightsOnly);
+            if (measureNoise) {
+                sampleNormsSquared += normSquared(updates);    // before the first sample's updates get incremented by the others
+            }
 
             for (int j = 0; j < weightUpdates.length; j++) {
                 if (weightUpdates[j] == null) {
@@ -174,7 +273,14 @@ public class MiniBatchTrainer extends Trainer {
             }
         }
 
-        this.optimizer.performGradientStep(updatedWeights, weightUpdates, this.iterationNumber);
+        if (measureNoise) {
+            tuner.recordGradients(size, sampleNormsSquared, normSquared(weightUpdates));
+        }
+
+        long start = Metrics.start();
+        neuralModel.beforeUpdate(updatedWeights);
+        this.optimizer.performGradientStep(neuralModel, updatedWeights, weightUpdates, this.iterationNumber);
+        OPTIMIZER_STEP.recordSince(start);
         return results;
     }
 
@@ -185,12 +291,49 @@ public class MiniBatchTrainer extends Trainer {
             LOG.severe("Minibatch size mismatch");
         }
 
-        return IntStream.range(0, size).parallel().mapToObj(i -> {
+        List<Result> results = inPool(() -> IntStream.range(0, size).parallel().mapToObj(i -> {
             SequentialTrainer trainer = trainers.get(i);
             NeuralSample sample = minibatch.get(i);
 
             return trainer.learnFromSample(neuralModel, sample, trainer.dropout, trainer.invalidation, trainer.evaluation, trainer.backpropagation);
-        }).collect(Collectors.toList());
+        }).collect(Collectors.toList()));
+        minibatchFinished(size);
+        return results;
+    }
+
+    private void minibatchFinished(int size) {
+        if (minibatchListener != null) {
+            minibatchListener.accept(trainers.subList(0, size));
+        }
+    }
+
+    /**
+     * The parallel streams run in the pool they are started from, i.e. the common one unless a {@link #pool} is set
+     */
+    private <T> T inPool(Supplier<T> task) {
+        if (pool == null) {
+            return task.get();
+        }
+        return pool.submit(task::get).join();
+    }
+
+    private MinibatchTuner.Config useConfig(MinibatchTuner.Config config) {
+        minibatchSize = config.size;
+        pool = pools.computeIfAbsent(config.threads, ForkJoinPool::new);
+        return config;
+    }
+
+    private static double normSquared(Value[] updates) {
+        double sum = 0;
+        for (Value update : updates) {
+            if (update == null) {
+                continue;
+            }
+            for (double value : update.getAsArray()) {
+                sum += value * value;
+            }
+        }
+        return sum;
     }
 
     private Result evaluateAndBackprop(SequentialTrainer trainer, NeuralSample neuralSample) {
@@ -0,0 +1,174 @@
+package cz.cvut.fel.ida.neural.networks.computation.training.strategies.trainers;
+
+import cz.cvut.fel.ida.setup.Settings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Chooses the minibatch size and the number of its threads for the {@link MiniBatchTrainer} from measurements over the
+ * first {@link Settings#minibatchTuningEpochae} epochae.
+ * <p>
+ * The candidate configurations (the powers of two within the {@link Settings#minibatchSizeMin} and {@link Settings#minibatchSizeMax},
+ * each with all or half of the {@link Settings#minibatchThreadsMax} threads it can use) are measured in turns, batch by batch,
+ * so that the warming up of the JVM does not favour the later ones. Besides the throughput (samples per second), the gradient noise
+ * scale B = tr(Σ) / |G|^2 is estimated from the per-sample and the minibatch gradients (McCandlish et al., An Empirical Model of
+ * Large-Batch Training), as beyond B the larger batches need proportionally more samples to make the same progress.
+ * The chosen configuration is then the one maximizing the progress per second, i.e. throughput / (1 + size / B).
+ */
+public class MinibatchTuner {
+    private static final Logger LOG = Logger.getLogger(MinibatchTuner.class.getName());
+
+    /**
+     * Min number of batches each candidate configuration needs to be measured on
+     */
+    static final int MIN_TRIAL_BATCHES = 3;
+
+    public static class Config {
+        public final int size;
+        public final int threads;
+
+        long samples;
+        long nanos;
+        int batches;
+
+        Config(int size, int threads) {
+            this.size = size;
+            this.threads = threads;
+        }
+
+        double throughput() {
+            return nanos == 0 ? 0 : samples * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return "size=" + size + ", threads=" + threads;
+        }
+    }
+
+    final List<Config> candidates = new ArrayList<>();
+
+    private final int tuningEpochae;
+
+    private int next;
+    private int epochae;
+
+    /**
+     * Sums of the estimates of tr(Σ) and |G|^2 over the measured minibatches
+     */
+    private double noiseSum;
+    private double gradientSum;
+
+    private Config chosen;
+
+    public MinibatchTuner(Settings settings) {
+        this.tuningEpochae = settings.minibatchTuningEpochae;
+        int min = Math.max(1, settings.minibatchSizeMin);
+        int max = Math.max(min, settings.minibatchSizeMax);
+        int maxThreads = Math.max(1, settings.minibatchThreadsMax);
+
+        List<Integer> sizes = new ArrayList<>();
+        sizes.add(min);
+        for (int size = Integer.highestOneBit(min) * 2; size < max; size *= 2) {
+            sizes.add(size);
+        }
+        if (max > min) {
+            sizes.add(max);
+        }
+        for (Integer size : sizes) {
+            int threads = Math.min(size, maxThreads);
+            candidates.add(new Config(size, threads));
+            if (threads > 1) {
+                candidates.add(new Config(size, threads / 2));
+            }
+        }
+        if (candidates.size() == 1) {
+            chosen = candidates.get(0);
+        }
+    }
+
+    public boolean isTuning() {
+        return chosen == null;
+    }
+
+    /**
+     * @return the configuration of the next minibatch
+     */
+    public Config next() {
+        if (chosen != null) {
+            return chosen;
+        }
+        Config config = candidates.get(next);
+        next = (next + 1) % candidates.size();
+        return config;
+    }
+
+    /**
+     * @param config  - with which a minibatch has been trained
+     * @param samples - in the minibatch
+     * @param nanos   - spent on the minibatch, including the gradient step
+     */
+    public void recordTime(Config config, int samples, long nanos) {
+        config.samples += samples;
+        config.nanos += nanos;
+        config.batches++;
+    }
+
+    /**
+     * @param samples              - in the minibatch (the estimate needs at least 2)
+     * @param sampleNormSquaredSum - sum of the squared norms of the gradients of the individual samples
+     * @param batchNormSquared     - squared norm of the summed gradient of the minibatch
+     */
+    public void recordGradients(int samples, double sampleNormSquaredSum, double batchNormSquared) {
+        if (samples < 2) {
+            return;
+        }
+        double small = sampleNormSquaredSum / samples;                  // E|g_1|^2 = |G|^2 + tr(Σ)
+        double big = batchNormSquared / ((double) samples * samples);  // E|g_B|^2 = |G|^2 + tr(Σ) / B
+        gradientSum += (samples * big - small) / (samples - 1);
+        noiseSum += (small - big) / (1 - 1.0 / samples);
+    }
+
+    /**
+     * @return the estimated gradient noise scale, i.e. the batch size beyond which the sample efficiency drops
+     */
+    public double noiseScale() {
+        if (noiseSum <= 0) {
+            return 1;
+        }
+        if (gradientSum <= 0) {
+            return Double.POSITIVE_INFINITY;    // the noise dominates the (negligible) true gradient
+        }
+        return noiseSum / gradientSum;
+    }
+
+    /**
+     * @return the chosen configuration, once the tuning ended with this epoch, or null if it goes on (or ended before)
+     */
+    public Config epochFinished() {
+        if (chosen != null || ++epochae < tuningEpochae) {
+            return null;
+        }
+        for (Config candidate : candidates) {
+            if (candidate.batches < MIN_TRIAL_BATCHES) {
+                return null;
+            }
+        }
+        double noiseScale = noiseScale();
+        double bestProgress = -1;
+        for (Config candidate : candidates) {
+            double progress = candidate.throughput() / (1 + candidate.size / noiseScale);
+            LOG.fine(() -> "Minibatch " + candidate + ": " + Settings.shortNumberFormat.format(candidate.throughput()) + " samples/s.");
+            if (progress > bestProgress) {
+                bestProgress = progress;
+                chosen = candidate;
+            }
+        }
+        LOG.info("Adaptive minibatch after " + epochae + " epochae: chose " + chosen + " (" + Settings.shortNumberFormat.format(chosen.throughput())
+                + " samples/s, gradient noise scale " + Settings.shortNumberFormat.format(noiseScale) + "), to reproduce set minibatchSize=" + chosen.size
+                + " and minibatchThreadsMax=" + chosen.threads + " without the adaptiveMinibatch.");
+        return chosen;
+    }
+}
@@ -99,6 +99,21 @@ public class SequentialTrainer extends Trainer {
             SequentialTrainer.this.optimizer.restart(settings);
         }
 
+        @Override
+        public int getIterationNumber() {
+            return iterationNumber;
+        }
+
+        @Override
+        public void setIterationNumber(int iterationNumber) {
+            SequentialTrainer.this.iterationNumber = iterationNumber;
+        }
+
+        @Override
+        public Optimizer getOptimizer() {
+            return SequentialTrainer.this.optimizer;
+        }
+
         @Override
         public void setupDebugger(NeuralDebugging trainingDebugger) {
             neuralDebugger = trainingDebugger;
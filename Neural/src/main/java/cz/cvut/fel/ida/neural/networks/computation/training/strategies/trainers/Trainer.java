@@ -11,12 +11,16 @@ import cz.cvut.fel.ida.neural.networks.computation.training.optimizers.Optimizer
 import cz.cvut.fel.ida.neural.networks.computation.training.strategies.debugging.NeuralDebugging;
 import cz.cvut.fel.ida.setup.Settings;
 import cz.cvut.fel.ida.utils.exporting.Exportable;
+import cz.cvut.fel.ida.utils.metrics.Histogram;
+import cz.cvut.fel.ida.utils.metrics.Metrics;
 
 import java.util.logging.Logger;
 
 public class Trainer implements Exportable {
     private static final Logger LOG = Logger.getLogger(Trainer.class.getName());
 
+    static final Histogram OPTIMIZER_STEP = Metrics.histogram("training.optimizerStep");
+
     protected Settings settings;
 
     /**
@@ -81,7 +85,10 @@ public class Trainer implements Exportable {
      * @param weightUpdater
      */
     synchronized public void updateWeights(NeuralModel model, WeightUpdater weightUpdater) {
+        long start = Metrics.start();
+        model.beforeUpdate(weightUpdater.updatedWeightsOnly);
         optimizer.performGradientStep(model, weightUpdater, ++iterationNumber);
+        OPTIMIZER_STEP.recordSince(start);
     }
 
     public void restart() {
@@ -96,7 +96,7 @@ public class StatesBuilder {
     public boolean makeParallel(BaseNeuron neuron) {
         State.Neural.Computation state = neuron.getComputationView(0);
         if (settings.parallelTraining && !(neuron.getRawState() instanceof States.ComputationStateComposite)) {  //if not yet made ready for parallel access
-            States.ComputationStateComposite<State.Neural.Computation> compositeState = State.createCompositeState(state, settings.minibatchSize);//todo remove State S from the signature of Neuron? probably yes
+            States.ComputationStateComposite<State.Neural.Computation> compositeState = State.createCompositeState(state, settings.maxMinibatchSize());//todo remove State S from the signature of Neuron? probably yes
             neuron.setState(compositeState);
             return true;
         } else
@@ -26,6 +26,12 @@ public class TopologicNetwork<N extends State.Neural.Structure> extends NeuralNe
      */
     public List<BaseNeuron<Neurons, State.Neural>> allNeuronsTopologic;
 
+    /**
+     * Positions (in {@link #allNeuronsTopologic}) of mutually independent neurons grouped into levels - lazily computed
+     * by {@link cz.cvut.fel.ida.neural.networks.computation.iteration.modes.ParallelTopologic} when needed.
+     */
+    public transient int[][] levels;
+
     public TopologicNetwork(String id, List<BaseNeuron<Neurons, State.Neural>> allNeurons) {
         super(id, allNeurons.size());
         allNeuronsTopologic = new TopoSorting().topologicSort(allNeurons);
@@ -0,0 +1,259 @@
+package cz.cvut.fel.ida.neural.networks.structure.export;
+
+import cz.cvut.fel.ida.algebra.functions.ActivationFcn;
+import cz.cvut.fel.ida.algebra.functions.Combination;
+import cz.cvut.fel.ida.algebra.functions.Transformation;
+import cz.cvut.fel.ida.algebra.values.MatrixValue;
+import cz.cvut.fel.ida.algebra.values.ScalarValue;
+import cz.cvut.fel.ida.algebra.values.Value;
+import cz.cvut.fel.ida.algebra.values.VectorValue;
+import cz.cvut.fel.ida.setup.NetworkSetting;
+import cz.cvut.fel.ida.setup.Settings;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Shared constants and codecs of the versioned binary format of finalized neural networks (samples) and weights,
+ * as written by {@link BinaryNeuralSerializer} and memory-mapped by {@link BinaryNeuralLoader}.
+ * <p>
+ * Layout of the file (all big-endian):
+ * <pre>
+ * header:  int MAGIC, int VERSION, fingerprint (SHA-256 of the inputs and settings the networks were built from, zeros if unknown)
+ * samples: one block per sample - meta, neurons (kind, name, function opcodes, offset), CSR topology (rowPtr, col, weight refs), fact values
+ * trailer: flags, long random seed (valid if flagged), function table, weight table, sample index (offset + length of each block)
+ * footer:  long position of the trailer
+ * </pre>
+ * Weights are referenced by their position in the weight table, with {@link #UNIT_WEIGHT} and {@link #ZERO_WEIGHT}
+ * reserved for the two constant weights. Activation functions are referenced by their position in the function table,
+ * which stores the names of the respective {@link Settings.CombinationFcn} and {@link Settings.TransformationFcn}. Functions configured
+ * differently from these (e.g. a slice or a reshape with their parameters) cannot be represented.
+ */
+public final class BinaryNetworkFormat {
+    private static final Logger LOG = Logger.getLogger(BinaryNetworkFormat.class.getName());
+
+    public static final int MAGIC = 0x4E4C4E42;    // "NLNB"
+    public static final int VERSION = 3;
+
+    static final int FINGERPRINT_SIZE = 32;
+    static final int HEADER_SIZE = 8 + FINGERPRINT_SIZE;
+
+    static final int UNIT_WEIGHT = -1;
+    static final int ZERO_WEIGHT = -2;
+    static final int NO_FUNCTION = -1;
+
+    static final byte ATOM = 0;
+    static final byte WEIGHTED_ATOM = 1;
+    static final byte AGGREGATION = 2;
+    static final byte RULE = 3;
+    static final byte WEIGHTED_RULE = 4;
+    static final byte FACT = 5;
+    static final byte NEGATION = 6;
+
+    static final byte COMBINATION = 0;
+    static final byte TRANSFORMATION = 1;
+
+    static final byte NULL_VALUE = 0;
+    static final byte ONE_VALUE = 1;
+    static final byte ZERO_VALUE = 2;
+    static final byte SCALAR_VALUE = 3;
+    static final byte VECTOR_VALUE = 4;
+    static final byte MATRIX_VALUE = 5;
+
+    static final byte FIXED = 1;
+    static final byte LEARNABLE = 1 << 1;
+    static final byte OFFSET = 1 << 2;
+    static final byte MANUAL_INIT = 1 << 3;
+    static final byte SHARED = 1 << 4;
+
+    static final byte NON_SCALAR_TARGETS = 1;
+    static final byte RANDOM_SEED = 1 << 1;
+
+    private BinaryNetworkFormat() {
+    }
+
+    /**
+     * Finds the enum name under which the given combination function can be recreated, or null if there is none.
+     */
+    static String combinationName(Combination combination) {
+        for (Settings.CombinationFcn fcn : Settings.CombinationFcn.values()) {
+            if (Combination.getFunction(fcn) == combination) {
+                return fcn.name();
+            }
+        }
+        for (Settings.CombinationFcn fcn : Settings.CombinationFcn.values()) {
+            Combination function = Combination.getFunction(fcn);
+            if (function != null && sameParameters(function, combination)) {
+                return fcn.name();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the enum name under which the given transformation function can be recreated, or null if there is none.
+     */
+    static String transformationName(Transformation transformation) {
+        for (Settings.TransformationFcn fcn : Settings.TransformationFcn.values()) {
+            if (isMapped(fcn) && Transformation.getFunction(fcn) == transformation) {
+                return fcn.name();
+            }
+        }
+        for (Settings.TransformationFcn fcn : Settings.TransformationFcn.values()) {
+            if (!isMapped(fcn)) {
+                continue;
+            }
+            Transformation function = Transformation.getFunction(fcn);
+            if (function != null && sameParameters(function, transformation)) {
+                return fcn.name();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether the given function is just another instance of the (enum) function, i.e. of the same class with all the same
+     * parameters, so that it can be recreated from the enum name alone.
+     */
+    private static boolean sameParameters(ActivationFcn enumFunction, ActivationFcn function) {
+        return enumFunction.getClass() == function.getClass() && Arrays.deepEquals(enumFunction.getParameters(), function.getParameters());
+    }
+
+    private static boolean isMapped(Settings.TransformationFcn fcn) {
+        return fcn != Settings.TransformationFcn.MAX && fcn != Settings.TransformationFcn.MIN;
+    }
+
+    /**
+     * The fingerprint of the given input files (their contents) and of all the settings that the grounding and neuralization of
+     * the networks depend on, to recognize whether a stored file still matches the current setup.
+     */
+    public static byte[] fingerprint(List<Path> inputs, Settings settings) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[1 << 16];
+        for (Path input : inputs) {
+            try (InputStream in = Files.newInputStream(input)) {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            digest.update((byte) 0);
+        }
+        digest.update(neuralizationSettings(settings).getBytes(StandardCharsets.UTF_8));
+        return digest.digest();
+    }
+
+    /**
+     * All the settings marked as {@link NetworkSetting}, by their names
+     */
+    static String neuralizationSettings(Settings settings) {
+        List<Field> fields = new ArrayList<>();
+        for (Field field : Settings.class.getFields()) {
+            if (field.isAnnotationPresent(NetworkSetting.class)) {
+                fields.add(field);
+            }
+        }
+        fields.sort(Comparator.comparing(Field::getName));
+        StringBuilder sb = new StringBuilder();
+        for (Field field : fields) {
+            try {
+                sb.append(field.getName()).append("=").append(field.get(settings)).append(",");
+            } catch (IllegalAccessException e) {    // the fields are public
+                throw new IllegalStateException(e);
+            }
+        }
+        return sb.toString();
+    }
+
+    static void writeString(DataOutput out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeValue(DataOutput out, Value value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL_VALUE);
+        } else if (value == Value.ONE) {
+            out.writeByte(ONE_VALUE);
+        } else if (value == Value.ZERO) {
+            out.writeByte(ZERO_VALUE);
+        } else if (value instanceof ScalarValue) {
+            out.writeByte(SCALAR_VALUE);
+            out.writeDouble(((ScalarValue) value).value);
+        } else if (value instanceof VectorValue) {
+            VectorValue vector = (VectorValue) value;
+            out.writeByte(VECTOR_VALUE);
+            out.writeBoolean(vector.rowOrientation);
+            out.writeInt(vector.values.length);
+            for (double v : vector.values) {
+                out.writeDouble(v);
+            }
+        } else if (value instanceof MatrixValue) {
+            MatrixValue matrix = (MatrixValue) value;
+            out.writeByte(MATRIX_VALUE);
+            out.writeInt(matrix.rows);
+            out.writeInt(matrix.cols);
+            for (double v : matrix.values) {
+                out.writeDouble(v);
+            }
+        } else {
+            String err = "Unsupported Value type for binary network serialization: " + value.getClass().getSimpleName();
+            LOG.severe(err);
+            throw new UnsupportedOperationException(err);
+        }
+    }
+
+    static Value readValue(ByteBuffer buffer) {
+        byte tag = buffer.get();
+        switch (tag) {
+            case NULL_VALUE:
+                return null;
+            case ONE_VALUE:
+                return Value.ONE;
+            case ZERO_VALUE:
+                return Value.ZERO;
+            case SCALAR_VALUE:
+                return new ScalarValue(buffer.getDouble());
+            case VECTOR_VALUE:
+                boolean rowOrientation = buffer.get() != 0;
+                double[] vector = new double[buffer.getInt()];
+                buffer.asDoubleBuffer().get(vector);
+                buffer.position(buffer.position() + vector.length * Double.BYTES);
+                return new VectorValue(vector, rowOrientation);
+            case MATRIX_VALUE:
+                int rows = buffer.getInt();
+                int cols = buffer.getInt();
+                double[] matrix = new double[rows * cols];
+                buffer.asDoubleBuffer().get(matrix);
+                buffer.position(buffer.position() + matrix.length * Double.BYTES);
+                return new MatrixValue(matrix, rows, cols);
+            default:
+                throw new IllegalStateException("Corrupted binary network file - unknown value tag: " + tag);
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package cz.cvut.fel.ida.neural.networks.structure.export;
+
+import cz.cvut.fel.ida.algebra.functions.Combination;
+import cz.cvut.fel.ida.algebra.functions.Transformation;
+import cz.cvut.fel.ida.algebra.values.Value;
+import cz.cvut.fel.ida.algebra.weights.Weight;
+import cz.cvut.fel.ida.learning.LearningSample;
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralModel;
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralSample;
+import cz.cvut.fel.ida.neural.networks.structure.building.builders.StatesBuilder;
+import cz.cvut.fel.ida.neural.networks.structure.building.factories.NeuralNetFactory;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.BaseNeuron;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.QueryNeuron;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.WeightedNeuron;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.states.State;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.states.States;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.types.*;
+import cz.cvut.fel.ida.neural.networks.structure.components.types.DetailedNetwork;
+import cz.cvut.fel.ida.neural.networks.structure.components.types.TopologicNetwork;
+import cz.cvut.fel.ida.setup.Settings;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static cz.cvut.fel.ida.neural.networks.structure.export.BinaryNetworkFormat.*;
+
+/**
+ * Memory-maps a file written by {@link BinaryNeuralSerializer} and reconstructs the stored {@link NeuralSample}s lazily, one by one,
+ * as they are requested.
+ * <p>
+ * The stored weights are bound to the weights of the given (template) model by their indices, so that the training of the loaded
+ * networks updates the model just as if they were freshly neuralized. A file written for a different template is refused, and
+ * whether it still matches the inputs it was built from can be checked upfront via its {@link #readFingerprint fingerprint}.
+ * The loading itself never changes the settings.
+ */
+public class BinaryNeuralLoader implements Closeable {
+    private static final Logger LOG = Logger.getLogger(BinaryNeuralLoader.class.getName());
+
+    /**
+     * Maximal size of a single mapped region of the file (a region can never span over 2GB)
+     */
+    private static final long MAX_SEGMENT = Integer.MAX_VALUE;
+
+    private final Settings settings;
+    private final StatesBuilder statesBuilder;
+    private final NeuralNetFactory networkFactory;
+
+    private final FileChannel channel;
+
+    private final Combination[] combinations;
+    private final Transformation[] transformations;
+    private final Weight[] weights;
+
+    private final byte flags;
+    private final long randomSeed;
+
+    private final MappedByteBuffer[] segments;
+    private final int[] sampleSegments;
+    private final int[] sampleOffsets;
+    private final int[] sampleLengths;
+
+    public BinaryNeuralLoader(Path file, NeuralModel model, Settings settings) throws IOException {
+        this.settings = settings;
+        this.statesBuilder = new StatesBuilder(settings);
+        this.networkFactory = new NeuralNetFactory(settings);
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+
+        try {
+            long size = channel.size();
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (size < HEADER_SIZE + Long.BYTES || header.getInt() != MAGIC) {
+                throw new IOException("Not a binary neural networks file: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version + " of binary neural networks file: " + file);
+            }
+
+            long trailerPosition = channel.map(FileChannel.MapMode.READ_ONLY, size - Long.BYTES, Long.BYTES).getLong();
+            ByteBuffer trailer = channel.map(FileChannel.MapMode.READ_ONLY, trailerPosition, size - Long.BYTES - trailerPosition);
+
+            flags = trailer.get();
+            randomSeed = trailer.getLong();
+
+            int functionCount = trailer.getInt();
+            combinations = new Combination[functionCount];
+            transformations = new Transformation[functionCount];
+            for (int i = 0; i < functionCount; i++) {
+                byte kind = trailer.get();
+                String name = readString(trailer);
+                if (kind == COMBINATION) {
+                    combinations[i] = Combination.getFunction(Settings.CombinationFcn.valueOf(name));
+                } else {
+                    transformations[i] = Transformation.getFunction(Settings.TransformationFcn.valueOf(name));
+                }
+            }
+
+            weights = loadWeights(trailer, model);
+
+            int sampleCount = trailer.getInt();
+            long[] offsets = new long[sampleCount];
+            sampleLengths = new int[sampleCount];
+            for (int i = 0; i < sampleCount; i++) {
+                offsets[i] = trailer.getLong();
+                sampleLengths[i] = trailer.getInt();
+            }
+
+            sampleSegments = new int[sampleCount];
+            sampleOffsets = new int[sampleCount];
+            segments = mapSegments(offsets);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        LOG.info("Mapped " + size() + " neural samples with " + weights.length + " weights from " + file);
+    }
+
+    /**
+     * @return the fingerprint stored in the header of the given file, or null if there is no such file (of the current version) or it has no fingerprint
+     */
+    public static byte[] readFingerprint(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    break;
+                }
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                return null;
+            }
+            byte[] fingerprint = new byte[FINGERPRINT_SIZE];
+            header.get(fingerprint);
+            return Arrays.equals(fingerprint, new byte[FINGERPRINT_SIZE]) ? null : fingerprint;
+        } catch (IOException e) {
+            LOG.warning("Cannot read the binary neural networks file " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private Weight[] loadWeights(ByteBuffer trailer, NeuralModel model) {
+        Map<Integer, Weight> modelWeights = model.mapWeightsToIds();
+        Weight[] weights = new Weight[trailer.getInt()];
+        for (int i = 0; i < weights.length; i++) {
+            int index = trailer.getInt();
+            String name = readString(trailer);
+            byte flags = trailer.get();
+            Value value = readValue(trailer);
+
+            Weight weight = index >= 0 ? modelWeights.get(index) : null;
+            if (weight != null) {
+                if (!weight.name.equals(name)) {
+                    String err = "The binary neural networks file does not match the current template - weight " + index + " is " + weight.name + " instead of " + name;
+                    LOG.severe(err);
+                    throw new IllegalStateException(err);
+                }
+            } else {    // weights created outside of the template (e.g. by neuralization)
+                weight = new Weight(index, name, value, (flags & FIXED) != 0, (flags & MANUAL_INIT) != 0);
+                weight.isLearnable = (flags & LEARNABLE) != 0;
+                weight.isOffset = (flags & OFFSET) != 0;
+                weight.isShared = (flags & SHARED) != 0;
+            }
+            weights[i] = weight;
+        }
+        return weights;
+    }
+
+    /**
+     * Maps the (contiguous) sample blocks into as few regions as possible.
+     */
+    private MappedByteBuffer[] mapSegments(long[] offsets) throws IOException {
+        List<MappedByteBuffer> segments = new ArrayList<>();
+        int first = 0;
+        while (first < offsets.length) {
+            long start = offsets[first];
+            int last = first;
+            while (last + 1 < offsets.length && offsets[last + 1] + sampleLengths[last + 1] - start <= MAX_SEGMENT) {
+                last++;
+            }
+            long end = offsets[last] + sampleLengths[last];
+            segments.add(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+            for (int i = first; i <= last; i++) {
+                sampleSegments[i] = segments.size() - 1;
+                sampleOffsets[i] = (int) (offsets[i] - start);
+            }
+            first = last + 1;
+        }
+        return segments.toArray(new MappedByteBuffer[0]);
+    }
+
+    /**
+     * @return whether some of the samples have a non-scalar target value (which switches the evaluation to the basic classification results)
+     */
+    public boolean hasNonScalarTargets() {
+        return (flags & NON_SCALAR_TARGETS) != 0;
+    }
+
+    /**
+     * @return a generator with the seed the run building the networks continued with (so that the training can continue exactly as after the building), or null if none was stored
+     */
+    public Random restoreRandom() {
+        if ((flags & RANDOM_SEED) == 0) {
+            return null;
+        }
+        return new Random(randomSeed);
+    }
+
+    public int size() {
+        return sampleLengths.length;
+    }
+
+    /**
+     * A lazy stream of all the stored samples, each reconstructed only once it is pulled.
+     */
+    public Stream<NeuralSample> loadSamples() {
+        return IntStream.range(0, size()).mapToObj(this::loadSample);
+    }
+
+    public NeuralSample loadSample(int i) {
+        ByteBuffer buffer = segments[sampleSegments[i]].duplicate();
+        buffer.position(sampleOffsets[i]);
+        buffer.limit(sampleOffsets[i] + sampleLengths[i]);
+
+        String id = readString(buffer);
+        Value target = readValue(buffer);
+        LearningSample.Split type = LearningSample.Split.values()[buffer.get()];
+        int position = buffer.getInt();
+        double importance = buffer.getDouble();
+
+        int neuronCount = buffer.getInt();
+        int output = buffer.getInt();
+
+        byte[] kinds = new byte[neuronCount];
+        String[] names = new String[neuronCount];
+        int[] combinationRefs = new int[neuronCount];
+        int[] transformationRefs = new int[neuronCount];
+        int[] offsetRefs = new int[neuronCount];
+        Value[] factValues = new Value[neuronCount];
+        boolean[] learnableFacts = new boolean[neuronCount];
+
+        for (int n = 0; n < neuronCount; n++) {
+            kinds[n] = buffer.get();
+            names[n] = readString(buffer);
+            if (kinds[n] == FACT) {
+                offsetRefs[n] = buffer.getInt();
+                if (offsetRefs[n] == ZERO_WEIGHT) {
+                    factValues[n] = readValue(buffer);
+                }
+                learnableFacts[n] = buffer.get() != 0;
+            } else {
+                combinationRefs[n] = buffer.getInt();
+                transformationRefs[n] = buffer.getInt();
+                if (kinds[n] == WEIGHTED_ATOM || kinds[n] == WEIGHTED_RULE) {
+                    offsetRefs[n] = buffer.getInt();
+                }
+            }
+        }
+
+        int edges = buffer.getInt();
+        int[] rowPtr = new int[neuronCount + 1];
+        int[] cols = new int[edges];
+        int[] weightRefs = new int[edges];
+        readInts(buffer, rowPtr);
+        readInts(buffer, cols);
+        readInts(buffer, weightRefs);
+
+        List<BaseNeuron> neurons = new ArrayList<>(neuronCount);
+        for (int n = 0; n < neuronCount; n++) {
+            neurons.add(createNeuron(n, kinds[n], names[n], combinationRefs[n], transformationRefs[n], offsetRefs[n], factValues[n], learnableFacts[n], rowPtr, cols, weightRefs, neurons));
+        }
+
+        DetailedNetwork network = new DetailedNetwork(id, neuronCount);
+        network.allNeuronsTopologic.addAll(neurons);
+        finalizeNetwork(network);
+
+        TopologicNetwork<State.Neural.Structure> topologicNetwork = networkFactory.extractTopologicNetwork(network);
+        AtomNeurons outputNeuron = output >= 0 ? (AtomNeurons) neurons.get(output) : null;
+        QueryNeuron queryNeuron = new QueryNeuron(id, position, importance, outputNeuron, topologicNetwork);
+        return new NeuralSample(target, queryNeuron, type);
+    }
+
+    private BaseNeuron createNeuron(int index, byte kind, String name, int combinationRef, int transformationRef, int offsetRef, Value factValue, boolean learnableFact,
+                                    int[] rowPtr, int[] cols, int[] weightRefs, List<BaseNeuron> created) {
+        if (kind == FACT) {
+            Weight weight = weight(offsetRef);
+            States.SimpleValue simpleValue = new States.SimpleValue(weight == Weight.zeroWeight ? factValue : weight.value);
+            FactNeuron factNeuron = new FactNeuron(name, weight == Weight.zeroWeight ? null : weight, index, simpleValue);
+            factNeuron.hasLearnableValue = learnableFact;
+            simpleValue.isLearnable = learnableFact;
+            return factNeuron;
+        }
+
+        Combination combination = combinationRef == NO_FUNCTION ? null : combinations[combinationRef];
+        Transformation transformation = transformationRef == NO_FUNCTION ? null : transformations[transformationRef];
+        State.Neural.Computation state = State.createBaseState(settings, combination, transformation);
+
+        BaseNeuron neuron;
+        switch (kind) {
+            case ATOM:
+                neuron = new AtomNeuron<>(name, index, state);
+                break;
+            case WEIGHTED_ATOM:
+                neuron = new WeightedAtomNeuron<>(name, weight(offsetRef), index, state);
+                break;
+            case AGGREGATION:
+                neuron = new AggregationNeuron<>(name, index, state);
+                break;
+            case RULE:
+                neuron = new RuleNeuron<>(name, index, state);
+                break;
+            case WEIGHTED_RULE:
+                neuron = new WeightedRuleNeuron<>(name, weight(offsetRef), index, state);
+                break;
+            case NEGATION:
+                return new NegationNeuron<>((AtomFact) created.get(cols[rowPtr[index]]), index, state);  // the single input is added by the constructor
+            default:
+                throw new IllegalStateException("Corrupted binary network file - unknown neuron kind: " + kind);
+        }
+
+        for (int e = rowPtr[index]; e < rowPtr[index + 1]; e++) {
+            BaseNeuron input = created.get(cols[e]);
+            if (neuron instanceof WeightedNeuron) {
+                ((WeightedNeuron) neuron).addInput(input, weight(weightRefs[e]));
+            } else {
+                neuron.addInput(input);
+            }
+        }
+        return neuron;
+    }
+
+    /**
+     * The same steps as with the freshly built networks (apart from the neuron sharing, which is not preserved).
+     */
+    private void finalizeNetwork(DetailedNetwork network) {
+        statesBuilder.initializeStates(network);
+        if (settings.dropoutRate > 0) {
+            statesBuilder.setupDropoutStates(network);
+        }
+        if (settings.dropoutRate > 0 || settings.computeNeuronLayerIndices) {
+            statesBuilder.setupNeuronLayerIndices(network);
+        }
+    }
+
+    private Weight weight(int ref) {
+        if (ref == UNIT_WEIGHT) {
+            return Weight.unitWeight;
+        } else if (ref == ZERO_WEIGHT) {
+            return Weight.zeroWeight;
+        }
+        return weights[ref];
+    }
+
+    private static void readInts(ByteBuffer buffer, int[] target) {
+        buffer.asIntBuffer().get(target);
+        buffer.position(buffer.position() + target.length * Integer.BYTES);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,340 @@
+package cz.cvut.fel.ida.neural.networks.structure.export;
+
+import cz.cvut.fel.ida.algebra.functions.Combination;
+import cz.cvut.fel.ida.algebra.functions.Transformation;
+import cz.cvut.fel.ida.algebra.values.ScalarValue;
+import cz.cvut.fel.ida.algebra.weights.Weight;
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralModel;
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralSample;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.BaseNeuron;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.Neurons;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.WeightedNeuron;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.states.State;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.types.*;
+import cz.cvut.fel.ida.neural.networks.structure.components.types.TopologicNetwork;
+import cz.cvut.fel.ida.utils.generic.Pair;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static cz.cvut.fel.ida.neural.networks.structure.export.BinaryNetworkFormat.*;
+
+/**
+ * Writes finalized neural samples together with all their weights into the compact binary format described in {@link BinaryNetworkFormat},
+ * so that they can be later loaded back by {@link BinaryNeuralLoader} without repeating the grounding and neuralization.
+ * <p>
+ * Each network is stored as self-contained, i.e. neurons shared across networks (e.g. in the GLOBAL grounding mode) are
+ * written (and later loaded) separately for each sample. Only topologically sorted networks are supported.
+ */
+public class BinaryNeuralSerializer {
+    private static final Logger LOG = Logger.getLogger(BinaryNeuralSerializer.class.getName());
+
+    private final List<Weight> weights = new ArrayList<>();
+    private final Map<Weight, Integer> weightRefs = new IdentityHashMap<>();
+
+    private final List<Byte> functionKinds = new ArrayList<>();
+    private final List<String> functionNames = new ArrayList<>();
+    private final Map<Combination, Integer> combinationRefs = new IdentityHashMap<>();
+    private final Map<Transformation, Integer> transformationRefs = new IdentityHashMap<>();
+
+    /**
+     * Writes the weights of the model and all the samples into the given file (replacing it), with no fingerprint nor random seed.
+     *
+     * @param model
+     * @param samples
+     * @param file
+     * @throws IOException
+     */
+    public void serialize(NeuralModel model, Stream<NeuralSample> samples, Path file) throws IOException {
+        serialize(model, samples, file, null, null);
+    }
+
+    /**
+     * Writes the weights of the model and all the samples into the given file. The file is written aside first and then moved
+     * over the target at once, so that an interrupted run never leaves a truncated file behind.
+     *
+     * @param model
+     * @param samples
+     * @param file
+     * @param fingerprint - of the inputs the networks were built from (see {@link BinaryNetworkFormat#fingerprint}), or null
+     * @param randomSeed  - the seed of the generator for the runs continuing after the building of the networks, or null
+     * @throws IOException
+     */
+    public void serialize(NeuralModel model, Stream<NeuralSample> samples, Path file, byte[] fingerprint, Long randomSeed) throws IOException {
+        weights.clear();
+        weightRefs.clear();
+        functionKinds.clear();
+        functionNames.clear();
+        combinationRefs.clear();
+        transformationRefs.clear();
+
+        for (Weight weight : model.getAllWeights()) {
+            weightRef(weight);  // the model weights go first, so that they can all be validated at loading
+        }
+
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        List<Long> offsets = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.write(fingerprint == null ? new byte[FINGERPRINT_SIZE] : Arrays.copyOf(fingerprint, FINGERPRINT_SIZE));
+
+                byte sampleFlags = 0;
+                long position = HEADER_SIZE;
+                Iterator<NeuralSample> iterator = samples.iterator();
+                while (iterator.hasNext()) {
+                    NeuralSample sample = iterator.next();
+                    if (!(sample.target instanceof ScalarValue)) {
+                        sampleFlags |= NON_SCALAR_TARGETS;
+                    }
+                    byte[] block = serialize(sample);
+                    out.write(block);
+                    offsets.add(position);
+                    lengths.add(block.length);
+                    position += block.length;
+                }
+
+                long trailer = position;
+
+                out.writeByte(randomSeed == null ? sampleFlags : sampleFlags | RANDOM_SEED);
+                out.writeLong(randomSeed == null ? 0 : randomSeed);
+
+                out.writeInt(functionNames.size());
+                for (int i = 0; i < functionNames.size(); i++) {
+                    out.writeByte(functionKinds.get(i));
+                    writeString(out, functionNames.get(i));
+                }
+
+                out.writeInt(weights.size());
+                for (Weight weight : weights) {
+                    out.writeInt(weight.index);
+                    writeString(out, weight.name);
+                    out.writeByte(flags(weight));
+                    writeValue(out, weight.value);
+                }
+
+                out.writeInt(offsets.size());
+                for (int i = 0; i < offsets.size(); i++) {
+                    out.writeLong(offsets.get(i));
+                    out.writeInt(lengths.get(i));
+                }
+
+                out.writeLong(trailer);
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        LOG.info("Serialized " + offsets.size() + " neural samples with " + weights.size() + " weights into " + file);
+    }
+
+    private byte[] serialize(NeuralSample sample) throws IOException {
+        if (!(sample.query.evidence instanceof TopologicNetwork)) {
+            String err = "Only topologically sorted networks can be serialized into the binary format (use the TOPOLOGIC iteration mode).";
+            LOG.severe(err);
+            throw new UnsupportedOperationException(err);
+        }
+        TopologicNetwork<State.Neural.Structure> network = (TopologicNetwork<State.Neural.Structure>) sample.query.evidence;
+        if (network.containsInputMasking) {
+            String err = "Networks with input masking cannot be serialized into the binary format: " + network.getId();
+            LOG.severe(err);
+            throw new UnsupportedOperationException(err);
+        }
+
+        List<BaseNeuron<Neurons, State.Neural>> neurons = network.allNeuronsTopologic;
+        int[] originalIndices = new int[neurons.size()];
+        for (int i = 0; i < neurons.size(); i++) {
+            originalIndices[i] = neurons.get(i).index;
+        }
+        network.restartIndices();   // the (shared) neurons states are accessed by the topologic index
+        try {
+            return serialize(sample, network, neurons);
+        } finally {
+            for (int i = 0; i < neurons.size(); i++) {
+                neurons.get(i).index = originalIndices[i];
+            }
+        }
+    }
+
+    private byte[] serialize(NeuralSample sample, TopologicNetwork<State.Neural.Structure> network, List<BaseNeuron<Neurons, State.Neural>> neurons) throws IOException {
+        Map<Neurons, Integer> positions = new IdentityHashMap<>(neurons.size());
+        for (int i = 0; i < neurons.size(); i++) {
+            positions.put(neurons.get(i), i);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        writeString(out, sample.query.ID);
+        writeValue(out, sample.target);
+        out.writeByte(sample.type.ordinal());
+        out.writeInt(sample.position);
+        out.writeDouble(sample.query.importance);
+
+        out.writeInt(neurons.size());
+        Integer output = sample.query.neuron == null ? null : positions.get(sample.query.neuron);
+        out.writeInt(output == null ? -1 : output);
+
+        int[] rowPtr = new int[neurons.size() + 1];
+        ByteArrayOutputStream colBytes = new ByteArrayOutputStream();
+        DataOutputStream cols = new DataOutputStream(colBytes);
+        ByteArrayOutputStream refBytes = new ByteArrayOutputStream();
+        DataOutputStream refs = new DataOutputStream(refBytes);
+        int edges = 0;
+
+        for (int i = 0; i < neurons.size(); i++) {
+            BaseNeuron<Neurons, State.Neural> neuron = neurons.get(i);
+            byte kind = kindOf(neuron);
+            out.writeByte(kind);
+            writeString(out, neuron.getName());
+
+            if (kind == FACT) {
+                FactNeuron factNeuron = (FactNeuron) (BaseNeuron) neuron;
+                out.writeInt(weightRef(factNeuron.offset));
+                if (factNeuron.offset == Weight.zeroWeight) {   // otherwise the value is the (possibly learnable) weight itself
+                    writeValue(out, factNeuron.getComputationView(0).getValue());
+                }
+                out.writeBoolean(factNeuron.hasLearnableValue);
+            } else {
+                out.writeInt(combinationRef(neuron.getCombination()));
+                out.writeInt(transformationRef(neuron.getTransformation()));
+                if (neuron instanceof WeightedNeuron) {
+                    out.writeInt(weightRef(((WeightedNeuron) neuron).offset));
+                }
+            }
+
+            if (neuron instanceof WeightedNeuron) {
+                Pair<Iterator<Neurons>, Iterator<Weight>> inputs = network.getInputs((WeightedNeuron<Neurons, State.Neural>) neuron);
+                while (inputs.r.hasNext()) {
+                    Weight weight = inputs.s.next();
+                    cols.writeInt(positionOf(positions, inputs.r.next(), network));
+                    refs.writeInt(weightRef(weight == null ? Weight.unitWeight : weight));
+                    edges++;
+                }
+            } else {
+                Iterator<Neurons> inputs = network.getInputs(neuron);
+                while (inputs.hasNext()) {
+                    cols.writeInt(positionOf(positions, inputs.next(), network));
+                    refs.writeInt(UNIT_WEIGHT);
+                    edges++;
+                }
+            }
+            rowPtr[i + 1] = edges;
+        }
+
+        out.writeInt(edges);
+        for (int ptr : rowPtr) {
+            out.writeInt(ptr);
+        }
+        colBytes.writeTo(out);
+        refBytes.writeTo(out);
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static int positionOf(Map<Neurons, Integer> positions, Neurons input, TopologicNetwork network) {
+        Integer position = positions.get(input);
+        if (position == null) {
+            String err = "Input neuron " + input + " is not part of the serialized network " + network.getId();
+            LOG.severe(err);
+            throw new IllegalStateException(err);
+        }
+        return position;
+    }
+
+    private static byte kindOf(BaseNeuron neuron) {
+        if (neuron instanceof FactNeuron) {
+            return FACT;
+        } else if (neuron instanceof NegationNeuron) {
+            return NEGATION;
+        } else if (neuron instanceof WeightedAtomNeuron) {
+            return WEIGHTED_ATOM;
+        } else if (neuron instanceof AtomNeuron) {
+            return ATOM;
+        } else if (neuron instanceof SplittableAggregationNeuron) {
+            String err = "Splittable aggregation neurons cannot be serialized into the binary format: " + neuron;
+            LOG.severe(err);
+            throw new UnsupportedOperationException(err);
+        } else if (neuron instanceof AggregationNeuron) {
+            return AGGREGATION;
+        } else if (neuron instanceof WeightedRuleNeuron) {
+            return WEIGHTED_RULE;
+        } else if (neuron instanceof RuleNeuron) {
+            return RULE;
+        }
+        String err = "Unsupported neuron type for the binary format: " + neuron.getClass().getSimpleName();
+        LOG.severe(err);
+        throw new UnsupportedOperationException(err);
+    }
+
+    private int weightRef(Weight weight) {
+        if (weight == Weight.unitWeight) {
+            return UNIT_WEIGHT;
+        } else if (weight == Weight.zeroWeight) {
+            return ZERO_WEIGHT;
+        }
+        return weightRefs.computeIfAbsent(weight, w -> {
+            weights.add(w);
+            return weights.size() - 1;
+        });
+    }
+
+    private static byte flags(Weight weight) {
+        byte flags = 0;
+        if (weight.isFixed) flags |= FIXED;
+        if (weight.isLearnable()) flags |= LEARNABLE;
+        if (weight.isOffset) flags |= OFFSET;
+        if (weight.manualInitialization) flags |= MANUAL_INIT;
+        if (weight.isShared) flags |= SHARED;
+        return flags;
+    }
+
+    private int combinationRef(Combination combination) {
+        if (combination == null) {
+            return NO_FUNCTION;
+        }
+        Integer ref = combinationRefs.get(combination);
+        if (ref == null) {
+            ref = addFunction(COMBINATION, combinationName(combination), combination.getName());
+            combinationRefs.put(combination, ref);
+        }
+        return ref;
+    }
+
+    private int transformationRef(Transformation transformation) {
+        if (transformation == null) {
+            return NO_FUNCTION;
+        }
+        Integer ref = transformationRefs.get(transformation);
+        if (ref == null) {
+            ref = addFunction(TRANSFORMATION, transformationName(transformation), transformation.getName());
+            transformationRefs.put(transformation, ref);
+        }
+        return ref;
+    }
+
+    private int addFunction(byte kind, String enumName, String functionName) {
+        if (enumName == null) {
+            String err = "Activation function " + functionName + " has no representation in the binary format.";
+            LOG.severe(err);
+            throw new UnsupportedOperationException(err);
+        }
+        functionKinds.add(kind);
+        functionNames.add(enumName);
+        return functionNames.size() - 1;
+    }
+}
@@ -18,10 +18,12 @@ import cz.cvut.fel.ida.neural.networks.structure.components.neurons.types.AtomNe
 import cz.cvut.fel.ida.neural.networks.structure.components.types.DetailedNetwork;
 import cz.cvut.fel.ida.setup.Settings;
 import cz.cvut.fel.ida.utils.generic.Pair;
+import cz.cvut.fel.ida.utils.generic.SummaryLog;
 import cz.cvut.fel.ida.utils.generic.Timing;
 
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -40,6 +42,7 @@ public class IsoValueNetworkCompressor implements NetworkReducing, NetworkMergin
     public int decimals;
 
     Timing timing;
+    private transient SummaryLog summaryLog;
 
     public int allNeuronCount = 0;
     public int compressedNeuronCount = 0;
@@ -52,7 +55,7 @@ public class IsoValueNetworkCompressor implements NetworkReducing, NetworkMergin
         this.evaluation = new Evaluation(settings, -1);
         this.repetitions = settings.isoValueInits;
         this.decimals = settings.isoDecimals;
-        this.timing = new Timing();
+        this.timing = new Timing("compression.isoValue");
     }
 
     @Override
@@ -96,7 +99,7 @@ public class IsoValueNetworkCompressor implements NetworkReducing, NetworkMergin
 
         this.allNeuronCount += sizeBefore;
         this.compressedNeuronCount += inet.allNeuronsTopologic.size();
-        LOG.info("IsoValue neuron compression from " + sizeBefore + " down to " + inet.allNeuronsTopologic.size() + "(etalon values: " + etalons.size() + ")");
+        summaryLog().record(sizeBefore, inet.allNeuronsTopologic.size(), etalons.size());
         if (etalons.size() > inet.allNeuronsTopologic.size()) {
             LOG.warning("There are more iso-values than neurons after compression (some unique parts have been pruned out!) = lossy compression");
 //            for (Neurons etalon : etalons) {
@@ -129,6 +132,17 @@ public class IsoValueNetworkCompressor implements NetworkReducing, NetworkMergin
     @Override
     public void finish() {
         timing.finish();
+        summaryLog().finish();
+    }
+
+    /**
+     * Created lazily, as it is not serialized (nor exported) with the rest of the stats
+     */
+    private synchronized SummaryLog summaryLog() {
+        if (summaryLog == null) {
+            summaryLog = new SummaryLog(LOG, Level.INFO, "IsoValue neuron compression", "neuronsBefore", "neuronsAfter", "etalonValues");
+        }
+        return summaryLog;
     }
 
     private Map<Neurons, Neurons> mergeNeurons(DetailedNetwork<State.Structure> inet, Map<Neurons, ValueList> isoValues) {
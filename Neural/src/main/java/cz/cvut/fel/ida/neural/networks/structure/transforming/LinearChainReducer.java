@@ -10,12 +10,14 @@ import cz.cvut.fel.ida.neural.networks.structure.components.neurons.states.State
 import cz.cvut.fel.ida.neural.networks.structure.components.neurons.types.AggregationNeuron;
 import cz.cvut.fel.ida.neural.networks.structure.components.types.DetailedNetwork;
 import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.generic.SummaryLog;
 import cz.cvut.fel.ida.utils.generic.Timing;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -27,11 +29,12 @@ public class LinearChainReducer implements NetworkReducing {
     int prunedNeurons = 0;
 
     Timing timing;
+    private transient SummaryLog summaryLog;
 
 
     public LinearChainReducer(Settings settings) {
         this.settings = settings;
-        this.timing = new Timing();
+        this.timing = new Timing("compression.linearChains");
     }
 
     @Override
@@ -62,7 +65,7 @@ public class LinearChainReducer implements NetworkReducing {
 
         allNeurons += sizeBefore;
         prunedNeurons += sizeAfter;
-        LOG.info("LinearChainPruning reduced neurons from " + sizeBefore + " down to " + sizeAfter + " with prunings: " + prunings);
+        summaryLog().record(sizeBefore, sizeAfter, prunings);
 
         timing.toc();
         return inet;
@@ -76,6 +79,17 @@ public class LinearChainReducer implements NetworkReducing {
     @Override
     public void finish() {
         timing.finish();
+        summaryLog().finish();
+    }
+
+    /**
+     * Created lazily, as it is not serialized (nor exported) with the rest of the stats
+     */
+    private synchronized SummaryLog summaryLog() {
+        if (summaryLog == null) {
+            summaryLog = new SummaryLog(LOG, Level.INFO, "LinearChainPruning", "neuronsBefore", "neuronsAfter", "prunings");
+        }
+        return summaryLog;
     }
 
     private boolean prune(DetailedNetwork<State.Neural.Structure> inet, BaseNeuron<Neurons, State.Neural> middle) {
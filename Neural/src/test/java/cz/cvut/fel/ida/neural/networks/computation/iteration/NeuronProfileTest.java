@@ -0,0 +1,37 @@
+package cz.cvut.fel.ida.neural.networks.computation.iteration;
+
+import cz.cvut.fel.ida.algebra.functions.Combination;
+import cz.cvut.fel.ida.algebra.functions.Transformation;
+import cz.cvut.fel.ida.algebra.values.ScalarValue;
+import cz.cvut.fel.ida.algebra.values.VectorValue;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.states.States;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.types.AggregationNeuron;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.types.WeightedRuleNeuron;
+import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NeuronProfileTest {
+
+    @TestAnnotations.Fast
+    public void ranksByTotalTime() {
+        NeuronProfile.reset(new Settings());
+
+        States.ComputationStateStandard softmax = new States.ComputationStateStandard(Combination.getFunction(Settings.CombinationFcn.SOFTMAX), null);
+        softmax.setValue(new VectorValue(new double[]{0.2, 0.8}));
+        States.ComputationStateStandard sigmoid = new States.ComputationStateStandard(Combination.getFunction(Settings.CombinationFcn.SUM), Transformation.getFunction(Settings.TransformationFcn.SIGMOID));
+        sigmoid.setValue(new ScalarValue(0.5));
+
+        for (int i = 0; i < 10; i++) {
+            NeuronProfile.record(NeuronProfile.Phase.FORWARD, WeightedRuleNeuron.class, sigmoid, 1_000, 0);
+        }
+        NeuronProfile.record(NeuronProfile.Phase.FORWARD, AggregationNeuron.class, softmax, 50_000, 0);
+        NeuronProfile.record(NeuronProfile.Phase.BACKWARD, AggregationNeuron.class, softmax, 50_000, 0);
+
+        String report = NeuronProfile.report();
+        assertTrue(report.indexOf("AggregationNeuron") < report.indexOf("WeightedRuleNeuron"));
+        assertTrue(report.contains("VectorValue[2"));
+        assertTrue(report.contains("Sum/Sigmoid"));
+    }
+}
@@ -0,0 +1,187 @@
+package cz.cvut.fel.ida.neural.networks.computation.iteration.actions;
+
+import cz.cvut.fel.ida.algebra.functions.Combination;
+import cz.cvut.fel.ida.algebra.functions.Transformation;
+import cz.cvut.fel.ida.algebra.values.ScalarValue;
+import cz.cvut.fel.ida.algebra.weights.Weight;
+import cz.cvut.fel.ida.learning.LearningSample;
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralModel;
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralSample;
+import cz.cvut.fel.ida.neural.networks.computation.training.optimizers.Optimizer;
+import cz.cvut.fel.ida.neural.networks.computation.training.strategies.PythonTrainingStrategy;
+import cz.cvut.fel.ida.neural.networks.structure.building.builders.StatesBuilder;
+import cz.cvut.fel.ida.neural.networks.structure.building.factories.NeuralNetFactory;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.BaseNeuron;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.QueryNeuron;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.states.State;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.states.States;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.types.AtomNeuron;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.types.FactNeuron;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.types.WeightedRuleNeuron;
+import cz.cvut.fel.ida.neural.networks.structure.components.types.DetailedNetwork;
+import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PythonEvaluationTest {
+
+    private static final Set<String> HOOKS = new HashSet<>(Arrays.asList("r0", "r2", "output"));
+
+    /**
+     * A small network of facts, rules (sharing the weights with the other samples) and an output, with the given fact values
+     */
+    private static NeuralSample sample(Settings settings, List<Weight> weights, int position, Random random) {
+        Combination sum = Combination.getFunction(Settings.CombinationFcn.SUM);
+        Transformation tanh = Transformation.getFunction(Settings.TransformationFcn.TANH);
+
+        List<BaseNeuron> neurons = new ArrayList<>();
+        List<FactNeuron> facts = new ArrayList<>();
+        for (int f = 0; f < 3; f++) {
+            FactNeuron fact = new FactNeuron("f" + f, null, neurons.size(), new States.SimpleValue(new ScalarValue(random.nextDouble())));
+            neurons.add(fact);
+            facts.add(fact);
+        }
+        AtomNeuron output = new AtomNeuron<>("output", neurons.size() + 3, State.createBaseState(settings, sum, tanh));
+        for (int r = 0; r < 3; r++) {
+            WeightedRuleNeuron rule = new WeightedRuleNeuron<>("r" + r, weights.get(r), neurons.size(), State.createBaseState(settings, sum, tanh));
+            rule.addInput(facts.get(r), weights.get(3 + r));
+            rule.addInput(facts.get((r + 1) % 3), weights.get(3 + (r + 1) % 3));
+            neurons.add(rule);
+            output.addInput(rule);
+        }
+        neurons.add(output);
+
+        DetailedNetwork network = new DetailedNetwork("sample" + position, neurons.size());
+        network.allNeuronsTopologic.addAll(neurons);
+        new StatesBuilder(settings).initializeStates(network);
+        return new NeuralSample(new ScalarValue(1), new QueryNeuron("sample" + position, position, 1, output, new NeuralNetFactory(settings).extractTopologicNetwork(network)), LearningSample.Split.TRAIN);
+    }
+
+    private static List<Weight> weights(Random random) {
+        List<Weight> weights = new ArrayList<>();
+        for (int w = 0; w < 6; w++) {
+            weights.add(new Weight(w, "w" + w, new ScalarValue(random.nextDouble() - 0.5), false, true));
+        }
+        return weights;
+    }
+
+    /**
+     * Each batch of the hooked values as "position hook value"
+     */
+    private static PythonBatchHookHandler collect(List<List<String>> flushes) {
+        return (hooks, hookIds, positions, count, values) -> {
+            DoubleBuffer data = values.getData().asDoubleBuffer();
+            IntBuffer index = values.getIndex().asIntBuffer();
+            assertEquals(count, values.count());
+            List<String> flushed = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                assertEquals(1, index.get(i * PythonValueBuffer.INDEX_INTS + 1));
+                double value = data.get(index.get(i * PythonValueBuffer.INDEX_INTS));
+                flushed.add(positions[i] + " " + hooks[hookIds[i]] + " " + new ScalarValue(value));
+            }
+            flushes.add(flushed);
+        };
+    }
+
+    /**
+     * The per-call hooks of the sequential evaluation of each of the samples, as "position hook value"
+     */
+    private static List<String> sequentialHooks(PythonTrainingStrategy strategy, List<NeuralSample> samples) {
+        List<String> expected = new ArrayList<>();
+        for (NeuralSample sample : samples) {
+            strategy.setHooks(HOOKS, (hook, value) -> expected.add(sample.position + " " + hook + " " + value));
+            strategy.evaluateSample(sample);
+        }
+        assertEquals(samples.size() * HOOKS.size(), expected.size());
+        return expected;
+    }
+
+    /**
+     * The batched hooks must pass the same values as the per-call hooks, each with the position of its sample, in the same order
+     */
+    @TestAnnotations.Fast
+    public void batchedHooksMatchSingleHooks() {
+        Settings settings = new Settings();
+        Random random = new Random(1);
+        List<Weight> weights = weights(random);
+        List<NeuralSample> samples = new ArrayList<>();
+        for (int position = 0; position < 3; position++) {
+            samples.add(sample(settings, weights, position, random));
+        }
+        PythonTrainingStrategy strategy = new PythonTrainingStrategy(settings, new NeuralModel(weights, settings), null, null);
+        List<String> expected = sequentialHooks(strategy, samples);
+
+        List<List<String>> flushes = new ArrayList<>();
+        strategy.setBatchHooks(HOOKS, collect(flushes));
+
+        strategy.evaluateSamples(samples, 1);   // a single flush after all the samples
+        assertEquals(1, flushes.size());
+        assertEquals(expected, flushes.get(0));
+
+        flushes.clear();
+        for (NeuralSample sample : samples) {   // a flush after each sample
+            strategy.evaluateSample(sample);
+        }
+        assertEquals(samples.size(), flushes.size());
+        List<String> perSample = new ArrayList<>();
+        flushes.forEach(perSample::addAll);
+        assertEquals(expected, perSample);
+    }
+
+    /**
+     * The samples of the minibatches are evaluated concurrently by the separate trainers, the hooked values of which must get merged
+     * in the order of the samples, i.e. the same as with the sequential evaluation (up to the values changed by the weight updates
+     * after the first minibatch of the learning)
+     */
+    @TestAnnotations.Fast
+    public void minibatchHooksMatchSequentialHooks() {
+        Settings settings = new Settings();
+        settings.parallelTraining = true;
+        settings.minibatchSize = 2;
+        Random random = new Random(1);
+        List<Weight> weights = weights(random);
+        List<NeuralSample> samples = new ArrayList<>();
+        for (int position = 0; position < 5; position++) {
+            samples.add(sample(settings, weights, position, random));
+        }
+        Optimizer optimizer = Optimizer.getFrom(settings, new ScalarValue(settings.initLearningRate));
+        PythonTrainingStrategy strategy = new PythonTrainingStrategy(settings, new NeuralModel(weights, settings), optimizer, null);
+        List<String> expected = sequentialHooks(strategy, samples);
+
+        List<List<String>> flushes = new ArrayList<>();
+        strategy.setBatchHooks(HOOKS, collect(flushes));
+        strategy.learnSamples(samples, 2, 2);   // a flush after each epoch
+        assertEquals(2, flushes.size());
+        assertEquals(expected.subList(0, 2 * HOOKS.size()), flushes.get(0).subList(0, 2 * HOOKS.size()));
+        assertEquals(positionsAndHooks(expected), positionsAndHooks(flushes.get(0)));
+        assertEquals(positionsAndHooks(expected), positionsAndHooks(flushes.get(1)));
+
+        flushes.clear();
+        strategy.evaluateSamples(samples, 2);   // a single flush after all the minibatches
+        assertEquals(1, flushes.size());
+        assertEquals(positionsAndHooks(expected), positionsAndHooks(flushes.get(0)));
+
+        List<String> hooked = new ArrayList<>();
+        strategy.setHooks(HOOKS, (hook, value) -> hooked.add(hook));
+        strategy.learnSamples(samples, 1, 2);
+        assertEquals(samples.size() * HOOKS.size(), hooked.size());
+    }
+
+    private static List<String> positionsAndHooks(List<String> hooked) {
+        List<String> withoutValues = new ArrayList<>();
+        for (String hook : hooked) {
+            withoutValues.add(hook.substring(0, hook.lastIndexOf(' ')));
+        }
+        return withoutValues;
+    }
+}
@@ -0,0 +1,44 @@
+package cz.cvut.fel.ida.neural.networks.computation.iteration.actions;
+
+import cz.cvut.fel.ida.algebra.values.MatrixValue;
+import cz.cvut.fel.ida.algebra.values.ScalarValue;
+import cz.cvut.fel.ida.algebra.values.VectorValue;
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PythonValueBufferTest {
+
+    @TestAnnotations.Fast
+    public void writesValuesWithTheirShapesAndGrows() {
+        PythonValueBuffer buffer = new PythonValueBuffer(2);
+        for (int round = 0; round < 2; round++) {   // the second round reuses the grown buffers
+            buffer.clear();
+            buffer.put(new ScalarValue(0.5));
+            buffer.put(new VectorValue(new double[]{1, 2, 3}));
+            buffer.putEmpty();
+            buffer.put(new MatrixValue(new double[]{4, 5, 6, 7, 8, 9}, 2, 3));
+            buffer.put(new VectorValue(new double[]{10, 11}, true));
+
+            assertEquals(5, buffer.count());
+            DoubleBuffer data = buffer.getData().asDoubleBuffer();
+            double[] doubles = new double[data.remaining()];
+            data.get(doubles);
+            assertArrayEquals(new double[]{0.5, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11}, doubles);
+
+            IntBuffer index = buffer.getIndex().asIntBuffer();
+            int[] ints = new int[index.remaining()];
+            index.get(ints);
+            assertArrayEquals(new int[]{
+                    0, 1, 0, 0,
+                    1, 3, 3, 1,
+                    4, 0, 0, 0,
+                    4, 6, 2, 3,
+                    10, 2, 1, 2}, ints);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package cz.cvut.fel.ida.neural.networks.computation.iteration.modes;
+
+import cz.cvut.fel.ida.algebra.functions.Combination;
+import cz.cvut.fel.ida.algebra.functions.Transformation;
+import cz.cvut.fel.ida.algebra.values.ScalarValue;
+import cz.cvut.fel.ida.algebra.values.Value;
+import cz.cvut.fel.ida.algebra.weights.Weight;
+import cz.cvut.fel.ida.learning.LearningSample;
+import cz.cvut.fel.ida.learning.results.Result;
+import cz.cvut.fel.ida.neural.networks.computation.iteration.visitors.weights.WeightUpdater;
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralModel;
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralSample;
+import cz.cvut.fel.ida.neural.networks.computation.training.strategies.trainers.SequentialTrainer;
+import cz.cvut.fel.ida.neural.networks.structure.building.builders.StatesBuilder;
+import cz.cvut.fel.ida.neural.networks.structure.building.factories.NeuralNetFactory;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.BaseNeuron;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.QueryNeuron;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.states.State;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.states.States;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.types.AtomNeuron;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.types.FactNeuron;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.types.WeightedRuleNeuron;
+import cz.cvut.fel.ida.neural.networks.structure.components.types.DetailedNetwork;
+import cz.cvut.fel.ida.neural.networks.structure.components.types.TopologicNetwork;
+import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelTopologicTest {
+
+    /**
+     * A random layered network with all the levels large enough to be processed in parallel, with the neurons of each level sharing
+     * their inputs and weights (so that the gradients are accumulated concurrently)
+     */
+    private static NeuralSample network(Settings settings, List<Weight> weights) {
+        Random random = new Random(1);
+        for (int w = 0; w < 20; w++) {
+            weights.add(new Weight(w, "w" + w, new ScalarValue(random.nextDouble() - 0.5), false, true));
+        }
+        Combination sum = Combination.getFunction(Settings.CombinationFcn.SUM);
+        Transformation tanh = Transformation.getFunction(Settings.TransformationFcn.TANH);
+
+        List<BaseNeuron> neurons = new ArrayList<>();
+        List<BaseNeuron> previous = new ArrayList<>();
+        for (int f = 0; f < 3 * ParallelTopologic.GRAIN; f++) {
+            FactNeuron fact = new FactNeuron("f" + f, null, neurons.size(), new States.SimpleValue(new ScalarValue(random.nextDouble())));
+            neurons.add(fact);
+            previous.add(fact);
+        }
+        for (int layer = 0; layer < 3; layer++) {
+            List<BaseNeuron> current = new ArrayList<>();
+            for (int n = 0; n < 2 * ParallelTopologic.GRAIN + 100; n++) {
+                WeightedRuleNeuron rule = new WeightedRuleNeuron<>("l" + layer + "n" + n, weights.get(random.nextInt(weights.size())), neurons.size(), State.createBaseState(settings, sum, tanh));
+                for (int i = 0; i < 4; i++) {
+                    rule.addInput(previous.get(random.nextInt(previous.size())), weights.get(random.nextInt(weights.size())));
+                }
+                neurons.add(rule);
+                current.add(rule);
+            }
+            previous = current;
+        }
+        AtomNeuron output = new AtomNeuron<>("output", neurons.size(), State.createBaseState(settings, sum, tanh));
+        for (BaseNeuron neuron : previous) {
+            output.addInput(neuron);
+        }
+        neurons.add(output);
+
+        DetailedNetwork network = new DetailedNetwork("layered", neurons.size());
+        network.allNeuronsTopologic.addAll(neurons);
+        new StatesBuilder(settings).initializeStates(network);
+        TopologicNetwork<State.Neural.Structure> topologicNetwork = new NeuralNetFactory(settings).extractTopologicNetwork(network);
+        return new NeuralSample(new ScalarValue(1), new QueryNeuron("layered", 0, 1, output, topologicNetwork), LearningSample.Split.TRAIN);
+    }
+
+    @TestAnnotations.Fast
+    public void sameAsSequential() {
+        Settings settings = new Settings();
+        List<Weight> weights = new ArrayList<>();
+        NeuralSample sample = network(settings, weights);
+        NeuralModel model = new NeuralModel(weights, settings);
+
+        Settings parallelSettings = new Settings();
+        parallelSettings.intraNetworkThreads = 4;
+
+        double[] sequential = propagate(new SequentialTrainer(settings, null, model), sample, weights);
+        double[] parallel = propagate(new SequentialTrainer(parallelSettings, null, model), sample, weights);
+        assertTrue(((TopologicNetwork) sample.query.evidence).levels.length >= 4);
+        assertTrue(Arrays.stream(sequential).skip(1).anyMatch(gradient -> gradient != 0));
+        assertArrayEquals(sequential, parallel, 1e-12);
+        ParallelTopologic.shutdownPools();
+    }
+
+    /**
+     * @return the output followed by the gradients of all the weights
+     */
+    private static double[] propagate(SequentialTrainer trainer, NeuralSample sample, List<Weight> weights) {
+        trainer.invalidateSample(trainer.getInvalidation(), sample);
+        Result result = trainer.evaluateSample(trainer.getEvaluation(), sample);
+        WeightUpdater weightUpdater = trainer.backpropSample(trainer.getBackpropagation(), result, sample);
+
+        double[] values = new double[weights.size() + 1];
+        values[0] = ((ScalarValue) result.getOutput()).value;
+        for (Weight weight : weights) {
+            Value update = weightUpdater.weightUpdates[weight.index];
+            values[weight.index + 1] = update == null ? 0 : ((ScalarValue) update).value;
+        }
+        return values;
+    }
+
+    @TestAnnotations.Fast
+    public void boundedPools() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = ParallelTopologic.getPool(10 * processors);
+        assertEquals(processors, pool.getParallelism());
+        assertSame(pool, ParallelTopologic.getPool(processors));
+
+        ParallelTopologic.shutdownPools();
+        assertTrue(pool.isShutdown());
+        ForkJoinPool recreated = ParallelTopologic.getPool(processors);
+        assertNotSame(pool, recreated);
+        assertFalse(recreated.isShutdown());
+        ParallelTopologic.shutdownPools();
+    }
+}
@@ -0,0 +1,46 @@
+package cz.cvut.fel.ida.neural.networks.computation.training;
+
+import cz.cvut.fel.ida.algebra.values.MatrixValue;
+import cz.cvut.fel.ida.algebra.values.ScalarValue;
+import cz.cvut.fel.ida.algebra.values.TensorValue;
+import cz.cvut.fel.ida.algebra.values.VectorValue;
+import cz.cvut.fel.ida.algebra.weights.Weight;
+import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParameterArenaTest {
+
+    @TestAnnotations.Fast
+    public void testRanges() {
+        Weight scalar = new Weight(0, "w0", new ScalarValue(1), false, true);
+        Weight matrix = new Weight(1, "w1", new MatrixValue(2, 3), false, true);
+        Weight vector = new Weight(2, "w2", new VectorValue(new double[]{1, 2}), false, true);
+        ParameterArena arena = new ParameterArena(Arrays.asList(scalar, matrix, vector));
+
+        assertEquals(1 + 6 + 2, arena.size);
+        assertEquals(0, arena.offset(scalar));
+        assertEquals(1, arena.offset(matrix));
+        assertEquals(7, arena.offset(vector));
+    }
+
+    @TestAnnotations.Fast
+    public void testTensorsRejected() {
+        Weight tensor = new Weight(0, "w0", new ScalarValue(1), false, true);
+        tensor.value = new TensorValue(new int[]{2, 2, 2});     // (its metadata cannot be created yet)
+        assertThrows(UnsupportedOperationException.class, () -> new ParameterArena(Collections.singletonList(tensor)));
+    }
+
+    @TestAnnotations.Fast
+    public void testOffWithAsyncTraining() {
+        Settings settings = new Settings();
+        settings.flatParameterArena = true;
+        settings.asyncParallelTraining = true;
+        settings.infer();
+        assertFalse(settings.flatParameterArena);
+    }
+}
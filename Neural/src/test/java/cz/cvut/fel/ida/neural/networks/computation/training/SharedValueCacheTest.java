@@ -0,0 +1,64 @@
+package cz.cvut.fel.ida.neural.networks.computation.training;
+
+import cz.cvut.fel.ida.algebra.values.ScalarValue;
+import cz.cvut.fel.ida.algebra.weights.Weight;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.states.States;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.types.FactNeuron;
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SharedValueCacheTest {
+
+    @TestAnnotations.Fast
+    public void dropsOnlyTheDependencyCone() {
+        List<Weight> weights = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            weights.add(new Weight(i, "w" + i, new ScalarValue(i), false, false));
+        }
+        List<FactNeuron> neurons = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            neurons.add(new FactNeuron("f" + i, null, i, new States.SimpleValue(new ScalarValue(i))));
+        }
+        SharedValueCache cache = new SharedValueCache();
+        cache.put(neurons.get(0), new ScalarValue(0), bits(0));
+        cache.put(neurons.get(1), new ScalarValue(1), bits(0, 1));
+        cache.put(neurons.get(2), new ScalarValue(2), bits());    // e.g. just the facts, never to be dropped
+        assertEquals(3, cache.size());
+
+        assertEquals(1, cache.invalidate(Collections.singletonList(weights.get(1))));
+        assertEquals(1, cache.getVersion());
+        assertNull(cache.get(neurons.get(1)));
+        assertEquals(0.0, ((ScalarValue) cache.get(neurons.get(0)).value).value);
+
+        assertEquals(0, cache.invalidate(Collections.singletonList(weights.get(2))));
+        assertEquals(1, cache.invalidate(weights));
+        assertEquals(1, cache.size());
+        assertNotNull(cache.get(neurons.get(2)));
+        assertEquals(3, cache.getVersion());
+    }
+
+    @TestAnnotations.Fast
+    public void remembersTheEvaluatedNeurons() {
+        FactNeuron neuron = new FactNeuron("f", null, 0, new States.SimpleValue(new ScalarValue(1)));
+        SharedValueCache cache = new SharedValueCache();
+        assertFalse(cache.evaluatedBefore(neuron));
+        cache.invalidate(Collections.emptyList());
+        assertTrue(cache.evaluatedBefore(neuron));
+        cache.clear();
+        assertFalse(cache.evaluatedBefore(neuron));
+    }
+
+    private static BitSet bits(int... indices) {
+        BitSet bits = new BitSet();
+        for (int index : indices) {
+            bits.set(index);
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,95 @@
+package cz.cvut.fel.ida.neural.networks.computation.training;
+
+import cz.cvut.fel.ida.algebra.values.ScalarValue;
+import cz.cvut.fel.ida.algebra.values.Value;
+import cz.cvut.fel.ida.algebra.weights.Weight;
+import cz.cvut.fel.ida.neural.networks.computation.training.optimizers.Adam;
+import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrainingCheckpointTest {
+
+    private static NeuralModel model(Settings settings, int size) {
+        List<Weight> weights = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            weights.add(new Weight(i, "w" + i, new ScalarValue(i), false, false));
+        }
+        NeuralModel model = new NeuralModel(weights, settings);
+        for (Weight weight : weights) {     // as with Adam
+            weight.momentum = new ScalarValue(0);
+            weight.velocity = new ScalarValue(0);
+        }
+        return model;
+    }
+
+    @TestAnnotations.Fast
+    public void restoresTheStateAndRewritesOnlyTheChangedBlocks() throws IOException {
+        Settings settings = new Settings();
+        int size = 2 * TrainingCheckpoint.BLOCK_WEIGHTS + 1;
+        NeuralModel model = model(settings, size);
+        Adam adam = new Adam(new ScalarValue(0.1));
+        Value[] gradients = new Value[size];
+        for (int i = 0; i < size; i++) {
+            gradients[i] = new ScalarValue(1);
+        }
+        adam.performGradientStep(model.learnableWeights, gradients, 1);
+        NeuralModel best = model.cloneWeights();
+        List<Weight> touched = Collections.singletonList(model.learnableWeights.get(1));
+        adam.performGradientStep(touched, gradients, 2);
+
+        Path dir = Files.createTempDirectory("checkpoint");
+        TrainingCheckpoint checkpoint = new TrainingCheckpoint(dir);
+        TrainingCheckpoint.State state = new TrainingCheckpoint.State();
+        state.epoch = 7;
+        state.iteration = 2;
+        checkpoint.save(TrainingCheckpoint.Snapshot.capture(state, model, best, null));
+        checkpoint.close();
+        Set<Path> blocks = blocks(dir);
+        assertEquals(3, blocks.size());
+
+        NeuralModel restored = model(settings, size);
+        TrainingCheckpoint.Snapshot snapshot = new TrainingCheckpoint(dir).load();
+        assertEquals(7, snapshot.state.epoch);
+        snapshot.loadBestInto(restored);
+        assertEquals(((ScalarValue) best.allWeights.get(1).value).value, ((ScalarValue) restored.allWeights.get(1).value).value);
+        snapshot.loadInto(restored, null);
+        for (int i = 0; i < size; i++) {
+            Weight original = model.allWeights.get(i);
+            Weight weight = restored.allWeights.get(i);
+            assertEquals(((ScalarValue) original.value).value, ((ScalarValue) weight.value).value);
+            assertEquals(((ScalarValue) original.momentum).value, ((ScalarValue) weight.momentum).value);
+            assertEquals(((ScalarValue) original.velocity).value, ((ScalarValue) weight.velocity).value);
+        }
+
+        adam.performGradientStep(touched, gradients, 3);
+        checkpoint = new TrainingCheckpoint(dir);
+        checkpoint.save(TrainingCheckpoint.Snapshot.capture(state, model, best, null));
+        checkpoint.close();
+        Set<Path> changed = blocks(dir);
+        assertEquals(3, changed.size());
+        changed.removeAll(blocks);
+        assertEquals(1, changed.size());    // just the first block, with the updated weight
+        assertTrue(changed.iterator().next().getFileName().toString().startsWith(TrainingCheckpoint.BLOCK_PREFIX + "0-"));
+        assertNotEquals(((ScalarValue) model.allWeights.get(1).value).value, ((ScalarValue) best.allWeights.get(1).value).value);
+    }
+
+    private static Set<Path> blocks(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(f -> f.getFileName().toString().startsWith(TrainingCheckpoint.BLOCK_PREFIX)).collect(Collectors.toSet());
+        }
+    }
+}
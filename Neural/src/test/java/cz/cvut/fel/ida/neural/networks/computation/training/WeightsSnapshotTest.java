@@ -0,0 +1,50 @@
+package cz.cvut.fel.ida.neural.networks.computation.training;
+
+import cz.cvut.fel.ida.algebra.values.ScalarValue;
+import cz.cvut.fel.ida.algebra.values.Value;
+import cz.cvut.fel.ida.algebra.weights.Weight;
+import cz.cvut.fel.ida.neural.networks.computation.training.optimizers.SGD;
+import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WeightsSnapshotTest {
+
+    @TestAnnotations.Fast
+    public void restoresOnlyTheChangedWeights() {
+        List<Weight> weights = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            weights.add(new Weight(i, "w" + i, new ScalarValue(i), false, false));
+        }
+        NeuralModel model = new NeuralModel(weights, new Settings());
+        SGD sgd = new SGD(new ScalarValue(1));
+        Value[] gradients = new Value[]{new ScalarValue(1), new ScalarValue(1), new ScalarValue(1), new ScalarValue(1)};
+
+        List<Weight> touched = Collections.singletonList(weights.get(1));
+        model.beforeUpdate(touched);    // nothing marked yet
+        sgd.performGradientStep(touched, gradients, 1);
+        assertEquals(0, model.getSnapshot().preservedCount());
+
+        model.getSnapshot().mark();
+        for (int iteration = 2; iteration < 5; iteration++) {
+            model.beforeUpdate(touched);
+            sgd.performGradientStep(touched, gradients, iteration);
+        }
+        assertEquals(1, model.getSnapshot().preservedCount());
+        assertEquals(5.0, ((ScalarValue) weights.get(1).value).value);
+
+        model.restoreSnapshot();
+        assertEquals(2.0, ((ScalarValue) weights.get(1).value).value);
+        for (int i = 0; i < 4; i++) {
+            if (i != 1) {
+                assertEquals((double) i, ((ScalarValue) weights.get(i).value).value);
+            }
+        }
+        assertEquals(0, model.getSnapshot().preservedCount());
+    }
+}
@@ -2,12 +2,16 @@ package cz.cvut.fel.ida.neural.networks.computation.training.optimizers;
 
 import cz.cvut.fel.ida.algebra.values.ScalarValue;
 import cz.cvut.fel.ida.algebra.values.Value;
+import cz.cvut.fel.ida.algebra.values.VectorValue;
 import cz.cvut.fel.ida.algebra.weights.Weight;
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralModel;
+import cz.cvut.fel.ida.setup.Settings;
 import cz.cvut.fel.ida.utils.generic.TestAnnotations;
 
 import java.util.*;
 import java.util.logging.Logger;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class AdamOptimizerTest {
@@ -60,4 +64,68 @@ class AdamOptimizerTest {
             assertEquals(expectedValues[i], ((ScalarValue) weights.get(i).value).value);
         }
     }
-}
\ No newline at end of file
+
+    @TestAnnotations.Fast
+    public void testFusedStepMatchesPerWeight() {
+        Settings settings = new Settings();
+        settings.flatParameterArena = true;
+
+        List<Weight> weights = new ArrayList<>();
+        List<Weight> fusedWeights = new ArrayList<>();
+        Value[] gradients = new Value[]{
+                new ScalarValue(0.4), new VectorValue(new double[]{-0.17, 0.3, 0.05}), new ScalarValue(-0.2)
+        };
+        Value[] values = new Value[]{
+                new ScalarValue(-0.88), new VectorValue(new double[]{0.51, -0.56, -0.26}), new ScalarValue(0.3)
+        };
+        for (int i = 0; i < values.length; i++) {
+            Weight weight = new Weight(i, "w" + i, values[i].clone(), false, true);
+            weight.momentum = values[i].getForm();
+            weight.velocity = values[i].getForm();
+            weights.add(weight);
+            fusedWeights.add(new Weight(i, "w" + i, values[i].clone(), false, true));
+        }
+        NeuralModel fusedModel = new NeuralModel(fusedWeights, settings);
+
+        Adam optimizer = new AdamW(new ScalarValue(0.001), 0.01);
+        Adam fusedOptimizer = new AdamW(new ScalarValue(0.001), 0.01, true);
+        for (int iteration = 1; iteration <= 3; iteration++) {
+            optimizer.performGradientStep(weights, gradients, iteration);
+            fusedOptimizer.performGradientStep(fusedModel, fusedWeights.subList(0, 3), gradients, iteration);
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            assertArrayEquals(weights.get(i).value.getAsArray(), fusedWeights.get(i).value.getAsArray());
+        }
+    }
+
+    @TestAnnotations.Fast
+    public void testLazyMomentsCatchUp() {
+        Value[] gradients = new Value[]{new VectorValue(new double[]{0.4, -0.17})};
+        Value[] zeroGradients = new Value[]{new VectorValue(new double[]{0, 0})};
+
+        Weight dense = new Weight(0, "w", new VectorValue(new double[]{-0.88, 0.51}), false, true);
+        dense.momentum = dense.value.getForm();
+        dense.velocity = dense.value.getForm();
+        Weight lazy = new Weight(0, "w", new VectorValue(new double[]{-0.88, 0.51}), false, true);
+
+        Adam adam = new Adam(new ScalarValue(0.001));
+        LazyAdam lazyAdam = new LazyAdam(new ScalarValue(0.001));
+        for (int iteration = 1; iteration <= 5; iteration++) {
+            boolean touched = iteration == 1 || iteration == 5;
+            adam.performGradientStep(Collections.singletonList(dense), touched ? gradients : zeroGradients, iteration);
+            if (touched) {
+                lazyAdam.performGradientStep(Collections.singletonList(lazy), gradients, iteration);
+            }
+        }
+
+        double[] denseMomentum = dense.momentum.getAsArray();
+        double[] lazyMomentum = lazy.momentum.getAsArray();
+        double[] denseVelocity = dense.velocity.getAsArray();
+        double[] lazyVelocity = lazy.velocity.getAsArray();
+        for (int i = 0; i < denseMomentum.length; i++) {
+            assertEquals(denseMomentum[i], lazyMomentum[i], 1e-15);
+            assertEquals(denseVelocity[i], lazyVelocity[i], 1e-15);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package cz.cvut.fel.ida.neural.networks.computation.training.strategies.Hyperparameters;
+
+import cz.cvut.fel.ida.algebra.values.ScalarValue;
+import cz.cvut.fel.ida.learning.LearningSample;
+import cz.cvut.fel.ida.learning.results.Result;
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralSample;
+import cz.cvut.fel.ida.neural.networks.structure.components.neurons.QueryNeuron;
+import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SampleSchedulerTest {
+
+    private static List<NeuralSample> samples(int count) {
+        List<NeuralSample> samples = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            samples.add(new NeuralSample(new ScalarValue(0), new QueryNeuron("q" + i, i, 1), LearningSample.Split.TRAIN));
+        }
+        return samples;
+    }
+
+    /**
+     * Sample i has the loss i^2 (squared difference of the output i from the target 0)
+     */
+    private static List<Result> results(Settings settings, List<NeuralSample> trained) {
+        Result.Factory factory = new Result.Factory(settings);
+        return trained.stream().map(s -> factory.create(s.getId(), s.position, s.target, new ScalarValue(s.position))).collect(Collectors.toList());
+    }
+
+    @TestAnnotations.Fast
+    public void lossProportionalSamplingIsUnbiased() {
+        Settings settings = new Settings();
+        settings.infer();
+        settings.errorFunction = Settings.ErrorFcn.SQUARED_DIFF;
+        settings.sampleScheduling = Settings.SampleScheduling.LOSS_PROPORTIONAL;
+        settings.scheduledRefreshEpochae = 0;
+
+        List<NeuralSample> samples = samples(10);
+        SampleScheduler scheduler = SampleScheduler.getFrom(settings, samples);
+        scheduler.endEpoch(results(settings, scheduler.nextEpoch()));   // the first epoch is full
+
+        int[] counts = new int[samples.size()];
+        double scaleSum = 0;
+        int epochae = 2000;
+        for (int epoch = 0; epoch < epochae; epoch++) {
+            for (NeuralSample sample : scheduler.nextEpoch()) {
+                counts[sample.position]++;
+                scaleSum += sample.gradientScale;
+            }
+        }
+        assertEquals(1, scaleSum / (epochae * 5), 0.05);   // E[1 / (N * p)] = 1 for each of the 5 draws
+        assertTrue(counts[9] > 3 * counts[1]);
+        assertTrue(counts[0] > 0);  // the uniform portion
+    }
+
+    @TestAnnotations.Fast
+    public void convergedSamplesAreSkipped() {
+        Settings settings = new Settings();
+        settings.infer();
+        settings.errorFunction = Settings.ErrorFcn.SQUARED_DIFF;
+        settings.sampleScheduling = Settings.SampleScheduling.HARD_EXAMPLES;
+        settings.scheduledEpochFraction = 1;
+        settings.convergedSampleLoss = 0.5;
+        settings.convergedSamplePatience = 2;
+        settings.scheduledRefreshEpochae = 5;
+
+        SampleScheduler scheduler = SampleScheduler.getFrom(settings, samples(4));
+        for (int epoch = 1; epoch < 5; epoch++) {
+            List<NeuralSample> trained = scheduler.nextEpoch();
+            assertEquals(epoch <= 2 ? 4 : 3, trained.size());   // sample 0 with zero loss is skipped after 2 epochae
+            scheduler.endEpoch(results(settings, trained));
+        }
+        assertEquals(4, scheduler.nextEpoch().size());  // refresh
+    }
+}
@@ -0,0 +1,95 @@
+package cz.cvut.fel.ida.neural.networks.computation.training.strategies.trainers;
+
+import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.util.Random;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MinibatchTunerTest {
+    private static final Logger LOG = Logger.getLogger(MinibatchTunerTest.class.getName());
+
+    private static Settings settings(int min, int max, int threads) {
+        Settings settings = new Settings();
+        settings.adaptiveMinibatch = true;
+        settings.minibatchSizeMin = min;
+        settings.minibatchSizeMax = max;
+        settings.minibatchThreadsMax = threads;
+        settings.minibatchTuningEpochae = 2;
+        return settings;
+    }
+
+    @TestAnnotations.Fast
+    public void testCandidates() {
+        MinibatchTuner tuner = new MinibatchTuner(settings(1, 16, 4));
+        StringBuilder sb = new StringBuilder();
+        for (MinibatchTuner.Config candidate : tuner.candidates) {
+            sb.append(candidate.size).append("/").append(candidate.threads).append(" ");
+        }
+        assertEquals("1/1 2/2 2/1 4/4 4/2 8/4 8/2 16/4 16/2 ", sb.toString());
+
+        MinibatchTuner fixed = new MinibatchTuner(settings(1, 1, 4));
+        assertFalse(fixed.isTuning());
+        assertEquals(1, fixed.next().size);
+    }
+
+    @TestAnnotations.Fast
+    public void testNoiseScale() {
+        MinibatchTuner tuner = new MinibatchTuner(settings(1, 16, 4));
+        Random random = new Random(0);
+        int dimension = 8;
+        double noise = 1.0;     // tr(Σ) = 8, |G|^2 = 1, i.e. the noise scale is 8
+        double[] gradient = new double[dimension];
+        gradient[0] = 1;
+
+        for (int batch = 0; batch < 20000; batch++) {
+            int size = 2 + batch % 8;
+            double[] sum = new double[dimension];
+            double sampleNorms = 0;
+            for (int s = 0; s < size; s++) {
+                double norm = 0;
+                for (int d = 0; d < dimension; d++) {
+                    double value = gradient[d] + noise * random.nextGaussian();
+                    sum[d] += value;
+                    norm += value * value;
+                }
+                sampleNorms += norm;
+            }
+            double batchNorm = 0;
+            for (double value : sum) {
+                batchNorm += value * value;
+            }
+            tuner.recordGradients(size, sampleNorms, batchNorm);
+        }
+        LOG.fine("Estimated noise scale " + tuner.noiseScale());
+        assertEquals(8, tuner.noiseScale(), 0.8);
+    }
+
+    @TestAnnotations.Fast
+    public void testChoice() {
+        MinibatchTuner tuner = new MinibatchTuner(settings(1, 16, 4));
+        tuner.recordGradients(2, 2 * (1 + 4), 4 * (1 + 4 / 2.0));     // noise scale of 4
+
+        for (int epoch = 0; epoch < 2; epoch++) {
+            for (int batch = 0; batch < 2 * tuner.candidates.size(); batch++) {
+                MinibatchTuner.Config config = tuner.next();
+                double throughput = 1000 * Math.min(config.size, config.threads);     // saturating at 4 threads
+                tuner.recordTime(config, config.size, (long) (config.size / throughput * 1e9));
+            }
+            MinibatchTuner.Config chosen = tuner.epochFinished();
+            if (epoch == 0) {
+                assertNull(chosen);
+                assertTrue(tuner.isTuning());
+            } else {
+                // progress 4000 / (1 + 4/4) at size 4 beats 4000 / (1 + 8/4) at 8 and 2000 / (1 + 2/4) at 2
+                assertNotNull(chosen);
+                assertEquals(4, chosen.size);
+                assertEquals(4, chosen.threads);
+            }
+        }
+        assertFalse(tuner.isTuning());
+        assertEquals(4, tuner.next().size);
+    }
+}
@@ -19,6 +19,18 @@ public class NeuralBuilder {
         networkFactory = new NeuralNetFactory(settings);
     }
 
+    /**
+     * A builder for another thread - shares all the (stateless) factories with the other builder, except for the neuron factory,
+     * which needs its own neuronMaps (but still shares the neuron indices).
+     *
+     * @param other
+     */
+    public NeuralBuilder(NeuralBuilder other) {
+        this.settings = other.settings;
+        setFactoriesFrom(other);
+        this.neuronFactory = new NeuronFactory(other.neuronFactory);
+    }
+
     public StatesBuilder statesBuilder;
     public NeuronFactory neuronFactory;
     public NeuralNetFactory networkFactory;
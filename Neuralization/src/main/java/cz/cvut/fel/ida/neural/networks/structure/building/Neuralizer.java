@@ -27,8 +27,10 @@ import cz.cvut.fel.ida.utils.generic.Timing;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 /**
@@ -52,10 +54,27 @@ public class Neuralizer implements Exportable {
 
     public Timing timing;
 
+    /**
+     * Copies of this neuralizer for concurrent neuralization of independent samples, each used by a single thread at a time.
+     * These are owned by this neuralizer (not the threads of the pool), so that they do not outlive the neuralization.
+     */
+    transient private final ConcurrentLinkedDeque<Neuralizer> idleNeuralizers = new ConcurrentLinkedDeque<>();
+
     public Neuralizer(Settings settings) {
         this.settings = settings;
         this.neuralNetBuilder = new NeuralNetBuilder(settings);
-        this.timing = new Timing();
+        this.timing = new Timing("neuralization");
+    }
+
+    /**
+     * A thread-local copy of the parent - shares the weights and the neuron index allocator, but nothing of the mutable building state.
+     *
+     * @param parent
+     */
+    private Neuralizer(Neuralizer parent) {
+        this.settings = parent.settings;
+        this.neuralNetBuilder = new NeuralNetBuilder(settings, new NeuralBuilder(parent.neuralNetBuilder.neuralBuilder));
+        this.timing = new Timing("neuralization");
     }
 
     public Neuralizer(Settings settings, WeightFactory weightFactory) {
@@ -74,13 +93,7 @@ public class Neuralizer implements Exportable {
         timing.tic();
         networksCreated++;
 
-        GroundingSample groundingSample = samples.get(0);
-        NeuronMaps neuronMaps = (NeuronMaps) groundingSample.groundingWrap.getNeuronMaps();  //neuronmaps should be same for all samples
-        if (neuronMaps == null) {
-            neuronMaps = new NeuronMaps(groundingSample.groundingWrap.getGroundTemplate().groundRules, groundingSample.groundingWrap.getGroundTemplate().groundFacts);
-            NeuronMaps finalNeuronMaps = neuronMaps;
-            samples.forEach(s -> s.groundingWrap.setNeuronMaps(finalNeuronMaps));
-        }
+        NeuronMaps neuronMaps = getSharedNeuronMaps(samples);
         neuralNetBuilder.setNeuronMaps(neuronMaps); //loading stored context from previous neural nets building
         NeuralSets createdNeurons = new NeuralSets();    //a set of neurons used exclusively for this network being created only!
 
@@ -128,6 +141,36 @@ public class Neuralizer implements Exportable {
     }
 
 
+    /**
+     * KB mode, lazy variant - instead of neuralizing everything at once, the network of each query is created only
+     * once the respective sample is pulled from the returned stream (e.g. by evaluation).
+     * All the samples share the same NeuronMaps, so the neurons created for the previous queries are simply reused by the next ones.
+     *
+     * @param samples
+     * @return
+     */
+    public Stream<NeuralProcessingSample> neuralizeLazily(List<GroundingSample> samples) {
+        getSharedNeuronMaps(samples);
+        return samples.stream().flatMap(sample -> neuralize(sample).stream());
+    }
+
+    /**
+     * Get (or create) the NeuronMaps shared by all the given samples, i.e. the context of all the neurons created so far
+     *
+     * @param samples
+     * @return
+     */
+    private NeuronMaps getSharedNeuronMaps(List<GroundingSample> samples) {
+        GroundingSample groundingSample = samples.get(0);
+        NeuronMaps neuronMaps = (NeuronMaps) groundingSample.groundingWrap.getNeuronMaps();  //neuronmaps should be same for all samples
+        if (neuronMaps == null) {
+            neuronMaps = new NeuronMaps(groundingSample.groundingWrap.getGroundTemplate().groundRules, groundingSample.groundingWrap.getGroundTemplate().groundFacts);
+            NeuronMaps finalNeuronMaps = neuronMaps;
+            samples.forEach(s -> s.groundingWrap.setNeuronMaps(finalNeuronMaps));
+        }
+        return neuronMaps;
+    }
+
     /**
      * Turn GroundingSample, i.e. a set of ground rules and facts, into a NeuralProcessingSample, i.e. neural network.
      * <p>
@@ -171,6 +214,40 @@ public class Neuralizer implements Exportable {
         return samples;
     }
 
+    /**
+     * Same as {@link #neuralize(GroundingSample)}, but safe to be called concurrently from multiple threads,
+     * as long as the samples do not share their NeuronMaps (i.e. INDEPENDENT grounding mode).
+     * Each thread neuralizes with its own copy of this neuralizer, only the neuron indices are allocated globally.
+     *
+     * @param groundingSample
+     * @return
+     */
+    public List<NeuralProcessingSample> neuralizeConcurrently(GroundingSample groundingSample) throws RuntimeException {
+        Neuralizer threadNeuralizer = idleNeuralizers.pollFirst();
+        if (threadNeuralizer == null) {
+            threadNeuralizer = new Neuralizer(this);
+        }
+        try {
+            List<NeuralProcessingSample> samples = threadNeuralizer.neuralize(groundingSample);
+            synchronized (this) {
+                networksCreated++;
+                queryNeuronsCreated += samples.size();
+                neuronCounts = threadNeuralizer.neuronCounts;
+            }
+            return samples;
+        } finally {
+            threadNeuralizer.neuralNetBuilder.setNeuronMaps(null);   // do not keep the building context of the sample alive
+            idleNeuralizers.offerFirst(threadNeuralizer);
+        }
+    }
+
+    /**
+     * Release the copies used by {@link #neuralizeConcurrently(GroundingSample)}, once the concurrent neuralization is over
+     */
+    public void finishConcurrent() {
+        idleNeuralizers.clear();
+    }
+
     /**
      * Supervised network building (recursive network construction top-down from grounded rules)
      *
@@ -20,6 +20,7 @@ import cz.cvut.fel.ida.neural.networks.structure.components.neurons.states.State
 import cz.cvut.fel.ida.neural.networks.structure.components.neurons.types.*;
 import cz.cvut.fel.ida.setup.Settings;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**
@@ -31,7 +32,10 @@ public class NeuronFactory {
     private WeightFactory weightFactory;
     Settings settings;
 
-    private int counter = 0;
+    /**
+     * Neuron index allocator - may be shared by multiple factories (one per thread) to keep the indices globally unique
+     */
+    private final AtomicInteger counter;
 
     private Weight atomOffset;
     private Weight ruleOffset;
@@ -49,6 +53,21 @@ public class NeuronFactory {
         atomOffset = new Weight(-10, "fixedAtomOffset", new ScalarValue(settings.defaultAtomNeuronOffset), true, true);
         ruleOffset = new Weight(-9, "fixedRuleOffset", new ScalarValue(settings.defaultRuleNeuronOffset), true, true);
         defaultFactValue = new ScalarValue(settings.defaultFactValue);  // this should not be just Value.ONE as the fact values need to be valid values for subsequent modification (e.g. function application)
+        counter = new AtomicInteger(0);
+    }
+
+    /**
+     * A factory for another thread - shares the weights and the neuron index allocator with the other factory, but has its own (not yet set) neuronMaps
+     *
+     * @param other
+     */
+    public NeuronFactory(NeuronFactory other) {
+        this.weightFactory = other.weightFactory;
+        this.settings = other.settings;
+        this.atomOffset = other.atomOffset;
+        this.ruleOffset = other.ruleOffset;
+        this.defaultFactValue = other.defaultFactValue;
+        this.counter = other.counter;
     }
 
     public WeightedAtomNeuron createWeightedAtomNeuron(HeadAtom head, Literal groundHead) {
@@ -70,7 +89,7 @@ public class NeuronFactory {
                 }
             }
         }
-        WeightedAtomNeuron<State.Neural.Computation> atomNeuron = new WeightedAtomNeuron<>(groundHead.toString(), offset, counter++, state);
+        WeightedAtomNeuron<State.Neural.Computation> atomNeuron = new WeightedAtomNeuron<>(groundHead.toString(), offset, counter.getAndIncrement(), state);
         neuronMaps.atomNeurons.put(groundHead, atomNeuron);
         LOG.finest(() -> "Created atom neuron: " + atomNeuron);
         return atomNeuron;
@@ -81,7 +100,7 @@ public class NeuronFactory {
         Transformation transformation = head.getTransformation() != null ? head.getTransformation() : Transformation.getFunction(settings.atomNeuronTransformation);
 
         State.Neural.Computation state = State.createBaseState(settings, combination, transformation);
-        AtomNeuron<State.Neural.Computation> atomNeuron = new AtomNeuron<>(groundHead.toString(), counter++, state);
+        AtomNeuron<State.Neural.Computation> atomNeuron = new AtomNeuron<>(groundHead.toString(), counter.getAndIncrement(), state);
         neuronMaps.atomNeurons.put(groundHead, atomNeuron);
         LOG.finest(() -> "Created atom neuron: " + atomNeuron);
         return atomNeuron;
@@ -92,7 +111,7 @@ public class NeuronFactory {
         Aggregation aggregation = weightedRule.getAggregationFcn() != null ? weightedRule.getAggregationFcn() : Aggregation.getFunction(settings.aggNeuronAggregation);
 
         State.Neural.Computation state = State.createBaseState(settings, aggregation, null);
-        AggregationNeuron<State.Neural.Computation> aggregationNeuron = new AggregationNeuron<>(settings.fullAggNeuronStrings ? groundHeadRule.toFullString() : weightedRule.getOriginalString(), counter++, state);
+        AggregationNeuron<State.Neural.Computation> aggregationNeuron = new AggregationNeuron<>(settings.fullAggNeuronStrings ? groundHeadRule.toFullString() : weightedRule.getOriginalString(), counter.getAndIncrement(), state);
         neuronMaps.aggNeurons.put(groundHeadRule, aggregationNeuron);
         LOG.finest(() -> "Created aggregation neuron: " + aggregationNeuron);
         return aggregationNeuron;
@@ -103,7 +122,7 @@ public class NeuronFactory {
         Aggregation aggregation = weightedRule.getAggregationFcn() != null ? weightedRule.getAggregationFcn() : Aggregation.getFunction(settings.aggNeuronAggregation);
 
         State.Neural.Computation state = State.createBaseState(settings, aggregation, null);
-        SplittableAggregationNeuron<State.Neural.Computation> aggregationNeuron = new SplittableAggregationNeuron<>(settings.fullAggNeuronStrings ? groundHeadRule.toFullString() : weightedRule.getOriginalString(), counter++, state);
+        SplittableAggregationNeuron<State.Neural.Computation> aggregationNeuron = new SplittableAggregationNeuron<>(settings.fullAggNeuronStrings ? groundHeadRule.toFullString() : weightedRule.getOriginalString(), counter.getAndIncrement(), state);
         neuronMaps.aggNeurons.put(groundHeadRule, aggregationNeuron);
         LOG.finest(() -> "Created splittable aggregation neuron: " + aggregationNeuron);
         return aggregationNeuron;
@@ -116,7 +135,7 @@ public class NeuronFactory {
         State.Neural.Computation state = State.createBaseState(settings, combination, transformation);
         Literal head = new Literal(new Predicate("_" + groundHead.predicate().name, groundHead.predicate().arity), groundHead.isNegated(), groundHead.termList());
 
-        AtomNeuron<State.Neural.Computation> atomNeuron = new AtomNeuron<>(head.toString(), counter++, state);
+        AtomNeuron<State.Neural.Computation> atomNeuron = new AtomNeuron<>(head.toString(), counter.getAndIncrement(), state);
         neuronMaps.atomNeurons.put(head, atomNeuron);
         atomNeuron.addInput(splittableAggregationNeuron);
 
@@ -131,7 +150,7 @@ public class NeuronFactory {
         Transformation transformation = weightedRule.getTransformation() != null ? weightedRule.getTransformation() : Transformation.getFunction(settings.ruleNeuronTransformation);
 
         State.Neural.Computation state = State.createBaseState(settings, combination, transformation);
-        RuleNeuron<State.Neural.Computation> ruleNeuron = new RuleNeuron<>(settings.fullRuleNeuronStrings ? groundRule.toFullString() : weightedRule.getOriginalString(), counter++, state);
+        RuleNeuron<State.Neural.Computation> ruleNeuron = new RuleNeuron<>(settings.fullRuleNeuronStrings ? groundRule.toFullString() : weightedRule.getOriginalString(), counter.getAndIncrement(), state);
         neuronMaps.ruleNeurons.put(groundRule, ruleNeuron);
         LOG.finest(() -> "Created rule neuron: " + ruleNeuron);
         return ruleNeuron;
@@ -157,7 +176,7 @@ public class NeuronFactory {
             }
         }
         State.Neural.Computation state = State.createBaseState(settings, combination, transformation);
-        WeightedRuleNeuron<State.Neural.Computation> weightedRuleNeuron = new WeightedRuleNeuron<>(settings.fullRuleNeuronStrings ? groundRule.toFullString() : weightedRule.getOriginalString(), offset, counter++, state);
+        WeightedRuleNeuron<State.Neural.Computation> weightedRuleNeuron = new WeightedRuleNeuron<>(settings.fullRuleNeuronStrings ? groundRule.toFullString() : weightedRule.getOriginalString(), offset, counter.getAndIncrement(), state);
         neuronMaps.ruleNeurons.put(groundRule, weightedRuleNeuron);
         LOG.finest(() -> "Created weightedRule neuron: " + weightedRuleNeuron);
         return weightedRuleNeuron;
@@ -167,7 +186,7 @@ public class NeuronFactory {
         FactNeuron result = neuronMaps.factNeurons.get(fact.literal);
         if (result == null) {    //fact neuron might have been created already and for them it is ok
             States.SimpleValue simpleValue = new States.SimpleValue(fact.getValue() == null ? this.defaultFactValue : fact.getValue());     //todo this is incompatible with ParentCounter state for Fact neurons...
-            FactNeuron factNeuron = new FactNeuron(fact.originalString, fact.weight, counter++, simpleValue);
+            FactNeuron factNeuron = new FactNeuron(fact.originalString, fact.weight, counter.getAndIncrement(), simpleValue);
             if (fact.weight != null && fact.weight.isLearnable()) {
                 factNeuron.hasLearnableValue = true;
                 simpleValue.isLearnable = true;
@@ -183,7 +202,7 @@ public class NeuronFactory {
     public NegationNeuron createNegationNeuron(AtomFact atomFact, Transformation negation) {
         Transformation transformation = negation != null ? negation : Transformation.getFunction(settings.softNegation);
         State.Neural.Computation state = State.createBaseState(settings, null, transformation);
-        NegationNeuron<State.Neural.Computation> negationNeuron = new NegationNeuron<>(atomFact, counter++, state);
+        NegationNeuron<State.Neural.Computation> negationNeuron = new NegationNeuron<>(atomFact, counter.getAndIncrement(), state);
         neuronMaps.negationNeurons.add(negationNeuron);
         LOG.finest(() -> "Created negation neuron: " + negationNeuron);
         return negationNeuron;
@@ -5,6 +5,8 @@ import cz.cvut.fel.ida.logic.constructs.example.LiftedExample;
 import cz.cvut.fel.ida.logic.constructs.example.LogicSample;
 import cz.cvut.fel.ida.logic.constructs.example.ValuedFact;
 import cz.cvut.fel.ida.logic.parsing.antlr.NeuralogicParser;
+import cz.cvut.fel.ida.logic.parsing.examples.ChunkedExamplesParser;
+import cz.cvut.fel.ida.logic.parsing.examples.FactExamplesScanner;
 import cz.cvut.fel.ida.logic.parsing.examples.PlainExamplesParseTree;
 import cz.cvut.fel.ida.logic.parsing.examples.PlainExamplesParseTreeExtractor;
 import cz.cvut.fel.ida.logic.parsing.grammarParsing.PlainGrammarVisitor;
@@ -13,8 +15,12 @@ import cz.cvut.fel.ida.utils.generic.Pair;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * //TODO groundexample when to return? recognizer
@@ -56,6 +62,56 @@ public class ExamplesBuilder extends SamplesBuilder<PlainExamplesParseTree, Pair
         return labeledExamples;
     }
 
+    public Stream<LogicSample> buildSamplesFrom(ChunkedExamplesParser chunkedParser) {
+        return buildFrom(chunkedParser).flatMap(this::sampleFrom);
+    }
+
+    /**
+     * The examples from the chunks of a (large) examples file, parsed in parallel. The examples themselves are still built
+     * sequentially in the original order (sharing the constant, predicate and weight factories), each chunk with its own
+     * variable factory.
+     *
+     * @param chunkedParser
+     * @return
+     */
+    public Stream<Pair<Conjunction, LiftedExample>> buildFrom(ChunkedExamplesParser chunkedParser) {
+        PlainGrammarVisitor plainGrammarVisitor = new PlainGrammarVisitor(this);
+        Iterator<NeuralogicParser.ExamplesFileContext> chunks = chunkedParser.parseChunks();
+        NeuralogicParser.ExamplesFileContext first = chunks.next();
+        int examplesCount = first.liftedExample().size() + (chunks.hasNext() ? 1 : 0);    // just to distinguish between 0, 1 and more
+        inferInputFormatSettings(examplesCount, first.label() != null && !first.label().isEmpty());
+
+        Stream<NeuralogicParser.ExamplesFileContext> rest = StreamSupport.stream(Spliterators.spliteratorUnknownSize(chunks, Spliterator.ORDERED | Spliterator.NONNULL), false);
+        Stream<Pair<Conjunction, LiftedExample>> labeledExamples = Stream.concat(Stream.of(first), rest)
+                .flatMap(chunk -> new PlainExamplesParseTreeExtractor(plainGrammarVisitor).getLabeledExamples(chunk));
+        labeledExamples.onClose(() -> {
+            LOG.info("Closing input example parsing stream");
+            chunkedParser.close();
+        });
+        return labeledExamples;
+    }
+
+    public Stream<LogicSample> buildSamplesFrom(FactExamplesScanner scanner) {
+        return buildFrom(scanner).flatMap(this::sampleFrom);
+    }
+
+    /**
+     * The examples from a fact-only examples file, scanned directly without the parse tree
+     *
+     * @param scanner - already validated by {@link FactExamplesScanner#isFactOnly()}
+     * @return
+     */
+    public Stream<Pair<Conjunction, LiftedExample>> buildFrom(FactExamplesScanner scanner) {
+        LOG.info("Scanning " + scanner.examplesCount + " fact-only examples...");
+        inferInputFormatSettings(scanner.examplesCount, scanner.labeled);
+        Iterator<Pair<Conjunction, LiftedExample>> examples = scanner.examples(this);
+        Stream<Pair<Conjunction, LiftedExample>> labeledExamples = StreamSupport.stream(Spliterators.spliterator(examples, scanner.examplesCount, Spliterator.ORDERED | Spliterator.NONNULL), false);
+        labeledExamples.onClose(() -> {
+            LOG.info("Closing input example parsing stream");
+        });
+        return labeledExamples;
+    }
+
     @Override
     public Stream<LogicSample> sampleFrom(Pair<Conjunction, LiftedExample> pair) {
         LiftedExample example = pair.s;
@@ -82,11 +138,18 @@ public class ExamplesBuilder extends SamplesBuilder<PlainExamplesParseTree, Pair
     }
 
     private void inferInputFormatSettings(NeuralogicParser.ExamplesFileContext examplesFileContext) {
-        if (examplesFileContext.liftedExample().size() == 0) {
+        inferInputFormatSettings(examplesFileContext.liftedExample().size(), examplesFileContext.label() != null && !examplesFileContext.label().isEmpty());
+    }
+
+    private void inferInputFormatSettings(int examplesCount, boolean labeled) {
+        if (examplesCount == 0) {
             LOG.warning("There are no examples in the example source (file)!");
+            if (settings.mainMode == Settings.MainMode.SERVING) {   // a malformed request must not end the server
+                throw new IllegalArgumentException("No examples could be parsed from the request.");
+            }
             LOG.severe("Problem with parsing the examples");
             System.exit(4);
-        } else if (examplesFileContext.liftedExample().size() == 1) {
+        } else if (examplesCount == 1) {
             LOG.fine("Detecting exactly 1 (big) example in the examples source (file), switching to knowledge-base mode.");
             if (settings.groundingMode != Settings.GroundingMode.GLOBAL) {
                 settings.groundingMode = Settings.GroundingMode.GLOBAL;
@@ -104,7 +167,7 @@ public class ExamplesBuilder extends SamplesBuilder<PlainExamplesParseTree, Pair
                 rebuildCallback.apply("GroundingPipeline");
             }
         }
-        if (examplesFileContext.label() != null && !examplesFileContext.label().isEmpty()) {
+        if (labeled) {
             settings.queriesAlignedWithExamples = false;
             LOG.fine("Detecting examples to have ids/queries with them.");
         }
@@ -91,7 +91,7 @@ public class QueriesBuilder extends SamplesBuilder<PlainQueriesParseTree, Pair<V
         } else {
             LOG.info("Detecting multiple independent queries (standard supervised learning).");
         }
-        if (queriesFileContext.conjunction(0).atom().size() > 1) {   //todo this is just a heuristic
+        if (queriesFileContext.conjunction().stream().anyMatch(conjunction -> conjunction.atom().size() > 1)) {   //todo this is just a heuristic
             LOG.info("Detecting multiple individual queries per example.");
             settings.oneQueryPerExample = false;
         } else {
@@ -0,0 +1,180 @@
+package cz.cvut.fel.ida.logic.parsing.examples;
+
+import cz.cvut.fel.ida.logic.parsing.antlr.NeuralogicLexer;
+import cz.cvut.fel.ida.logic.parsing.antlr.NeuralogicParser;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Logger;
+
+/**
+ * Parses a (large) examples file in chunks, instead of a single parse tree of the whole file.
+ * <p>
+ * The memory-mapped file is first scanned for the example boundaries, i.e. the line ends following a '.' (outside of comments),
+ * and split there into chunks of approximately the given size. The chunks are then parsed into separate parse trees in parallel,
+ * a few chunks ahead of the consumer, who takes them (lazily) in the original order. Only the parse trees of the chunks in flight
+ * are thus kept in memory.
+ * <p>
+ * Note that the splitting assumes that a line ending with '.' also ends an example, i.e. that there are no multi-line examples
+ * with rules (also ending with '.') at the end of a line.
+ */
+public class ChunkedExamplesParser implements Closeable {
+    private static final Logger LOG = Logger.getLogger(ChunkedExamplesParser.class.getName());
+
+    /**
+     * Maximal size of a single mapped window of the file for the scanning
+     */
+    static final long MAX_WINDOW = 1L << 30;
+
+    private final Path file;
+    private final FileChannel channel;
+
+    /**
+     * Chunk i spans the bytes [boundaries[i], boundaries[i+1])
+     */
+    final long[] boundaries;
+
+    private final ExecutorService executor;
+    private final int prefetch;
+
+    public ChunkedExamplesParser(Path file, long chunkSize) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.boundaries = findBoundaries(channel, chunkSize);
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), boundaries.length - 1));
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "examples-parsing");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.prefetch = 2 * threads;
+        LOG.info("Splitting the examples file " + file + " into " + chunkCount() + " chunks for parallel parsing.");
+    }
+
+    public int chunkCount() {
+        return boundaries.length - 1;
+    }
+
+    /**
+     * Sequential scan through the file, remembering the first example boundary after each chunkSize bytes
+     */
+    static long[] findBoundaries(FileChannel channel, long chunkSize) throws IOException {
+        long size = channel.size();
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+
+        long chunkStart = 0;
+        byte previous = 0;
+        byte lastSignificant = 0;
+        boolean lineComment = false;
+        int blockComments = 0;  // the multiline comments may be nested
+
+        for (long windowStart = 0; windowStart < size; windowStart += MAX_WINDOW) {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(MAX_WINDOW, size - windowStart));
+            for (int i = 0; i < window.limit(); i++) {
+                byte b = window.get(i);
+                if (lineComment) {
+                    lineComment = b != '\n' && b != '\r';
+                } else if (blockComments > 0) {
+                    if (previous == '*' && b == '/') {
+                        blockComments--;
+                        b = 0;  // not to be part of the next delimiter
+                    } else if (previous == '/' && b == '*') {
+                        blockComments++;
+                        b = 0;
+                    }
+                } else if (b == '%') {
+                    lineComment = true;
+                } else if (previous == '/' && b == '*') {
+                    blockComments++;
+                    b = 0;
+                } else if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                    lastSignificant = b;
+                }
+                previous = b;
+
+                if (b == '\n' && blockComments == 0 && lastSignificant == '.') {
+                    long position = windowStart + i + 1;
+                    if (position - chunkStart >= chunkSize && position < size) {
+                        boundaries.add(position);
+                        chunkStart = position;
+                    }
+                }
+            }
+        }
+        boundaries.add(size);
+        return boundaries.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Parse a single chunk of the file into its own parse tree
+     */
+    public NeuralogicParser.ExamplesFileContext parseChunk(int chunk) throws IOException {
+        long start = boundaries[chunk];
+        long length = boundaries[chunk + 1] - start;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("The chunk " + chunk + " of " + file + " is too large (" + length + " bytes), there are probably no example boundaries to split at.");
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        String text = StandardCharsets.UTF_8.decode(buffer).toString();
+        NeuralogicLexer lexer = new NeuralogicLexer(CharStreams.fromString(text, file + "#" + chunk));
+        return new PlainExamplesParseTree(new CommonTokenStream(lexer)).getRoot();
+    }
+
+    /**
+     * The parse trees of all the chunks in the order of the file, each parsed in the background ahead of its consumption
+     */
+    public Iterator<NeuralogicParser.ExamplesFileContext> parseChunks() {
+        return new Iterator<NeuralogicParser.ExamplesFileContext>() {
+            final Deque<Future<NeuralogicParser.ExamplesFileContext>> pending = new ArrayDeque<>();
+            int submitted = 0;
+
+            @Override
+            public boolean hasNext() {
+                return submitted < chunkCount() || !pending.isEmpty();
+            }
+
+            @Override
+            public NeuralogicParser.ExamplesFileContext next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                while (submitted < chunkCount() && pending.size() < prefetch) {
+                    final int chunk = submitted++;
+                    pending.addLast(executor.submit(() -> parseChunk(chunk)));
+                }
+                try {
+                    return pending.pollFirst().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw new UncheckedIOException((IOException) e.getCause());
+                    }
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.warning("Could not close the examples file " + file + ": " + e);
+        }
+    }
+}
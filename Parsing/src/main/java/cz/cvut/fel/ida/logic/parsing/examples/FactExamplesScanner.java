@@ -0,0 +1,514 @@
+package cz.cvut.fel.ida.logic.parsing.examples;
+
+import cz.cvut.fel.ida.algebra.values.ScalarValue;
+import cz.cvut.fel.ida.algebra.weights.Weight;
+import cz.cvut.fel.ida.logic.Constant;
+import cz.cvut.fel.ida.logic.Term;
+import cz.cvut.fel.ida.logic.constructs.Conjunction;
+import cz.cvut.fel.ida.logic.constructs.WeightedPredicate;
+import cz.cvut.fel.ida.logic.constructs.building.LogicSourceBuilder;
+import cz.cvut.fel.ida.logic.constructs.example.LiftedExample;
+import cz.cvut.fel.ida.logic.constructs.example.ValuedFact;
+import cz.cvut.fel.ida.utils.generic.Pair;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.logging.Logger;
+
+/**
+ * A hand-written scanner for the examples files consisting of ground valued facts only, i.e. the subset of the Neuralogic grammar with
+ * <pre>
+ *     examplesFile: (conjunction impliedBy conjunction '.')+ | (conjunction '.')+
+ *     conjunction: atom (',' atom)*
+ *     atom: (number | '&lt;' number '&gt;')? ATOMIC_NAME ('(' (constant (',' constant)*)? ')')?
+ * </pre>
+ * with no rules, variables, comments, negations, named or non-scalar weights, or special predicates.
+ * <p>
+ * The scanner works directly on the (memory-mapped) bytes of the file, without the ANTLR tokens and parse tree, and interns the
+ * predicates and constants into the factories of the builder through a local cache keyed by the bytes, i.e. without creating
+ * a String for each of their occurrences. The resulting facts (values, weights, original strings) and the order of their creation
+ * are the same as with the {@link cz.cvut.fel.ida.logic.parsing.grammarParsing.PlainGrammarVisitor}.
+ * <p>
+ * The whole input is validated first by {@link #isFactOnly()}, so that the caller can fall back to the full grammar parsing
+ * (before anything is created) if there is anything else in the file.
+ */
+public class FactExamplesScanner {
+    private static final Logger LOG = Logger.getLogger(FactExamplesScanner.class.getName());
+
+    private final ByteBuffer bytes;
+    private final int length;
+
+    /**
+     * Number of the examples found by the validation
+     */
+    public int examplesCount = 0;
+    /**
+     * Whether the examples have labels (queries) with them, i.e. "label :- example."
+     */
+    public boolean labeled = false;
+
+    /**
+     * Position of the first byte outside of the supported subset (or -1)
+     */
+    public int errorPosition = -1;
+
+    public FactExamplesScanner(ByteBuffer bytes) {
+        this.bytes = bytes;
+        this.length = bytes.limit();
+    }
+
+    public static FactExamplesScanner map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The examples file " + file + " is too large to be mapped at once.");
+            }
+            return new FactExamplesScanner(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Scans through the whole input and checks that it consists of the supported (ground fact) examples only
+     *
+     * @return
+     */
+    public boolean isFactOnly() {
+        Pass pass = new Pass(null);
+        examplesCount = 0;
+        Boolean fileLabeled = null;
+        pass.skipWhitespace();
+        while (pass.position < length) {
+            if (!pass.example()) {
+                errorPosition = pass.position;
+                return false;
+            }
+            if (fileLabeled != null && fileLabeled != pass.labeled) {
+                errorPosition = pass.position;
+                return false;   // a mix of labeled and unlabeled examples is not a valid examples file
+            }
+            fileLabeled = pass.labeled;
+            examplesCount++;
+            pass.skipWhitespace();
+        }
+        labeled = fileLabeled != null && fileLabeled;
+        return true;
+    }
+
+    /**
+     * The (label, example) pairs built lazily one by one, with the label null for the unlabeled examples.
+     * Should only be called after a successful {@link #isFactOnly()}.
+     *
+     * @param builder - with the factories to create the predicates, constants and weights with
+     * @return
+     */
+    public Iterator<Pair<Conjunction, LiftedExample>> examples(LogicSourceBuilder builder) {
+        Pass pass = new Pass(builder);
+        return new Iterator<Pair<Conjunction, LiftedExample>>() {
+            @Override
+            public boolean hasNext() {
+                pass.skipWhitespace();
+                return pass.position < length;
+            }
+
+            @Override
+            public Pair<Conjunction, LiftedExample> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (!pass.example()) {
+                    throw new IllegalStateException("Unexpected input at position " + pass.position + " of the examples.");
+                }
+                List<Conjunction> conjunctions = new ArrayList<>(1);
+                conjunctions.add(pass.example);
+                LiftedExample liftedExample = new LiftedExample(conjunctions, new ArrayList<>(0));
+                LOG.finest("Example extracted: " + liftedExample);
+                return new Pair<>(pass.label, liftedExample);
+            }
+        };
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isAlphanumeric(byte b) {
+        return isDigit(b) || (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || b == '_' || b == '-';
+    }
+
+    /**
+     * A single pass through the input, either just validating (without a builder), or also building the facts
+     */
+    private class Pass {
+        final LogicSourceBuilder builder;
+        final Interner<Constant> constants = new Interner<>();
+        final Interner<WeightedPredicate> predicates = new Interner<>();
+
+        int position = 0;
+
+        boolean labeled;
+        Conjunction label;
+        Conjunction example;
+
+        Pass(LogicSourceBuilder builder) {
+            this.builder = builder;
+        }
+
+        byte peek() {
+            return position < length ? bytes.get(position) : 0;
+        }
+
+        void skipWhitespace() {
+            while (position < length && isWhitespace(bytes.get(position))) {
+                position++;
+            }
+        }
+
+        boolean example() {
+            Conjunction first = conjunction();
+            if (first == null) {
+                return false;
+            }
+            skipWhitespace();
+            labeled = false;
+            if (position + 1 < length && ((peek() == ':' && bytes.get(position + 1) == '-') || (peek() == '<' && bytes.get(position + 1) == '='))) {
+                position += 2;
+                labeled = true;
+                label = first;
+                example = conjunction();
+                if (example == null) {
+                    return false;
+                }
+                skipWhitespace();
+            } else {
+                label = null;
+                example = first;
+            }
+            if (peek() != '.') {
+                return false;
+            }
+            position++;
+            return true;
+        }
+
+        /**
+         * @return the conjunction (empty in the validation pass), or null if the input is not supported
+         */
+        Conjunction conjunction() {
+            List<ValuedFact> facts = new ArrayList<>();
+            while (true) {
+                skipWhitespace();
+                if (!atom(facts)) {
+                    return null;
+                }
+                skipWhitespace();
+                if (peek() != ',') {
+                    return new Conjunction(facts);
+                }
+                position++;
+            }
+        }
+
+        boolean atom(List<ValuedFact> facts) {
+            int start = position;
+
+            int valueStart = -1;
+            int valueEnd = -1;
+            boolean fixed = false;
+            byte b = peek();
+            if (b == '<') {
+                fixed = true;
+                position++;
+                skipWhitespace();
+                valueStart = position;
+                valueEnd = number(position);
+                if (valueEnd < 0) {
+                    return false;
+                }
+                position = valueEnd;
+                skipWhitespace();
+                if (peek() != '>') {
+                    return false;
+                }
+                position++;
+                skipWhitespace();
+            } else if (isDigit(b) || b == '+' || b == '-') {
+                valueStart = position;
+                valueEnd = number(position);
+                if (valueEnd < 0) {
+                    return false;
+                }
+                position = valueEnd;
+                skipWhitespace();
+            }
+
+            int nameStart = position;
+            int nameEnd = name(position);
+            if (nameEnd < 0) {
+                return false;
+            }
+            position = nameEnd;
+            skipWhitespace();
+
+            int[] termBounds = null;
+            int arity = 0;
+            if (peek() == '(') {
+                termBounds = new int[8];
+                position++;
+                skipWhitespace();
+                if (peek() != ')') {
+                    while (true) {
+                        int termEnd = constant(position);
+                        if (termEnd < 0) {
+                            return false;
+                        }
+                        if (2 * arity + 1 >= termBounds.length) {
+                            termBounds = Arrays.copyOf(termBounds, 2 * termBounds.length);
+                        }
+                        termBounds[2 * arity] = position;
+                        termBounds[2 * arity + 1] = termEnd;
+                        arity++;
+                        position = termEnd;
+                        skipWhitespace();
+                        if (peek() == ',') {
+                            position++;
+                            skipWhitespace();
+                        } else {
+                            break;
+                        }
+                    }
+                }
+                if (peek() != ')') {
+                    return false;
+                }
+                position++;
+            }
+
+            if (builder != null) {
+                facts.add(createFact(start, position, valueStart, valueEnd, fixed, nameStart, nameEnd, termBounds, arity));
+            }
+            return true;
+        }
+
+        /**
+         * The same order of creation as with the grammar visitor - the terms, the predicate, and the weight
+         */
+        ValuedFact createFact(int start, int end, int valueStart, int valueEnd, boolean fixed, int nameStart, int nameEnd, int[] termBounds, int arity) {
+            List<Term> terms = new ArrayList<>(arity);
+            for (int i = 0; i < arity; i++) {
+                int from = termBounds[2 * i];
+                int to = termBounds[2 * i + 1];
+                Constant constant = constants.get(from, to, 0);
+                if (constant == null) {
+                    constant = builder.constantFactory.construct(text(from, to));
+                    constants.put(from, to, 0, constant);
+                }
+                terms.add(constant);
+            }
+
+            WeightedPredicate predicate = predicates.get(nameStart, nameEnd, arity);
+            if (predicate == null) {
+                predicate = builder.predicateFactory.construct(text(nameStart, nameEnd), arity, false, false);
+                predicates.put(nameStart, nameEnd, arity, predicate);
+            }
+
+            Weight weight = null;
+            if (valueStart >= 0) {
+                weight = builder.weightFactory.construct(new ScalarValue(Float.parseFloat(text(valueStart, valueEnd))), fixed, true);
+                if (builder.settings.parentCounting && weight.isLearnable()) {
+                    LOG.warning("Detected learnable fact values with a parentCounting mode setup - not supported!");
+                }
+            }
+
+            ValuedFact fact = new ValuedFact(predicate, terms, false, weight);
+            fact.originalString = textWithoutWhitespace(start, end);
+            return fact;
+        }
+
+        String text(int from, int to) {
+            return new String(copy(from, to), StandardCharsets.US_ASCII);
+        }
+
+        /**
+         * The absolute bulk get of the buffer is not available before Java 13
+         */
+        byte[] copy(int from, int to) {
+            byte[] copy = new byte[to - from];
+            for (int i = from; i < to; i++) {
+                copy[i - from] = bytes.get(i);
+            }
+            return copy;
+        }
+
+        String textWithoutWhitespace(int from, int to) {
+            byte[] copy = new byte[to - from];
+            int size = 0;
+            for (int i = from; i < to; i++) {
+                byte b = bytes.get(i);
+                if (!isWhitespace(b)) {
+                    copy[size++] = b;
+                }
+            }
+            return new String(copy, 0, size, StandardCharsets.US_ASCII);
+        }
+
+        /**
+         * A constant term, i.e. ATOMIC_NAME | INT | FLOAT
+         */
+        int constant(int from) {
+            int end = name(from);
+            return end >= 0 ? end : number(from);
+        }
+
+        /**
+         * ATOMIC_NAME: [a-z] [a-zA-Z0-9_-]*
+         */
+        int name(int from) {
+            if (from >= length) {
+                return -1;
+            }
+            byte b = bytes.get(from);
+            if (b < 'a' || b > 'z') {
+                return -1;
+            }
+            int i = from + 1;
+            while (i < length && isAlphanumeric(bytes.get(i))) {
+                i++;
+            }
+            return i;
+        }
+
+        /**
+         * INT: [+-]? DIGIT+ or FLOAT: [+-]? DIGIT+ '.' DIGIT+ ([eE] [+-]? DIGIT+)?, i.e. the longest match as with the lexer
+         */
+        int number(int from) {
+            int i = from;
+            if (i < length && (bytes.get(i) == '+' || bytes.get(i) == '-')) {
+                i++;
+            }
+            int digits = digits(i);
+            if (digits == i) {
+                return -1;
+            }
+            i = digits;
+            if (i + 1 < length && bytes.get(i) == '.' && isDigit(bytes.get(i + 1))) {
+                i = digits(i + 1);
+                if (i < length && (bytes.get(i) == 'e' || bytes.get(i) == 'E')) {
+                    int exponent = i + 1;
+                    if (exponent < length && (bytes.get(exponent) == '+' || bytes.get(exponent) == '-')) {
+                        exponent++;
+                    }
+                    int exponentEnd = digits(exponent);
+                    if (exponentEnd > exponent) {
+                        i = exponentEnd;
+                    }
+                }
+            }
+            return i;
+        }
+
+        int digits(int from) {
+            int i = from;
+            while (i < length && isDigit(bytes.get(i))) {
+                i++;
+            }
+            return i;
+        }
+
+        /**
+         * Open addressing hash table of objects keyed by a byte range of the input (and an extra int, e.g. the arity),
+         * so that the repeated names can be looked up without creating their Strings
+         */
+        class Interner<T> {
+            byte[][] keys = new byte[64][];
+            int[] extras = new int[64];
+            int[] hashes = new int[64];
+            Object[] values = new Object[64];
+            int size = 0;
+
+            int hash(int from, int to, int extra) {
+                int h = extra;
+                for (int i = from; i < to; i++) {
+                    h = 31 * h + bytes.get(i);
+                }
+                return h ^ (h >>> 16);
+            }
+
+            boolean matches(int slot, int from, int to, int extra, int hash) {
+                if (hashes[slot] != hash || extras[slot] != extra) {
+                    return false;
+                }
+                byte[] key = keys[slot];
+                if (key.length != to - from) {
+                    return false;
+                }
+                for (int i = 0; i < key.length; i++) {
+                    if (key[i] != bytes.get(from + i)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @SuppressWarnings("unchecked")
+            T get(int from, int to, int extra) {
+                int hash = hash(from, to, extra);
+                int mask = keys.length - 1;
+                for (int slot = hash & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+                    if (matches(slot, from, to, extra, hash)) {
+                        return (T) values[slot];
+                    }
+                }
+                return null;
+            }
+
+            void put(int from, int to, int extra, T value) {
+                if (2 * (size + 1) > keys.length) {
+                    grow();
+                }
+                byte[] key = copy(from, to);
+                insert(key, extra, hash(from, to, extra), value);
+                size++;
+            }
+
+            private void insert(byte[] key, int extra, int hash, Object value) {
+                int mask = keys.length - 1;
+                int slot = hash & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                extras[slot] = extra;
+                hashes[slot] = hash;
+                values[slot] = value;
+            }
+
+            private void grow() {
+                byte[][] oldKeys = keys;
+                int[] oldExtras = extras;
+                int[] oldHashes = hashes;
+                Object[] oldValues = values;
+                keys = new byte[2 * oldKeys.length][];
+                extras = new int[keys.length];
+                hashes = new int[keys.length];
+                values = new Object[keys.length];
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] != null) {
+                        insert(oldKeys[i], oldExtras[i], oldHashes[i], oldValues[i]);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package cz.cvut.fel.ida.logic.parsing.examples;
 
 import cz.cvut.fel.ida.logic.parsing.antlr.NeuralogicParser;
 import cz.cvut.fel.ida.logic.parsing.grammarParsing.PlainParseTree;
+import org.antlr.v4.runtime.TokenStream;
 
 import java.io.IOException;
 import java.io.Reader;
@@ -14,6 +15,10 @@ public class PlainExamplesParseTree extends PlainParseTree<NeuralogicParser.Exam
         super(reader);
     }
 
+    public PlainExamplesParseTree(TokenStream tokens) throws IOException {
+        super(tokens);
+    }
+
     @Override
     public NeuralogicParser.ExamplesFileContext getRoot() {
         return parseTree.examplesFile();
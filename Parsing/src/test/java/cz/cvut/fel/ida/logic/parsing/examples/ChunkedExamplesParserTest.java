@@ -0,0 +1,107 @@
+package cz.cvut.fel.ida.logic.parsing.examples;
+
+import cz.cvut.fel.ida.logic.constructs.building.ExamplesBuilder;
+import cz.cvut.fel.ida.logic.constructs.example.LogicSample;
+import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.generic.TestAnnotations;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedExamplesParserTest {
+
+    /**
+     * Labeled examples with the (candidate) chunk boundaries in awkward places - the lines ending with '.' inside the line and
+     * (nested) block comments, the examples spanning multiple lines, the numbers with a '.', and the comments between the examples.
+     * (There are no quoted strings in the grammar.)
+     */
+    static String fixture(int examples) {
+        StringBuilder sb = new StringBuilder("% the examples file.\n/* with a header\n   of several lines.\n*/\n");
+        for (int i = 0; i < examples; i++) {
+            String target = i % 2 == 0 ? "1.0" : "0";
+            switch (i % 4) {
+                case 0:
+                    sb.append(target).append(" mol(m").append(i).append(") :- atom(m").append(i).append(", a").append(i).append("), c(a").append(i).append(").\n");
+                    break;
+                case 1:
+                    sb.append(target).append(" mol(m").append(i).append(") :- atom(m").append(i).append(", a").append(i).append("), % a comment ending with a dot.\n")
+                            .append("    bond(a").append(i).append(", b").append(i).append("),\n")
+                            .append("    0.5 o(b").append(i).append(").   % trailing comment.\n");
+                    break;
+                case 2:
+                    sb.append(target).append(" mol(m").append(i).append(") :- atom(m").append(i).append(", a").append(i).append("), /* a block comment\n")
+                            .append("   with a dot at the end of the line.\n   /* nested.\n   */ still inside.\n*/ n(a").append(i).append("),\n")
+                            .append("    [1.5, 2.0] emb(a").append(i).append(").\n");
+                    break;
+                default:
+                    sb.append("% comment lines between the examples.\n\n")
+                            .append(target).append(" mol(m").append(i).append(") :-\n    atom(m").append(i).append(", a").append(i).append("),\n")
+                            .append("    h(a").append(i).append(")\n    .\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    @TestAnnotations.Fast
+    public void chunkedEqualsWhole() throws IOException {
+        String text = fixture(40);
+        Path file = Files.createTempFile("examples", ".txt");
+        try {
+            Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+            List<String> whole = samples(new ExamplesBuilder(new Settings()).buildSamplesFrom(new ExamplesBuilder(new Settings()).parseTreeFrom(new StringReader(text))));
+            assertEquals(40, whole.size());
+
+            for (long chunkSize : new long[]{1, 7, 64, 200, Long.MAX_VALUE}) {
+                ChunkedExamplesParser parser = new ChunkedExamplesParser(file, chunkSize);
+                if (chunkSize == 1) {
+                    assertTrue(parser.chunkCount() >= 40);
+                }
+                try (Stream<LogicSample> chunked = new ExamplesBuilder(new Settings()).buildSamplesFrom(parser)) {
+                    assertEquals(whole, samples(chunked), "chunk size " + chunkSize);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * The file can only be split after a line ending with '.' outside of the comments
+     */
+    @TestAnnotations.Fast
+    public void boundariesAfterExamples() throws IOException {
+        String text = fixture(40);
+        Path file = Files.createTempFile("examples", ".txt");
+        try {
+            Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+            long[] boundaries;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                boundaries = ChunkedExamplesParser.findBoundaries(channel, 1);
+            }
+            assertEquals(0, boundaries[0]);
+            assertEquals(text.length(), boundaries[boundaries.length - 1]);
+            for (int i = 1; i < boundaries.length - 1; i++) {
+                String chunkEnd = text.substring(0, (int) boundaries[i]).replaceAll("%[^\n]*\n", "\n").trim();
+                assertTrue(chunkEnd.endsWith("."), "boundary " + boundaries[i]);
+                assertFalse(chunkEnd.endsWith("*/") || chunkEnd.lastIndexOf("/*") > chunkEnd.lastIndexOf("*/"), "boundary " + boundaries[i]);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static List<String> samples(Stream<LogicSample> samples) {
+        return samples.map(sample -> sample.getId() + ":" + sample.target + ":" + sample.query.headAtom + " <- " + sample.query.evidence.flatFacts)
+                .collect(Collectors.toList());
+    }
+}
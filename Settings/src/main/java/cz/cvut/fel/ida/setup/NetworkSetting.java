@@ -0,0 +1,16 @@
+package cz.cvut.fel.ida.setup;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the {@link Settings} the grounded and neuralized networks (their structure, functions and initial weights) depend on,
+ * i.e. the settings under which the stored networks can no longer be reused once changed.
+ * Any new such setting needs to be marked too.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface NetworkSetting {
+}
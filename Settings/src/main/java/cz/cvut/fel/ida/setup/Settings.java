@@ -26,7 +26,7 @@ import java.util.logging.Logger;
 /**
  * Created by gusta on 8.3.17.
  */
-public class Settings implements Serializable {
+public class Settings implements Serializable, Cloneable {
 
     //todo - uncompressed lambda template for experiments
     //todo - how to handle non-entailed examples
@@ -94,10 +94,25 @@ public class Settings implements Serializable {
      * Path to output log file
      */
     public static String logFile = "./out/Logging";
+    /**
+     * Write the log out in a background thread, so that the logging threads (e.g. training) never wait for the output
+     * (off by default, as the less important records may then be dropped, and the output lags behind e.g. the exceptions),
+     * switched on with the -al (--asyncLogging) option
+     */
+    public static boolean asyncLogging = false;
+    /**
+     * Max number of log records waiting for the output in the async logging (the less important ones are dropped beyond)
+     */
+    public static int loggingBufferSize = 8192;
+    /**
+     * Min interval between two summary log lines of the same (per-sample) processing stage
+     */
+    public static long loggingSummaryMillis = 5000;
 
     /**
      * Seed for absolutely everything (turned into static to pass even into distant packages, unfortunately)
      */
+    @NetworkSetting
     public static int seed = 0;
     //------------------Builders
 
@@ -161,9 +176,34 @@ public class Settings implements Serializable {
     public ExportFileType exportType = ExportFileType.JSON;
 
     public enum ExportFileType {
-        JSON, TEXT, JAVA
+        JSON, TEXT, JAVA, CSV,
+        NDJSON,     // a line of (compact) JSON per exported object, streamed
+        NDJSON_GZIP
     }
 
+    /**
+     * Record the runtime metrics (latencies of grounding, neuralization, forward/backward passes, optimizer steps etc.)
+     */
+    public boolean collectMetrics = false;
+
+    /**
+     * Export the snapshots of the runtime metrics every N seconds (0 = at the end of the run only)
+     */
+    public int metricsExportSeconds = 60;
+
+    public ExportFileType metricsExportType = ExportFileType.JSON;
+
+    /**
+     * Profile the time spent in the individual neurons by their class, functions and value shapes, with a ranked report
+     * at the end of training (disables the intra-network parallelism)
+     */
+    public boolean profileNeurons = false;
+
+    /**
+     * With the neuron profiling, also measure the memory allocated in the neurons (per-thread allocation counters)
+     */
+    public boolean profileAllocations = false;
+
     /**
      * Cleaning all previously generated outputs before each run
      */
@@ -254,6 +294,21 @@ public class Settings implements Serializable {
      */
     public boolean storeNotShow = false;
 
+    /**
+     * Maximal number of the graphviz processes rendering the images concurrently
+     */
+    public int graphvizProcesses = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    /**
+     * Memory for caching the rendered images (by the hash of their DOT source), so that the unchanged graphs are not rendered repeatedly
+     */
+    public int graphvizCacheMegabytes = 64;
+
+    /**
+     * Neural networks with more neurons than this are drawn only partially, i.e. just the neurons closest to the output (-1 = draw all)
+     */
+    public int drawingMaxNeurons = -1;
+
     /**
      * Collapse aggregation nodes into mere edge labels
      */
@@ -304,9 +359,25 @@ public class Settings implements Serializable {
     public enum MainMode {
         COMPLETE,   // standard running of the whole learning process
         NEURALIZATION,  // use the program for creation of NNs only
-        DEBUGGING   // run only debug of some part of the program (w.r.t. the debugXXX flags)
+        DEBUGGING,   // run only debug of some part of the program (w.r.t. the debugXXX flags)
+        SERVING     // keep the (trained) template loaded and answer the queries coming over a socket or stdin
     }
 
+    /**
+     * Local port for the queries in the SERVING mode (0 = any free port), or -1 to read them from stdin (and answer to stdout)
+     */
+    public int servingPort = -1;
+
+    /**
+     * Maximal number of the concurrently incoming queries processed (grounded, neuralized and evaluated) together
+     */
+    public int servingBatchSize = 64;
+
+    /**
+     * How long to wait for more queries to fill up a batch in the SERVING mode
+     */
+    public int servingBatchMillis = 5;
+
     /**
      * Some major settings that influence pipelines creation have been changed on the run,
      * implying the need for rebuilding of every pipeline when entered (accept) during run
@@ -317,14 +388,34 @@ public class Settings implements Serializable {
      * Limiting the input Sample stream to the first N samples. N <= 0 for no limit
      * the resulting number of samples may not be exact if stratification is required
      */
+    @NetworkSetting
     public int appLimitSamples = -1;
 
+    /**
+     * Parse the examples file in chunks split at the example boundaries (line ends after a '.'), with the parse trees of the chunks
+     * created in parallel, while the examples are built from them lazily in the original order.
+     * Assumes that there are no multi-line examples with rules ending a line.
+     */
+    public boolean parallelExamplesParsing = false;
+
+    /**
+     * Scan the examples files consisting of ground valued facts only (e.g. "0.5 bond(a,b,c), atom(a,c)." with optional labels)
+     * with a specialized scanner instead of the full grammar parser. Other files fall back to the full parsing.
+     */
+    public boolean fastFactParsing = false;
+
+    /**
+     * Approximate size of the chunks for the parallel examples parsing (in bytes)
+     */
+    public int examplesParsingChunkSize = 1 << 24;
+
     //------------------Grounding
     /**
      * Ground train+test example sets TOGETHER (with the same cache)
      */
     public boolean trainTestJointGrounding; //TODO implement this
 
+    @NetworkSetting
     public GroundingMode groundingMode = GroundingMode.INDEPENDENT;
 
     public enum GroundingMode {
@@ -336,6 +427,7 @@ public class Settings implements Serializable {
     /**
      * Neuron sharing ACROSS the networks
      */
+    @NetworkSetting
     public boolean possibleNeuronSharing = false;
 
     /**
@@ -346,6 +438,7 @@ public class Settings implements Serializable {
     /**
      * Type of grounder
      */
+    @NetworkSetting
     public GroundingAlgo grounding = GroundingAlgo.BUP;
 
     public enum GroundingAlgo {
@@ -355,28 +448,63 @@ public class Settings implements Serializable {
     /**
      * How to aggregate 2 identical facts stated with 2 different truth values (e.g., 0.3 person(petr).; 0.9 person(petr).)
      */
+    @NetworkSetting
     public CombinationFcn factMergeActivation = CombinationFcn.MAX;
 
     /**
      * We commonly squish duplicits rule groundings.
      * But sometimes we might wish duplicit ground bodies to be aggregated (e.g. to get SUM of repeated elements)
      */
+    @NetworkSetting
     public boolean uniqueGroundingsOnly = true;
 
     //-----------------Neural nets creation
     /**
      * Prune out ground rules with no support for a given query EXPLICITLY in advance (even though in a supervised pipeline, only support will be taken recursively)
      */
+    @NetworkSetting
     public boolean explicitSupervisedGroundTemplatePruning = false;
     /**
      * Force full unsupervised network creation, even if query is provided
      */
+    @NetworkSetting
     public boolean forceFullNetworks = false;
+    /**
+     * In GLOBAL (KB) grounding mode, do not neuralize all the queries into one big network upfront, but build the network
+     * of each query only once it is actually pulled downstream (e.g. by evaluation). Neurons created for the previous queries are reused.
+     */
+    public boolean lazyNeuralization = false;
+
+    /**
+     * In INDEPENDENT grounding mode, neuralize the samples concurrently (each thread with its own building context, sharing only the weights)
+     */
+    public boolean parallelNeuralization = false;
+
+    /**
+     * Number of threads evaluating (and backpropagating) each topologically sorted network level by level, i.e. the parallelism
+     * within a single (large) network, such as the one big network of the GLOBAL (KB) grounding mode. 1 = sequential.
+     */
+    public int intraNetworkThreads = 1;
+
+    /**
+     * When evaluating (testing), compute the values of neurons shared across the networks only once and reuse them for all the queries,
+     * until some of the weights they depend on get updated
+     */
+    public boolean sharedNeuronsValueCaching = false;
+
+    /**
+     * Binary file with the finalized neural networks (samples) to be reused across training runs on an unchanged dataset.
+     * If the file exists and was built from the same input files and (grounding and neuralization) settings, the networks are
+     * memory-mapped from it instead of grounding and neuralizing the examples again, otherwise they are (re)written into it once built.
+     * The networks are stored as self-contained (no neuron sharing).
+     */
+    public String binaryNetworksFile = null;
 
     /**
      * Default value for output of fact neurons (= values of ValuedFacts) if not specified by user
      */
 //    public Value defaultFactValue = new ScalarValue(1);
+    @NetworkSetting
     public double defaultFactValue = 1.0;
 
     /**
@@ -384,86 +512,106 @@ public class Settings implements Serializable {
      * Naturally this only applies if the offset is not specified by the user in the template explicitly.
      * This offset setting has higher priority (comes first) than setting defaultRuleNeuronOffset (applied later)
      */
+    @NetworkSetting
     public boolean ruleAdaptiveOffset = false;  //todo next test this
 
     /**
      * Setup this default offset value if not explicitly specified in the template
      * 0.0 = keep no offset if not learnable, or initialize randomly if defaultRuleOffsetsLearnable
      */
+    @NetworkSetting
     public double defaultRuleNeuronOffset = 0.0;
     /**
      * Setup this default offset value if not explicitly specified in the template
      * 0.0 = keep no offset if not learnable, or initialize randomly if defaultAtomOffsetsLearnable
      */
+    @NetworkSetting
     public double defaultAtomNeuronOffset = 0.0;
     /**
      * Rule offsets, if not explicitly specified in the template, should be fixed or learnable?
      */
+    @NetworkSetting
     public boolean defaultRuleOffsetsLearnable = false;     // todo if they should be learnable, we should infer their dimensions first! (ScalarValues can be broadcasted for inference only, not updates)
     /**
      * Atom offsets, if not explicitly specified in the template, should be fixed or learnable?
      */
+    @NetworkSetting
     public boolean defaultAtomOffsetsLearnable = false;
     /**
      * A whole pipeline of all postprocessing steps
      */
+    @NetworkSetting
     public boolean neuralNetsPostProcessing = true;
     /**
      * Remove everything outside QueryNeuron's support (can appear if network have shared parts)
      */
+    @NetworkSetting
     public boolean neuralNetsSupervisedPruning;
     /**
      * Copy out neurons fully instead of input over-mappings
      */
+    @NetworkSetting
     public boolean copyOutInputOvermapping;
     /**
      * Create maps of neurons to their outputs in each network (individual neurons have only links to inputs)
      */
+    @NetworkSetting
     public boolean calculateOutputLinks;
     /**
      * Remove recurrent edges from the neural networks w.r.t. some strategy
      */
+    @NetworkSetting
     public boolean cycleBreaking;
     /**
      * Remove unnecessary parts from the networks (e.g. linear chains)
      */
+    @NetworkSetting
     public boolean chainPruning = true;
     /**
      * Bottom-up value based sub-graph isomorphism collapsing (merging)
      */
+    @NetworkSetting
     public boolean isoValueCompression = true;
     /**
      * If the isoValueCompression is performed, check whether the merged neurons are structurally (not just functionally) equivalent.
      * This is mostly for theoretical purposes and not typically needed in practice where we don't care about the true equivalence
      */
+    @NetworkSetting
     public boolean structuralIsoCompression = false;
     /**
      * Top-down value (gradient) based sub-graph isomorphism collapsing (merging)
      */
+    @NetworkSetting
     public boolean isoGradientCompression;
     /**
      * Detect identical input neurons and merge them into a single neuron with accumulated weight.
      */
+    @NetworkSetting
     public boolean mergeIdenticalWeightedInputs = false;    //todo next warning this changes gradient/learning progress on diffcheck! test why!
     /**
      * If no weights are associated with the input neurons, i.e. no summing possible, prune out the identities (or keep them)
      */
+    @NetworkSetting
     public boolean removeIdenticalUnweightedInputs = false;
     /**
      * If all neurons of the same class use the same activation, move to a single static reference (optimize memory)
      */
+    @NetworkSetting
     public boolean collapseActivations;
     /**
      * If all the weights in a network are Scalars, move to a more efficient representation (optimize memory and speed)
      */
+    @NetworkSetting
     public boolean collapseWeights;
     /**
      * If there are embedding constructs in the Template, expand them (copy-multiple neurons) after Network creation
      */
+    @NetworkSetting
     public boolean expandEmbeddings;
     /**
      * What particular neural computation state will the neurons have by default?
      */
+    @NetworkSetting
     public NeuralState neuralState = NeuralState.STANDARD;
 
     public enum NeuralState {
@@ -492,19 +640,23 @@ public class Settings implements Serializable {
      * When pruning networks for linear chains, we compress unweighted edges as they do not provide any extra functionality.
      * With this on, we delete also weighted edges - more aggressive pruning, but may reduce network capability to learn!
      */
+    @NetworkSetting
     public boolean pruneEvenWeightedNeurons = false;
     /**
      * When pruning, prune linear chains only for neurons with identity activations (and Aggregation neurons)
      * i.e. do not change the network function at all
      */
+    @NetworkSetting
     public boolean pruneOnlyIdentities = false;
     /**
      * Number of iterations for iso-value compression
      */
+    @NetworkSetting
     public int isoValueInits = 1;
     /**
      * Number of decimal digits to check to consider two neurons to have the same output value
      */
+    @NetworkSetting
     public int isoDecimals = 12;
 
     //-----------------Evaluation & Training
@@ -516,6 +668,7 @@ public class Settings implements Serializable {
     /**
      * The training task type - this flag influences, e.g., neural sample postprocessing
      */
+    @NetworkSetting
     public ResultsType trainOnlineResultsType = ResultsType.CLASSIFICATION;
     public ResultsType trainRecalculationResultsType = ResultsType.DETAILEDCLASSIFICATION;
     public ResultsType validationResultsType = ResultsType.DETAILEDCLASSIFICATION;
@@ -532,6 +685,12 @@ public class Settings implements Serializable {
      * Alternative calculation from Wilcoxon
      */
     public boolean alternativeAUC = false;
+
+    /**
+     * Calculate the AUC and best threshold of the online training results (with DETAILEDCLASSIFICATION) approximately from a
+     * histogram of the outputs with this many bins over their observed range, instead of sorting them (0 = exact)
+     */
+    public int onlineMetricsSketchBins = 0;
     /**
      * Recalculate true and validation results after every N epochae
      */
@@ -570,6 +729,29 @@ public class Settings implements Serializable {
      */
     public boolean parallelTraining;
 
+    /**
+     * Choose the minibatch size and the number of its threads automatically, by measuring the throughput (samples per second)
+     * and the gradient noise over the first {@link #minibatchTuningEpochae} epochae, within the bounds below. The chosen configuration is logged.
+     */
+    public boolean adaptiveMinibatch = false;
+
+    /**
+     * Bounds of the minibatch size with the {@link #adaptiveMinibatch}. Note that the adaptive minibatch forces the {@link #parallelTraining},
+     * which then allocates {@link #maxMinibatchSize()} (i.e. at least the minibatchSizeMax, 64 by default) neuron states for each neuron.
+     */
+    public int minibatchSizeMin = 1;
+    public int minibatchSizeMax = 64;
+
+    /**
+     * Maximal number of threads processing a minibatch with the {@link #adaptiveMinibatch}
+     */
+    public int minibatchThreadsMax = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Number of the (first) epochae over which the minibatch configurations are measured with the {@link #adaptiveMinibatch}
+     */
+    public int minibatchTuningEpochae = 2;
+
     /**
      * A single-pass weight training via streaming. This can save memory, but cannot re-iterate the data (i.e. learn in epochs)
      */
@@ -580,6 +762,31 @@ public class Settings implements Serializable {
      */
     public int restartCount = 5;
 
+    /**
+     * Run the restarts concurrently, each with its own copy of the weights and the networks (which costs the memory for
+     * the networks times restartCount), and select the best model at the end. The maxCumEpochCount is shared by all of them.
+     * Each restart draws from its own random generator and starts its epochae, learning rate and order of the samples anew, so the results
+     * do not depend on the scheduling of the restarts, but differ from the sequential restarts (which continue with all of these).
+     */
+    public boolean concurrentRestarts = false;
+
+    /**
+     * Recalculate the true training/validation results in a background thread on a snapshot of the weights (and a copy of the networks),
+     * while the training continues. The results (progress, early stopping, best model) are then taken into account as they complete.
+     */
+    public boolean asyncResultsRecalculation = false;
+
+    /**
+     * Maximal number of asynchronous recalculations in flight, the training waits for the oldest one beyond that
+     */
+    public int maxPendingRecalculations = 2;
+
+    /**
+     * Keep the best model as a copy-on-write snapshot of the current weights instead of cloning all of them at each improvement,
+     * i.e. only the weights changed after the improvement are copied (with sparse updates of large models, e.g. embeddings).
+     */
+    public boolean copyOnWriteBestModel = false;
+
     /**
      * Applies a DynamicRestartingStrategy with adaptive early stopping, or simple fixed maxCumEpochCount if off
      */
@@ -590,6 +797,22 @@ public class Settings implements Serializable {
      */
     public int maxCumEpochCount = 3000;
 
+    /**
+     * Save the training state (weights, optimizer state, random generator, counters and the best model) into the {@link #checkpointDir}
+     * every {INT} epochae, in the background, -1 for no checkpoints
+     */
+    public int checkpointEpochae = -1;
+
+    /**
+     * Continue the training from the last checkpoint in the {@link #checkpointDir} (if any), instead of starting from scratch
+     */
+    public boolean resumeTraining = false;
+
+    /**
+     * Where the training checkpoints are stored (derived from the {@link #outDir})
+     */
+    public String checkpointDir;
+
     /**
      * Number of epochae to take into account when calculating moving averages for loss decay detection
      */
@@ -606,6 +829,49 @@ public class Settings implements Serializable {
      */
     public boolean shuffleEachEpoch = true;
 
+    /**
+     * How to choose the samples (and their order) for each training epoch, based on their losses in the previous epochae
+     */
+    public SampleScheduling sampleScheduling = SampleScheduling.FULL;
+
+    public enum SampleScheduling {
+        /**
+         * All the training samples in each epoch
+         */
+        FULL,
+        /**
+         * Draw the samples with probabilities proportional to their recent loss (times their importance), with the gradients
+         * scaled back by the inverse of the probabilities, so that their expectation stays the same as with the FULL epochae
+         */
+        LOSS_PROPORTIONAL,
+        /**
+         * Train on the samples with the highest recent loss (times importance) only, without any correction of the gradients
+         */
+        HARD_EXAMPLES
+    }
+
+    /**
+     * Number of samples per epoch with the sampleScheduling, as a fraction of the training set
+     */
+    public double scheduledEpochFraction = 0.5;
+
+    /**
+     * Portion of the uniform distribution mixed into the LOSS_PROPORTIONAL sampling, which also bounds the gradient scaling (by 1/portion)
+     */
+    public double uniformSamplingPortion = 0.2;
+
+    /**
+     * Skip the samples with a loss below this value for convergedSamplePatience consecutive epochae (with sampleScheduling), 0 = off
+     */
+    public double convergedSampleLoss = 0;
+
+    public int convergedSamplePatience = 3;
+
+    /**
+     * Train on all the (including the skipped converged) samples every N epochae with sampleScheduling, to refresh their losses
+     */
+    public int scheduledRefreshEpochae = 10;
+
     /**
      * Learning rate decay on/off
      */
@@ -633,6 +899,7 @@ public class Settings implements Serializable {
     /**
      * How to initialize random weight values
      */
+    @NetworkSetting
     public InitSet initializer = InitSet.SIMPLE;
 
     public enum InitSet {
@@ -642,6 +909,7 @@ public class Settings implements Serializable {
     /**
      * Distribution to be drawn from
      */
+    @NetworkSetting
     public InitDistribution initDistribution = InitDistribution.UNIFORM;
 
     public enum InitDistribution {
@@ -651,6 +919,7 @@ public class Settings implements Serializable {
     /**
      * Range of uniformly distributed numbers for weights initialization (2 = [-1,1])
      */
+    @NetworkSetting
     public double randomInitScale = 2;
 
     /**
@@ -680,9 +949,25 @@ public class Settings implements Serializable {
     private OptimizerSet optimizer = OptimizerSet.ADAM;
 
     public enum OptimizerSet {
-        SGD, ADAM
+        SGD, ADAM, ADAMW,
+        /**
+         * Sparse Adam with the moments allocated and decayed lazily, for steps touching only a few weights (e.g. embeddings)
+         */
+        LAZY_ADAM
     }
 
+    /**
+     * Decoupled weight decay of the ADAMW optimizer
+     */
+    public double weightDecay = 0.01;
+
+    /**
+     * Keep the optimizer state (e.g. Adam moments) in a flat parameter arena of the model instead of per-weight Values,
+     * and update the weights with fused in-place kernels (split across threads for large models).
+     * Only for the scalar, vector and matrix weights, and not with the asyncParallelTraining.
+     */
+    public boolean flatParameterArena = false;
+
     public OptimizerSet getOptimizer() {
         return optimizer;
     }
@@ -698,6 +983,8 @@ public class Settings implements Serializable {
                 initLearningRate = 0.1;
                 break;
             case ADAM:
+            case ADAMW:
+            case LAZY_ADAM:
                 initLearningRate = 0.0001;
                 break;
         }
@@ -718,6 +1005,7 @@ public class Settings implements Serializable {
      */
     public boolean calculateBestThreshold = true;
 
+    @NetworkSetting
     public ErrorFcn errorFunction = ErrorFcn.SQUARED_DIFF;
 
     /**
@@ -725,6 +1013,7 @@ public class Settings implements Serializable {
      * - i.e. evaluationMode (classification/regression/KBC)
      * - e.g. it will set softmax+crossentropy if multinomial classification is detected (and sigmoid for binary)
      */
+    @NetworkSetting
     public boolean inferOutputFcns = true;
 
     /**
@@ -755,6 +1044,12 @@ public class Settings implements Serializable {
      */
     public boolean storeHitsCorruptions = true;
 
+    /**
+     * Rank the queries in parallel against an int-encoded index of the corruption sets, instead of building the corruption
+     * lists of the samples for each query - the resulting stats are the same (only for scalar outputs, falls back otherwise)
+     */
+    public boolean indexedHitsRanking = true;
+
     /**
      * Whether to keep some term/predicate should be preserved w.r.t. corruptions
      */
@@ -784,11 +1079,17 @@ public class Settings implements Serializable {
 
     public CombinationFcn errorAggregationFcn = CombinationFcn.AVG;
 
+    @NetworkSetting
     public CombinationFcn ruleNeuronCombination = CombinationFcn.SUM;
+    @NetworkSetting
     public TransformationFcn ruleNeuronTransformation = TransformationFcn.TANH;
+    @NetworkSetting
     public CombinationFcn atomNeuronCombination = CombinationFcn.SUM;
+    @NetworkSetting
     public TransformationFcn atomNeuronTransformation = TransformationFcn.TANH;
+    @NetworkSetting
     public CombinationFcn aggNeuronAggregation = CombinationFcn.AVG;    // this should only be from the Aggregation subset!
+    @NetworkSetting
     public TransformationFcn softNegation = TransformationFcn.REVERSE;
 
     public enum CombinationFcn {
@@ -1018,18 +1319,22 @@ public class Settings implements Serializable {
     /**
      * Build template graph structure
      */
+    @NetworkSetting
     public boolean graphTemplate = true;
     /**
      * Reduce template graph size (e.g. linear chains)
      */
+    @NetworkSetting
     public boolean reduceTemplate = false;
     /**
      * If the template contains facts, infer all other possible true facts as a preprocessing step (to save some time inferring the same things over and over later)
      */
+    @NetworkSetting
     public boolean inferTemplateFacts = true;
     /**
      * In advance of grounding (theorem proving), remove rules that are irrelevant to the given query (with no chance to be in support)
      */
+    @NetworkSetting
     public boolean supervisedTemplateGraphPruning = false;   //todo measure if this actually helps
 
     //----------------Learning Samples
@@ -1037,13 +1342,17 @@ public class Settings implements Serializable {
     /**
      * There is exactly 1 query per each example (allows for some speedup in merging)
      */
+    @NetworkSetting
     public boolean oneQueryPerExample = true;
     /**
      * Queries and Examples are 1-1 and also ordered correspondingly (allows to just merge the 2 streams without terminating them)
      */
+    @NetworkSetting
     public boolean queriesAlignedWithExamples;
 
+    @NetworkSetting
     public double defaultSampleImportance = 1.0;
+    @NetworkSetting
     public String sampleIdPrefix = "s_";
     public String queriesBatchPrefix = "b_";
 
@@ -1074,6 +1383,32 @@ public class Settings implements Serializable {
     public Settings() {
     }
 
+    /**
+     * A shallow copy of these settings with a separate random generator, for a part of the computation running concurrently
+     * with others (e.g. a training restart), so that its draws do not depend on the scheduling of the threads
+     *
+     * @param random
+     * @return
+     */
+    public Settings withRandom(Random random) {
+        Settings copy = copy();
+        copy.random = random;
+        return copy;
+    }
+
+    /**
+     * A shallow copy of these settings, to be changed independently of them (e.g. set to a different grounding mode)
+     *
+     * @return
+     */
+    public Settings copy() {
+        try {
+            return (Settings) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     /**
      * This will possibly overwrite all the previously setup fields!
      * I.e. commandline options have higher priority!
@@ -1089,6 +1424,10 @@ public class Settings implements Serializable {
             Settings.customLogColors = Integer.parseInt(logColors) > 0;
         }
 
+        if (cmd.hasOption("asyncLogging")) {
+            Settings.asyncLogging = true;
+        }
+
         if (cmd.hasOption("settingsFile")) {
             String _settingsPath = cmd.getOptionValue("settings");
             settings = updateFromJson(Paths.get(_settingsPath));
@@ -1184,6 +1523,12 @@ public class Settings implements Serializable {
                 case "adam":
                     settings.setOptimizer(OptimizerSet.ADAM);
                     break;
+                case "adamw":
+                    settings.setOptimizer(OptimizerSet.ADAMW);
+                    break;
+                case "lazyadam":
+                    settings.setOptimizer(OptimizerSet.LAZY_ADAM);
+                    break;
                 default:
                     LOG.severe("unrecognized optimizer: " + _optimizer);
             }
@@ -1214,6 +1559,14 @@ public class Settings implements Serializable {
             settings.maxCumEpochCount = Integer.parseInt(_trainingSteps);
         }
 
+        if (cmd.hasOption("checkpointEpocha")) {
+            settings.checkpointEpochae = Integer.parseInt(cmd.getOptionValue("checkpointEpocha"));
+        }
+
+        if (cmd.hasOption("resume")) {
+            settings.resumeTraining = true;
+        }
+
         if (cmd.hasOption("recalculationEpocha")) {
             String _limit = cmd.getOptionValue("recalculationEpocha");
             settings.resultsRecalculationEpochae = Integer.parseInt(_limit);
@@ -1294,9 +1647,16 @@ public class Settings implements Serializable {
                 case "debug":
                     settings.mainMode = MainMode.DEBUGGING;
                     break;
+                case "serve":
+                    settings.mainMode = MainMode.SERVING;
+                    break;
             }
         }
 
+        if (cmd.hasOption("servingPort")) {
+            settings.servingPort = Integer.parseInt(cmd.getOptionValue("servingPort"));
+        }
+
         if (cmd.hasOption("debug") || settings.debugAll) {
             String _debug = cmd.getOptionValue("debug", "all");
             settings.drawing = true;
@@ -1386,6 +1746,14 @@ public class Settings implements Serializable {
                 valid = false;
             message.append("Not possible");
         }
+        if (groundingMode != GroundingMode.INDEPENDENT && parallelNeuralization) {
+            valid = false;
+            message.append("parallel neuralization only possible with independent grounding");
+        }
+        if (binaryNetworksFile != null && iterationMode != IterationMode.TOPOLOGIC) {
+            valid = false;
+            message.append("binary networks file only possible with the topologic iteration mode");
+        }
         if (!oneQueryPerExample) {
             if (explicitSupervisedGroundTemplatePruning)
                 valid = false;
@@ -1443,12 +1811,26 @@ public class Settings implements Serializable {
         sourcesExportFile = outDir + "/sources";
         console = outDir + "/consoleOutput";
         exportDir = outDir + "/export";
+        checkpointDir = outDir + "/checkpoint";
 
         if (chainPruning || isoValueCompression || neuralNetsSupervisedPruning || copyOutInputOvermapping || isoGradientCompression || mergeIdenticalWeightedInputs || removeIdenticalUnweightedInputs || cycleBreaking || collapseWeights || expandEmbeddings)
             neuralNetsPostProcessing = true;
         else
             neuralNetsPostProcessing = false;
 
+        if (adaptiveMinibatch) {
+            parallelTraining = true;    // each sample of a minibatch needs its own neuron states
+        }
+
+        if (asyncParallelTraining && flatParameterArena) {
+            LOG.warning("The flat parameter arena is not supported with the asynchronous parallel training (the updates would race on its moments), turning it off.");
+            flatParameterArena = false;
+        }
+
+        if (lazyNeuralization && groundingMode == GroundingMode.GLOBAL) {
+            neuralNetsPostProcessing = false;   // the lazily built networks share neurons, pruning/compressing one of them would break the others
+        }
+
 //
 //        if (getOptimizer() == OptimizerSet.ADAM) {
 //            initLearningRate = 0.01;
@@ -1485,6 +1867,13 @@ public class Settings implements Serializable {
         finish();
     }
 
+    /**
+     * @return the largest minibatch that may be trained, i.e. the number of the parallel neuron states needed
+     */
+    public int maxMinibatchSize() {
+        return adaptiveMinibatch ? Math.max(minibatchSizeMax, minibatchSize) : minibatchSize;
+    }
+
     /**
      * Steps to be performed once the settings are totally complete, i.e. after all the inference and validation
      */
@@ -1,5 +1,6 @@
 package cz.cvut.fel.ida.setup;
 
+import java.io.File;
 import java.io.Reader;
 import java.util.logging.Logger;
 
@@ -9,6 +10,11 @@ public class Source {
     public transient Reader ExamplesReader;
     public transient Reader QueriesReader;  // the queries should always be present for learning
 
+    /**
+     * The file behind the ExamplesReader, if any (e.g. for the parallel parsing of large files)
+     */
+    public transient File ExamplesFile;
+
     public boolean ExamplesSeparate;
     public boolean QueriesSeparate;
 
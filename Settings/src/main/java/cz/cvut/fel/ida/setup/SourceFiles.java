@@ -138,7 +138,7 @@ public class SourceFiles extends Sources {
             String templatePath = cmd.getOptionValue("template", settings.templateFile);
 
             File template_ = sanitizePath(settings, cmd, foldDir, sanitizeTempl(templatePath));
-            mergedTemplatePath = Paths.get(System.getProperty("user.dir"), settings.outDir, sanitizeTempl(template_ + settings.mergedTemplatesSuffix + this.foldId));
+            mergedTemplatePath = Paths.get(System.getProperty("user.dir")).resolve(settings.outDir).resolve(sanitizeTempl(template_ + settings.mergedTemplatesSuffix + this.foldId));   // the outDir may be absolute
 
             if (templatePath.contains(",")) {
                 LOG.warning("There are multiple templates, will try to merge them first");
@@ -173,6 +173,10 @@ public class SourceFiles extends Sources {
 
         this.test.ExamplesReader = loadFile("testExamples", settings, cmd, foldDir);
 
+        this.train.ExamplesFile = this.train.ExamplesReader != null ? trainExamples : null;
+        this.val.ExamplesFile = this.val.ExamplesReader != null ? valExamples : null;
+        this.test.ExamplesFile = this.test.ExamplesReader != null ? testExamples : null;
+
         this.train.QueriesReader = loadFile("trainQueries", settings, cmd, foldDir);
 
         this.val.QueriesReader = loadFile("valQueries", settings, cmd, foldDir);
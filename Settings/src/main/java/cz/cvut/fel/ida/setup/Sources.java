@@ -176,7 +176,7 @@ public class Sources {
             valid = false;
         }
 
-        if (!train.QueriesProvided && !test.QueriesProvided && (folds == null || folds.isEmpty())) {
+        if (!train.QueriesProvided && !test.QueriesProvided && (folds == null || folds.isEmpty()) && settings.mainMode != Settings.MainMode.SERVING) {  // the served queries come only later
             if (settings.drawing) {// missing queries -> might still be useful for drawing/debugging
                 drawing = true;
                 settings.mainMode = Settings.MainMode.DEBUGGING;
@@ -0,0 +1,13 @@
+package cz.cvut.fel.ida.utils.exporting;
+
+import java.util.List;
+
+/**
+ * An {@link Exportable} that can be written as rows of a table, e.g. by the {@link CsvExporter}
+ */
+public interface CsvExportable<I> extends Exportable<I> {
+
+    String[] csvHeader();
+
+    List<Object[]> csvRows();
+}
@@ -0,0 +1,159 @@
+package cz.cvut.fel.ida.utils.exporting;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Exports the rows of {@link CsvExportable}s into a single table, with the header written once at the start of the file.
+ * The rows can be imported back into objects with the fields named as the columns.
+ */
+public class CsvExporter extends TextExporter {
+    private static final Logger LOG = Logger.getLogger(CsvExporter.class.getName());
+
+    private boolean headerWritten;
+
+    public CsvExporter(String exportDir, String id) {
+        super(exportDir, id, "CSV");
+        headerWritten = repeatedExportAppend;
+    }
+
+    @Override
+    public void export(Exportable exportable) {
+        if (!(exportable instanceof CsvExportable)) {
+            LOG.warning("Cannot export " + exportable.getClass().getSimpleName() + " into CSV.");
+            return;
+        }
+        CsvExportable csvExportable = (CsvExportable) exportable;
+        if (!headerWritten) {
+            exportWriter.println(String.join(",", csvExportable.csvHeader()));
+            headerWritten = true;
+        }
+        for (Object[] row : (List<Object[]>) csvExportable.csvRows()) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) {
+                    sb.append(",");
+                }
+                sb.append(escape(row[i]));
+            }
+            exportWriter.println(sb);
+        }
+        exportWriter.flush();
+    }
+
+    private static String escape(Object cell) {
+        if (cell == null) {
+            return "";
+        }
+        String string = cell.toString();
+        if (string.contains(",") || string.contains("\"") || string.contains("\n")) {
+            return "\"" + string.replace("\"", "\"\"") + "\"";
+        }
+        return string;
+    }
+
+    /**
+     * Reads the rows (below the header) back into objects of the given class, with the columns matched to its fields by name
+     * (the empty cells are skipped)
+     */
+    @Override
+    public <I> List<I> importListFrom(Path path, Class<I> cls) {
+        List<List<String>> table;
+        try {
+            table = parse(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        List<I> objects = new ArrayList<>();
+        if (table.isEmpty()) {
+            return objects;
+        }
+        List<String> header = table.get(0);
+        Gson gson = new Gson();
+        for (List<String> row : table.subList(1, table.size())) {
+            JsonObject object = new JsonObject();
+            for (int i = 0; i < Math.min(header.size(), row.size()); i++) {
+                if (!row.get(i).isEmpty()) {
+                    object.addProperty(header.get(i), row.get(i));
+                }
+            }
+            objects.add(gson.fromJson(object, cls));
+        }
+        return objects;
+    }
+
+    /**
+     * @return the object of the first row, or null if there is none
+     */
+    @Override
+    public <I> I importObjectFrom(Path path, Class<I> cls) {
+        List<I> objects = importListFrom(path, cls);
+        return objects == null || objects.isEmpty() ? null : objects.get(0);
+    }
+
+    /**
+     * The cells of the rows, with the quoted cells (possibly with commas, doubled quotes and line breaks) unescaped
+     */
+    static List<List<String>> parse(String csv) {
+        List<List<String>> rows = new ArrayList<>();
+        List<String> row = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < csv.length(); i++) {
+            char c = csv.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    cell.append(c);
+                } else if (i + 1 < csv.length() && csv.charAt(i + 1) == '"') {
+                    cell.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                row.add(cell.toString());
+                cell.setLength(0);
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r' && i + 1 < csv.length() && csv.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                row.add(cell.toString());
+                cell.setLength(0);
+                if (row.size() > 1 || !row.get(0).isEmpty()) {     // skipping the empty lines
+                    rows.add(row);
+                }
+                row = new ArrayList<>();
+            } else {
+                cell.append(c);
+            }
+        }
+        if (cell.length() > 0 || !row.isEmpty()) {
+            row.add(cell.toString());
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Override
+    public void delimitNext() {
+    }
+
+    @Override
+    public void delimitStart() {
+    }
+
+    @Override
+    public void delimitEnd() {
+    }
+}
@@ -4,17 +4,19 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSerializer;
+import com.google.gson.stream.JsonWriter;
 
 import java.io.Serializable;
 import java.time.Duration;
 
 public interface Exportable<I> extends Serializable {
 
-    default void export(Exporter exporter) {
-        exporter.export(this);
-    }
+    /**
+     * Shared (thread-safe) for the streaming export, which does not need the pretty printing configured in the Gson
+     */
+    Gson STREAMING_GSON = gsonBuilder().create();
 
-    default String exportToJson() {
+    static GsonBuilder gsonBuilder() {
         JsonSerializer<Duration> durationJsonSerializer = (duration, type, jsonSerializationContext) -> {
             JsonObject jsonDuration = new JsonObject();
             jsonDuration.addProperty("seconds", duration.getSeconds());
@@ -22,12 +24,27 @@ public interface Exportable<I> extends Serializable {
             return jsonDuration;
         };
 
-        Gson gson = new GsonBuilder()
-                .setPrettyPrinting()
+        return new GsonBuilder()
                 .registerTypeAdapter(Duration.class, durationJsonSerializer)
-                .serializeSpecialFloatingPointValues()
+                .serializeSpecialFloatingPointValues();
+    }
+
+    default void export(Exporter exporter) {
+        exporter.export(this);
+    }
+
+    default String exportToJson() {
+        Gson gson = gsonBuilder()
+                .setPrettyPrinting()
                 .create();
         String json = gson.toJson(this);
         return json;
     }
-}
\ No newline at end of file
+
+    /**
+     * Write the JSON of this object directly into the writer (formatted as the writer is set up), without building it as a String first
+     */
+    default void exportToJson(JsonWriter writer) {
+        STREAMING_GSON.toJson(this, getClass(), writer);
+    }
+}
@@ -74,6 +74,12 @@ public abstract class Exporter {
             return new JsonExporter(exportDir, id);
         else if (type == "JAVA")
             return new JavaExporter(exportDir, id);
+        else if (type == "CSV")
+            return new CsvExporter(exportDir, id);
+        else if (type == "NDJSON")
+            return new NdjsonExporter(exportDir, id, false);
+        else if (type == "NDJSON_GZIP")
+            return new NdjsonExporter(exportDir, id, true);
         else
             return new JsonExporter(exportDir, id);
     }
@@ -3,15 +3,18 @@ package cz.cvut.fel.ida.utils.exporting;
 //import cz.cvut.fel.ida.settings.Settings;
 
 import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.lang.reflect.Array;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -30,36 +33,80 @@ public class JsonExporter extends TextExporter {
         if (repeatedExportAppend) {
             repairJsonCrossvalStart(exportFile);
         }
-        exportLine(t.exportToJson());
+        exportStreamed(t);
         if (repeatedExportAppend) {
             repairJsonCrossvalEnd(exportFile);
         }
     }
 
+    /**
+     * Write the (pretty printed) JSON directly into the file, without building the whole String first
+     */
+    private void exportStreamed(Exportable t) {
+        JsonWriter jsonWriter = new JsonWriter(exportWriter);
+        jsonWriter.setIndent("  ");
+        t.exportToJson(jsonWriter);
+        exportWriter.println();
+        exportWriter.println();
+        exportWriter.flush();
+    }
+
+    /**
+     * Turn the closing bracket of the array of the previous exports into a delimiter - by truncating the end of the file only,
+     * so that the repeated exports do not rewrite the whole (growing) file each time
+     */
     protected void repairJsonCrossvalStart(File file) {
-        try {
-            List<String> strings = Files.readAllLines(file.toPath());
-            if (strings.isEmpty()) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            if (size == 0) {
                 return;
             }
-            if (strings.get(0).contains("[")) {
-                strings.set(strings.size() - 2, ",\n");
-            } else {
-                strings.add(0, "[\n");
-                strings.add(",\n");
+            ByteBuffer first = ByteBuffer.allocate(1);
+            long start = 0;
+            while (start < size) {
+                first.clear();
+                channel.read(first, start);
+                if (!Character.isWhitespace(first.get(0))) {
+                    break;
+                }
+                start++;
             }
-            FileWriter fileWriter = new FileWriter(file, false);
-            PrintWriter out = new PrintWriter(fileWriter);
-            for (String string : strings) {
-                out.println(string);
+            if (start < size && first.get(0) == '[') {
+                long end = lastIndexOf(channel, (byte) ']');
+                if (end >= 0) {
+                    channel.truncate(end);
+                }
+                exportWriter.println(",");
+            } else {    // a single previous export, to be wrapped into an array (just once)
+                byte[] previous = Files.readAllBytes(file.toPath());
+                channel.truncate(0);
+                channel.write(ByteBuffer.wrap("[\n".getBytes(StandardCharsets.UTF_8)), 0);
+                channel.write(ByteBuffer.wrap(previous), channel.size());
+                exportWriter.println(",");
             }
-            out.flush();
-            out.close();
+            exportWriter.flush();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    private static long lastIndexOf(FileChannel channel, byte b) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long end = channel.size();
+        while (end > 0) {
+            long start = Math.max(0, end - buffer.capacity());
+            buffer.clear().limit((int) (end - start));
+            channel.read(buffer, start);
+            for (int i = buffer.position() - 1; i >= 0; i--) {
+                if (buffer.get(i) == b) {
+                    return start + i;
+                }
+            }
+            end = start;
+        }
+        return -1;
+    }
+
     protected void repairJsonCrossvalEnd(File file) {
         exportWriter.println("]\n");
         exportWriter.flush();
@@ -67,11 +114,10 @@ public class JsonExporter extends TextExporter {
 
     @Override
     public <I> List<I> importListFrom(Path path, Class<I> cls) {
-        //        Type listType = new TypeToken<ArrayList<S>>(){}.getType();
-        Class<?> aClass = Array.newInstance(cls, 1).getClass();
+        Type listType = TypeToken.getParameterized(List.class, cls).getType();
         try {
             String jsonArray = new String(Files.readAllBytes(path));
-            List<I> yourClassList = new Gson().fromJson(jsonArray, (Type) aClass);
+            List<I> yourClassList = new Gson().fromJson(jsonArray, listType);
             return yourClassList;
         } catch (IOException e) {
             e.printStackTrace();
@@ -0,0 +1,163 @@
+package cz.cvut.fel.ida.utils.exporting;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports each {@link Exportable} as a single line of JSON (newline-delimited JSON), streamed through a bounded buffer
+ * into the file channel (optionally gzipped on the fly), so that no whole document is ever built in memory.
+ * <p>
+ * As opposed to the {@link JsonExporter}, the repeated exports (e.g. of the crossvalidation folds) are simply appended,
+ * and the delimiters are not needed. Each line is flushed once exported, the gzipped files are completed at {@link #finish()},
+ * or at the exit for the exporters never finished (e.g. those of the pipeline blocks).
+ */
+public class NdjsonExporter extends Exporter {
+    private static final Logger LOG = Logger.getLogger(NdjsonExporter.class.getName());
+
+    /**
+     * Size of the write buffer, i.e. the most that is held in memory before being written out
+     */
+    public static final int BUFFER_BYTES = 1 << 16;
+
+    private final boolean gzip;
+
+    private Writer writer;
+
+    private static final Set<NdjsonExporter> unfinished = Collections.synchronizedSet(new HashSet<>());
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (NdjsonExporter exporter : new ArrayList<>(unfinished)) {
+                exporter.finish();
+            }
+        }, "ndjson-export-finish"));
+    }
+
+    public NdjsonExporter(String exportDir, String id, boolean gzip) {
+        super(exportDir, id, gzip ? "NDJSON.GZ" : "NDJSON");
+        this.gzip = gzip;
+        if (!id.equals("")) {
+            TextExporter.createFile(exportFile);
+            try {
+                FileChannel channel = FileChannel.open(exportFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                OutputStream out = Channels.newOutputStream(channel);
+                if (gzip) {
+                    out = new GZIPOutputStream(out, BUFFER_BYTES, true);     // a new gzip member per run, which the readers concatenate
+                    unfinished.add(this);
+                }
+                writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_BYTES);
+            } catch (IOException e) {
+                LOG.severe("Cannot open the export file " + exportFile + ": " + e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void export(Exportable exportable) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            JsonWriter jsonWriter = new JsonWriter(writer);     // compact, i.e. a single line
+            exportable.exportToJson(jsonWriter);
+            writer.write('\n');
+            writer.flush();
+        } catch (IOException | JsonIOException e) {
+            LOG.warning("Failed to export " + exportable.getClass().getSimpleName() + ": " + e);
+        }
+    }
+
+    @Override
+    public <I> List<I> importListFrom(Path path, Class<I> cls) {
+        List<I> list = new ArrayList<>();
+        Gson gson = new Gson();
+        try (BufferedReader reader = reader(path)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    list.add(gson.fromJson(line, cls));
+                }
+            }
+        } catch (EOFException e) {
+            LOG.warning("The export " + path + " has not been finished, importing the complete lines only.");
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return list;
+    }
+
+    @Override
+    public <I> I importObjectFrom(Path path, Class<I> cls) {
+        try (BufferedReader reader = reader(path)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    return new Gson().fromJson(line, cls);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    private BufferedReader reader(Path path) throws IOException {
+        InputStream in = Files.newInputStream(path);
+        if (gzip || path.toString().endsWith(".gz")) {
+            in = new GZIPInputStream(in, BUFFER_BYTES);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_BYTES);
+    }
+
+    @Override
+    public void delimitNext() {
+    }
+
+    @Override
+    public void delimitStart() {
+    }
+
+    @Override
+    public void delimitEnd() {
+    }
+
+    @Override
+    public synchronized void finish() {
+        unfinished.remove(this);
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            LOG.warning("Failed to close the export file " + exportFile + ": " + e);
+        }
+        writer = null;
+    }
+}
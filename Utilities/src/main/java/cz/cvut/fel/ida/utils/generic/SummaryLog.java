@@ -0,0 +1,83 @@
+package cz.cvut.fel.ida.utils.generic;
+
+import cz.cvut.fel.ida.setup.Settings;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A running summary of a processing stage applied to each sample (e.g. a network compression), logged as a single line
+ * at most once per {@link Settings#loggingSummaryMillis} instead of a line per sample.
+ * <p>
+ * Each {@link #record(double...)} adds the named quantities of one sample, which are then logged in total and on average, e.g.
+ * "IsoValue neuron compression: 1200 samples, neuronsBefore=84000 (avg 70.0), neuronsAfter=36000 (avg 30.0)".
+ * Nothing is formatted if the level is not logged.
+ */
+public class SummaryLog {
+
+    private final Logger log;
+    private final Level level;
+    private final String stage;
+
+    private final String[] quantities;
+    private final DoubleAdder[] sums;
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * The first summary comes one interval after the start of the stage (i.e. the construction), not with the first sample
+     */
+    private final AtomicLong lastLogged = new AtomicLong(System.currentTimeMillis());
+
+    public SummaryLog(Logger log, Level level, String stage, String... quantities) {
+        this.log = log;
+        this.level = level;
+        this.stage = stage;
+        this.quantities = quantities;
+        this.sums = new DoubleAdder[quantities.length];
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] = new DoubleAdder();
+        }
+    }
+
+    /**
+     * @param values - of the quantities (in the order given at the construction) for one more sample
+     */
+    public void record(double... values) {
+        count.increment();
+        for (int i = 0; i < sums.length && i < values.length; i++) {
+            sums[i].add(values[i]);
+        }
+        if (!log.isLoggable(level)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long last = lastLogged.get();
+        if (now - last >= Settings.loggingSummaryMillis && lastLogged.compareAndSet(last, now)) {
+            log.logp(level, log.getName(), "summary", summary());
+        }
+    }
+
+    /**
+     * Log the summary regardless of the interval, e.g. at the end of the stage
+     */
+    public void finish() {
+        if (count.sum() > 0 && log.isLoggable(level)) {
+            lastLogged.set(System.currentTimeMillis());
+            log.logp(level, log.getName(), "summary", summary());
+        }
+    }
+
+    public String summary() {
+        long samples = count.sum();
+        StringBuilder sb = new StringBuilder(stage).append(": ").append(samples).append(" samples");
+        for (int i = 0; i < quantities.length; i++) {
+            double sum = sums[i].sum();
+            sb.append(", ").append(quantities[i]).append("=").append(Settings.shortNumberFormat.format(sum));
+            sb.append(" (avg ").append(Settings.shortNumberFormat.format(samples == 0 ? 0 : sum / samples)).append(")");
+        }
+        return sb.toString();
+    }
+}
@@ -1,6 +1,8 @@
 package cz.cvut.fel.ida.utils.generic;
 
 import cz.cvut.fel.ida.utils.exporting.Exportable;
+import cz.cvut.fel.ida.utils.metrics.Histogram;
+import cz.cvut.fel.ida.utils.metrics.Metrics;
 
 import java.time.Duration;
 import java.time.Instant;
@@ -18,10 +20,23 @@ public class Timing implements Exportable {
     long allocatedMemory;
     static long maxMemory = 0;
 
+    /**
+     * Each of the tic-toc spans is also recorded into this histogram of the shared {@link Metrics} (if named)
+     */
+    transient Histogram histogram;
+
     public Timing() {
         setTimeTaken(Duration.ofMillis(0));
     }
 
+    /**
+     * @param metric - name of the histogram in the {@link Metrics} registry
+     */
+    public Timing(String metric) {
+        this();
+        histogram = Metrics.histogram(metric);
+    }
+
     public void tic() {
         now = Instant.now();
     }
@@ -29,6 +44,9 @@ public class Timing implements Exportable {
     public void toc() {
         Instant later = Instant.now();
         Duration elapsed = Duration.between(now, later);
+        if (histogram != null) {
+            histogram.record(elapsed.toNanos());
+        }
         setTimeTaken(getTimeTaken().plus(elapsed));
         now = later;
     }
@@ -0,0 +1,37 @@
+package cz.cvut.fel.ida.utils.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonic counter, striped across the updating threads (i.e. without contention on a single field)
+ */
+public final class Counter {
+
+    public final String name;
+
+    private final LongAdder adder = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public void increment() {
+        if (Metrics.enabled) {
+            adder.increment();
+        }
+    }
+
+    public void add(long amount) {
+        if (Metrics.enabled) {
+            adder.add(amount);
+        }
+    }
+
+    public long sum() {
+        return adder.sum();
+    }
+
+    void reset() {
+        adder.reset();
+    }
+}
@@ -0,0 +1,10 @@
+package cz.cvut.fel.ida.utils.metrics;
+
+/**
+ * A value sampled at the time of a snapshot (e.g. the used memory)
+ */
+@FunctionalInterface
+public interface Gauge {
+
+    double value();
+}
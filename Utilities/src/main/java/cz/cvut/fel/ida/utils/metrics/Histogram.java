@@ -0,0 +1,133 @@
+package cz.cvut.fel.ida.utils.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of (non-negative) values, typically latencies in nanoseconds, with log-linear buckets in the style of
+ * HdrHistogram, i.e. with a relative error of the recorded values below 1 / {@link #SUB_BUCKETS} over the whole range of longs.
+ * <p>
+ * Recording is allocation-free and it takes a couple of atomic increments. The buckets are striped by the recording
+ * threads to reduce the contention.
+ */
+public final class Histogram {
+
+    static final int SUB_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BITS;
+    static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private static final int STRIPES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+
+    public final String name;
+
+    private final AtomicLongArray counts = new AtomicLongArray(STRIPES * BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    Histogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Record the time elapsed since the given {@link Metrics#start()}
+     */
+    public void recordSince(long startNanos) {
+        if (startNanos != 0) {
+            record(System.nanoTime() - startNanos);
+        }
+    }
+
+    public void record(long value) {
+        if (!Metrics.enabled) {
+            return;
+        }
+        if (value < 0) {
+            value = 0;
+        }
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        counts.incrementAndGet(stripe * BUCKETS + bucket(value));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int mantissa = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + mantissa;
+    }
+
+    /**
+     * @return the smallest value falling into the bucket
+     */
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        int mantissa = bucket % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + mantissa) << (exponent - SUB_BITS);
+    }
+
+    public Snapshot snapshot() {
+        long[] merged = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            long c = counts.get(i);
+            merged[i % BUCKETS] += c;
+            total += c;
+        }
+        return new Snapshot(name, merged, total, sum.sum(), max.get());
+    }
+
+    void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        sum.reset();
+        max.reset();
+    }
+
+    /**
+     * Summary of the histogram at some point, in milliseconds (assuming the values are in nanoseconds)
+     */
+    public static class Snapshot {
+        public final String name;
+        public final long count;
+        public final double totalMs;
+        public final double meanMs;
+        public final double p50Ms;
+        public final double p90Ms;
+        public final double p99Ms;
+        public final double maxMs;
+
+        Snapshot(String name, long[] buckets, long count, long sum, long max) {
+            this.name = name;
+            this.count = count;
+            this.totalMs = sum / 1e6;
+            this.meanMs = count == 0 ? 0 : totalMs / count;
+            this.p50Ms = Math.min(percentile(buckets, count, 0.5), max) / 1e6;
+            this.p90Ms = Math.min(percentile(buckets, count, 0.9), max) / 1e6;
+            this.p99Ms = Math.min(percentile(buckets, count, 0.99), max) / 1e6;
+            this.maxMs = max / 1e6;
+        }
+
+        private static long percentile(long[] buckets, long count, double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * count);
+            long seen = 0;
+            for (int b = 0; b < buckets.length; b++) {
+                seen += buckets[b];
+                if (seen >= rank) {
+                    return b + 1 < BUCKETS ? (lowerBound(b) + lowerBound(b + 1)) / 2 : lowerBound(b);
+                }
+            }
+            return lowerBound(BUCKETS - 1);
+        }
+    }
+}
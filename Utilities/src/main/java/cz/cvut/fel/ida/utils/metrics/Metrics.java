@@ -0,0 +1,77 @@
+package cz.cvut.fel.ida.utils.metrics;
+
+import cz.cvut.fel.ida.utils.generic.Utilities;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * The shared registry of the runtime metrics (counters, latency histograms and gauges) of the whole process.
+ * <p>
+ * The metrics are meant to be obtained once (e.g. into static fields) and then recorded from the hot paths, which
+ * costs nothing but a check of {@link #enabled} if the metrics are off:
+ * <pre>
+ *     private static final Histogram FORWARD = Metrics.histogram("evaluation.forward");
+ *     ...
+ *     long start = Metrics.start();
+ *     ...
+ *     FORWARD.recordSince(start);
+ * </pre>
+ */
+public class Metrics {
+    private static final Logger LOG = Logger.getLogger(Metrics.class.getName());
+
+    /**
+     * Recording of the metrics is on/off globally
+     */
+    public static volatile boolean enabled = false;
+
+    private static final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private static final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    static {
+        gauge("memory.usedMB", () -> (double) (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) / Utilities.mb);
+        gauge("memory.maxMB", () -> (double) Runtime.getRuntime().maxMemory() / Utilities.mb);
+        gauge("threads.active", Thread::activeCount);
+    }
+
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    public static Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, Histogram::new);
+    }
+
+    public static void gauge(String name, Gauge gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * @return the current time for a later {@link Histogram#recordSince(long)}, or 0 if the metrics are off
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public static MetricsSnapshot snapshot() {
+        Map<String, Long> counterValues = new TreeMap<>();
+        counters.forEach((name, counter) -> counterValues.put(name, counter.sum()));
+        Map<String, Histogram.Snapshot> histogramValues = new TreeMap<>();
+        histograms.forEach((name, histogram) -> histogramValues.put(name, histogram.snapshot()));
+        Map<String, Double> gaugeValues = new TreeMap<>();
+        gauges.forEach((name, gauge) -> gaugeValues.put(name, gauge.value()));
+        return new MetricsSnapshot(System.currentTimeMillis(), counterValues, histogramValues, gaugeValues);
+    }
+
+    /**
+     * Zero all the counters and histograms (e.g. between independent runs within the same process)
+     */
+    public static void reset() {
+        counters.values().forEach(Counter::reset);
+        histograms.values().forEach(Histogram::reset);
+    }
+}
@@ -0,0 +1,67 @@
+package cz.cvut.fel.ida.utils.metrics;
+
+import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.exporting.Exporter;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Periodic export of the {@link Metrics} snapshots (to the "metrics" file of the export directory) during a run, and
+ * a final one with a summary in the log at its end.
+ */
+public class MetricsReporter {
+    private static final Logger LOG = Logger.getLogger(MetricsReporter.class.getName());
+
+    private final Exporter exporter;
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @return the started reporter, or null if the metrics are off
+     */
+    public static MetricsReporter startFrom(Settings settings) {
+        Metrics.enabled = settings.collectMetrics;
+        if (!settings.collectMetrics) {
+            return null;
+        }
+        Metrics.reset();
+        return new MetricsReporter(Exporter.getExporter(settings.exportDir, "metrics", settings.metricsExportType.name()), settings.metricsExportSeconds);
+    }
+
+    public MetricsReporter(Exporter exporter, int periodSeconds) {
+        this.exporter = exporter;
+        exporter.delimitStart();
+        if (periodSeconds > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-reporter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleAtFixedRate(this::export, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    private synchronized MetricsSnapshot export() {
+        MetricsSnapshot snapshot = Metrics.snapshot();
+        exporter.export(snapshot);
+        exporter.delimitNext();
+        return snapshot;
+    }
+
+    public void finish() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        MetricsSnapshot snapshot = export();
+        LOG.info("Metrics of the run:\n" + snapshot);
+        synchronized (this) {
+            exporter.delimitEnd();
+            exporter.finish();
+        }
+    }
+}
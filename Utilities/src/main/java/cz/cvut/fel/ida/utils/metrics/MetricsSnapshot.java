@@ -0,0 +1,55 @@
+package cz.cvut.fel.ida.utils.metrics;
+
+import cz.cvut.fel.ida.utils.exporting.CsvExportable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The values of all the {@link Metrics} at some point in time
+ */
+public class MetricsSnapshot implements CsvExportable {
+
+    /**
+     * Epoch milliseconds
+     */
+    public final long timestamp;
+
+    public final Map<String, Long> counters;
+    public final Map<String, Histogram.Snapshot> histograms;
+    public final Map<String, Double> gauges;
+
+    public MetricsSnapshot(long timestamp, Map<String, Long> counters, Map<String, Histogram.Snapshot> histograms, Map<String, Double> gauges) {
+        this.timestamp = timestamp;
+        this.counters = counters;
+        this.histograms = histograms;
+        this.gauges = gauges;
+    }
+
+    @Override
+    public String[] csvHeader() {
+        return new String[]{"timestamp", "type", "name", "value", "count", "totalMs", "meanMs", "p50Ms", "p90Ms", "p99Ms", "maxMs"};
+    }
+
+    @Override
+    public List<Object[]> csvRows() {
+        List<Object[]> rows = new ArrayList<>(counters.size() + histograms.size() + gauges.size());
+        counters.forEach((name, value) -> rows.add(new Object[]{timestamp, "counter", name, value}));
+        gauges.forEach((name, value) -> rows.add(new Object[]{timestamp, "gauge", name, value}));
+        histograms.forEach((name, h) -> rows.add(new Object[]{timestamp, "histogram", name, null, h.count, h.totalMs, h.meanMs, h.p50Ms, h.p90Ms, h.p99Ms, h.maxMs}));
+        return rows;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        histograms.values().stream()
+                .filter(h -> h.count > 0)
+                .sorted((a, b) -> Double.compare(b.totalMs, a.totalMs))
+                .forEach(h -> sb.append(String.format("%s: %d x, total %.1f ms, mean %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms\n", h.name, h.count, h.totalMs, h.meanMs, h.p50Ms, h.p99Ms, h.maxMs)));
+        counters.forEach((name, value) -> sb.append(name).append(": ").append(value).append("\n"));
+        gauges.forEach((name, value) -> sb.append(name).append(": ").append(String.format("%.1f", value)).append("\n"));
+        return sb.toString();
+    }
+}
@@ -168,4 +168,11 @@ public class PythonBuilder {
     ) {
         return this.neuralizationPipeline.buildPipeline(groundings, progressCallback);
     }
+
+    /**
+     * A neuralization pipeline to be executed repeatedly, with the groundings as its input
+     */
+    public Pipeline<Stream<GroundingSample>, Stream<NeuralSample>> neuralize() {
+        return buildNeuralNets(settings, weightFactory);
+    }
 }
@@ -6,6 +6,8 @@ import cz.cvut.fel.ida.logic.constructs.building.ExamplesBuilder;
 import cz.cvut.fel.ida.logic.constructs.building.QueriesBuilder;
 import cz.cvut.fel.ida.logic.constructs.example.LiftedExample;
 import cz.cvut.fel.ida.logic.constructs.example.LogicSample;
+import cz.cvut.fel.ida.logic.parsing.examples.ChunkedExamplesParser;
+import cz.cvut.fel.ida.logic.parsing.examples.FactExamplesScanner;
 import cz.cvut.fel.ida.pipelines.Pipe;
 import cz.cvut.fel.ida.pipelines.Pipeline;
 import cz.cvut.fel.ida.pipelines.bulding.AbstractPipelineBuilder;
@@ -13,6 +15,7 @@ import cz.cvut.fel.ida.setup.Settings;
 import cz.cvut.fel.ida.setup.Source;
 import cz.cvut.fel.ida.setup.Sources;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.logging.Logger;
@@ -75,14 +78,13 @@ public class SamplesProcessingBuilder extends AbstractPipelineBuilder<Source, St
         }
 
         Pipe<Source, Stream<LogicSample>> sampleExtractionPipe = null;
-        ExamplesBuilder examplesBuilder = new ExamplesBuilder(settings);
 
         if (source.QueriesSeparate && source.ExamplesSeparate) {
             sampleExtractionPipe = new Pipe<Source, Stream<LogicSample>>("QueriesWithExamplesPipe", settings) {
                 @Override
                 public Stream<LogicSample> apply(Source source) {
-
-                    Stream<LogicSample> examples = examplesBuilder.buildSamplesFrom(examplesBuilder.parseTreeFrom(source.ExamplesReader));
+                    ExamplesBuilder examplesBuilder = examplesBuilder(samplesProcessingPipeline);
+                    Stream<LogicSample> examples = buildExamples(examplesBuilder, source);
 
                     QueriesBuilder queriesBuilder = new QueriesBuilder(settings);
                     queriesBuilder.setFactoriesFrom(examplesBuilder);   //todo check if this is indeed desirable
@@ -95,7 +97,7 @@ public class SamplesProcessingBuilder extends AbstractPipelineBuilder<Source, St
             sampleExtractionPipe = new Pipe<Source, Stream<LogicSample>>("QueriesWithinExamplesPipe", settings) {
                 @Override
                 public Stream<LogicSample> apply(Source source) {
-                    Stream<LogicSample> labeledExamples = examplesBuilder.buildSamplesFrom(examplesBuilder.parseTreeFrom(source.ExamplesReader));
+                    Stream<LogicSample> labeledExamples = buildExamples(examplesBuilder(samplesProcessingPipeline), source);
                     return labeledExamples;
                 }
             };
@@ -103,7 +105,7 @@ public class SamplesProcessingBuilder extends AbstractPipelineBuilder<Source, St
             sampleExtractionPipe = new Pipe<Source, Stream<LogicSample>>("UnsupervisedExamplesPipe", settings) {
                 @Override
                 public Stream<LogicSample> apply(Source source) {
-                    Stream<LogicSample> unlabeledExamples = examplesBuilder.buildSamplesFrom(examplesBuilder.parseTreeFrom(source.ExamplesReader));
+                    Stream<LogicSample> unlabeledExamples = buildExamples(examplesBuilder(samplesProcessingPipeline), source);
                     return unlabeledExamples;
                 }
             };
@@ -120,10 +122,44 @@ public class SamplesProcessingBuilder extends AbstractPipelineBuilder<Source, St
             return null;
         }
 
-        examplesBuilder.setRebuildCallback(samplesProcessingPipeline::rebuildPipeline);
         return sampleExtractionPipe;
     }
 
+    /**
+     * A new builder for each source the pipe is applied to (the constants etc. are shared over a single logic source only),
+     * so that a pipeline applied repeatedly (e.g. by the inference server) does not keep the factories of all the previous sources
+     */
+    private ExamplesBuilder examplesBuilder(Pipeline<Source, Stream<LogicSample>> samplesProcessingPipeline) {
+        ExamplesBuilder examplesBuilder = new ExamplesBuilder(settings);
+        examplesBuilder.setRebuildCallback(samplesProcessingPipeline::rebuildPipeline);
+        return examplesBuilder;
+    }
+
+
+    /**
+     * Samples from the examples source, scanned as plain facts or parsed in parallel chunks if requested (and possible)
+     */
+    private Stream<LogicSample> buildExamples(ExamplesBuilder examplesBuilder, Source source) {
+        if (settings.fastFactParsing && source.ExamplesFile != null) {
+            try {
+                FactExamplesScanner scanner = FactExamplesScanner.map(source.ExamplesFile.toPath());
+                if (scanner.isFactOnly()) {
+                    return examplesBuilder.buildSamplesFrom(scanner);
+                }
+                LOG.info("The examples file " + source.ExamplesFile + " is not fact-only (from byte " + scanner.errorPosition + "), parsing it with the full grammar.");
+            } catch (IOException e) {
+                LOG.warning("Could not map the examples file " + source.ExamplesFile + " for the fact scanning: " + e);
+            }
+        }
+        if (settings.parallelExamplesParsing && source.ExamplesFile != null) {
+            try {
+                return examplesBuilder.buildSamplesFrom(new ChunkedExamplesParser(source.ExamplesFile.toPath(), settings.examplesParsingChunkSize));
+            } catch (IOException e) {
+                LOG.warning("Could not split the examples file " + source.ExamplesFile + " for parallel parsing, parsing it as a whole: " + e);
+            }
+        }
+        return examplesBuilder.buildSamplesFrom(examplesBuilder.parseTreeFrom(source.ExamplesReader));
+    }
 
     public Pipe<Stream<LogicSample>, Stream<LogicSample>> postprocessSamplesPipe() {
         //todo for instance order by example id
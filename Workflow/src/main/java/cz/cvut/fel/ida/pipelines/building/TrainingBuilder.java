@@ -6,6 +6,8 @@ import cz.cvut.fel.ida.logic.constructs.template.Template;
 import cz.cvut.fel.ida.logic.grounding.GroundingSample;
 import cz.cvut.fel.ida.neural.networks.computation.training.NeuralModel;
 import cz.cvut.fel.ida.neural.networks.computation.training.NeuralSample;
+import cz.cvut.fel.ida.neural.networks.structure.export.BinaryNetworkFormat;
+import cz.cvut.fel.ida.neural.networks.structure.export.BinaryNeuralLoader;
 import cz.cvut.fel.ida.pipelines.Merge;
 import cz.cvut.fel.ida.pipelines.Pipe;
 import cz.cvut.fel.ida.pipelines.Pipeline;
@@ -15,15 +17,27 @@ import cz.cvut.fel.ida.pipelines.pipes.generic.DuplicateBranch;
 import cz.cvut.fel.ida.pipelines.pipes.generic.FirstFromPairExtractionBranch;
 import cz.cvut.fel.ida.pipelines.pipes.generic.LambdaPipe;
 import cz.cvut.fel.ida.pipelines.pipes.generic.PairMerge;
+import cz.cvut.fel.ida.pipelines.pipes.specific.BinaryNeuralSerializerPipe;
 import cz.cvut.fel.ida.pipelines.pipes.specific.NeuralTrainingPipe;
 import cz.cvut.fel.ida.pipelines.pipes.specific.TemplateToNeuralPipe;
 import cz.cvut.fel.ida.setup.Settings;
 import cz.cvut.fel.ida.setup.Source;
+import cz.cvut.fel.ida.setup.SourceFiles;
 import cz.cvut.fel.ida.setup.Sources;
 import cz.cvut.fel.ida.utils.exporting.Exporter;
 import cz.cvut.fel.ida.utils.generic.Pair;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class TrainingBuilder extends AbstractPipelineBuilder<Sources, Pair<Pair<Template, NeuralModel>, Progress>> {
@@ -67,6 +81,28 @@ public class TrainingBuilder extends AbstractPipelineBuilder<Sources, Pair<Pair<
     }
 
 
+    /**
+     * The fingerprint of the input files and the settings the networks are built from, or null if it cannot be established
+     * (then a stored {@link Settings#binaryNetworksFile} is never reused).
+     */
+    private byte[] networksFingerprint() {
+        if (!(sources instanceof SourceFiles) || ((SourceFiles) sources).template == null || sources.crossvalidation || settings.crossvalidation) {
+            LOG.warning("The binary networks file can only be reused with plain input files (and no crossvalidation), the networks will always be rebuilt.");
+            return null;
+        }
+        SourceFiles files = (SourceFiles) sources;
+        List<Path> inputs = Stream.of(files.template, files.trainExamples, files.trainQueries, files.valExamples, files.valQueries, files.testExamples, files.testQueries)
+                .filter(file -> file != null && file.isFile())
+                .map(File::toPath)
+                .collect(Collectors.toList());
+        try {
+            return BinaryNetworkFormat.fingerprint(inputs, settings);
+        } catch (IOException e) {
+            LOG.warning("Cannot fingerprint the input files, the networks will be rebuilt: " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * todo - in case that some of the samples did not ground successfully, hack the pipeline and start StructureLearning in the current context
      */
@@ -83,16 +119,8 @@ public class TrainingBuilder extends AbstractPipelineBuilder<Sources, Pair<Pair<
             FirstFromPairExtractionBranch<Template, Stream<LogicSample>> templateSamplesBranch = pipeline.registerStart(new FirstFromPairExtractionBranch<>());
             DuplicateBranch<Template> duplicateBranch = pipeline.register(new DuplicateBranch<>());
 
-            GroundingBuilder groundingBuilder = new GroundingBuilder(settings);
-            Pipeline<Pair<Template, Stream<LogicSample>>, Stream<GroundingSample>> groundingPipeline = pipeline.register(groundingBuilder.buildPipeline());
-
-            NeuralNetsBuilder neuralNetsBuilder = new NeuralNetsBuilder(settings, groundingBuilder.weightFactory);
-            Pipeline<Stream<GroundingSample>, Stream<NeuralSample>> neuralizationPipeline = pipeline.register(neuralNetsBuilder.buildPipeline());
-
             TemplateToNeuralPipe templateToNeuralPipe = pipeline.register(new TemplateToNeuralPipe(settings));
 
-            PairMerge<NeuralModel, Stream<NeuralSample>> neuralMerge = pipeline.register(new PairMerge<>("NeuralMerge"));
-
             Pipeline<Pair<NeuralModel, Stream<NeuralSample>>, Pair<NeuralModel, Progress>> trainingPipeline = pipeline.register(new NeuralLearningBuilder(settings).buildPipeline());
 
             Merge<Template, Pair<NeuralModel, Progress>, Pair<Pair<Template, NeuralModel>, Progress>> finalMerge = pipeline.registerEnd(new Merge<Template, Pair<NeuralModel, Progress>, Pair<Pair<Template, NeuralModel>, Progress>>("ModelMerge", settings) {
@@ -106,17 +134,70 @@ public class TrainingBuilder extends AbstractPipelineBuilder<Sources, Pair<Pair<
                 }
             });
 
-            templateSamplesBranch.connectAfterL(groundingPipeline);
             templateSamplesBranch.connectAfterR(duplicateBranch);
+            duplicateBranch.connectAfterL(templateToNeuralPipe);
 
-            groundingPipeline.connectAfter(neuralizationPipeline);
+            byte[] fingerprint = settings.binaryNetworksFile == null ? null : networksFingerprint();
+            if (fingerprint != null && Arrays.equals(fingerprint, BinaryNeuralLoader.readFingerprint(Paths.get(settings.binaryNetworksFile)))) {
+                // note this changes the settings just as the building of the networks would - the results types (for non-scalar targets) and the random generator
+                Merge<NeuralModel, Pair<Template, Stream<LogicSample>>, Pair<NeuralModel, Stream<NeuralSample>>> loadingMerge = pipeline.register(new Merge<NeuralModel, Pair<Template, Stream<LogicSample>>, Pair<NeuralModel, Stream<NeuralSample>>>("BinaryNetworksLoadingMerge", settings) {
+                    @Override
+                    protected Pair<NeuralModel, Stream<NeuralSample>> merge(NeuralModel neuralModel, Pair<Template, Stream<LogicSample>> logicSamples) {
+                        logicSamples.s.close();   // the networks have already been built from these before
+                        LOG.info("Loading the neural networks from " + settings.binaryNetworksFile + " instead of grounding and neuralizing the examples.");
+                        try {
+                            BinaryNeuralLoader loader = new BinaryNeuralLoader(Paths.get(settings.binaryNetworksFile), neuralModel, settings);
+                            if (loader.hasNonScalarTargets() && settings.trainOnlineResultsType == Settings.ResultsType.CLASSIFICATION) {
+                                // the same switch to basic (non-binary) classification results as with the freshly neuralized samples (see NeuralProcessingSample)
+                                settings.trainRecalculationResultsType = Settings.ResultsType.CLASSIFICATION;
+                                settings.validationResultsType = Settings.ResultsType.CLASSIFICATION;
+                                settings.testResultsType = Settings.ResultsType.CLASSIFICATION;
+                            }
+                            Random random = loader.restoreRandom();
+                            if (random != null) {   // continue as the run that built the networks (see BinaryNeuralSerializerPipe)
+                                settings.random = random;
+                            }
+                            return new Pair<>(neuralModel, loader.loadSamples().onClose(() -> {
+                                try {
+                                    loader.close();
+                                } catch (IOException e) {
+                                    LOG.warning("Failed to close the binary networks file: " + e.getMessage());
+                                }
+                            }));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
+                loadingMerge.connectBeforeL(templateToNeuralPipe);
+                loadingMerge.connectBeforeR(templateSamplesBranch.output1);
+                loadingMerge.connectAfter(trainingPipeline);
+            } else {
+                GroundingBuilder groundingBuilder = new GroundingBuilder(settings);
+                Pipeline<Pair<Template, Stream<LogicSample>>, Stream<GroundingSample>> groundingPipeline = pipeline.register(groundingBuilder.buildPipeline());
 
-            duplicateBranch.connectAfterL(templateToNeuralPipe);
+                NeuralNetsBuilder neuralNetsBuilder = new NeuralNetsBuilder(settings, groundingBuilder.weightFactory);
+                Pipeline<Stream<GroundingSample>, Stream<NeuralSample>> neuralizationPipeline = pipeline.register(neuralNetsBuilder.buildPipeline());
 
-            neuralMerge.connectBeforeL(templateToNeuralPipe);
-            neuralMerge.connectBeforeR(neuralizationPipeline);
+                PairMerge<NeuralModel, Stream<NeuralSample>> neuralMerge = pipeline.register(new PairMerge<>("NeuralMerge"));
 
-            neuralMerge.connectAfter(trainingPipeline);
+                templateSamplesBranch.connectAfterL(groundingPipeline);
+                groundingPipeline.connectAfter(neuralizationPipeline);
+
+                neuralMerge.connectBeforeL(templateToNeuralPipe);
+                neuralMerge.connectBeforeR(neuralizationPipeline);
+
+                if (settings.binaryNetworksFile != null) {
+                    if (Files.exists(Paths.get(settings.binaryNetworksFile))) {
+                        LOG.info("The binary networks file " + settings.binaryNetworksFile + " does not match the current inputs and settings, the networks will be rebuilt into it.");
+                    }
+                    BinaryNeuralSerializerPipe serializerPipe = pipeline.register(new BinaryNeuralSerializerPipe(settings, fingerprint));
+                    neuralMerge.connectAfter(serializerPipe);
+                    serializerPipe.connectAfter(trainingPipeline);
+                } else {
+                    neuralMerge.connectAfter(trainingPipeline);
+                }
+            }
 
             finalMerge.connectBeforeL(duplicateBranch.output2);
             finalMerge.connectBeforeR(trainingPipeline);
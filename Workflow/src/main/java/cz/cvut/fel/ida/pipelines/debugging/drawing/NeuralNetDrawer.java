@@ -20,8 +20,10 @@ import cz.cvut.fel.ida.neural.networks.structure.components.types.TopologicNetwo
 import cz.cvut.fel.ida.setup.Settings;
 import cz.cvut.fel.ida.utils.generic.Pair;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -51,9 +53,21 @@ public class NeuralNetDrawer extends Drawer<NeuralSample> {
         this.graphviz.end_graph();
     }
 
+    /**
+     * Draw the neurons in the topologic order, or just the last {@link Settings#drawingMaxNeurons} of them (i.e. the subgraph closest
+     * to the output) for the big networks - their inputs from the rest of the network then appear as plain nodes
+     */
     private void iterateNetwork() {
+        List<BaseNeuron<Neurons, State.Neural>> neurons = new ArrayList<>();
         while (this.bUpIterator.hasNext()) {
-            BaseNeuron<Neurons, State.Neural> nextNeuron = this.bUpIterator.next();
+            neurons.add(this.bUpIterator.next());
+        }
+        int from = 0;
+        if (settings.drawingMaxNeurons >= 0 && neurons.size() > settings.drawingMaxNeurons) {
+            from = neurons.size() - settings.drawingMaxNeurons;
+            LOG.info("Drawing only the last " + settings.drawingMaxNeurons + " of " + neurons.size() + " neurons of the network (closest to the output).");
+        }
+        for (BaseNeuron<Neurons, State.Neural> nextNeuron : neurons.subList(from, neurons.size())) {
             nextNeuron.visit((NeuronVisitor.Weighted.Detailed) neuronDrawer);
         }
     }
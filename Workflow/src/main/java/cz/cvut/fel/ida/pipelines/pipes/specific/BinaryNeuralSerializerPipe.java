@@ -0,0 +1,47 @@
+package cz.cvut.fel.ida.pipelines.pipes.specific;
+
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralModel;
+import cz.cvut.fel.ida.neural.networks.computation.training.NeuralSample;
+import cz.cvut.fel.ida.neural.networks.structure.export.BinaryNeuralLoader;
+import cz.cvut.fel.ida.neural.networks.structure.export.BinaryNeuralSerializer;
+import cz.cvut.fel.ida.pipelines.Pipe;
+import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.generic.Pair;
+import cz.cvut.fel.ida.utils.generic.Utilities;
+
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Writes the finalized networks into the {@link Settings#binaryNetworksFile} and passes them on unchanged.
+ * <p>
+ * Together with the networks, a seed drawn from the random generator after their building is stored, and this run continues
+ * with a generator of that seed, just as a later run loading them (see {@link BinaryNeuralLoader#restoreRandom()}), i.e. both train the same.
+ */
+public class BinaryNeuralSerializerPipe extends Pipe<Pair<NeuralModel, Stream<NeuralSample>>, Pair<NeuralModel, Stream<NeuralSample>>> {
+    private static final Logger LOG = Logger.getLogger(BinaryNeuralSerializerPipe.class.getName());
+
+    BinaryNeuralSerializer binaryNeuralSerializer = new BinaryNeuralSerializer();
+
+    /**
+     * Of the inputs the networks are built from, or null if unknown (then the file will never be reused)
+     */
+    private final byte[] fingerprint;
+
+    public BinaryNeuralSerializerPipe(Settings settings, byte[] fingerprint) {
+        super("BinaryNeuralSerializerPipe", settings);
+        this.fingerprint = fingerprint;
+    }
+
+    @Override
+    public Pair<NeuralModel, Stream<NeuralSample>> apply(Pair<NeuralModel, Stream<NeuralSample>> neuralModelStreamPair) throws Exception {
+        List<NeuralSample> samples = Utilities.terminateSampleStream(neuralModelStreamPair.s);
+        long randomSeed = settings.random.nextLong();
+        binaryNeuralSerializer.serialize(neuralModelStreamPair.r, samples.stream(), Paths.get(settings.binaryNetworksFile), fingerprint, randomSeed);
+        settings.random = new Random(randomSeed);
+        return new Pair<>(neuralModelStreamPair.r, samples.stream());
+    }
+}
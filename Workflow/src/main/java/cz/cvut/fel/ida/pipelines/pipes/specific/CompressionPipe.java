@@ -41,8 +41,7 @@ public class CompressionPipe extends Pipe<Stream<NeuralProcessingSample>, Stream
             });
         }
 
-        if (this.exporter != null)
-            neuralProcessingSampleStream.onClose(() -> trueExport());   //We export after the stream finishes!
+        neuralProcessingSampleStream.onClose(() -> trueExport());   //We finish (and export) after the stream finishes!
 
         return neuralProcessingSampleStream.map(sample -> {
             if (!sample.detailedNetwork.compressed) {  // skip if the same network has already been compressed!
@@ -65,15 +64,15 @@ public class CompressionPipe extends Pipe<Stream<NeuralProcessingSample>, Stream
     }
 
     /**
-     * We export after the stream finishes!
+     * We finish the stage (i.e. log its summary) and export after the stream finishes!
      */
     protected void trueExport() {
 //        if (this.exporter == null && this.parent != null) {
 //            this.exporter = Exporter.getFrom(this.ID, parent.settings);
 //        }
-        LOG.info("Compression stats export");
+        compressor.finish();
         if (exporter != null) {
-            compressor.finish();
+            LOG.info("Compression stats export");
             this.exporter.export(compressor);
         }
     }
@@ -29,8 +29,8 @@ public class NetworkFinalizationPipe extends Pipe<Stream<NeuralProcessingSample>
     @Override
     public Stream<NeuralProcessingSample> apply(Stream<NeuralProcessingSample> neuralProcessingSampleStream) {
 
-        //if we do Global (KB) mode with a single Shared network, and we require topologic iteration for each query, extract many small networks then
-        if (settings.groundingMode == Settings.GroundingMode.GLOBAL && settings.iterationMode == Settings.IterationMode.TOPOLOGIC) {
+        //if we do Global (KB) mode with a single Shared network, and we require topologic iteration for each query, extract many small networks then (the lazy mode creates them directly)
+        if (settings.groundingMode == Settings.GroundingMode.GLOBAL && settings.iterationMode == Settings.IterationMode.TOPOLOGIC && !settings.lazyNeuralization) {
             neuralProcessingSampleStream = neuralProcessingSampleStream.map(sample -> {
                 DetailedNetwork emptyCopy = sample.detailedNetwork.emptyCopy(sample.getId());
                 NetworkReducing.supervisedNetReconstruction(emptyCopy, Collections.singletonList(sample.query.neuron));
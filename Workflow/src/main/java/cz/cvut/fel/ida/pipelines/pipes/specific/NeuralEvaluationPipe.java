@@ -16,6 +16,8 @@ import cz.cvut.fel.ida.pipelines.Pipe;
 import cz.cvut.fel.ida.setup.Settings;
 import cz.cvut.fel.ida.utils.exporting.TextExporter;
 import cz.cvut.fel.ida.utils.generic.Pair;
+import cz.cvut.fel.ida.utils.metrics.Histogram;
+import cz.cvut.fel.ida.utils.metrics.Metrics;
 
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -27,6 +29,7 @@ import static cz.cvut.fel.ida.utils.generic.Utilities.terminateSampleStream;
 
 public class NeuralEvaluationPipe extends Pipe<Pair<NeuralModel, Stream<NeuralSample>>, Results> {
     private static final Logger LOG = Logger.getLogger(NeuralEvaluationPipe.class.getName());
+    private static final Histogram TESTING = Metrics.histogram("testing.evaluation");
     Settings settings;
     private static int counter = 1;
 
@@ -45,17 +48,27 @@ public class NeuralEvaluationPipe extends Pipe<Pair<NeuralModel, Stream<NeuralSa
     public Results apply(Pair<NeuralModel, Stream<NeuralSample>> neuralModelStreamPair) {
         IndependentNeuronProcessing invalidation = new IndependentNeuronProcessing(settings, new Invalidator(-1));  //todo now the index should be passed from the testing pipeline! This will not work in parallel...
         Evaluation evaluation = new Evaluation(settings);
-        List<NeuralSample> collect = terminateSampleStream(neuralModelStreamPair.s);
+        if (settings.sharedNeuronsValueCaching) {
+            evaluation.cacheSharedValues(neuralModelStreamPair.r.getSharedValueCache());   // valid across the testings, as long as the weights stay the same
+        }
+        Iterable<NeuralSample> samples;
+        if (settings.lazyNeuralization) {
+            samples = neuralModelStreamPair.s::iterator;   // evaluate each network right as it gets (lazily) created
+        } else {
+            samples = terminateSampleStream(neuralModelStreamPair.s);
+        }
 
         List<Result> resultList = new ArrayList<>();
-        for (NeuralSample neuralSample : collect) {
+        for (NeuralSample neuralSample : samples) {
             NeuralNetwork<State.Structure> neuralNetwork = neuralSample.query.evidence;
             AtomNeurons<State.Neural> neuron = neuralSample.query.neuron;
 
+            long start = Metrics.start();
             neuralSample.query.evidence.initializeStatesCache(-1);    //here we can transfer information from Structure to Computation
             invalidation.process(neuralNetwork, neuron);
             Result evaluate = evaluation.evaluate(neuralSample);
             resultList.add(evaluate);
+            TESTING.recordSince(start);
         }
 
         Results results;
@@ -41,8 +41,7 @@ public class PruningPipe extends Pipe<Stream<NeuralProcessingSample>, Stream<Neu
             });
         }
 
-        if (this.exporter != null)
-            neuralProcessingSampleStream.onClose(() -> trueExport());   //We export after the stream finishes!
+        neuralProcessingSampleStream.onClose(() -> trueExport());   //We finish (and export) after the stream finishes!
 
         return neuralProcessingSampleStream.map(sample -> {
             if (!sample.detailedNetwork.pruned) {
@@ -64,15 +63,15 @@ public class PruningPipe extends Pipe<Stream<NeuralProcessingSample>, Stream<Neu
     }
 
     /**
-     * We export after the stream finishes!
+     * We finish the stage (i.e. log its summary) and export after the stream finishes!
      */
     protected void trueExport() {
 //        if (this.exporter == null && this.parent != null) {
 //            this.exporter = Exporter.getFrom(this.ID, parent.settings);
 //        }
-        LOG.info("Pruning stats export");
+        reducer.finish();
         if (exporter != null) {
-            reducer.finish();
+            LOG.info("Pruning stats export");
             this.exporter.export(reducer);
         }
     }
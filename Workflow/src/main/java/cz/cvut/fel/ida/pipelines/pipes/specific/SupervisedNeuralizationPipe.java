@@ -7,15 +7,19 @@ import cz.cvut.fel.ida.neural.networks.structure.building.Neuralizer;
 import cz.cvut.fel.ida.neural.networks.structure.components.types.DetailedNetwork;
 import cz.cvut.fel.ida.pipelines.Pipe;
 import cz.cvut.fel.ida.setup.Settings;
+import cz.cvut.fel.ida.utils.generic.SummaryLog;
 import cz.cvut.fel.ida.utils.generic.Utilities;
 
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class SupervisedNeuralizationPipe extends Pipe<Stream<GroundingSample>, Stream<NeuralProcessingSample>> {
     private static final Logger LOG = Logger.getLogger(SupervisedNeuralizationPipe.class.getName());
     private Neuralizer neuralizer;
+    private final SummaryLog summaryLog = new SummaryLog(LOG, Level.INFO, "Neuralization", "neurons");
 
     public SupervisedNeuralizationPipe(Settings settings, Neuralizer neuralizer) {
         super("SupervisedNeuralizationPipe", settings);
@@ -27,17 +31,58 @@ public class SupervisedNeuralizationPipe extends Pipe<Stream<GroundingSample>, S
         if (settings.groundingMode == Settings.GroundingMode.GLOBAL) {
             List<GroundingSample> groundingSamples = Utilities.terminateSampleStream(groundingSampleStream);
             GroundTemplate groundTemplate = groundingSamples.get(0).groundingWrap.getGroundTemplate();
+            if (settings.lazyNeuralization) {
+                LOG.info("Neuralizing GLOBAL sample lazily " + groundTemplate.toString());
+                return neuralizer.neuralizeLazily(groundingSamples)
+                        .peek(this::created)
+                        .onClose(summaryLog::finish);
+            }
             LOG.info("Neuralizing GLOBAL sample " + groundTemplate.toString());
             List<NeuralProcessingSample> neuralizedSamples = neuralizer.neuralize(groundTemplate, groundingSamples);
             DetailedNetwork detailedNetwork = neuralizedSamples.get(0).detailedNetwork;
             LOG.info("GLOBAL NeuralNet created: " + detailedNetwork.toString());
             return neuralizedSamples.stream();
+        } else if (settings.groundingMode == Settings.GroundingMode.INDEPENDENT && settings.parallelNeuralization) {
+            if (groundingSampleStream.isParallel()) {   // e.g. with parallel grounding the whole stream is parallel already, keep it lazy
+                return groundingSampleStream
+                        .map(sample -> neuralizer.neuralizeConcurrently(sample).stream())
+                        .flatMap(f -> f)
+                        .peek(this::created)
+                        .onClose(summaryLog::finish);
+            }
+            // the grounding itself is not meant to run concurrently here, so terminate it first and parallelize just the neuralization
+            List<GroundingSample> groundingSamples = Utilities.terminateSampleStream(groundingSampleStream);
+            LOG.info("Neuralizing " + groundingSamples.size() + " samples in parallel");
+            List<NeuralProcessingSample> neuralizedSamples = groundingSamples.parallelStream()
+                    .map(sample -> neuralizer.neuralizeConcurrently(sample).stream())
+                    .flatMap(f -> f)
+                    .peek(this::created)
+                    .collect(Collectors.toList());
+            neuralizer.finishConcurrent();
+            summaryLog.finish();
+            return neuralizedSamples.stream();
         } else {
+            boolean parallel = groundingSampleStream.isParallel();    // e.g. with parallel grounding, the shared neuralizer still needs to be used one sample at a time
             return groundingSampleStream
-                    .peek(s -> LOG.info("Neuralizing sample " + s.toString()))
-                    .map(sample -> neuralizer.neuralize(sample).stream())
+                    .peek(s -> LOG.finest(() -> "Neuralizing sample " + s.toString()))
+                    .map(sample -> (parallel ? neuralizeExclusively(sample) : neuralizer.neuralize(sample)).stream())
                     .flatMap(f -> f)
-                    .peek(s -> LOG.info("NeuralNet created: " + s.toString()));
+                    .peek(this::created)
+                    .onClose(summaryLog::finish);   // i.e. once the (lazy) stream of the samples is terminated
+        }
+    }
+
+    private List<NeuralProcessingSample> neuralizeExclusively(GroundingSample sample) {
+        synchronized (neuralizer) {
+            return neuralizer.neuralize(sample);
         }
     }
+
+    /**
+     * The per-sample details only at the finest level, otherwise just a periodic summary
+     */
+    private void created(NeuralProcessingSample sample) {
+        LOG.finest(() -> "NeuralNet created: " + sample.toString());
+        summaryLog.record(sample.detailedNetwork == null ? 0 : sample.detailedNetwork.allNeuronsTopologic.size());
+    }
 }